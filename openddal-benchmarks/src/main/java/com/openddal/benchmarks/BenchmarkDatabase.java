@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import com.openddal.config.DataSourceProvider;
+import com.openddal.config.DefaultDataSourceProvider;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Engine;
+import com.openddal.engine.Session;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.message.DbException;
+import com.openddal.util.JdbcUtils;
+
+/**
+ * The sharded database of the benchmarks. The shards are H2 in-memory
+ * databases in MySQL mode, the physical tables are created before the engine
+ * is started, so the engine reads their metadata as it does from MySQL.
+ */
+public class BenchmarkDatabase {
+
+    /**
+     * The configuration of the engine on the class path.
+     */
+    public static final String CONFIG = "config/benchmark-config.xml";
+
+    /**
+     * The number of shards.
+     */
+    public static final int SHARD_COUNT = 4;
+
+    private static final String[] CUSTOMER_SUFFIXES = { "_01", "_02" };
+    private static final String[] ORDER_SUFFIXES = { "_01", "_02", "_03", "_04" };
+
+    private final Engine engine;
+    private final Session session;
+
+    private BenchmarkDatabase(DataSourceProvider provider) {
+        createTables();
+        SessionFactoryBuilder builder = SessionFactoryBuilder.newBuilder().fromXml(CONFIG);
+        if (provider != null) {
+            builder.dataSourceProvider(provider);
+        }
+        engine = (Engine) builder.build();
+        try {
+            session = (Session) engine.createSession(new Properties());
+        } catch (SQLException e) {
+            throw DbException.convert(e);
+        }
+    }
+
+    /**
+     * Create the physical tables of the shards and start the engine.
+     *
+     * @return the database
+     */
+    public static BenchmarkDatabase open() {
+        return new BenchmarkDatabase(null);
+    }
+
+    /**
+     * Create the physical tables of the shards and start the engine with the
+     * given data sources instead of the ones of the configuration.
+     *
+     * @param provider the data source provider
+     * @return the database
+     */
+    public static BenchmarkDatabase open(DataSourceProvider provider) {
+        return new BenchmarkDatabase(provider);
+    }
+
+    /**
+     * Create the data sources of the shards as in the configuration, the ids
+     * are db0 to db3.
+     *
+     * @return the data source provider
+     */
+    public static DefaultDataSourceProvider createDataSourceProvider() {
+        DefaultDataSourceProvider provider = new DefaultDataSourceProvider();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL(getShardURL(i));
+            ds.setUser("sa");
+            ds.setPassword("");
+            provider.addDataNode("db" + i, ds);
+        }
+        return provider;
+    }
+
+    /**
+     * Get the JDBC URL of a shard, as in the configuration.
+     *
+     * @param shard the shard index
+     * @return the URL
+     */
+    public static String getShardURL(int shard) {
+        return "jdbc:h2:mem:ddal_bench" + shard + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    private static void createTables() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Connection conn = null;
+            Statement stat = null;
+            try {
+                conn = DriverManager.getConnection(getShardURL(i), "sa", "");
+                stat = conn.createStatement();
+                for (String suffix : CUSTOMER_SUFFIXES) {
+                    stat.execute("CREATE TABLE IF NOT EXISTS customers" + suffix
+                            + "(id INT PRIMARY KEY, name VARCHAR(64), email VARCHAR(128),"
+                            + " status INT, created TIMESTAMP)");
+                    stat.execute("CREATE TABLE IF NOT EXISTS address" + suffix
+                            + "(address_id INT PRIMARY KEY, customer_id INT, city VARCHAR(64),"
+                            + " street VARCHAR(128))");
+                }
+                for (String suffix : ORDER_SUFFIXES) {
+                    stat.execute("CREATE TABLE IF NOT EXISTS orders" + suffix
+                            + "(order_id BIGINT PRIMARY KEY, customer_id INT, amount DECIMAL(12, 2),"
+                            + " status INT, created TIMESTAMP)");
+                    stat.execute("CREATE TABLE IF NOT EXISTS order_items" + suffix
+                            + "(item_id BIGINT PRIMARY KEY, order_id BIGINT, product_id INT,"
+                            + " quantity INT, price DECIMAL(12, 2))");
+                }
+                stat.execute("CREATE TABLE IF NOT EXISTS product"
+                        + "(product_id INT PRIMARY KEY, name VARCHAR(64), price DECIMAL(12, 2))");
+            } catch (SQLException e) {
+                throw DbException.convert(e);
+            } finally {
+                JdbcUtils.closeSilently(stat);
+                JdbcUtils.closeSilently(conn);
+            }
+        }
+    }
+
+    /**
+     * @return the engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the session of the benchmark
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Get a table of the main schema.
+     *
+     * @param name the table name
+     * @return the table
+     */
+    public TableMate getTable(String name) {
+        return (TableMate) session.getDatabase().getSchema(session.getCurrentSchemaName())
+                .findTableOrView(session, name);
+    }
+
+    /**
+     * Close the session and the database.
+     */
+    public void close() {
+        session.close();
+        session.getDatabase().close();
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares the scores with the baseline that is
+ * checked in with the benchmarks. A benchmark is a regression if its average
+ * time is larger than the baseline by more than the tolerance, the runner
+ * exits with status 1 then. The baseline is recorded on the reference machine
+ * with -update; the scores of another machine are not comparable. The bytes
+ * allocated by an operation, gc.alloc.rate.norm of the GC profiler, are
+ * listed with the scores; they do not depend on the machine.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar [-baseline baseline.properties]
+ *     [-tolerance 0.15] [-update] [benchmark regexp...]
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    private static final String PACKAGE = "com.openddal.";
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private File baselineFile = new File("baseline.properties");
+    private double tolerance = 0.15;
+    private boolean update;
+    private final ArrayList<String> includes = new ArrayList<String>();
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-baseline".equals(arg)) {
+                runner.baselineFile = new File(args[++i]);
+            } else if ("-tolerance".equals(arg)) {
+                runner.tolerance = Double.parseDouble(args[++i]);
+            } else if ("-update".equals(arg)) {
+                runner.update = true;
+            } else {
+                runner.includes.add(arg);
+            }
+        }
+        System.exit(runner.run() ? 0 : 1);
+    }
+
+    private boolean run() throws RunnerException, IOException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.addProfiler(GCProfiler.class);
+        if (includes.isEmpty()) {
+            options.include(PACKAGE.replace(".", "\\.") + ".*Benchmark");
+        }
+        for (String include : includes) {
+            options.include(include);
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+        TreeMap<String, String> scores = new TreeMap<String, String>();
+        TreeMap<String, String> allocations = new TreeMap<String, String>();
+        for (RunResult r : results) {
+            String key = getKey(r.getParams());
+            Result<?> result = r.getPrimaryResult();
+            scores.put(key, format(result.getScore()) + " " + result.getScoreUnit());
+            Result<?> allocation = r.getSecondaryResults().get(ALLOCATION);
+            if (allocation != null) {
+                allocations.put(key, format(allocation.getScore()) + " " + allocation.getScoreUnit());
+            }
+        }
+        Properties baseline = readBaseline();
+        if (update) {
+            for (Map.Entry<Object, Object> e : baseline.entrySet()) {
+                if (!scores.containsKey(e.getKey())) {
+                    // keep the benchmarks that did not run
+                    scores.put((String) e.getKey(), (String) e.getValue());
+                }
+            }
+            writeBaseline(scores);
+            System.out.println("Baseline written to " + baselineFile.getAbsolutePath());
+            return true;
+        }
+        return compare(baseline, scores, allocations);
+    }
+
+    /**
+     * Get the name of a benchmark with its parameters, for example
+     * benchmarks.RoutingBenchmark.routeKey or
+     * command.ParserBenchmark.parse:statement=join.
+     */
+    private static String getKey(BenchmarkParams params) {
+        String name = params.getBenchmark();
+        if (name.startsWith(PACKAGE)) {
+            name = name.substring(PACKAGE.length());
+        }
+        StringBuilder buff = new StringBuilder(name);
+        for (String p : params.getParamsKeys()) {
+            buff.append(buff.indexOf(":") < 0 ? ':' : ',').append(p).append('=').append(params.getParam(p));
+        }
+        return buff.toString();
+    }
+
+    private static String format(double score) {
+        return String.format("%.3f", score);
+    }
+
+    private boolean compare(Properties baseline, TreeMap<String, String> scores,
+            TreeMap<String, String> allocations) {
+        boolean ok = true;
+        System.out.println();
+        System.out.println(String.format("%-70s %14s %14s %16s %8s", "Benchmark", "Baseline", "Score",
+                "Allocated", "Change"));
+        for (Map.Entry<String, String> e : scores.entrySet()) {
+            String[] score = e.getValue().split(" ");
+            String allocation = allocations.get(e.getKey());
+            if (allocation == null) {
+                allocation = "-";
+            }
+            String base = baseline.getProperty(e.getKey());
+            if (base == null) {
+                System.out.println(String.format("%-70s %14s %14s %16s %8s", e.getKey(), "-", e.getValue(),
+                        allocation, "new"));
+                continue;
+            }
+            String[] b = base.trim().split(" ");
+            if (!b[1].equals(score[1])) {
+                System.out.println(String.format("%-70s %14s %14s %16s %8s", e.getKey(), base, e.getValue(),
+                        allocation, "unit"));
+                continue;
+            }
+            double change = Double.parseDouble(score[0]) / Double.parseDouble(b[0]) - 1;
+            String status = "";
+            if (change > tolerance) {
+                status = " REGRESSION";
+                ok = false;
+            }
+            System.out.println(String.format("%-70s %14s %14s %16s %+7.1f%%%s", e.getKey(), base,
+                    e.getValue(), allocation, change * 100, status));
+        }
+        if (!ok) {
+            System.out.println(String.format("Regressions larger than %.0f%% of the baseline %s", tolerance * 100,
+                    baselineFile.getPath()));
+        }
+        return ok;
+    }
+
+    private Properties readBaseline() throws IOException {
+        Properties p = new Properties();
+        if (baselineFile.exists()) {
+            InputStream in = new FileInputStream(baselineFile);
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return p;
+    }
+
+    private void writeBaseline(TreeMap<String, String> scores) throws IOException {
+        Writer w = new OutputStreamWriter(new FileOutputStream(baselineFile), "ISO-8859-1");
+        try {
+            w.write("# The baseline of the benchmarks, the average time of an operation.\n");
+            w.write("# Written by BenchmarkRunner -update, on " + System.getProperty("os.name") + " "
+                    + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors()
+                    + " processors, Java " + System.getProperty("java.version") + ".\n");
+            for (Map.Entry<String, String> e : scores.entrySet()) {
+                w.write(e.getKey().replace(":", "\\:").replace("=", "\\=") + "=" + e.getValue() + "\n");
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+}
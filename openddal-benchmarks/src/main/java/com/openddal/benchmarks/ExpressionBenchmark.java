@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.command.expression.CompareLike;
+import com.openddal.command.expression.Comparison;
+import com.openddal.command.expression.Expression;
+import com.openddal.command.expression.Parameter;
+import com.openddal.command.expression.ValueExpression;
+import com.openddal.engine.Session;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueString;
+
+/**
+ * The evaluation of the conditions of the rows filtered locally. The left
+ * side is a parameter, it is set after the condition is optimized so the
+ * condition is not folded to a constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    private BenchmarkDatabase db;
+    private Session session;
+    private Expression compareInt;
+    private Expression compareString;
+    private Expression likePrefix;
+    private Expression likeContains;
+    private Expression regexp;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        session = db.getSession();
+        Value email = ValueString.get("customer-4711@example.com");
+        Parameter p = new Parameter(0);
+        compareInt = optimize(new Comparison(session, Comparison.BIGGER_EQUAL, p,
+                ValueExpression.get(ValueInt.get(1000))), p, ValueInt.get(4711));
+        p = new Parameter(0);
+        compareString = optimize(new Comparison(session, Comparison.EQUAL, p, ValueExpression.get(email)), p,
+                email);
+        p = new Parameter(0);
+        likePrefix = optimize(like(p, "customer-47%", false), p, email);
+        p = new Parameter(0);
+        likeContains = optimize(like(p, "%4711%", false), p, email);
+        p = new Parameter(0);
+        regexp = optimize(like(p, "^customer-[0-9]+@example\\.com$", true), p, email);
+    }
+
+    private CompareLike like(Parameter left, String pattern, boolean isRegexp) {
+        return new CompareLike(session.getDatabase(), left, ValueExpression.get(ValueString.get(pattern)), null,
+                isRegexp);
+    }
+
+    private Expression optimize(Expression condition, Parameter left, Value value) {
+        Expression e = condition.optimize(session);
+        left.setValue(value);
+        return e;
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public Value compareInt() {
+        return compareInt.getValue(session);
+    }
+
+    @Benchmark
+    public Value compareString() {
+        return compareString.getValue(session);
+    }
+
+    @Benchmark
+    public Value likePrefix() {
+        return likePrefix.getValue(session);
+    }
+
+    @Benchmark
+    public Value likeContains() {
+        return likeContains.getValue(session);
+    }
+
+    @Benchmark
+    public Value regexp() {
+        return regexp.getValue(session);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.command.expression.Expression;
+import com.openddal.command.expression.ValueExpression;
+import com.openddal.engine.Session;
+import com.openddal.result.LocalResult;
+import com.openddal.result.SortOrder;
+import com.openddal.util.ValueHashMap;
+import com.openddal.value.Value;
+import com.openddal.value.ValueArray;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+
+/**
+ * The local processing of the rows merged from the shards: the sort of an
+ * ORDER BY, the removal of duplicates of a DISTINCT, and the grouping of a
+ * GROUP BY the way Select groups the rows, followed by the sort of the
+ * groups. The rows have an int, a string with 100 distinct values and a long
+ * column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalResultBenchmark {
+
+    private static final int COLUMNS = 3;
+
+    @Param({ "1000", "10000" })
+    int rowCount;
+
+    private BenchmarkDatabase db;
+    private Session session;
+    private Expression[] expressions;
+    private Value[][] rows;
+    private SortOrder sortOrder;
+    private SortOrder groupOrder;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        session = db.getSession();
+        expressions = new Expression[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            expressions[i] = ValueExpression.get(ValueInt.get(i));
+        }
+        Random random = new Random(1);
+        rows = new Value[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new Value[] { ValueInt.get(random.nextInt(rowCount)),
+                    ValueString.get("status" + random.nextInt(100)), ValueLong.get(random.nextInt(1000000)) };
+        }
+        // ORDER BY 2, 1 DESC
+        sortOrder = new SortOrder(session.getDatabase(), new int[] { 1, 0 },
+                new int[] { SortOrder.ASCENDING, SortOrder.DESCENDING }, null);
+        // ORDER BY SUM DESC
+        groupOrder = new SortOrder(session.getDatabase(), new int[] { 2 }, new int[] { SortOrder.DESCENDING },
+                null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    private LocalResult newResult() {
+        LocalResult result = new LocalResult(session, expressions, COLUMNS);
+        result.setMaxMemoryRows(Integer.MAX_VALUE);
+        return result;
+    }
+
+    @Benchmark
+    public int sort() {
+        LocalResult result = newResult();
+        result.setSortOrder(sortOrder);
+        for (Value[] row : rows) {
+            result.addRow(row);
+        }
+        result.done();
+        return result.getRowCount();
+    }
+
+    @Benchmark
+    public int distinct() {
+        LocalResult result = newResult();
+        result.setDistinct();
+        for (Value[] row : rows) {
+            // the distinct values of the string and the int column
+            result.addRow(new Value[] { row[0], row[1], ValueLong.get(0) });
+        }
+        result.done();
+        return result.getRowCount();
+    }
+
+    @Benchmark
+    public int group() {
+        // SELECT column2, COUNT(*), SUM(column3) GROUP BY column2
+        ValueHashMap<long[]> groups = ValueHashMap.newInstance();
+        for (Value[] row : rows) {
+            Value key = ValueArray.get(new Value[] { row[1] });
+            long[] aggregates = groups.get(key);
+            if (aggregates == null) {
+                aggregates = new long[2];
+                groups.put(key, aggregates);
+            }
+            aggregates[0]++;
+            aggregates[1] += row[2].getLong();
+        }
+        LocalResult result = newResult();
+        result.setSortOrder(groupOrder);
+        for (Value key : groups.keys()) {
+            long[] aggregates = groups.get(key);
+            result.addRow(new Value[] { ((ValueArray) key).getList()[0], ValueLong.get(aggregates[0]),
+                    ValueLong.get(aggregates[1]) });
+        }
+        result.done();
+        return result.getRowCount();
+    }
+
+}
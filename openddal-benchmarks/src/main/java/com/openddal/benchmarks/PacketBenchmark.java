@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.server.mysql.ValueEncoder;
+import com.openddal.server.mysql.proto.Com_Query;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.mysql.proto.RowPacket;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+import com.openddal.value.ValueTimestamp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * The MySQL protocol: the encoding of a result row with the text and the
+ * binary protocol, as the server writes them to the transport buffer, and the
+ * decoding of a COM_QUERY packet. encodeTextRowPacket is the encoding that
+ * the server used before, a RowPacket of the string values is built and
+ * copied with toPacket(); the bytes it allocates per row are compared with
+ * encodeTextRow in the gc.alloc.rate.norm column of BenchmarkRunner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int[] TYPES = { Flags.MYSQL_TYPE_LONG, Flags.MYSQL_TYPE_LONGLONG,
+            Flags.MYSQL_TYPE_VAR_STRING, Flags.MYSQL_TYPE_NEWDECIMAL, Flags.MYSQL_TYPE_DATETIME };
+
+    private Value[] row;
+    private ByteBuf out;
+    private ByteBuf query;
+
+    @Setup
+    public void setup() {
+        row = new Value[] { ValueInt.get(4711), ValueLong.get(1234567890123L),
+                ValueString.get("customer-4711@example.com"), ValueDecimal.get(new BigDecimal("1999.95")),
+                ValueTimestamp.get(Timestamp.valueOf("2016-03-04 05:06:07.123")) };
+        out = PooledByteBufAllocator.DEFAULT.buffer(1024);
+        byte[] sql = ("SELECT id, name, email, status FROM customers WHERE id = 4711 AND status IN (1, 2, 3)")
+                .getBytes(UTF8);
+        query = PooledByteBufAllocator.DEFAULT.buffer(sql.length + 5);
+        int start = Packet.beginPacket(query, 0);
+        query.writeByte(Flags.COM_QUERY);
+        query.writeBytes(sql);
+        Packet.endPacket(query, start);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        query.release();
+    }
+
+    @Benchmark
+    public int encodeTextRow() {
+        out.clear();
+        int start = Packet.beginPacket(out, 1);
+        for (Value v : row) {
+            ValueEncoder.writeText(out, v, UTF8);
+        }
+        Packet.endPacket(out, start);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int encodeTextRowPacket() {
+        out.clear();
+        RowPacket rowPacket = new RowPacket();
+        rowPacket.sequenceId = 1;
+        for (Value v : row) {
+            rowPacket.data.add(v.getString());
+        }
+        out.writeBytes(rowPacket.toPacket());
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int encodeBinaryRow() {
+        out.clear();
+        int start = Packet.beginPacket(out, 1);
+        out.writeByte(0x00);
+        // the NULL bitmap of a binary row starts at bit 2
+        out.writeZero((TYPES.length + 7 + 2) / 8);
+        for (int i = 0; i < TYPES.length; i++) {
+            ValueEncoder.writeBinary(out, row[i], TYPES[i], UTF8);
+        }
+        Packet.endPacket(out, start);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public Com_Query decodeQuery() {
+        return Com_Query.loadFromPacket(query, UTF8);
+    }
+
+}
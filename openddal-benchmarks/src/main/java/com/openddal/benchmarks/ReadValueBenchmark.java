@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.engine.Session;
+import com.openddal.result.SimpleResultSet;
+import com.openddal.value.DataType;
+import com.openddal.value.Value;
+
+/**
+ * The conversion of a row of a shard result set to values, one row of an
+ * int, a long, a string, a decimal and a timestamp column per operation. The
+ * result set is in memory, so the driver does not take part.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadValueBenchmark {
+
+    private static final int ROWS = 256;
+    private static final int[] TYPES = { Value.INT, Value.LONG, Value.STRING, Value.DECIMAL, Value.TIMESTAMP };
+
+    private BenchmarkDatabase db;
+    private Session session;
+    private SimpleResultSet rs;
+    private Value[] row;
+
+    @Setup
+    public void setup() throws SQLException {
+        db = BenchmarkDatabase.open();
+        session = db.getSession();
+        rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        rs.addColumn("ID", Types.INTEGER, 10, 0);
+        rs.addColumn("ORDER_ID", Types.BIGINT, 19, 0);
+        rs.addColumn("NAME", Types.VARCHAR, 64, 0);
+        rs.addColumn("AMOUNT", Types.DECIMAL, 12, 2);
+        rs.addColumn("CREATED", Types.TIMESTAMP, 23, 0);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            rs.addRow(i, 1000000L + i, "customer-" + i, new BigDecimal(i).movePointLeft(2),
+                    new Timestamp(now + i));
+        }
+        row = new Value[TYPES.length];
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public Value[] readRow() throws SQLException {
+        if (!rs.next()) {
+            rs.beforeFirst();
+            rs.next();
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            row[i] = DataType.readValue(session, rs, i + 1, TYPES[i]);
+        }
+        return row;
+    }
+
+}
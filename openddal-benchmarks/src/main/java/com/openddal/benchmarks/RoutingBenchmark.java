@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.config.ShardedTableRule;
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.result.SearchRow;
+import com.openddal.route.RoutingHandler;
+import com.openddal.route.algorithm.Partitioner;
+import com.openddal.route.rule.RoutingResult;
+import com.openddal.util.New;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+
+/**
+ * The calculation of the shards of a statement: the partitioner alone, and
+ * the RoutingHandler for a key, a range and an IN list of the rule column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private BenchmarkDatabase db;
+    private RoutingHandler routingHandler;
+    private TableMate table;
+    private Partitioner partitioner;
+    private Value[] keys;
+    private SearchRow[] rows;
+    private SearchRow first;
+    private SearchRow last;
+    private Map<Column, Set<Value>> noInColumns;
+    private Map<Column, Set<Value>> inColumns;
+    private int next;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        routingHandler = db.getSession().getDatabase().getRoutingHandler();
+        table = db.getTable("CUSTOMERS");
+        partitioner = ((ShardedTableRule) table.getTableRule()).getPartitioner();
+        int ruleColumn = table.getRuleColumns()[0].getColumnId();
+        keys = new Value[KEYS];
+        rows = new SearchRow[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = ValueInt.get(i * 7919);
+            rows[i] = table.getTemplateSimpleRow(false);
+            rows[i].setValue(ruleColumn, keys[i]);
+        }
+        first = table.getTemplateSimpleRow(false);
+        first.setValue(ruleColumn, ValueInt.get(1000));
+        last = table.getTemplateSimpleRow(false);
+        last.setValue(ruleColumn, ValueInt.get(1100));
+        noInColumns = Collections.emptyMap();
+        Set<Value> in = New.hashSet();
+        for (int i = 0; i < 8; i++) {
+            in.add(keys[i * 97]);
+        }
+        inColumns = new HashMap<Column, Set<Value>>();
+        inColumns.put(table.getRuleColumns()[0], in);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    private int nextKey() {
+        return next++ & (KEYS - 1);
+    }
+
+    @Benchmark
+    public Integer partition() {
+        return partitioner.partition(keys[nextKey()]);
+    }
+
+    @Benchmark
+    public RoutingResult routeKey() {
+        return routingHandler.doRoute(table, rows[nextKey()]);
+    }
+
+    @Benchmark
+    public RoutingResult routeRange() {
+        return routingHandler.doRoute(table, first, last, noInColumns);
+    }
+
+    @Benchmark
+    public RoutingResult routeInList() {
+        return routingHandler.doRoute(table, null, null, inColumns);
+    }
+
+}
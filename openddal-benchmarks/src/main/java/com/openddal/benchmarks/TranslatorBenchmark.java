@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.command.dml.Insert;
+import com.openddal.command.dml.Select;
+import com.openddal.dbobject.table.TableFilter;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Session;
+import com.openddal.repo.JdbcRepository;
+import com.openddal.repo.SQLTranslated;
+import com.openddal.repo.SQLTranslator;
+import com.openddal.result.Row;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueTimestamp;
+
+/**
+ * The generation of the SQL statements of a shard by the SQLTranslator of
+ * the repository, MySQLTranslator in the benchmark configuration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorBenchmark {
+
+    private static final String POINT_SELECT = "SELECT id, name, email, status FROM customers WHERE id = 4711";
+    private static final String JOIN = "SELECT o.order_id, i.item_id, i.quantity, p.name FROM orders o"
+            + " JOIN order_items i ON o.order_id = i.order_id"
+            + " JOIN product p ON i.product_id = p.product_id WHERE o.order_id = 100001";
+    private static final String GROUP = "SELECT status, COUNT(*), SUM(amount), MAX(created) FROM orders"
+            + " WHERE customer_id = 4711 GROUP BY status HAVING COUNT(*) > 1 ORDER BY 2 DESC";
+    private static final String INSERT = "INSERT INTO orders(order_id, customer_id, amount, status, created)"
+            + " VALUES(?, ?, ?, ?, ?)";
+
+    private BenchmarkDatabase db;
+    private SQLTranslator translator;
+    private TableFilter filter;
+    private ObjectNode filterNode;
+    private Insert insert;
+    private ObjectNode insertNode;
+    private Row insertRow;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        Session session = db.getSession();
+        translator = ((JdbcRepository) session.getDatabase().getRepository()).getSQLTranslator();
+        Select select = (Select) session.prepare(POINT_SELECT);
+        filter = select.getTopFilters().get(0);
+        filterNode = ((TableMate) filter.getTable()).getTableRule().getMetadataNode();
+
+        insert = (Insert) session.prepare(INSERT);
+        TableMate orders = db.getTable("ORDERS");
+        insertNode = orders.getTableRule().getMetadataNode();
+        insertRow = orders.getTemplateRow();
+        insertRow.setValue(0, ValueLong.get(100001L));
+        insertRow.setValue(1, ValueInt.get(42));
+        insertRow.setValue(2, ValueDecimal.get(new BigDecimal("1999.95")));
+        insertRow.setValue(3, ValueInt.get(1));
+        insertRow.setValue(4, ValueTimestamp.get(new Timestamp(System.currentTimeMillis())));
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public SQLTranslated translateSelect(SelectState state) {
+        return translator.translate(state.select, state.node, state.consistencyTableNodes);
+    }
+
+    @Benchmark
+    public SQLTranslated translateTableFilter() {
+        return translator.translate(filter, filterNode);
+    }
+
+    @Benchmark
+    public SQLTranslated translateInsert() {
+        return translator.translate(insert, insertNode, insertRow);
+    }
+
+    /**
+     * A prepared query and the table nodes it is translated for.
+     */
+    @State(Scope.Thread)
+    public static class SelectState {
+
+        @Param({ "pointSelect", "join", "group" })
+        String statement;
+
+        Select select;
+        ObjectNode node;
+        Map<ObjectNode, Map<TableFilter, ObjectNode>> consistencyTableNodes;
+
+        @Setup
+        public void setup(TranslatorBenchmark benchmark) {
+            String sql = "join".equals(statement) ? JOIN : "group".equals(statement) ? GROUP : POINT_SELECT;
+            select = (Select) benchmark.db.getSession().prepare(sql);
+            // all the tables are read from the first node of their rule, these
+            // are on the same shard
+            HashMap<TableFilter, ObjectNode> nodeMapping = new HashMap<TableFilter, ObjectNode>();
+            for (TableFilter f : select.getTopFilters()) {
+                for (; f != null; f = f.getJoin()) {
+                    nodeMapping.put(f, ((TableMate) f.getTable()).getTableRule().getMetadataNode());
+                }
+            }
+            node = nodeMapping.get(select.getTopFilters().get(0));
+            consistencyTableNodes = new HashMap<ObjectNode, Map<TableFilter, ObjectNode>>();
+            consistencyTableNodes.put(node, nodeMapping);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.util.ValueHashMap;
+import com.openddal.value.Value;
+import com.openddal.value.ValueArray;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueString;
+
+/**
+ * The hash map of the distinct rows and the groups, with the keys of the
+ * given type: an int, a string, or an array of an int and a string as the
+ * key of a group of two columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueHashMapBenchmark {
+
+    private static final int SIZE = 4096;
+
+    @Param({ "int", "string", "array" })
+    String keyType;
+
+    private Value[] keys;
+    private Value[] missingKeys;
+    private ValueHashMap<Integer> map;
+    private int next;
+
+    @Setup
+    public void setup() {
+        keys = new Value[SIZE];
+        missingKeys = new Value[SIZE];
+        map = ValueHashMap.newInstance();
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = createKey(i);
+            missingKeys[i] = createKey(SIZE + i);
+            map.put(keys[i], i);
+        }
+    }
+
+    private Value createKey(int i) {
+        if ("string".equals(keyType)) {
+            return ValueString.get("customer-" + i);
+        } else if ("array".equals(keyType)) {
+            return ValueArray.get(new Value[] { ValueInt.get(i % 64), ValueString.get("status" + i / 64) });
+        }
+        return ValueInt.get(i * 31);
+    }
+
+    @Benchmark
+    public Integer get() {
+        return map.get(keys[next++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Integer getMissing() {
+        return map.get(missingKeys[next++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ValueHashMap<Integer> putAll() {
+        ValueHashMap<Integer> m = ValueHashMap.newInstance();
+        for (int i = 0; i < SIZE; i++) {
+            m.put(keys[i], i);
+        }
+        return m;
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks.load;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.benchmarks.BenchmarkDatabase;
+import com.openddal.benchmarks.load.SimulatedDataSourceProvider.ShardProfile;
+import com.openddal.benchmarks.load.SimulatedDataSourceProvider.ShardStatistics;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.server.ServerArgs;
+import com.openddal.server.mysql.MySQLServer;
+import com.openddal.util.LatencyHistogram;
+
+/**
+ * A load test of the engine on the in-process H2 shards of the benchmark
+ * database. Many clients run a mix of single shard and scatter-gather
+ * operations for a while, then the throughput and the latency percentiles of
+ * each operation are reported. The clients connect to the engine directly,
+ * or with -server through the MySQL protocol server. The shards are
+ * simulated by a {@link SimulatedDataSourceProvider} to behave like remote
+ * databases.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.openddal.benchmarks.load.LoadTest
+ *     [-clients 16] [-duration 30] [-warmup 5] [-customers 10000]
+ *     [-orders 20000] [-mix point=35,insert=10,...] [-profile spec]
+ *     [-latency 0] [-jitter 0] [-distribution uniform]
+ *     [-shard db1:spec] [-seed 1] [-server] [-port 6100] [-nio]
+ * </pre>
+ *
+ * The profile of the shards is given with -profile as described in
+ * {@link ShardProfile#parse(String)}, -latency, -jitter and -distribution
+ * change it, and -shard sets the profile of one shard, for example
+ * "-shard db1:latency=5000,failure=0.01". The profiles apply once the data is
+ * loaded. The times are in microseconds, the durations in seconds. With -nio
+ * the server uses the NIO transport instead of epoll.
+ */
+public class LoadTest {
+
+    private int clients = 16;
+    private int duration = 30;
+    private int warmup = 5;
+    private int customers = 10000;
+    private int orders = 20000;
+    private String mix = Workload.DEFAULT_MIX;
+    private ShardProfile profile = new ShardProfile();
+    private final Map<String, ShardProfile> shardProfiles = new LinkedHashMap<String, ShardProfile>();
+    private long seed = 1;
+    private boolean server;
+    private int port = 6100;
+    private boolean nio;
+
+    private Workload workload;
+    private LatencyHistogram[] histograms;
+    private AtomicLong[] errors;
+    private volatile Throwable firstError;
+
+    /**
+     * Run the load test.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) throws Exception {
+        LoadTest test = new LoadTest();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-clients".equals(arg)) {
+                test.clients = Integer.parseInt(args[++i]);
+            } else if ("-duration".equals(arg)) {
+                test.duration = Integer.parseInt(args[++i]);
+            } else if ("-warmup".equals(arg)) {
+                test.warmup = Integer.parseInt(args[++i]);
+            } else if ("-customers".equals(arg)) {
+                test.customers = Integer.parseInt(args[++i]);
+            } else if ("-orders".equals(arg)) {
+                test.orders = Integer.parseInt(args[++i]);
+            } else if ("-mix".equals(arg)) {
+                test.mix = args[++i];
+            } else if ("-profile".equals(arg)) {
+                test.profile = ShardProfile.parse(args[++i]);
+            } else if ("-latency".equals(arg)) {
+                test.profile.latency(Long.parseLong(args[++i]));
+            } else if ("-jitter".equals(arg)) {
+                test.profile.jitter(Long.parseLong(args[++i]));
+            } else if ("-distribution".equals(arg)) {
+                test.profile.distribution(
+                        SimulatedDataSourceProvider.Distribution.valueOf(args[++i].toUpperCase()));
+            } else if ("-shard".equals(arg)) {
+                String s = args[++i];
+                int idx = s.indexOf(':');
+                if (idx < 0) {
+                    throw new IllegalArgumentException("Expected -shard uid:spec: " + s);
+                }
+                test.shardProfiles.put(s.substring(0, idx), ShardProfile.parse(s.substring(idx + 1)));
+            } else if ("-seed".equals(arg)) {
+                test.seed = Long.parseLong(args[++i]);
+            } else if ("-server".equals(arg)) {
+                test.server = true;
+            } else if ("-port".equals(arg)) {
+                test.port = Integer.parseInt(args[++i]);
+            } else if ("-nio".equals(arg)) {
+                test.nio = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        int status = 1;
+        try {
+            test.run();
+            status = 0;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        // the engine and the server leave threads that do not end by
+        // themselves
+        System.exit(status);
+    }
+
+    private void run() throws Exception {
+        workload = new Workload(customers, orders, mix);
+        SimulatedDataSourceProvider provider = new SimulatedDataSourceProvider(
+                BenchmarkDatabase.createDataSourceProvider(), seed);
+        BenchmarkDatabase db = BenchmarkDatabase.open(provider);
+        MySQLServer mysqlServer = null;
+        try {
+            long time = System.nanoTime();
+            Connection conn = openEngineConnection(db);
+            try {
+                workload.load(conn);
+            } finally {
+                conn.close();
+            }
+            System.out.println("Loaded " + customers + " customers and " + orders + " orders in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time) + " ms");
+            provider.setDefaultProfile(profile);
+            for (Map.Entry<String, ShardProfile> e : shardProfiles.entrySet()) {
+                provider.setProfile(e.getKey(), e.getValue());
+            }
+            if (server) {
+                MySQLServer s = new MySQLServer(new ServerArgs().port(port).protocol("mysql")
+                        .nativeTransport(!nio));
+                s.init(db.getEngine());
+                s.listen();
+                mysqlServer = s;
+                Class.forName("com.mysql.jdbc.Driver");
+            }
+            runClients(db);
+            printReport();
+            printShardReport(provider);
+        } finally {
+            if (mysqlServer != null) {
+                mysqlServer.stop();
+            }
+            db.close();
+        }
+    }
+
+    private Connection openEngineConnection(BenchmarkDatabase db) throws SQLException {
+        return new JdbcConnection(db.getEngine().createSession(new Properties()));
+    }
+
+    private Connection openConnection(BenchmarkDatabase db) throws SQLException {
+        if (!server) {
+            return openEngineConnection(db);
+        }
+        return DriverManager.getConnection("jdbc:mysql://127.0.0.1:" + port + "/SCHEMA_MAIN", "sa", "");
+    }
+
+    private void runClients(BenchmarkDatabase db) throws Exception {
+        int count = workload.getOperationCount();
+        histograms = new LatencyHistogram[count];
+        errors = new AtomicLong[count];
+        for (int i = 0; i < count; i++) {
+            histograms[i] = new LatencyHistogram();
+            errors[i] = new AtomicLong();
+        }
+        final ArrayList<Workload.Client> list = new ArrayList<Workload.Client>();
+        for (int i = 0; i < clients; i++) {
+            list.add(workload.createClient(openConnection(db)));
+        }
+        long start = System.nanoTime();
+        final long measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        final long end = measureStart + TimeUnit.SECONDS.toNanos(duration);
+        final CountDownLatch done = new CountDownLatch(clients);
+        System.out.println("Running " + clients + " clients for " + warmup + " + " + duration + " s"
+                + (server ? " through the server on port " + port : ""));
+        System.out.println("Shard profile " + profile);
+        for (Map.Entry<String, ShardProfile> e : shardProfiles.entrySet()) {
+            System.out.println("Shard profile of " + e.getKey() + " " + e.getValue());
+        }
+        for (int i = 0; i < clients; i++) {
+            final Workload.Client client = list.get(i);
+            final Random random = new Random(seed + i);
+            Thread t = new Thread("load-client-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        runClient(client, random, measureStart, end);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        for (Workload.Client client : list) {
+            client.close();
+        }
+    }
+
+    private void runClient(Workload.Client client, Random random, long measureStart, long end) {
+        while (true) {
+            int op = client.next(random);
+            long start = System.nanoTime();
+            if (start >= end) {
+                break;
+            }
+            try {
+                client.execute(op, random);
+                if (start >= measureStart) {
+                    histograms[op].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+            } catch (SQLException e) {
+                if (start >= measureStart) {
+                    errors[op].incrementAndGet();
+                }
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+    }
+
+    private void printReport() {
+        System.out.println();
+        System.out.println(String.format("%-10s %10s %10s %8s %10s %10s %10s %10s %10s %10s", "operation",
+                "count", "ops/s", "errors", "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        long total = 0;
+        long totalErrors = 0;
+        for (int i = 0; i < histograms.length; i++) {
+            if (!workload.isEnabled(i)) {
+                continue;
+            }
+            LatencyHistogram h = histograms[i];
+            long count = h.getCount();
+            total += count;
+            totalErrors += errors[i].get();
+            System.out.println(String.format("%-10s %10d %10.1f %8d %10.0f %10d %10d %10d %10d %10d",
+                    Workload.OPERATIONS[i], count, (double) count / duration, errors[i].get(), h.getMean(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99),
+                    h.getValueAtPercentile(99.9), h.getMax()));
+        }
+        System.out.println(String.format("%-10s %10d %10.1f %8d", "total", total, (double) total / duration,
+                totalErrors));
+        if (firstError != null) {
+            System.out.println();
+            System.out.println("First error:");
+            firstError.printStackTrace(System.out);
+        }
+    }
+
+    private void printShardReport(SimulatedDataSourceProvider provider) {
+        System.out.println();
+        System.out.println(String.format("%-10s %10s %10s %12s %8s %8s %12s", "shard", "connects", "executes",
+                "rows", "stalls", "failures", "delay ms"));
+        for (ShardStatistics s : provider.getStatistics()) {
+            System.out.println(String.format("%-10s %10d %10d %12d %8d %8d %12d", s.getUid(), s.getConnects(),
+                    s.getExecutes(), s.getRows(), s.getStalls(), s.getFailures(),
+                    TimeUnit.NANOSECONDS.toMillis(s.getDelayNanos())));
+        }
+    }
+
+}
@@ -0,0 +1,671 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import com.openddal.config.DataSourceProvider;
+
+/**
+ * A data source provider that makes the shards of another provider behave
+ * like remote databases. The connections, the statement executions and the
+ * rows read from the result sets of each shard are delayed and can fail as
+ * described by the profile of the shard, so features like hedged requests,
+ * failover or the streaming merge of the shard results can be measured on
+ * in-process H2 shards.
+ * <p>
+ * Each call draws its delays and failures from its own random number
+ * generator, seeded from the seed of the provider, the shard id and the
+ * number of the call on the shard, so a single threaded run is repeated
+ * exactly and the concurrent calls of a shard do not wait for each other.
+ * With concurrent clients the n-th call of each shard draws the same values,
+ * only the calls they are applied to vary. The bandwidth of a shard is shared
+ * by all its result sets.
+ * The profiles can be changed while the engine runs, for example to load the
+ * data without delays or to make a shard fail in the middle of a test.
+ */
+public class SimulatedDataSourceProvider implements DataSourceProvider {
+
+    /**
+     * The delays are not waited for below this many nanoseconds, they are
+     * added to the next delay of the result set instead.
+     */
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * The bandwidth that is not used is saved for at most this many
+     * nanoseconds, the size of the token bucket of a shard.
+     */
+    private static final long BANDWIDTH_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final DataSourceProvider target;
+    private final long seed;
+    private final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<String, Shard>();
+    private final ConcurrentHashMap<String, ShardProfile> profiles = new ConcurrentHashMap<String, ShardProfile>();
+    private volatile ShardProfile defaultProfile = new ShardProfile();
+
+    /**
+     * Create a provider that simulates the shards of another provider. No
+     * delay or failure is injected until a profile is set.
+     *
+     * @param target the provider of the shard data sources
+     * @param seed the seed of the random number generators of the shards
+     */
+    public SimulatedDataSourceProvider(DataSourceProvider target, long seed) {
+        this.target = target;
+        this.seed = seed;
+    }
+
+    /**
+     * Set the profile of the shards that have no profile of their own. A
+     * profile must not be changed once it is set.
+     *
+     * @param profile the profile
+     */
+    public void setDefaultProfile(ShardProfile profile) {
+        this.defaultProfile = profile;
+    }
+
+    /**
+     * Set the profile of a shard.
+     *
+     * @param uid the shard id
+     * @param profile the profile, or null to use the default profile
+     */
+    public void setProfile(String uid, ShardProfile profile) {
+        if (profile == null) {
+            profiles.remove(uid);
+        } else {
+            profiles.put(uid, profile);
+        }
+    }
+
+    /**
+     * Get the profile that is applied to a shard.
+     *
+     * @param uid the shard id
+     * @return the profile
+     */
+    public ShardProfile getProfile(String uid) {
+        ShardProfile profile = profiles.get(uid);
+        return profile == null ? defaultProfile : profile;
+    }
+
+    @Override
+    public DataSource lookup(String uid) {
+        Shard shard = shards.get(uid);
+        if (shard == null) {
+            DataSource ds = target.lookup(uid);
+            if (ds == null) {
+                return null;
+            }
+            shard = new Shard(uid, ds);
+            Shard old = shards.putIfAbsent(uid, shard);
+            if (old != null) {
+                shard = old;
+            }
+        }
+        return shard.dataSource;
+    }
+
+    /**
+     * Get the counters of the shards that were looked up, ordered by the
+     * shard id.
+     *
+     * @return the shard statistics
+     */
+    public List<ShardStatistics> getStatistics() {
+        ArrayList<String> uids = new ArrayList<String>(shards.keySet());
+        Collections.sort(uids);
+        ArrayList<ShardStatistics> list = new ArrayList<ShardStatistics>(uids.size());
+        for (String uid : uids) {
+            list.add(shards.get(uid).statistics);
+        }
+        return list;
+    }
+
+    /**
+     * Scramble a seed, the seeds of the calls of a shard only differ by a
+     * constant and would give correlated first values.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static void park(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * The distribution of the delays around the latency of a profile.
+     */
+    public enum Distribution {
+
+        /**
+         * Always the latency, the jitter is ignored.
+         */
+        FIXED,
+
+        /**
+         * The latency plus a uniformly distributed value between 0 and the
+         * jitter.
+         */
+        UNIFORM,
+
+        /**
+         * Normally distributed with the latency as the mean and the jitter
+         * as the standard deviation, negative delays are 0.
+         */
+        NORMAL,
+
+        /**
+         * Log-normally distributed with the latency as the mean and the
+         * jitter as the standard deviation, the usual shape of network round
+         * trips with a long tail.
+         */
+        LOGNORMAL,
+
+        /**
+         * The latency plus an exponentially distributed value with the
+         * jitter as the mean.
+         */
+        EXPONENTIAL;
+
+        /**
+         * Draw a delay.
+         *
+         * @param random the random number generator
+         * @param latency the latency
+         * @param jitter the jitter
+         * @return the delay, in the unit of the latency
+         */
+        double sample(Random random, double latency, double jitter) {
+            if (jitter <= 0) {
+                return latency;
+            }
+            switch (this) {
+            case FIXED:
+                return latency;
+            case UNIFORM:
+                return latency + random.nextDouble() * jitter;
+            case NORMAL:
+                return Math.max(0, latency + random.nextGaussian() * jitter);
+            case LOGNORMAL:
+                if (latency <= 0) {
+                    return 0;
+                }
+                double variance = Math.log(1 + (jitter * jitter) / (latency * latency));
+                double mu = Math.log(latency) - variance / 2;
+                return Math.exp(mu + Math.sqrt(variance) * random.nextGaussian());
+            case EXPONENTIAL:
+                return latency - Math.log(1 - random.nextDouble()) * jitter;
+            default:
+                throw new IllegalStateException(name());
+            }
+        }
+
+    }
+
+    /**
+     * The simulated behavior of a shard. The times are in microseconds, the
+     * rates are probabilities between 0 and 1.
+     */
+    public static class ShardProfile {
+
+        public Distribution distribution = Distribution.UNIFORM;
+        public long latency;
+        public long jitter;
+        public long connectLatency;
+        public long rowLatency;
+        public long bandwidth;
+        public double stallRate;
+        public long stallTime;
+        public double connectFailureRate;
+        public double failureRate;
+        public double fetchFailureRate;
+
+        /**
+         * Parse a profile, as in
+         * "distribution=lognormal,latency=500,jitter=200,stall=0.001:50000".
+         * The keys are distribution, latency, jitter, connect (the latency
+         * of opening a connection), row (the latency of reading a row),
+         * bandwidth (in bytes per second), stall (the rate and the time of
+         * the stalls), failure, connectFailure and fetchFailure.
+         *
+         * @param spec the profile specification
+         * @return the profile
+         */
+        public static ShardProfile parse(String spec) {
+            ShardProfile profile = new ShardProfile();
+            for (String s : spec.split(",")) {
+                s = s.trim();
+                if (s.length() == 0) {
+                    continue;
+                }
+                int idx = s.indexOf('=');
+                if (idx < 0) {
+                    throw new IllegalArgumentException("Expected key=value: " + s);
+                }
+                String key = s.substring(0, idx).trim();
+                String value = s.substring(idx + 1).trim();
+                if ("distribution".equalsIgnoreCase(key)) {
+                    profile.distribution(Distribution.valueOf(value.toUpperCase()));
+                } else if ("latency".equalsIgnoreCase(key)) {
+                    profile.latency(Long.parseLong(value));
+                } else if ("jitter".equalsIgnoreCase(key)) {
+                    profile.jitter(Long.parseLong(value));
+                } else if ("connect".equalsIgnoreCase(key)) {
+                    profile.connectLatency(Long.parseLong(value));
+                } else if ("row".equalsIgnoreCase(key)) {
+                    profile.rowLatency(Long.parseLong(value));
+                } else if ("bandwidth".equalsIgnoreCase(key)) {
+                    profile.bandwidth(Long.parseLong(value));
+                } else if ("stall".equalsIgnoreCase(key)) {
+                    int colon = value.indexOf(':');
+                    if (colon < 0) {
+                        throw new IllegalArgumentException("Expected stall=rate:time: " + s);
+                    }
+                    profile.stall(Double.parseDouble(value.substring(0, colon)),
+                            Long.parseLong(value.substring(colon + 1)));
+                } else if ("failure".equalsIgnoreCase(key)) {
+                    profile.failureRate(Double.parseDouble(value));
+                } else if ("connectFailure".equalsIgnoreCase(key)) {
+                    profile.connectFailureRate(Double.parseDouble(value));
+                } else if ("fetchFailure".equalsIgnoreCase(key)) {
+                    profile.fetchFailureRate(Double.parseDouble(value));
+                } else {
+                    throw new IllegalArgumentException("Unknown profile key " + key);
+                }
+            }
+            return profile;
+        }
+
+        public ShardProfile distribution(Distribution distribution) {
+            this.distribution = distribution;
+            return this;
+        }
+
+        /**
+         * @param latency the latency of a statement execution
+         */
+        public ShardProfile latency(long latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param jitter the spread of the latencies, see {@link Distribution}
+         */
+        public ShardProfile jitter(long jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param connectLatency the latency of opening a connection, with the
+         *            same distribution and jitter as the statements
+         */
+        public ShardProfile connectLatency(long connectLatency) {
+            this.connectLatency = connectLatency;
+            return this;
+        }
+
+        /**
+         * @param rowLatency the fixed latency of reading a row
+         */
+        public ShardProfile rowLatency(long rowLatency) {
+            this.rowLatency = rowLatency;
+            return this;
+        }
+
+        /**
+         * @param bandwidth the rate the rows are read at, in bytes per
+         *            second for all the result sets of the shard, or 0 for
+         *            no limit
+         */
+        public ShardProfile bandwidth(long bandwidth) {
+            this.bandwidth = bandwidth;
+            return this;
+        }
+
+        /**
+         * @param stallRate the probability that a statement execution stalls
+         * @param stallTime the time a stalled execution is delayed for, on
+         *            top of its latency
+         */
+        public ShardProfile stall(double stallRate, long stallTime) {
+            this.stallRate = stallRate;
+            this.stallTime = stallTime;
+            return this;
+        }
+
+        /**
+         * @param failureRate the probability that a statement execution fails
+         */
+        public ShardProfile failureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param connectFailureRate the probability that opening a connection
+         *            fails
+         */
+        public ShardProfile connectFailureRate(double connectFailureRate) {
+            this.connectFailureRate = connectFailureRate;
+            return this;
+        }
+
+        /**
+         * @param fetchFailureRate the probability that reading a row fails
+         */
+        public ShardProfile fetchFailureRate(double fetchFailureRate) {
+            this.fetchFailureRate = fetchFailureRate;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "distribution=" + distribution.name().toLowerCase() + ",latency=" + latency + ",jitter="
+                    + jitter + ",connect=" + connectLatency + ",row=" + rowLatency + ",bandwidth=" + bandwidth
+                    + ",stall=" + stallRate + ":" + stallTime + ",failure=" + failureRate + ",connectFailure="
+                    + connectFailureRate + ",fetchFailure=" + fetchFailureRate;
+        }
+
+    }
+
+    /**
+     * The counters of a shard.
+     */
+    public static class ShardStatistics {
+
+        private final String uid;
+        private final AtomicLong connects = new AtomicLong();
+        private final AtomicLong executes = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong stalls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong delayNanos = new AtomicLong();
+
+        ShardStatistics(String uid) {
+            this.uid = uid;
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public long getConnects() {
+            return connects.get();
+        }
+
+        public long getExecutes() {
+            return executes.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getStalls() {
+            return stalls.get();
+        }
+
+        /**
+         * @return the number of injected failures
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * @return the total injected delay in nanoseconds
+         */
+        public long getDelayNanos() {
+            return delayNanos.get();
+        }
+
+    }
+
+    /**
+     * The random number generators, the bandwidth, the counters and the data
+     * source proxy of a shard.
+     */
+    private class Shard {
+
+        final String uid;
+        final long randomSeed;
+        final AtomicLong calls = new AtomicLong();
+        /**
+         * The token bucket of the bandwidth, kept as the time the bytes that
+         * are taken from the bucket are sent by.
+         */
+        final AtomicLong sentAt;
+        final ShardStatistics statistics;
+        final DataSource dataSource;
+
+        Shard(String uid, DataSource target) {
+            this.uid = uid;
+            this.randomSeed = seed * 31 + uid.hashCode();
+            this.sentAt = new AtomicLong(System.nanoTime() - BANDWIDTH_BURST_NANOS);
+            this.statistics = new ShardStatistics(uid);
+            this.dataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                    new Class<?>[] { DataSource.class }, new Handler(this, target));
+        }
+
+        void connect() throws SQLException {
+            ShardProfile p = getProfile(uid);
+            Random random = nextRandom();
+            long nanos = micros(p.distribution.sample(random, p.connectLatency, p.connectLatency > 0 ? p.jitter : 0));
+            boolean fail = p.connectFailureRate > 0 && random.nextDouble() < p.connectFailureRate;
+            statistics.connects.incrementAndGet();
+            delay(nanos);
+            if (fail) {
+                throw failure("08001", "connect");
+            }
+        }
+
+        void execute() throws SQLException {
+            ShardProfile p = getProfile(uid);
+            Random random = nextRandom();
+            long nanos = micros(p.distribution.sample(random, p.latency, p.jitter));
+            boolean stall = p.stallRate > 0 && random.nextDouble() < p.stallRate;
+            boolean fail = p.failureRate > 0 && random.nextDouble() < p.failureRate;
+            statistics.executes.incrementAndGet();
+            if (stall) {
+                statistics.stalls.incrementAndGet();
+                nanos += TimeUnit.MICROSECONDS.toNanos(p.stallTime);
+            }
+            delay(nanos);
+            if (fail) {
+                throw failure("08S01", "execute");
+            }
+        }
+
+        /**
+         * Get the delay of reading a row, the failures are thrown right away.
+         *
+         * @return the delay in nanoseconds
+         */
+        long fetch() throws SQLException {
+            ShardProfile p = getProfile(uid);
+            statistics.rows.incrementAndGet();
+            if (p.fetchFailureRate > 0 && nextRandom().nextDouble() < p.fetchFailureRate) {
+                throw failure("08S01", "fetch");
+            }
+            return TimeUnit.MICROSECONDS.toNanos(p.rowLatency);
+        }
+
+        /**
+         * Take the bytes of a row from the token bucket of the shard. The
+         * bucket is refilled at the bandwidth of the profile and holds the
+         * bytes of {@link #BANDWIDTH_BURST_NANOS}.
+         *
+         * @param bytes the estimated size of the row
+         * @return the time the row is sent by, as in System.nanoTime()
+         */
+        long send(int bytes) {
+            ShardProfile p = getProfile(uid);
+            long now = System.nanoTime();
+            if (p.bandwidth <= 0) {
+                return now;
+            }
+            long cost = bytes * TimeUnit.SECONDS.toNanos(1) / p.bandwidth;
+            // the bucket is full when the last bytes are sent before this
+            long full = now - BANDWIDTH_BURST_NANOS;
+            while (true) {
+                long last = sentAt.get();
+                long next = (last - full < 0 ? full : last) + cost;
+                if (sentAt.compareAndSet(last, next)) {
+                    return next;
+                }
+            }
+        }
+
+        /**
+         * Get the random number generator of the next call on the shard.
+         */
+        private Random nextRandom() {
+            return new Random(mix(randomSeed + calls.getAndIncrement() * 0x9e3779b97f4a7c15L));
+        }
+
+        void delay(long nanos) {
+            if (nanos > 0) {
+                statistics.delayNanos.addAndGet(nanos);
+                park(nanos);
+            }
+        }
+
+        private long micros(double micros) {
+            return (long) (micros * 1000);
+        }
+
+        private SQLException failure(String state, String phase) {
+            statistics.failures.incrementAndGet();
+            return new SQLException("Simulated failure of shard " + uid + " at " + phase, state);
+        }
+
+    }
+
+    /**
+     * Wraps the connections, statements and result sets that are created by
+     * the target object, and applies the profile of the shard to them.
+     */
+    private static class Handler implements InvocationHandler {
+
+        private final Shard shard;
+        private final Object target;
+        private int rowBytes = -1;
+        private long pendingNanos;
+        private long sentAt = System.nanoTime();
+
+        Handler(Shard shard, Object target) {
+            this.shard = shard;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (target instanceof DataSource && "getConnection".equals(name)) {
+                shard.connect();
+            } else if (target instanceof Statement && name.startsWith("execute")) {
+                shard.execute();
+            } else if (target instanceof ResultSet && "close".equals(name)) {
+                payPending(0);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (target instanceof ResultSet && "next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                    long nanos = shard.fetch();
+                    sentAt = shard.send(getRowBytes());
+                    payPending(nanos);
+                } else {
+                    payPending(0);
+                }
+                return result;
+            }
+            Class<?> type = method.getReturnType();
+            if (result != null && (type == Connection.class || Statement.class.isAssignableFrom(type)
+                    || type == ResultSet.class)) {
+                result = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                        new Handler(shard, result));
+            }
+            return result;
+        }
+
+        /**
+         * Add the delay of a row, and wait once enough delay is pending or
+         * the result set has no more rows. The rows are sent at the
+         * bandwidth of the shard, the time until the last row is sent is
+         * waited for on top of the delays of the rows.
+         */
+        private void payPending(long nanos) {
+            pendingNanos += nanos;
+            long p = pendingNanos + Math.max(0, sentAt - System.nanoTime());
+            if (p > 0 && (nanos == 0 || p >= MIN_PARK_NANOS)) {
+                pendingNanos = 0;
+                shard.delay(p);
+            }
+        }
+
+        /**
+         * Estimate the size of the rows from the display sizes of the columns.
+         */
+        private int getRowBytes() throws SQLException {
+            if (rowBytes < 0) {
+                ResultSetMetaData meta = ((ResultSet) target).getMetaData();
+                int bytes = 0;
+                for (int i = 1, count = meta.getColumnCount(); i <= count; i++) {
+                    bytes += Math.min(Math.max(meta.getColumnDisplaySize(i), 1), 1024);
+                }
+                rowBytes = bytes;
+            }
+            return rowBytes;
+        }
+
+    }
+
+}
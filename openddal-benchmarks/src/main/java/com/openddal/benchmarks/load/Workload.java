@@ -0,0 +1,303 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks.load;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.util.JdbcUtils;
+
+/**
+ * The tables and the operations of the load test. The customers and their
+ * orders are loaded first, then each client runs a random mix of the
+ * operations: single shard lookups, inserts and updates by the rule column,
+ * joins within a table group, and scatter-gather scans, aggregates and
+ * sorts over all the table nodes of the orders.
+ */
+public class Workload {
+
+    /**
+     * The names of the operations, in the order of the weights of the mix.
+     */
+    public static final String[] OPERATIONS = { "point", "insert", "update", "join", "scan", "aggregate",
+            "sort" };
+
+    /**
+     * The default mix of the operations.
+     */
+    public static final String DEFAULT_MIX = "point=35,insert=10,update=10,join=15,scan=10,aggregate=10,sort=10";
+
+    /**
+     * The number of customers of a range of the aggregate and sort
+     * operations.
+     */
+    private static final int CUSTOMER_RANGE = 100;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final int customers;
+    private final int orders;
+    private final int[] weights = new int[OPERATIONS.length];
+    private int totalWeight;
+    private final AtomicLong nextOrderId = new AtomicLong();
+
+    /**
+     * Create a workload.
+     *
+     * @param customers the number of customers
+     * @param orders the number of orders, each with two items
+     * @param mix the weights of the operations, as in "point=50,scan=50",
+     *            the operations that are not listed are not run
+     */
+    public Workload(int customers, int orders, String mix) {
+        this.customers = customers;
+        this.orders = orders;
+        for (String s : mix.split(",")) {
+            String[] pair = s.trim().split("=");
+            int op = getOperation(pair[0].trim());
+            weights[op] = Integer.parseInt(pair[1].trim());
+            totalWeight += weights[op];
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("No operation in the mix " + mix);
+        }
+        nextOrderId.set(orders);
+    }
+
+    private static int getOperation(String name) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + name);
+    }
+
+    /**
+     * Insert the customers, the orders and their items.
+     *
+     * @param conn the connection
+     */
+    public void load(Connection conn) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        PreparedStatement prep = conn.prepareStatement(
+                "INSERT INTO customers(id, name, email, status, created) VALUES(?, ?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < customers; i++) {
+                prep.setInt(1, i);
+                prep.setString(2, "customer" + i);
+                prep.setString(3, "customer" + i + "@example.com");
+                prep.setInt(4, i % 4);
+                prep.setTimestamp(5, now);
+                addBatch(prep, i);
+            }
+            prep.executeBatch();
+        } finally {
+            JdbcUtils.closeSilently(prep);
+        }
+        prep = conn.prepareStatement(
+                "INSERT INTO orders(order_id, customer_id, amount, status, created) VALUES(?, ?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < orders; i++) {
+                setOrder(prep, i, i % customers, now);
+                addBatch(prep, i);
+            }
+            prep.executeBatch();
+        } finally {
+            JdbcUtils.closeSilently(prep);
+        }
+        prep = conn.prepareStatement(
+                "INSERT INTO order_items(item_id, order_id, product_id, quantity, price) VALUES(?, ?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < orders * 2; i++) {
+                prep.setLong(1, i);
+                prep.setLong(2, i / 2);
+                prep.setInt(3, i % 100);
+                prep.setInt(4, 1 + i % 5);
+                prep.setBigDecimal(5, BigDecimal.valueOf(100 + i % 900, 2));
+                addBatch(prep, i);
+            }
+            prep.executeBatch();
+        } finally {
+            JdbcUtils.closeSilently(prep);
+        }
+    }
+
+    private static void addBatch(PreparedStatement prep, int i) throws SQLException {
+        prep.addBatch();
+        if ((i + 1) % BATCH_SIZE == 0) {
+            prep.executeBatch();
+        }
+    }
+
+    private static void setOrder(PreparedStatement prep, long orderId, int customerId, Timestamp created)
+            throws SQLException {
+        prep.setLong(1, orderId);
+        prep.setInt(2, customerId);
+        prep.setBigDecimal(3, BigDecimal.valueOf(orderId % 100000, 2));
+        prep.setInt(4, (int) (orderId % 3));
+        prep.setTimestamp(5, created);
+    }
+
+    /**
+     * Get the number of operations.
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount() {
+        return OPERATIONS.length;
+    }
+
+    /**
+     * Check if an operation is part of the mix.
+     *
+     * @param op the operation index
+     * @return true if it is run
+     */
+    public boolean isEnabled(int op) {
+        return weights[op] > 0;
+    }
+
+    /**
+     * Create the statements of a client.
+     *
+     * @param conn the connection of the client
+     * @return the client
+     */
+    public Client createClient(Connection conn) throws SQLException {
+        return new Client(conn);
+    }
+
+    /**
+     * The prepared statements of one connection.
+     */
+    public class Client {
+
+        private final Connection conn;
+        private final PreparedStatement[] statements = new PreparedStatement[OPERATIONS.length];
+        private final ArrayList<PreparedStatement> opened = new ArrayList<PreparedStatement>();
+
+        Client(Connection conn) throws SQLException {
+            this.conn = conn;
+            prepare(0, "SELECT id, name, email, status FROM customers WHERE id = ?");
+            prepare(1, "INSERT INTO orders(order_id, customer_id, amount, status, created)"
+                    + " VALUES(?, ?, ?, ?, ?)");
+            prepare(2, "UPDATE orders SET status = ? WHERE order_id = ?");
+            prepare(3, "SELECT o.order_id, o.amount, i.product_id, i.quantity"
+                    + " FROM orders o JOIN order_items i ON o.order_id = i.order_id WHERE o.order_id = ?");
+            prepare(4, "SELECT order_id, amount, status FROM orders WHERE customer_id = ?");
+            prepare(5, "SELECT status, COUNT(*), SUM(amount) FROM orders"
+                    + " WHERE customer_id BETWEEN ? AND ? GROUP BY status");
+            prepare(6, "SELECT order_id, amount FROM orders"
+                    + " WHERE customer_id BETWEEN ? AND ? ORDER BY amount DESC LIMIT 10");
+        }
+
+        private void prepare(int op, String sql) throws SQLException {
+            if (isEnabled(op)) {
+                statements[op] = conn.prepareStatement(sql);
+                opened.add(statements[op]);
+            }
+        }
+
+        /**
+         * Choose an operation of the mix.
+         *
+         * @param random the random number generator of the client
+         * @return the operation index
+         */
+        public int next(Random random) {
+            int r = random.nextInt(totalWeight);
+            for (int i = 0; i < weights.length; i++) {
+                r -= weights[i];
+                if (r < 0) {
+                    return i;
+                }
+            }
+            return weights.length - 1;
+        }
+
+        /**
+         * Run an operation, the rows of the queries are read.
+         *
+         * @param op the operation index
+         * @param random the random number generator of the client
+         * @return the number of rows read or updated
+         */
+        public int execute(int op, Random random) throws SQLException {
+            PreparedStatement prep = statements[op];
+            switch (op) {
+            case 0:
+                prep.setInt(1, random.nextInt(customers));
+                return read(prep);
+            case 1:
+                setOrder(prep, nextOrderId.getAndIncrement(), random.nextInt(customers),
+                        new Timestamp(System.currentTimeMillis()));
+                return prep.executeUpdate();
+            case 2:
+                prep.setInt(1, random.nextInt(3));
+                prep.setLong(2, (long) random.nextInt(orders));
+                return prep.executeUpdate();
+            case 3:
+                prep.setLong(1, (long) random.nextInt(orders));
+                return read(prep);
+            case 4:
+                prep.setInt(1, random.nextInt(customers));
+                return read(prep);
+            case 5:
+            case 6:
+                int start = random.nextInt(Math.max(1, customers - CUSTOMER_RANGE));
+                prep.setInt(1, start);
+                prep.setInt(2, start + CUSTOMER_RANGE - 1);
+                return read(prep);
+            default:
+                throw new IllegalArgumentException("op=" + op);
+            }
+        }
+
+        private int read(PreparedStatement prep) throws SQLException {
+            ResultSet rs = prep.executeQuery();
+            try {
+                int rows = 0;
+                while (rs.next()) {
+                    rs.getObject(1);
+                    rows++;
+                }
+                return rows;
+            } finally {
+                rs.close();
+            }
+        }
+
+        /**
+         * Close the statements and the connection.
+         */
+        public void close() {
+            for (PreparedStatement prep : opened) {
+                JdbcUtils.closeSilently(prep);
+            }
+            JdbcUtils.closeSilently(conn);
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.command;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.benchmarks.BenchmarkDatabase;
+
+/**
+ * The preparation of the parsed statements: the optimization of the
+ * expressions and the choice of the plan by the Optimizer. The optimizer
+ * links the table filters of the plan, so a statement can be prepared only
+ * once and it is parsed again before each invocation, outside of the
+ * measurement. The statements are joins of several tables, which take long
+ * enough for the timer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizerBenchmark {
+
+    @Param({ "pointSelect", "join", "group" })
+    String statement;
+
+    private BenchmarkDatabase db;
+    private String sql;
+    private Prepared prepared;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        sql = ParserBenchmark.getStatement(statement);
+    }
+
+    @Setup(Level.Invocation)
+    public void parse() {
+        prepared = new Parser(db.getSession()).parse(sql);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public Prepared prepare() {
+        prepared.prepare();
+        return prepared;
+    }
+
+}
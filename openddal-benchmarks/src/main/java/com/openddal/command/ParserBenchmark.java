@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.command;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.benchmarks.BenchmarkDatabase;
+
+/**
+ * The parsing of the statements, without the preparation. The benchmark is
+ * in the package of the parser to call Parser.parse directly. The keys are
+ * literals, the engine routes a query when it is prepared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * The statements by name.
+     */
+    static final String[][] STATEMENTS = {
+            { "pointSelect", "SELECT id, name, email, status FROM customers WHERE id = 4711" },
+            { "rangeSelect", "SELECT order_id, amount, status FROM orders WHERE order_id BETWEEN 100000 AND 100100"
+                    + " AND status IN (1, 2, 3) ORDER BY order_id LIMIT 100" },
+            { "join", "SELECT o.order_id, i.item_id, i.quantity, p.name FROM orders o"
+                    + " JOIN order_items i ON o.order_id = i.order_id"
+                    + " JOIN product p ON i.product_id = p.product_id WHERE o.order_id = 100001" },
+            { "group", "SELECT status, COUNT(*), SUM(amount), MAX(created) FROM orders"
+                    + " WHERE customer_id = 4711 GROUP BY status HAVING COUNT(*) > 1 ORDER BY 2 DESC" },
+            { "insert", "INSERT INTO orders(order_id, customer_id, amount, status, created)"
+                    + " VALUES(?, ?, ?, ?, ?)" },
+            { "update", "UPDATE orders SET status = ?, amount = ? WHERE order_id = ?" } };
+
+    @Param({ "pointSelect", "rangeSelect", "join", "group", "insert", "update" })
+    String statement;
+
+    private BenchmarkDatabase db;
+    private String sql;
+
+    @Setup
+    public void setup() {
+        db = BenchmarkDatabase.open();
+        sql = getStatement(statement);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * Get a statement of the benchmarks by name.
+     *
+     * @param name the name
+     * @return the SQL statement
+     */
+    static String getStatement(String name) {
+        for (String[] s : STATEMENTS) {
+            if (s[0].equals(name)) {
+                return s[1];
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Benchmark
+    public Prepared parse() {
+        return new Parser(db.getSession()).parse(sql);
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmarks.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.openddal.benchmarks.load.SimulatedDataSourceProvider.ShardProfile;
+import com.openddal.benchmarks.load.SimulatedDataSourceProvider.ShardStatistics;
+import com.openddal.config.DataSourceProvider;
+
+/**
+ * Test the simulated latency, failures, stalls and bandwidth of the shards.
+ */
+public class SimulatedDataSourceProviderTest {
+
+    private static final int CALLS = 200;
+
+    /**
+     * The rows of the table have 1000 bytes, see getRowBytes.
+     */
+    private static final int ROWS = 200;
+    private static final long ROW_BYTES = 1000;
+
+    /**
+     * One row each millisecond.
+     */
+    private static final long BANDWIDTH = 1000 * ROW_BYTES;
+
+    private static final DataSourceProvider SHARDS = new DataSourceProvider() {
+        @Override
+        public DataSource lookup(String uid) {
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL("jdbc:h2:mem:simulated_" + uid + ";DB_CLOSE_DELAY=-1");
+            ds.setUser("sa");
+            return ds;
+        }
+    };
+
+    @BeforeClass
+    public static void createTables() throws SQLException {
+        for (String uid : new String[] { "shard0", "shard1" }) {
+            Connection conn = SHARDS.lookup(uid).getConnection();
+            Statement stat = conn.createStatement();
+            stat.execute("CREATE TABLE IF NOT EXISTS rows(v VARCHAR(" + ROW_BYTES + "))");
+            stat.execute("DELETE FROM rows");
+            stat.execute("INSERT INTO rows SELECT SPACE(" + ROW_BYTES + ") FROM SYSTEM_RANGE(1, " + ROWS + ")");
+            conn.close();
+        }
+    }
+
+    /**
+     * The same seed draws the same delays and failures, a single threaded
+     * run is repeated exactly.
+     */
+    @Test
+    public void testSeededProfile() throws SQLException {
+        ShardProfile profile = ShardProfile.parse("distribution=uniform,latency=20,jitter=20,failure=0.3");
+        SimulatedDataSourceProvider p1 = new SimulatedDataSourceProvider(SHARDS, 42);
+        SimulatedDataSourceProvider p2 = new SimulatedDataSourceProvider(SHARDS, 42);
+        SimulatedDataSourceProvider p3 = new SimulatedDataSourceProvider(SHARDS, 43);
+        p1.setDefaultProfile(profile);
+        p2.setDefaultProfile(profile);
+        p3.setDefaultProfile(profile);
+        BitSet f1 = execute(p1, "shard0");
+        BitSet f2 = execute(p2, "shard0");
+        BitSet f3 = execute(p3, "shard0");
+        assertEquals(f1, f2);
+        assertFalse(f1.equals(f3));
+
+        ShardStatistics s1 = p1.getStatistics().get(0);
+        ShardStatistics s2 = p2.getStatistics().get(0);
+        assertEquals("shard0", s1.getUid());
+        assertEquals(CALLS, s1.getExecutes());
+        assertEquals(f1.cardinality(), s1.getFailures());
+        assertTrue("" + s1.getFailures(), s1.getFailures() > CALLS * 0.15 && s1.getFailures() < CALLS * 0.45);
+        // the delays drawn, between the latency and the latency plus the jitter
+        assertEquals(s1.getDelayNanos(), s2.getDelayNanos());
+        assertTrue(s1.getDelayNanos() >= CALLS * TimeUnit.MICROSECONDS.toNanos(20));
+        assertTrue(s1.getDelayNanos() <= CALLS * TimeUnit.MICROSECONDS.toNanos(40));
+    }
+
+    /**
+     * A stalled execution is delayed by the stall time.
+     */
+    @Test
+    public void testStalls() throws SQLException {
+        SimulatedDataSourceProvider p = new SimulatedDataSourceProvider(SHARDS, 7);
+        p.setProfile("shard1", new ShardProfile().stall(0.05, 10000));
+        long start = System.nanoTime();
+        assertEquals(0, execute(p, "shard1").cardinality());
+        long nanos = System.nanoTime() - start;
+        ShardStatistics s = p.getStatistics().get(0);
+        assertEquals(CALLS, s.getExecutes());
+        assertTrue("" + s.getStalls(), s.getStalls() > 0 && s.getStalls() < CALLS * 0.15);
+        // no latency, only the stalls are waited for
+        assertEquals(s.getStalls() * TimeUnit.MILLISECONDS.toNanos(10), s.getDelayNanos());
+        assertTrue(nanos >= s.getDelayNanos());
+
+        // the same seed stalls the same executions
+        SimulatedDataSourceProvider again = new SimulatedDataSourceProvider(SHARDS, 7);
+        again.setProfile("shard1", new ShardProfile().stall(0.05, 10000));
+        execute(again, "shard1");
+        assertEquals(s.getStalls(), again.getStatistics().get(0).getStalls());
+    }
+
+    /**
+     * The result sets of a shard share its bandwidth, the result sets of
+     * different shards do not.
+     */
+    @Test
+    public void testSharedBandwidth() throws Exception {
+        SimulatedDataSourceProvider p = new SimulatedDataSourceProvider(SHARDS, 1);
+        p.setDefaultProfile(new ShardProfile().bandwidth(BANDWIDTH));
+        long rowNanos = TimeUnit.SECONDS.toNanos(1) * ROW_BYTES / BANDWIDTH;
+
+        long nanos = readConcurrently(p, "shard0", "shard0");
+        assertTrue(nanos / 1000000 + " ms", nanos >= (2 * ROWS - 2) * rowNanos);
+        nanos = readConcurrently(p, "shard0", "shard1");
+        assertTrue(nanos / 1000000 + " ms", nanos >= (ROWS - 2) * rowNanos);
+        assertTrue(nanos / 1000000 + " ms", nanos < (2 * ROWS - 2) * rowNanos * 3 / 4);
+        for (ShardStatistics s : p.getStatistics()) {
+            assertEquals(s.getUid().equals("shard0") ? 3 * ROWS : ROWS, s.getRows());
+        }
+    }
+
+    /**
+     * Execute a statement CALLS times on a connection of a shard.
+     *
+     * @return the executions that failed
+     */
+    private static BitSet execute(SimulatedDataSourceProvider p, String uid) throws SQLException {
+        BitSet failed = new BitSet();
+        Connection conn = p.lookup(uid).getConnection();
+        Statement stat = conn.createStatement();
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                stat.execute("SELECT 1");
+            } catch (SQLException e) {
+                assertEquals("08S01", e.getSQLState());
+                failed.set(i);
+            }
+        }
+        conn.close();
+        return failed;
+    }
+
+    /**
+     * Read all the rows of two shards at the same time.
+     *
+     * @return the nanoseconds until both are read
+     */
+    private static long readConcurrently(final SimulatedDataSourceProvider p, String uid1, final String uid2)
+            throws Exception {
+        final Exception[] error = new Exception[1];
+        long start = System.nanoTime();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    assertEquals(ROWS, read(p, uid2));
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        t.start();
+        assertEquals(ROWS, read(p, uid1));
+        t.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static int read(SimulatedDataSourceProvider p, String uid) throws SQLException {
+        Connection conn = p.lookup(uid).getConnection();
+        ResultSet rs = conn.createStatement().executeQuery("SELECT v FROM rows");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        rs.close();
+        conn.close();
+        return count;
+    }
+
+}
@@ -17,15 +17,20 @@ package com.openddal.command;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.openddal.command.expression.ParameterInterface;
 import com.openddal.engine.Constants;
 import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorder;
 import com.openddal.engine.Session;
+import com.openddal.engine.SlowQueryLog;
+import com.openddal.engine.StageStatistics;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.Trace;
 import com.openddal.result.ResultInterface;
+import com.openddal.value.Value;
 
 /**
  * Represents a SQL statement. This object is only used on the server side.
@@ -45,11 +50,31 @@ public abstract class Command implements CommandInterface {
      * The last start time.
      */
     protected long startTime;
+    /**
+     * The start time in nanoseconds of the local execution, 0 if the stage
+     * statistics are disabled.
+     */
+    private long executeStart;
+    private long shardWaitStart;
+    /**
+     * The start time in nanoseconds for the query statistics, 0 if they are
+     * disabled.
+     */
+    protected long statisticsStart;
+    /**
+     * The number of shard workers the session created before the statement.
+     */
+    protected long shardWorkerStart;
+    private Object flightEvent;
     /**
      * If this query was canceled.
      */
     private volatile boolean cancel;
     private boolean canReuse;
+    /**
+     * The fetch size of the shard queries.
+     */
+    protected int fetchSize;
 
     Command(Parser parser, String sql) {
         this.session = parser.getSession();
@@ -117,6 +142,34 @@ public abstract class Command implements CommandInterface {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute a query statement whose result is only read forward. The rows
+     * may be read from the shards while the result is iterated, the default
+     * is the same as {@link #query(int)}.
+     *
+     * @param maxrows the maximum number of rows returned
+     * @return the result set
+     */
+    public ResultInterface queryLazy(int maxrows) {
+        return query(maxrows);
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Execute an updating statement for each parameter set of the batch, if
+     * the statement can be executed as a whole batch.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @return the update count of each execution, or null if not supported
+     */
+    public int[] updateBatch(List<Value[]> batchParameters) {
+        return null;
+    }
+
     @Override
     public final ResultInterface getMetaData() {
         return queryMeta();
@@ -126,8 +179,19 @@ public abstract class Command implements CommandInterface {
      * Start the stopwatch.
      */
     void start() {
-        if (trace.isInfoEnabled()) {
+        if (FlightRecorder.ENABLED) {
+            flightEvent = FlightRecorder.get().beginStatement();
+        }
+        executeStart = session.getDatabase().getStageStatistics().start();
+        shardWaitStart = session.getShardWaitTime();
+        if (session.getDatabase().getQueryStatistics()) {
+            statisticsStart = System.nanoTime();
+            shardWorkerStart = session.getShardWorkerCount();
+        }
+        if (trace.isInfoEnabled() || session.getDatabase().getSlowQueryLog().isEnabled()) {
             startTime = System.currentTimeMillis();
+            // drop the shard executions of a previous lazy result
+            session.takeShardExecutions();
         }
     }
 
@@ -144,13 +208,38 @@ public abstract class Command implements CommandInterface {
     }
 
     private void stop() {
+        if (executeStart != 0) {
+            long shardWait = session.getShardWaitTime() - shardWaitStart;
+            long nanos = System.nanoTime() - executeStart - shardWait;
+            session.getDatabase().getStageStatistics().record(StageStatistics.LOCAL_EXECUTE, nanos);
+            executeStart = 0;
+        }
+        if (flightEvent != null) {
+            FlightRecorder.get().endStatement(flightEvent, session.getId(), toString());
+            flightEvent = null;
+        }
         session.endStatement();
         session.setCurrentCommand(null);
-        if (trace.isInfoEnabled() && startTime > 0) {
-            long time = System.currentTimeMillis() - startTime;
-            if (time > Constants.SLOW_QUERY_LIMIT_MS) {
-                trace.info("slow query: {0} ms", time);
-            }
+        if (startTime > 0) {
+            logSlowQuery(startTime);
+            startTime = 0;
+        }
+    }
+
+    /**
+     * Log the statement if it is slow, with the shard executions recorded
+     * since it started.
+     *
+     * @param start the start time in milliseconds
+     */
+    void logSlowQuery(long start) {
+        long time = System.currentTimeMillis() - start;
+        if (trace.isInfoEnabled() && time > Constants.SLOW_QUERY_LIMIT_MS) {
+            trace.info("slow query: {0} ms", time);
+        }
+        SlowQueryLog slowQueryLog = session.getDatabase().getSlowQueryLog();
+        if (slowQueryLog.isEnabled() && time >= slowQueryLog.getLimit()) {
+            slowQueryLog.log(session, toString(), start, time, session.takeShardExecutions());
         }
     }
 
@@ -159,7 +248,8 @@ public abstract class Command implements CommandInterface {
      * This method prepares everything and calls {@link #query(int)} finally.
      *
      * @param maxrows    the maximum number of rows to return
-     * @param scrollable if the result set must be scrollable (ignored)
+     * @param scrollable if the result set must be scrollable, forward only
+     *                   results may be read lazily
      * @return the result set
      */
     @Override
@@ -173,7 +263,7 @@ public abstract class Command implements CommandInterface {
             try {
                 while (true) {
                     try {
-                        return query(maxrows);
+                        return scrollable ? query(maxrows) : queryLazy(maxrows);
                     } catch (DbException e) {
                         throw e;
                     } catch (OutOfMemoryError e) {
@@ -246,6 +336,42 @@ public abstract class Command implements CommandInterface {
         }
     }
 
+    @Override
+    public int[] executeBatchUpdate(List<Value[]> batchParameters) {
+        Database database = session.getDatabase();
+        Object sync = session;
+        boolean callStop = true;
+        synchronized (sync) {
+            session.setCurrentCommand(this);
+            try {
+                try {
+                    return updateBatch(batchParameters);
+                } catch (DbException e) {
+                    throw e;
+                } catch (OutOfMemoryError e) {
+                    callStop = false;
+                    database.shutdownImmediately();
+                    throw DbException.convert(e);
+                } catch (Throwable e) {
+                    throw DbException.convert(e);
+                }
+            } catch (DbException e) {
+                e = e.addSQL(sql);
+                SQLException s = e.getSQLException();
+                if (s.getErrorCode() == ErrorCode.OUT_OF_MEMORY) {
+                    callStop = false;
+                    database.shutdownImmediately();
+                    throw e;
+                }
+                throw e;
+            } finally {
+                if (callStop) {
+                    stop();
+                }
+            }
+        }
+    }
+
     @Override
     public void close() {
         canReuse = true;
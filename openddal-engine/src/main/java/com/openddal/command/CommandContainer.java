@@ -17,11 +17,14 @@ package com.openddal.command;
 
 import com.openddal.command.expression.Parameter;
 import com.openddal.command.expression.ParameterInterface;
+import com.openddal.engine.QueryStatisticsData;
+import com.openddal.result.LazyResult;
 import com.openddal.result.ResultInterface;
 import com.openddal.value.Value;
 import com.openddal.value.ValueNull;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a single SQL statements.
@@ -74,6 +77,23 @@ class CommandContainer extends Command {
         }
     }
 
+    private void updateStatistics(int rowCount) {
+        updateStatistics(prepared, statisticsStart, shardWorkerStart, rowCount);
+        statisticsStart = 0;
+    }
+
+    private void updateStatistics(Prepared p, long start, long workerStart, int rowCount) {
+        if (start == 0) {
+            return;
+        }
+        QueryStatisticsData statistics = session.getDatabase().getQueryStatisticsData();
+        if (statistics != null) {
+            int shards = (int) (session.getShardWorkerCount() - workerStart);
+            statistics.update(p.getSQLDigest(), p.getSQL(),
+                    System.nanoTime() - start, rowCount, shards);
+        }
+    }
+
     @Override
     public int update() {
         recompileIfRequired();
@@ -82,19 +102,88 @@ class CommandContainer extends Command {
         prepared.checkParameters();
         int updateCount = prepared.update();
         prepared.trace(startTime, updateCount);
+        updateStatistics(updateCount);
         return updateCount;
     }
 
+    @Override
+    public int[] updateBatch(List<Value[]> batchParameters) {
+        recompileIfRequired();
+        start();
+        session.setLastScopeIdentity(ValueNull.INSTANCE);
+        int[] updateCounts = prepared.updateBatch(batchParameters);
+        if (updateCounts != null) {
+            int rowCount = getRowCount(updateCounts);
+            prepared.trace(startTime, rowCount);
+            updateStatistics(rowCount);
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Get the number of rows updated by a batch, the entries without a known
+     * count are not added.
+     *
+     * @param updateCounts the update count of each entry of the batch
+     * @return the number of rows
+     */
+    private static int getRowCount(int[] updateCounts) {
+        int rowCount = 0;
+        for (int count : updateCounts) {
+            if (count > 0) {
+                rowCount += count;
+            }
+        }
+        return rowCount;
+    }
+
     @Override
     public ResultInterface query(int maxrows) {
         recompileIfRequired();
         start();
         prepared.checkParameters();
+        prepared.setFetchSize(fetchSize);
         ResultInterface result = prepared.query(maxrows);
         prepared.trace(startTime, result.getRowCount());
+        updateStatistics(result.getRowCount());
         return result;
     }
 
+    @Override
+    public ResultInterface queryLazy(int maxrows) {
+        recompileIfRequired();
+        start();
+        prepared.checkParameters();
+        prepared.setFetchSize(fetchSize);
+        ResultInterface result = prepared.queryLazy(maxrows);
+        if (!(result instanceof LazyResult)) {
+            prepared.trace(startTime, result.getRowCount());
+            updateStatistics(result.getRowCount());
+            return result;
+        }
+        // the rows are only counted while the result is read, and the shard
+        // executions are recorded when the shard results are closed, the
+        // statement is traced once the result is exhausted or closed
+        final LazyResult lazy = (LazyResult) result;
+        final Prepared p = prepared;
+        final long start = startTime;
+        final long statsStart = statisticsStart;
+        final long workerStart = shardWorkerStart;
+        statisticsStart = 0;
+        startTime = 0;
+        lazy.setFinishAction(new Runnable() {
+            @Override
+            public void run() {
+                p.trace(start, lazy.getRowCount());
+                updateStatistics(p, statsStart, workerStart, lazy.getRowCount());
+                if (start > 0) {
+                    logSlowQuery(start);
+                }
+            }
+        });
+        return lazy;
+    }
+
     @Override
     public boolean isReadOnly() {
         if (!readOnlyKnown) {
@@ -16,9 +16,11 @@
 package com.openddal.command;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.openddal.command.expression.ParameterInterface;
 import com.openddal.result.ResultInterface;
+import com.openddal.value.Value;
 
 /**
  * Represents a SQL statement.
@@ -441,6 +443,11 @@ public interface CommandInterface {
      */
     int BEGIN = 83;
 
+    /**
+     * The type of a LOAD CSV statement.
+     */
+    int LOAD_CSV = 84;
+
     /**
      * Get command type.
      *
@@ -471,6 +478,13 @@ public interface CommandInterface {
      */
     ResultInterface executeQuery(int maxRows, boolean scrollable);
 
+    /**
+     * Set the number of rows suggested to read from the shards in one step.
+     *
+     * @param fetchSize the fetch size, 0 for the driver default
+     */
+    void setFetchSize(int fetchSize);
+
     /**
      * Execute the statement
      *
@@ -478,6 +492,15 @@ public interface CommandInterface {
      */
     int executeUpdate();
 
+    /**
+     * Execute the statement once for each parameter set of the batch.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @return the update count of each execution, or null if the statement
+     *         can not be executed as a whole batch
+     */
+    int[] executeBatchUpdate(List<Value[]> batchParameters);
+
     /**
      * Close the statement.
      */
@@ -62,6 +62,7 @@ import com.openddal.command.dml.Call;
 import com.openddal.command.dml.Delete;
 import com.openddal.command.dml.Explain;
 import com.openddal.command.dml.Insert;
+import com.openddal.command.dml.LoadCsv;
 import com.openddal.command.dml.Merge;
 import com.openddal.command.dml.NoOperation;
 import com.openddal.command.dml.Query;
@@ -112,6 +113,7 @@ import com.openddal.engine.Constants;
 import com.openddal.engine.Database;
 import com.openddal.engine.DbSettings;
 import com.openddal.engine.Session;
+import com.openddal.engine.StageStatistics;
 import com.openddal.engine.SysProperties;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
@@ -409,12 +411,16 @@ public class Parser {
      */
     public Command prepareCommand(String sql) {
         try {
+            StageStatistics stageStatistics = database.getStageStatistics();
+            long start = stageStatistics.start();
             Prepared p = parse(sql);
             boolean hasMore = isToken(";");
             if (!hasMore && currentTokenType != END) {
                 throw getSyntaxError();
             }
+            start = stageStatistics.end(StageStatistics.PARSE, start);
             p.prepare();
+            stageStatistics.end(StageStatistics.OPTIMIZE, start);
             Command c = new CommandContainer(this, sql, p);
             if (hasMore) {
                 String remaining = originalSQL.substring(parseIndex);
@@ -560,6 +566,12 @@ public class Parser {
                         c = parseInsert();
                     }
                     break;
+                case 'l':
+                case 'L':
+                    if (readIf("LOAD")) {
+                        c = parseLoad();
+                    }
+                    break;
                 case 'm':
                 case 'M':
                     if (readIf("MERGE")) {
@@ -1348,6 +1360,24 @@ public class Parser {
         return alias;
     }
 
+    private LoadCsv parseLoad() {
+        read("CSV");
+        read("INTO");
+        LoadCsv command = new LoadCsv(session);
+        currentPrepared = command;
+        Table table = readTableOrView();
+        command.setTable(table);
+        if (readIf("(")) {
+            command.setColumns(parseColumnList(table));
+        }
+        read("FROM");
+        command.setFileName(readExpression());
+        if (readIf("WITH")) {
+            command.setOptions(readExpression());
+        }
+        return command;
+    }
+
     private Prepared parseTruncate() {
         read("TABLE");
         Table table = readTableOrView();
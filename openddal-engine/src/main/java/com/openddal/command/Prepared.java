@@ -16,9 +16,11 @@
 package com.openddal.command;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.openddal.command.expression.Expression;
 import com.openddal.command.expression.Parameter;
+import com.openddal.engine.QueryStatisticsData;
 import com.openddal.engine.Session;
 import com.openddal.excutor.Executor;
 import com.openddal.excutor.ExecutorFactory;
@@ -62,9 +64,11 @@ public abstract class Prepared {
     protected boolean prepareAlways;
 
     private Command command;
+    private String sqlDigest;
     private int objectId;
     private int currentRowNumber;
     private int rowScanCount;
+    private int fetchSize;
 
     /**
      * Create a new object.
@@ -221,6 +225,22 @@ public abstract class Prepared {
         return executor.update();
     }
 
+    /**
+     * Execute the statement for each parameter set of the batch.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @return the update count of each execution, or null if the statement
+     *         can not be executed as a whole batch
+     */
+    public int[] updateBatch(List<Value[]> batchParameters) {
+        ExecutorFactory ef = session.getExecutorFactory();
+        Executor executor = ef.newExecutor(this);
+        if (executor == null) {
+            return null;
+        }
+        return executor.batchUpdate(batchParameters);
+    }
+
     /**
      * Execute the query.
      *
@@ -232,6 +252,32 @@ public abstract class Prepared {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute the query for a forward only result. The default is the same
+     * as {@link #query(int)}, queries that don't need to collect all the rows
+     * first return a result reading the shards while it is iterated.
+     *
+     * @param maxrows the maximum number of rows to return
+     * @return the result set
+     * @throws DbException if it is not a query
+     */
+    public ResultInterface queryLazy(int maxrows) {
+        return query(maxrows);
+    }
+
+    /**
+     * Get the number of rows suggested to read from the shards in one step.
+     *
+     * @return the fetch size, 0 for the driver default
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     /**
      * Get the SQL statement.
      *
@@ -248,6 +294,20 @@ public abstract class Prepared {
      */
     public void setSQL(String sql) {
         this.sqlStatement = sql;
+        this.sqlDigest = null;
+    }
+
+    /**
+     * Get the digest of the SQL statement, used to group the query
+     * statistics. It is computed once per prepared statement.
+     *
+     * @return the digest
+     */
+    public String getSQLDigest() {
+        if (sqlDigest == null) {
+            sqlDigest = QueryStatisticsData.getDigest(sqlStatement);
+        }
+        return sqlDigest;
     }
 
     /**
@@ -344,11 +404,6 @@ public abstract class Prepared {
             String params = Trace.formatParams(parameters);
             session.getTrace().infoSQL(sqlStatement, params, rowCount, deltaTime);
         }
-        if (session.getDatabase().getQueryStatistics()) {
-            long deltaTime = System.currentTimeMillis() - startTime;
-            session.getDatabase().getQueryStatisticsData().
-                    update(toString(), deltaTime, rowCount);
-        }
     }
 
     /**
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.command.dml;
+
+import com.openddal.command.CommandInterface;
+import com.openddal.command.Prepared;
+import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.Table;
+import com.openddal.engine.Session;
+import com.openddal.result.ResultInterface;
+
+/**
+ * This class represents the statement
+ * LOAD CSV INTO tableName [(columnName, ...)] FROM fileName [WITH options]
+ * <p>
+ * If no column list is given, the first line of the file is the header and
+ * names the columns of the table.
+ * </p>
+ */
+public class LoadCsv extends Prepared {
+
+    private Table table;
+    private Column[] columns;
+    private Expression fileNameExpr;
+    private Expression optionsExpr;
+
+    public LoadCsv(Session session) {
+        super(session);
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return true;
+    }
+
+    @Override
+    public ResultInterface queryMeta() {
+        return null;
+    }
+
+    @Override
+    public int getType() {
+        return CommandInterface.LOAD_CSV;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public void setTable(Table table) {
+        this.table = table;
+    }
+
+    public Column[] getColumns() {
+        return columns;
+    }
+
+    public void setColumns(Column[] columns) {
+        this.columns = columns;
+    }
+
+    public Expression getFileNameExpr() {
+        return fileNameExpr;
+    }
+
+    public void setFileName(Expression fileName) {
+        this.fileNameExpr = fileName;
+    }
+
+    public Expression getOptionsExpr() {
+        return optionsExpr;
+    }
+
+    /**
+     * Set the CSV options, in the format of the CSVREAD options, for example
+     * "charset=UTF-8 fieldSeparator=;".
+     *
+     * @param options the options expression
+     */
+    public void setOptions(Expression options) {
+        this.optionsExpr = options;
+    }
+
+}
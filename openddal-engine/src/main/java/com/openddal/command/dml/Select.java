@@ -8,6 +8,7 @@ package com.openddal.command.dml;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 import com.openddal.command.CommandInterface;
 import com.openddal.command.expression.Comparison;
@@ -23,9 +24,12 @@ import com.openddal.dbobject.table.TableFilter;
 import com.openddal.engine.Database;
 import com.openddal.engine.Session;
 import com.openddal.engine.SysProperties;
+import com.openddal.excutor.cursor.Cursor;
 import com.openddal.excutor.cursor.DirectLookupCursor;
+import com.openddal.excutor.works.Worker;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
+import com.openddal.result.LazyResult;
 import com.openddal.result.LocalResult;
 import com.openddal.result.ResultInterface;
 import com.openddal.result.ResultTarget;
@@ -100,6 +104,15 @@ public class Select extends Query {
         return topFilters;
     }
 
+    /**
+     * Get all the tables of the query, including the joined tables.
+     *
+     * @return the table filters
+     */
+    public ArrayList<TableFilter> getFilters() {
+        return filters;
+    }
+
     public void setExpressions(ArrayList<Expression> expressions) {
         this.expressions = expressions;
     }
@@ -111,6 +124,10 @@ public class Select extends Query {
         isGroupQuery = true;
     }
 
+    public boolean isGroupQuery() {
+        return isGroupQuery;
+    }
+
     public void setGroupBy(ArrayList<Expression> group) {
         this.group = group;
     }
@@ -297,22 +314,35 @@ public class Select extends Query {
         }
     }
 
-    private void queryQuick(int columnCount, ResultTarget result) {
-        //lookupCursor.
-        Value[] row = new Value[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            Expression expr = expressions.get(i);
-            row[i] = expr.getValue(session);
+    /**
+     * Read the rows of the query executed on the table nodes, the table nodes
+     * return the rows of the query as they are.
+     */
+    private LocalResult queryDirectLookup(int limitRows, ResultTarget target) {
+        Cursor cursor = lookupCursor.query();
+        LocalResult result = null;
+        ResultTarget to = target;
+        if (target == null) {
+            result = new LocalResult(session, expressionArray, visibleColumnCount);
+            to = result;
         }
-        result.addRow(row);
+        int rowNumber = 0;
+        while ((limitRows < 0 || rowNumber < limitRows) && cursor.next()) {
+            to.addRow(getDirectLookupRow(cursor.get()));
+            rowNumber++;
+        }
+        if (result != null) {
+            result.done();
+        }
+        return result;
     }
 
-    private void queryGroupQuick(int columnCount, ResultTarget result) {
-        for (int i = 0; i < columnCount; i++) {
-            Expression expr = expressions.get(i);
+    private Value[] getDirectLookupRow(Row r) {
+        Value[] row = new Value[expressionArray.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i < visibleColumnCount ? r.getValue(i) : ValueNull.INSTANCE;
         }
-  
-        // result.addRow(row);
+        return row;
     }
 
     @Override
@@ -334,6 +364,9 @@ public class Select extends Query {
                 limitRows = Math.min(l, limitRows);
             }
         }
+        if (limitRows != 0 && lookupCursor != null && lookupCursor.route()) {
+            return queryDirectLookup(limitRows, target);
+        }
         int columnCount = expressions.size();
         LocalResult result = null;
         if (target == null || !session.getDatabase().getSettings().optimizeInsertFromSelect) {
@@ -371,13 +404,7 @@ public class Select extends Query {
         topTableFilter.lock(session, exclusive, exclusive);
         ResultTarget to = result != null ? result : target;
         if (limitRows != 0) {
-            if (lookupCursor != null) {
-                if (isGroupQuery) {
-                    queryGroupQuick(columnCount, to);
-                } else {
-                    queryQuick(columnCount, to);
-                }
-            } else if (isGroupQuery) {
+            if (isGroupQuery) {
                 queryGroup(columnCount, result);
             } else {
                 queryFlat(columnCount, to, limitRows);
@@ -403,6 +430,52 @@ public class Select extends Query {
         return null;
     }
 
+    @Override
+    public ResultInterface queryLazy(int maxRows) {
+        if (!isLazyQueryExecution()) {
+            return query(maxRows);
+        }
+        int limitRows = maxRows == 0 ? -1 : maxRows;
+        if (limitExpr != null) {
+            Value v = limitExpr.getValue(session);
+            int l = v == ValueNull.INSTANCE ? -1 : v.getInt();
+            if (limitRows < 0) {
+                limitRows = l;
+            } else if (l >= 0) {
+                limitRows = Math.min(l, limitRows);
+            }
+        }
+        Cursor lookup = null;
+        if (lookupCursor != null && lookupCursor.route()) {
+            lookup = lookupCursor.query();
+        } else {
+            topTableFilter.startQuery(session);
+            topTableFilter.reset();
+            topTableFilter.lock(session, false, false);
+        }
+        LazyResultQueryFlat result = new LazyResultQueryFlat(limitRows, lookup);
+        try {
+            // the shard queries are executed by the statement, errors are
+            // thrown here and the workers are open when the statement ends
+            result.hasNext();
+        } finally {
+            result.detachWorkers();
+        }
+        session.addLazyResult(result);
+        return result;
+    }
+
+    /**
+     * Check if the rows can be returned while they are read from the shards,
+     * that is all the rows are returned in the order they are read.
+     */
+    private boolean isLazyQueryExecution() {
+        return session.getDatabase().getSettings().lazyQueryExecution && sort == null && !distinct
+                && !isGroupQuery && !randomAccessResult && !isForUpdate && offsetExpr == null
+                && topTableFilter.getJoin() == null
+                && topTableFilter.getNestedJoin() == null && getSampleSizeValue(session) == 0;
+    }
+
     private LocalResult createLocalResult(LocalResult old) {
         return old != null ? old : new LocalResult(session, expressionArray, visibleColumnCount);
     }
@@ -605,12 +678,6 @@ public class Select extends Query {
     }
 
     private double preparePlan() {
-        if(DirectLookupCursor.isDirectLookupQuery(this)) {
-            lookupCursor = new DirectLookupCursor(this);
-            lookupCursor.prepare();
-            return lookupCursor.getCost();
-        }
-        
         TableFilter[] topArray = topFilters.toArray(new TableFilter[topFilters.size()]);
         for (TableFilter t : topArray) {
             t.setFullCondition(condition);
@@ -624,6 +691,10 @@ public class Select extends Query {
         setEvaluatableRecursive(topTableFilter);
 
         topTableFilter.prepare();
+        if (DirectLookupCursor.isDirectLookupQuery(this)) {
+            lookupCursor = new DirectLookupCursor(this);
+            lookupCursor.prepare();
+        }
         return planCost;
     }
 
@@ -861,4 +932,63 @@ public class Select extends Query {
         return sort;
     }
 
+    /**
+     * Lazy execution of a query without a local sort, distinct, grouping or
+     * join, the rows are computed from the shard cursors on each next().
+     */
+    private final class LazyResultQueryFlat extends LazyResult {
+
+        private final int columnCount;
+        private final Cursor lookup;
+        private List<Worker> workers;
+        private int rowNumber;
+
+        LazyResultQueryFlat(int limit, Cursor lookup) {
+            super(expressionArray, visibleColumnCount, limit);
+            this.columnCount = expressions.size();
+            this.lookup = lookup;
+        }
+
+        void detachWorkers() {
+            workers = session.detachWorkers();
+        }
+
+        @Override
+        protected Value[] fetchNextRow() {
+            if (lookup != null) {
+                if (lookup.next()) {
+                    if ((++rowNumber & 4095) == 0) {
+                        // the timeout is checked as in the scan of a table
+                        // filter, the statement ends when the rows are read
+                        session.checkCanceled();
+                    }
+                    setCurrentRowNumber(rowNumber);
+                    return getDirectLookupRow(lookup.get());
+                }
+                return null;
+            }
+            while (topTableFilter.next()) {
+                setCurrentRowNumber(++rowNumber);
+                if (condition == null || Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                    Value[] row = new Value[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        Expression expr = expressions.get(i);
+                        row[i] = expr.getValue(session);
+                    }
+                    return row;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void doClose() {
+            session.removeLazyResult(this);
+            if (workers != null) {
+                session.closeWorkers(workers);
+                workers = null;
+            }
+        }
+    }
+
 }
@@ -307,6 +307,15 @@ public class ConditionAndOr extends Condition {
         return getLeft ? this.left : right;
     }
 
+    /**
+     * Get the condition type.
+     *
+     * @return {@link #AND} or {@link #OR}
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
+
 
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
@@ -220,6 +220,24 @@ public class ConditionIn extends Condition {
     }
 
 
+    /**
+     * Get the expression before IN.
+     *
+     * @return the left expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the expressions of the IN(...) value list.
+     *
+     * @return the value list
+     */
+    public ArrayList<Expression> getValueList() {
+        return valueList;
+    }
+
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
         StatementBuilder buff = new StatementBuilder("(");
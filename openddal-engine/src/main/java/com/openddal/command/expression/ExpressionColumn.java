@@ -325,7 +325,8 @@ public class ExpressionColumn extends Expression {
 
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
-        if (getTableFilter() == filter) {
+        // without a filter the statement is sent with all its tables
+        if (filter == null || getTableFilter() == filter) {
             return getSQL();
         }
         Value value = this.getValue(filter.getSession());
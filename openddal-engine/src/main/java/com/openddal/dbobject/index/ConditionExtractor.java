@@ -24,15 +24,29 @@ public final class ConditionExtractor {
     private Session session;
     private Table table;
     private ArrayList<IndexCondition> indexConditions;
+    private boolean independentOnly;
     private boolean alwaysFalse;
 
     private SearchRow start, end;
     private Map<Column, Set<Value>> inColumns = New.hashMap();
 
     public ConditionExtractor(TableFilter filter) {
+        this(filter, false);
+    }
+
+    /**
+     * Extract the conditions of the table.
+     *
+     * @param filter the table filter
+     * @param independentOnly if only the conditions that do not depend on the
+     *            rows of the other tables are used, for the queries that are
+     *            not read table by table
+     */
+    public ConditionExtractor(TableFilter filter, boolean independentOnly) {
         this.session = filter.getSession();
         this.table = filter.getTable();
         this.indexConditions = filter.getIndexConditions();
+        this.independentOnly = independentOnly;
         this.doExtract();
     }
 
@@ -49,7 +63,7 @@ public final class ConditionExtractor {
         // don't use enhanced for loop to avoid creating objects
         for (int i = 0, size = indexConditions.size(); i < size; i++) {
             IndexCondition condition = indexConditions.get(i);
-            if (!condition.isEvaluatable()) {
+            if (!condition.isEvaluatable() || independentOnly && !condition.isIndependent()) {
                 continue;
             }
             if (condition.isAlwaysFalse()) {
@@ -348,6 +348,26 @@ public class IndexCondition {
         return expressionQuery.isEverything(ExpressionVisitor.EVALUATABLE_VISITOR);
     }
 
+    /**
+     * Check if the expression does not depend on the rows of any table.
+     *
+     * @return true if it does not
+     */
+    public boolean isIndependent() {
+        if (expression != null) {
+            return expression.isEverything(ExpressionVisitor.INDEPENDENT_VISITOR);
+        }
+        if (expressionList != null) {
+            for (Expression e : expressionList) {
+                if (!e.isEverything(ExpressionVisitor.INDEPENDENT_VISITOR)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return expressionQuery.isEverything(ExpressionVisitor.INDEPENDENT_VISITOR);
+    }
+
     /**
      * Get other join column without expression wrapper.
      * @return the column
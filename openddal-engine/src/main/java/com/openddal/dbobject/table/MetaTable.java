@@ -18,6 +18,8 @@ import java.util.HashMap;
 import java.util.Locale;
 
 import com.openddal.command.Command;
+import com.openddal.config.GlobalTableRule;
+import com.openddal.config.ShardedTableRule;
 import com.openddal.config.TableRule;
 import com.openddal.dbobject.DbObject;
 import com.openddal.dbobject.User;
@@ -28,13 +30,19 @@ import com.openddal.dbobject.schema.SchemaObject;
 import com.openddal.dbobject.schema.Sequence;
 import com.openddal.engine.Constants;
 import com.openddal.engine.Database;
+import com.openddal.engine.NodeStatistics;
 import com.openddal.engine.QueryStatisticsData;
 import com.openddal.engine.Session;
+import com.openddal.engine.SlowQueryLog;
+import com.openddal.engine.StageStatistics;
 import com.openddal.message.DbException;
 import com.openddal.result.Csv;
 import com.openddal.result.Row;
 import com.openddal.result.SearchRow;
 import com.openddal.result.SortOrder;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.LatencyHistogram;
 import com.openddal.util.MathUtils;
 import com.openddal.util.New;
 import com.openddal.util.StatementBuilder;
@@ -88,7 +96,12 @@ public class MetaTable extends Table {
     private static final int LOCKS = 26;
     private static final int SESSION_STATE = 27;
     private static final int QUERY_STATISTICS = 28;
-    private static final int META_TABLE_TYPE_COUNT = QUERY_STATISTICS + 1;
+    private static final int SLOW_QUERIES = 29;
+    private static final int STAGE_STATISTICS = 30;
+    private static final int STAGE_HISTOGRAM = 31;
+    private static final int TABLE_NODE_STATISTICS = 32;
+    private static final int HASH_BUCKET_STATISTICS = 33;
+    private static final int META_TABLE_TYPE_COUNT = HASH_BUCKET_STATISTICS + 1;
 
     private final int type;
     private final int indexColumn;
@@ -502,17 +515,97 @@ public class MetaTable extends Table {
             setObjectName("QUERY_STATISTICS");
             cols = createColumns(
                     "SQL_STATEMENT",
-                    "EXECUTION_COUNT INT",
-                    "MIN_EXECUTION_TIME LONG",
-                    "MAX_EXECUTION_TIME LONG",
-                    "CUMULATIVE_EXECUTION_TIME LONG",
+                    "SAMPLE_SQL_STATEMENT",
+                    "EXECUTION_COUNT LONG",
+                    "MIN_EXECUTION_TIME DOUBLE",
+                    "MAX_EXECUTION_TIME DOUBLE",
+                    "CUMULATIVE_EXECUTION_TIME DOUBLE",
                     "AVERAGE_EXECUTION_TIME DOUBLE",
                     "STD_DEV_EXECUTION_TIME DOUBLE",
-                    "MIN_ROW_COUNT INT",
-                    "MAX_ROW_COUNT INT",
+                    "P50_EXECUTION_TIME DOUBLE",
+                    "P95_EXECUTION_TIME DOUBLE",
+                    "P99_EXECUTION_TIME DOUBLE",
+                    "MIN_ROW_COUNT LONG",
+                    "MAX_ROW_COUNT LONG",
                     "CUMULATIVE_ROW_COUNT LONG",
                     "AVERAGE_ROW_COUNT DOUBLE",
-                    "STD_DEV_ROW_COUNT DOUBLE"
+                    "STD_DEV_ROW_COUNT DOUBLE",
+                    "AVERAGE_SHARD_COUNT DOUBLE",
+                    "MAX_SHARD_COUNT LONG"
+            );
+            break;
+        }
+        case SLOW_QUERIES: {
+            setObjectName("SLOW_QUERIES");
+            cols = createColumns(
+                    "ID LONG",
+                    "SESSION_ID INT",
+                    "USER_NAME",
+                    "START_TIME",
+                    "EXECUTION_TIME LONG",
+                    "SQL_STATEMENT",
+                    "SHARD_NAME",
+                    "SHARD_SQL_STATEMENT",
+                    "SHARD_ROW_COUNT LONG",
+                    "SHARD_EXECUTION_TIME LONG"
+            );
+            break;
+        }
+        case STAGE_STATISTICS: {
+            setObjectName("STAGE_STATISTICS");
+            cols = createColumns(
+                    "STAGE",
+                    "EXECUTION_COUNT LONG",
+                    "CUMULATIVE_EXECUTION_TIME LONG",
+                    "AVERAGE_EXECUTION_TIME DOUBLE",
+                    "MAX_EXECUTION_TIME LONG",
+                    "P50_EXECUTION_TIME LONG",
+                    "P95_EXECUTION_TIME LONG",
+                    "P99_EXECUTION_TIME LONG"
+            );
+            break;
+        }
+        case STAGE_HISTOGRAM: {
+            setObjectName("STAGE_HISTOGRAM");
+            cols = createColumns(
+                    "STAGE",
+                    "MIN_EXECUTION_TIME LONG",
+                    "MAX_EXECUTION_TIME LONG",
+                    "EXECUTION_COUNT LONG"
+            );
+            break;
+        }
+        case TABLE_NODE_STATISTICS: {
+            setObjectName("TABLE_NODE_STATISTICS");
+            cols = createColumns(
+                    "TABLE_SCHEMA",
+                    "TABLE_NAME",
+                    "SHARD_NAME",
+                    "TABLE_NODE",
+                    "STATEMENT_COUNT LONG",
+                    "ERROR_COUNT LONG",
+                    "READ_ROW_COUNT LONG",
+                    "WRITTEN_ROW_COUNT LONG",
+                    "READ_BYTES LONG",
+                    "WRITTEN_BYTES LONG",
+                    "CUMULATIVE_EXECUTION_TIME LONG",
+                    "AVERAGE_EXECUTION_TIME DOUBLE",
+                    "P99_EXECUTION_TIME LONG",
+                    "STATEMENT_SKEW DOUBLE",
+                    "ROW_SKEW DOUBLE"
+            );
+            break;
+        }
+        case HASH_BUCKET_STATISTICS: {
+            setObjectName("HASH_BUCKET_STATISTICS");
+            cols = createColumns(
+                    "TABLE_SCHEMA",
+                    "TABLE_NAME",
+                    "BUCKET INT",
+                    "SHARD_NAME",
+                    "TABLE_NODE",
+                    "ROUTE_COUNT LONG",
+                    "SKEW DOUBLE"
             );
             break;
         }
@@ -558,6 +651,17 @@ public class MetaTable extends Table {
         return s;
     }
 
+    private static ObjectNode[] getTableNodes(TableRule rule) {
+        switch (rule.getType()) {
+        case TableRule.SHARDED_NODE_TABLE:
+            return ((ShardedTableRule) rule).getObjectNodes();
+        case TableRule.GLOBAL_NODE_TABLE:
+            return ((GlobalTableRule) rule).getBroadcasts();
+        default:
+            return new ObjectNode[] { rule.getMetadataNode() };
+        }
+    }
+
     private ArrayList<Table> getAllTables(Session session) {
         ArrayList<Table> tables = database.getAllTablesAndViews();
         ArrayList<Table> tempTables = session.getLocalTempTables();
@@ -669,7 +773,7 @@ public class MetaTable extends Table {
                         // REMARKS
                         "",
                         // LAST_MODIFICATION
-                        "",
+                        null,
                         // ID
                         "" + table.getId(),
                         // TYPE_NAME
@@ -913,6 +1017,10 @@ public class MetaTable extends Table {
             String resource = "/org/h2/res/help.csv";
             try {
                 byte[] data = Utils.getResource(resource);
+                if (data == null) {
+                    // the help is not packaged
+                    break;
+                }
                 Reader reader = new InputStreamReader(
                         new ByteArrayInputStream(data));
                 Csv csv = new Csv();
@@ -1025,10 +1133,10 @@ public class MetaTable extends Table {
             break;
         }
         case TABLE_PRIVILEGES: {
-            
+            break;
         }
         case COLUMN_PRIVILEGES: {
-            
+            break;
         }
         case COLLATIONS: {
             for (Locale l : Collator.getAvailableLocales()) {
@@ -1151,29 +1259,239 @@ public class MetaTable extends Table {
                 for (QueryStatisticsData.QueryEntry entry : control.getQueries()) {
                     add(rows,
                             // SQL_STATEMENT
-                            entry.sqlStatement,
+                            entry.getSqlDigest(),
+                            // SAMPLE_SQL_STATEMENT
+                            entry.getSqlStatement(),
                             // EXECUTION_COUNT
-                            "" + entry.count,
+                            "" + entry.getCount(),
                             // MIN_EXECUTION_TIME
-                            "" + entry.executionTimeMin,
+                            "" + entry.getExecutionTimeMin(),
                             // MAX_EXECUTION_TIME
-                            "" + entry.executionTimeMax,
+                            "" + entry.getExecutionTimeMax(),
                             // CUMULATIVE_EXECUTION_TIME
-                            "" + entry.executionTimeCumulative,
+                            "" + entry.getExecutionTimeCumulative(),
                             // AVERAGE_EXECUTION_TIME
-                            "" + entry.executionTimeMean,
+                            "" + entry.getExecutionTimeMean(),
                             // STD_DEV_EXECUTION_TIME
                             "" + entry.getExecutionTimeStandardDeviation(),
+                            // P50_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(50),
+                            // P95_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(95),
+                            // P99_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(99),
                             // MIN_ROW_COUNT
-                            "" + entry.rowCountMin,
+                            "" + entry.getRowCountMin(),
                             // MAX_ROW_COUNT
-                            "" + entry.rowCountMax,
+                            "" + entry.getRowCountMax(),
                             // CUMULATIVE_ROW_COUNT
-                            "" + entry.rowCountCumulative,
+                            "" + entry.getRowCountCumulative(),
                             // AVERAGE_ROW_COUNT
-                            "" + entry.rowCountMean,
+                            "" + entry.getRowCountMean(),
                             // STD_DEV_ROW_COUNT
-                            "" + entry.getRowCountStandardDeviation()
+                            "" + entry.getRowCountStandardDeviation(),
+                            // AVERAGE_SHARD_COUNT
+                            "" + entry.getShardCountMean(),
+                            // MAX_SHARD_COUNT
+                            "" + entry.getShardCountMax()
+                    );
+                }
+            }
+            break;
+        }
+        case STAGE_STATISTICS: {
+            StageStatistics stats = database.getStageStatistics();
+            for (int i = 0; i < StageStatistics.getStageCount(); i++) {
+                LatencyHistogram h = stats.getHistogram(i);
+                add(rows,
+                        // STAGE
+                        StageStatistics.getStageName(i),
+                        // EXECUTION_COUNT
+                        "" + h.getCount(),
+                        // CUMULATIVE_EXECUTION_TIME
+                        "" + h.getTotal(),
+                        // AVERAGE_EXECUTION_TIME
+                        "" + h.getMean(),
+                        // MAX_EXECUTION_TIME
+                        "" + h.getMax(),
+                        // P50_EXECUTION_TIME
+                        "" + h.getValueAtPercentile(50),
+                        // P95_EXECUTION_TIME
+                        "" + h.getValueAtPercentile(95),
+                        // P99_EXECUTION_TIME
+                        "" + h.getValueAtPercentile(99)
+                );
+            }
+            break;
+        }
+        case STAGE_HISTOGRAM: {
+            StageStatistics stats = database.getStageStatistics();
+            for (int i = 0; i < StageStatistics.getStageCount(); i++) {
+                LatencyHistogram h = stats.getHistogram(i);
+                for (int b = 0; b < h.getBucketCount(); b++) {
+                    long count = h.getCount(b);
+                    if (count == 0) {
+                        continue;
+                    }
+                    add(rows,
+                            // STAGE
+                            StageStatistics.getStageName(i),
+                            // MIN_EXECUTION_TIME
+                            "" + LatencyHistogram.getLowerBound(b),
+                            // MAX_EXECUTION_TIME
+                            "" + LatencyHistogram.getUpperBound(b),
+                            // EXECUTION_COUNT
+                            "" + count
+                    );
+                }
+            }
+            break;
+        }
+        case TABLE_NODE_STATISTICS: {
+            NodeStatistics stats = database.getNodeStatistics();
+            for (Table table : getAllTables(session)) {
+                if (!(table instanceof TableMate)) {
+                    continue;
+                }
+                ObjectNode[] nodes = getTableNodes(((TableMate) table).getTableRule());
+                if (nodes == null || nodes.length == 0 || nodes[0] == null) {
+                    continue;
+                }
+                NodeStatistics.NodeEntry[] entries = new NodeStatistics.NodeEntry[nodes.length];
+                long statements = 0;
+                long rowCount = 0;
+                for (int i = 0; i < nodes.length; i++) {
+                    entries[i] = stats.get(nodes[i]);
+                    if (entries[i] != null) {
+                        statements += entries[i].getStatementCount();
+                        rowCount += entries[i].getRowsRead() + entries[i].getRowsWritten();
+                    }
+                }
+                // the skew is the traffic of a node against the average
+                // traffic of the nodes of the table, 1.0 is balanced
+                double statementMean = (double) statements / nodes.length;
+                double rowMean = (double) rowCount / nodes.length;
+                for (int i = 0; i < nodes.length; i++) {
+                    NodeStatistics.NodeEntry e = entries[i];
+                    long s = e == null ? 0 : e.getStatementCount();
+                    long r = e == null ? 0 : e.getRowsRead() + e.getRowsWritten();
+                    LatencyHistogram h = e == null ? null : e.getExecutionTime();
+                    add(rows,
+                            // TABLE_SCHEMA
+                            identifier(table.getSchema().getName()),
+                            // TABLE_NAME
+                            identifier(table.getName()),
+                            // SHARD_NAME
+                            nodes[i].getShardName(),
+                            // TABLE_NODE
+                            nodes[i].getCompositeObjectName(),
+                            // STATEMENT_COUNT
+                            "" + s,
+                            // ERROR_COUNT
+                            "" + (e == null ? 0 : e.getErrorCount()),
+                            // READ_ROW_COUNT
+                            "" + (e == null ? 0 : e.getRowsRead()),
+                            // WRITTEN_ROW_COUNT
+                            "" + (e == null ? 0 : e.getRowsWritten()),
+                            // READ_BYTES
+                            "" + (e == null ? 0 : e.getBytesRead()),
+                            // WRITTEN_BYTES
+                            "" + (e == null ? 0 : e.getBytesWritten()),
+                            // CUMULATIVE_EXECUTION_TIME
+                            "" + (h == null ? 0 : h.getTotal()),
+                            // AVERAGE_EXECUTION_TIME
+                            "" + (h == null ? 0 : h.getMean()),
+                            // P99_EXECUTION_TIME
+                            "" + (h == null ? 0 : h.getValueAtPercentile(99)),
+                            // STATEMENT_SKEW
+                            "" + (statementMean == 0 ? 0 : s / statementMean),
+                            // ROW_SKEW
+                            "" + (rowMean == 0 ? 0 : r / rowMean)
+                    );
+                }
+            }
+            break;
+        }
+        case HASH_BUCKET_STATISTICS: {
+            for (Table table : getAllTables(session)) {
+                if (!(table instanceof TableMate)) {
+                    continue;
+                }
+                TableRule rule = ((TableMate) table).getTableRule();
+                if (rule.getType() != TableRule.SHARDED_NODE_TABLE) {
+                    continue;
+                }
+                ShardedTableRule shardedRule = (ShardedTableRule) rule;
+                if (!(shardedRule.getPartitioner() instanceof HashBucketPartitioner)) {
+                    continue;
+                }
+                HashBucketPartitioner partitioner = (HashBucketPartitioner) shardedRule.getPartitioner();
+                ObjectNode[] nodes = shardedRule.getObjectNodes();
+                int bucketCount = partitioner.getBucketCount();
+                long total = 0;
+                for (int b = 0; b < bucketCount; b++) {
+                    total += partitioner.getBucketHits(b);
+                }
+                double mean = (double) total / bucketCount;
+                for (int b = 0; b < bucketCount; b++) {
+                    long hits = partitioner.getBucketHits(b);
+                    if (hits == 0) {
+                        continue;
+                    }
+                    ObjectNode node = nodes[partitioner.getBucketNodeIndex(b)];
+                    add(rows,
+                            // TABLE_SCHEMA
+                            identifier(table.getSchema().getName()),
+                            // TABLE_NAME
+                            identifier(table.getName()),
+                            // BUCKET
+                            "" + b,
+                            // SHARD_NAME
+                            node.getShardName(),
+                            // TABLE_NODE
+                            node.getCompositeObjectName(),
+                            // ROUTE_COUNT
+                            "" + hits,
+                            // SKEW
+                            "" + hits / mean
+                    );
+                }
+            }
+            break;
+        }
+        case SLOW_QUERIES: {
+            String userName = session.getUser().getName();
+            for (SlowQueryLog.QueryEntry entry : database.getSlowQueryLog().getEntries()) {
+                if (!admin && !userName.equals(entry.userName)) {
+                    continue;
+                }
+                String start = new Timestamp(entry.startTime).toString();
+                if (entry.shards.isEmpty()) {
+                    add(rows, "" + entry.id, "" + entry.sessionId, entry.userName, start,
+                            "" + entry.executionTime, entry.sqlStatement, null, null, null, null);
+                }
+                for (SlowQueryLog.ShardEntry shard : entry.shards) {
+                    add(rows,
+                            // ID
+                            "" + entry.id,
+                            // SESSION_ID
+                            "" + entry.sessionId,
+                            // USER_NAME
+                            entry.userName,
+                            // START_TIME
+                            start,
+                            // EXECUTION_TIME
+                            "" + entry.executionTime,
+                            // SQL_STATEMENT
+                            entry.sqlStatement,
+                            // SHARD_NAME
+                            shard.shardName,
+                            // SHARD_SQL_STATEMENT
+                            shard.sqlStatement,
+                            // SHARD_ROW_COUNT
+                            "" + shard.rowCount,
+                            // SHARD_EXECUTION_TIME
+                            "" + shard.executionTime
                     );
                 }
             }
@@ -16,6 +16,7 @@
 package com.openddal.dbobject.table;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 
 import com.openddal.command.dml.Select;
@@ -96,6 +97,11 @@ public class TableFilter implements ColumnResolver {
     private boolean foundOne;
     private Expression fullCondition;
     private Column[] searchColumns;
+    /**
+     * The position of each table column in the rows read from the shards, or
+     * null if all the columns are read in table order.
+     */
+    private int[] searchColumnIndex;
 
     /**
      * Create a new table filter object.
@@ -112,7 +118,9 @@ public class TableFilter implements ColumnResolver {
         this.table = table;
         this.alias = alias;
         this.select = select;
-        this.cursor = new SearchCursor(this);
+        // the filters of UPDATE and DELETE statements are only used to route
+        // the statement, their rows are not read
+        this.cursor = select == null ? null : new SearchCursor(this);
         hashCode = session.nextObjectId();
     }
 
@@ -244,15 +252,27 @@ public class TableFilter implements ColumnResolver {
             }
         }
         */
-        HashSet<Column> columns = New.hashSet();
-        select.isEverything(ExpressionVisitor.getColumnsVisitor(columns));
         ArrayList<Column> selected = New.arrayList(10);
-        for (Column column : columns) {
-            if(table == column.getTable()) {
-                selected.add(column);
+        if (select != null) {
+            HashSet<Column> columns = New.hashSet();
+            select.isEverything(ExpressionVisitor.getColumnsVisitor(columns));
+            for (Column column : columns) {
+                if(table == column.getTable()) {
+                    selected.add(column);
+                }
             }
         }
         searchColumns = selected.toArray(new Column[selected.size()]);
+        searchColumnIndex = null;
+        // only the shards return the search columns, the other tables
+        // return all the columns in table order
+        if (searchColumns.length > 0 && table instanceof TableMate) {
+            searchColumnIndex = new int[table.getColumns().length];
+            Arrays.fill(searchColumnIndex, -1);
+            for (int i = 0; i < searchColumns.length; i++) {
+                searchColumnIndex[searchColumns[i].getColumnId()] = i;
+            }
+        }
         
         if (nestedJoin != null) {
             if (SysProperties.CHECK && nestedJoin == this) {
@@ -757,6 +777,12 @@ public class TableFilter implements ColumnResolver {
         if (columnId == -1) {
             return ValueLong.get(currentSearchRow.getKey());
         }
+        if (searchColumnIndex != null) {
+            columnId = searchColumnIndex[columnId];
+            if (columnId == -1) {
+                return ValueNull.INSTANCE;
+            }
+        }
         if (current == null) {
             Value v = currentSearchRow.getValue(columnId);
             if (v != null) {
@@ -23,11 +23,14 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import com.openddal.config.Configuration;
 import com.openddal.config.SequenceRule;
+import com.openddal.config.ShardedTableRule;
 import com.openddal.config.TableRule;
 import com.openddal.dbobject.DbObject;
 import com.openddal.dbobject.User;
@@ -46,6 +49,8 @@ import com.openddal.message.Trace;
 import com.openddal.message.TraceSystem;
 import com.openddal.route.RoutingHandler;
 import com.openddal.route.RoutingHandlerImpl;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.algorithm.Partitioner;
 import com.openddal.util.BitField;
 import com.openddal.util.ExtendableThreadPoolExecutor;
 import com.openddal.util.ExtendableThreadPoolExecutor.TaskQueue;
@@ -82,9 +87,13 @@ public class Database {
     private int maxOperationMemory = Constants.DEFAULT_MAX_OPERATION_MEMORY;
     private boolean queryStatistics;
     private int queryStatisticsMaxEntries = Constants.QUERY_STATISTICS_MAX_ENTRIES;
-    private QueryStatisticsData queryStatisticsData;
+    private volatile QueryStatisticsData queryStatisticsData;
+    private final SlowQueryLog slowQueryLog;
+    private final StageStatistics stageStatistics;
+    private final NodeStatistics nodeStatistics;
     private RoutingHandler routingHandler;
     private final ThreadPoolExecutor queryExecutor;
+    private final ExecutorService cancelExecutor;
     private final Repository repository;
     private final ExecutorFactory executorFactory;
     private final Configuration configuration;
@@ -97,8 +106,12 @@ public class Database {
         this.mode = Mode.getInstance(dbSettings.sqlMode);
         this.traceSystem = new TraceSystem();
         this.trace = traceSystem.getTrace(Trace.DATABASE);
+        this.slowQueryLog = new SlowQueryLog(this);
+        this.stageStatistics = new StageStatistics(dbSettings.stageStatistics);
+        this.nodeStatistics = new NodeStatistics(dbSettings.nodeStatistics);
 
         this.queryExecutor = createQueryExecutor();
+        this.cancelExecutor = Executors.newCachedThreadPool(Threads.newThreadFactory("ddal-cancel-executor"));
         this.repository = bindRepository();
         this.executorFactory = new ExecutorFactoryImpl();
         openDatabase();
@@ -147,6 +160,12 @@ public class Database {
         Session sysSession = createSession(systemUser);
         try {
             for (TableRule tableRule : configuration.tableRules) {
+                if (!nodeStatistics.isEnabled() && tableRule instanceof ShardedTableRule) {
+                    Partitioner partitioner = ((ShardedTableRule) tableRule).getPartitioner();
+                    if (partitioner instanceof HashBucketPartitioner) {
+                        ((HashBucketPartitioner) partitioner).setBucketStatistics(false);
+                    }
+                }
                 String identifier = identifier(tableRule.getName());
                 TableMate tableMate = new TableMate(mainSchema, identifier, tableRule);
                 tableMate.loadMataData(sysSession);
@@ -375,6 +394,7 @@ public class Database {
         if (queryExecutor != null) {
             Threads.shutdownGracefully(queryExecutor, 1000, 1000, TimeUnit.MILLISECONDS);
         }
+        cancelExecutor.shutdownNow();
         closing = true;
     }
 
@@ -657,6 +677,18 @@ public class Database {
         return queryStatisticsData;
     }
 
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public StageStatistics getStageStatistics() {
+        return stageStatistics;
+    }
+
+    public NodeStatistics getNodeStatistics() {
+        return nodeStatistics;
+    }
+
     /**
      * Create a new hash map. Depending on the configuration, the key is case
      * sensitive or case insensitive.
@@ -716,6 +748,17 @@ public class Database {
         return queryExecutor;
     }
 
+    /**
+     * Get the executor that cancels the shard statements. It is separate
+     * from the query executor, whose threads may all be blocked by the
+     * statements to cancel.
+     *
+     * @return the executor
+     */
+    public ExecutorService getCancelExecutor() {
+        return cancelExecutor;
+    }
+
     public ExecutorFactory getExecutorFactory() {
         return executorFactory;
     }
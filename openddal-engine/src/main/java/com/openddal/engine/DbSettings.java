@@ -214,7 +214,48 @@ public class DbSettings extends SettingsBase {
      * Use union select for query multi-table in same shard.
      */
     public final boolean optimizeMerging = get("OPTIMIZE_MERGING", true);
-    
+    /**
+     * Database setting <code>OPTIMIZE_IN_LIST_PRUNING</code> (default: true).<br />
+     * Only send the IN(...) values that route to a shard when the IN list is
+     * on the rule column of a sharded table.
+     */
+    public final boolean optimizeInListPruning = get("OPTIMIZE_IN_LIST_PRUNING", true);
+    /**
+     * Database setting <code>LAZY_QUERY_EXECUTION</code> (default: true).<br />
+     * Read the rows of forward only results from the shards while the result
+     * is iterated, for single table queries without sorting, DISTINCT,
+     * grouping and OFFSET. Otherwise all the rows are collected first.
+     */
+    public final boolean lazyQueryExecution = get("LAZY_QUERY_EXECUTION", true);
+    /**
+     * Database setting <code>SLOW_QUERY_LIMIT</code> (default: 1000).<br />
+     * The execution time in milliseconds from which a statement is kept in
+     * the slow query log, with the time of each of its shard executions. A
+     * negative value disables the slow query log.
+     */
+    public final int slowQueryLimit = get("SLOW_QUERY_LIMIT", 1000);
+    /**
+     * Database setting <code>SLOW_QUERY_LOG_SIZE</code> (default: 100).<br />
+     * The number of the most recent slow statements kept in memory and listed
+     * in INFORMATION_SCHEMA.SLOW_QUERIES.
+     */
+    public final int slowQueryLogSize = get("SLOW_QUERY_LOG_SIZE", 100);
+    /**
+     * Database setting <code>STAGE_STATISTICS</code> (default: true).<br />
+     * Record the time of the parse, optimize, route, translate, shard
+     * execute, local execute and encode stages of the statements in latency
+     * histograms, listed in INFORMATION_SCHEMA.STAGE_STATISTICS.
+     */
+    public final boolean stageStatistics = get("STAGE_STATISTICS", true);
+    /**
+     * Database setting <code>NODE_STATISTICS</code> (default: true).<br />
+     * Count the statements, rows, bytes, errors and the execution time of
+     * each table node, listed in INFORMATION_SCHEMA.TABLE_NODE_STATISTICS,
+     * and the values routed to each hash bucket, listed in
+     * INFORMATION_SCHEMA.HASH_BUCKET_STATISTICS.
+     */
+    public final boolean nodeStatistics = get("NODE_STATISTICS", true);
+
 
 
     private DbSettings(HashMap<String, String> s) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.engine;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * The events of the hot paths for a flight recorder. The engine runs on Java
+ * 6, the JDK Flight Recorder events are implemented by the openddal-jfr
+ * module, which is built with Java 11 and found with the ServiceLoader.
+ * <p>
+ * The recorder is loaded only if the system property ddal.flightRecorder is
+ * true. The callers check {@link #ENABLED} before creating an event, which
+ * is a constant, so a disabled recorder costs nothing once compiled.
+ * <p>
+ * The begin methods return an event that is passed to the matching end
+ * method, or null if the event is not recorded.
+ */
+public abstract class FlightRecorder {
+
+    private static final FlightRecorder INSTANCE = SysProperties.FLIGHT_RECORDER ? load() : null;
+
+    /**
+     * If a flight recorder is loaded.
+     */
+    public static final boolean ENABLED = INSTANCE != null;
+
+    private static FlightRecorder load() {
+        try {
+            Iterator<FlightRecorder> it = ServiceLoader.load(FlightRecorder.class,
+                    FlightRecorder.class.getClassLoader()).iterator();
+            return it.hasNext() ? it.next() : null;
+        } catch (Throwable e) {
+            // the implementation needs a newer JVM
+            return null;
+        }
+    }
+
+    /**
+     * @return the flight recorder, null if not {@link #ENABLED}
+     */
+    public static FlightRecorder get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Begin the execution of a statement.
+     *
+     * @return the event
+     */
+    public abstract Object beginStatement();
+
+    /**
+     * End the execution of a statement.
+     *
+     * @param event the event
+     * @param sessionId the session id
+     * @param sql the statement
+     */
+    public abstract void endStatement(Object event, int sessionId, String sql);
+
+    /**
+     * Begin the execution of a statement on a shard.
+     *
+     * @return the event
+     */
+    public abstract Object beginShardExecution();
+
+    /**
+     * End the execution of a statement on a shard.
+     *
+     * @param event the event
+     * @param shardName the shard
+     * @param sql the statement sent to the shard
+     * @param rowCount the rows read or updated
+     * @param failed if the execution failed
+     */
+    public abstract void endShardExecution(Object event, String shardName, String sql, long rowCount,
+            boolean failed);
+
+    /**
+     * Begin getting a connection of a shard.
+     *
+     * @return the event
+     */
+    public abstract Object beginConnection();
+
+    /**
+     * End getting a connection of a shard.
+     *
+     * @param event the event
+     * @param shardName the shard
+     * @param readOnly if a read-only connection was requested
+     */
+    public abstract void endConnection(Object event, String shardName, boolean readOnly);
+
+    /**
+     * Begin the routing of a table access.
+     *
+     * @return the event
+     */
+    public abstract Object beginRouting();
+
+    /**
+     * End the routing of a table access.
+     *
+     * @param event the event
+     * @param tableName the table
+     * @param nodeCount the number of table nodes selected
+     */
+    public abstract void endRouting(Object event, String tableName, int nodeCount);
+
+    /**
+     * Begin the sort of a result.
+     *
+     * @return the event
+     */
+    public abstract Object beginSort();
+
+    /**
+     * End the sort of a result.
+     *
+     * @param event the event
+     * @param rowCount the number of rows
+     */
+    public abstract void endSort(Object event, int rowCount);
+
+    /**
+     * Begin the processing of a client request.
+     *
+     * @return the event
+     */
+    public abstract Object beginRequest();
+
+    /**
+     * End the processing of a client request.
+     *
+     * @param event the event
+     * @param protocol the protocol
+     * @param connectionId the connection id
+     * @param sql the statement, or null
+     * @param errorCode the error code, 0 if successful
+     */
+    public abstract void endRequest(Object event, String protocol, long connectionId, String sql, int errorCode);
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.LatencyHistogram;
+
+/**
+ * The traffic of the table nodes: the statements, rows, bytes, errors and
+ * the execution time of the shard executions, recorded without locks. They
+ * are listed in INFORMATION_SCHEMA.TABLE_NODE_STATISTICS, with the skew of
+ * each node against the other nodes of its table, to find the hot nodes. The
+ * execution times are in microseconds, the bytes are estimated from the
+ * memory size of the values.
+ */
+public class NodeStatistics {
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<ObjectNode, NodeEntry> map =
+            new ConcurrentHashMap<ObjectNode, NodeEntry>();
+
+    public NodeStatistics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the statistics of a table node.
+     *
+     * @param node the table node
+     * @return the entry, or null if nothing was recorded
+     */
+    public NodeEntry get(ObjectNode node) {
+        return map.get(node);
+    }
+
+    /**
+     * Record a statement executed on a table node.
+     *
+     * @param node the table node
+     * @param nanos the execution time in nanoseconds
+     * @param rowsRead the number of rows read
+     * @param rowsWritten the number of rows inserted, updated or deleted
+     * @param bytesRead the estimated size of the rows read
+     * @param bytesWritten the estimated size of the parameters sent
+     * @param error if the execution failed
+     */
+    public void record(ObjectNode node, long nanos, long rowsRead, long rowsWritten,
+            long bytesRead, long bytesWritten, boolean error) {
+        if (!enabled || node == null) {
+            return;
+        }
+        NodeEntry entry = map.get(node);
+        if (entry == null) {
+            entry = new NodeEntry();
+            NodeEntry old = map.putIfAbsent(node, entry);
+            if (old != null) {
+                entry = old;
+            }
+        }
+        if (error) {
+            entry.errors.incrementAndGet();
+        }
+        entry.rowsRead.addAndGet(rowsRead);
+        entry.rowsWritten.addAndGet(rowsWritten);
+        entry.bytesRead.addAndGet(bytesRead);
+        entry.bytesWritten.addAndGet(bytesWritten);
+        entry.executionTime.record(nanos / 1000);
+    }
+
+    /**
+     * The traffic of one table node. The execution times are in
+     * microseconds.
+     */
+    public static final class NodeEntry {
+
+        private final LatencyHistogram executionTime = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+
+        /**
+         * @return the number of statements
+         */
+        public long getStatementCount() {
+            return executionTime.getCount();
+        }
+
+        /**
+         * @return the number of failed statements
+         */
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        /**
+         * @return the number of rows read
+         */
+        public long getRowsRead() {
+            return rowsRead.get();
+        }
+
+        /**
+         * @return the number of rows inserted, updated or deleted
+         */
+        public long getRowsWritten() {
+            return rowsWritten.get();
+        }
+
+        /**
+         * @return the estimated size of the rows read
+         */
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        /**
+         * @return the estimated size of the parameters sent
+         */
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        /**
+         * @return the histogram of the execution times in microseconds
+         */
+        public LatencyHistogram getExecutionTime() {
+            return executionTime;
+        }
+    }
+
+}
@@ -8,14 +8,19 @@ package com.openddal.engine;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.util.LatencyHistogram;
 
 /**
- * Maintains query statistics.
+ * Maintains query statistics. The statements are grouped by their digest,
+ * the SQL text with the literals replaced by a parameter, so the executions
+ * of the same statement with different values share one entry. The entries
+ * are updated without locks, the sessions never wait for each other to
+ * record a statement.
  */
 public class QueryStatisticsData {
 
@@ -23,29 +28,34 @@ public class QueryStatisticsData {
             new Comparator<QueryEntry>() {
         @Override
         public int compare(QueryEntry o1, QueryEntry o2) {
-            return (int) Math.signum(o1.lastUpdateTime - o2.lastUpdateTime);
+            // the newest first
+            return (int) Math.signum(o2.lastUpdateTime - o1.lastUpdateTime);
         }
     };
 
-    private final HashMap<String, QueryEntry> map =
-            new HashMap<String, QueryEntry>();
+    private final ConcurrentHashMap<String, QueryEntry> map =
+            new ConcurrentHashMap<String, QueryEntry>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
 
-    private int maxQueryEntries;
+    private volatile int maxQueryEntries;
 
     public QueryStatisticsData(int maxQueryEntries) {
         this.maxQueryEntries = maxQueryEntries;
     }
 
-    public synchronized void setMaxQueryEntries(int maxQueryEntries) {
+    public void setMaxQueryEntries(int maxQueryEntries) {
         this.maxQueryEntries = maxQueryEntries;
     }
 
-    public synchronized List<QueryEntry> getQueries() {
-        // return a copy of the map so we don't have to
-        // worry about external synchronization
-        ArrayList<QueryEntry> list = new ArrayList<QueryEntry>();
-        list.addAll(map.values());
-        // only return the newest 100 entries
+    /**
+     * Get the newest entries, at most as many as the maximum number of
+     * entries.
+     *
+     * @return the entries, the most recently updated first
+     */
+    public List<QueryEntry> getQueries() {
+        ArrayList<QueryEntry> list = new ArrayList<QueryEntry>(map.values());
         Collections.sort(list, QUERY_ENTRY_COMPARATOR);
         return list.subList(0, Math.min(list.size(), maxQueryEntries));
     }
@@ -53,146 +63,344 @@ public class QueryStatisticsData {
     /**
      * Update query statistics.
      *
+     * @param sqlDigest the digest of the statement, see
+     *            {@link #getDigest(String)}
      * @param sqlStatement the statement being executed
-     * @param executionTime the time in milliseconds the query/update took to
+     * @param executionTime the time in nanoseconds the query/update took to
      *            execute
      * @param rowCount the query or update row count
+     * @param shardCount the number of shard executions of the statement
      */
-    public synchronized void update(String sqlStatement, long executionTime,
-            int rowCount) {
-        QueryEntry entry = map.get(sqlStatement);
+    public void update(String sqlDigest, String sqlStatement, long executionTime,
+            int rowCount, int shardCount) {
+        QueryEntry entry = map.get(sqlDigest);
         if (entry == null) {
-            entry = new QueryEntry();
-            entry.sqlStatement = sqlStatement;
-            map.put(sqlStatement, entry);
+            entry = new QueryEntry(sqlDigest);
+            QueryEntry old = map.putIfAbsent(sqlDigest, entry);
+            if (old != null) {
+                entry = old;
+            }
         }
-        entry.update(executionTime, rowCount);
+        entry.update(sqlStatement, executionTime / 1000, rowCount, shardCount);
 
         // Age-out the oldest entries if the map gets too big.
-        // Test against 1.5 x max-size so we don't do this too often
-        if (map.size() > maxQueryEntries * 1.5f) {
-            // Sort the entries by age
-            ArrayList<QueryEntry> list = new ArrayList<QueryEntry>();
-            list.addAll(map.values());
-            Collections.sort(list, QUERY_ENTRY_COMPARATOR);
-            // Create a set of the oldest 1/3 of the entries
-            HashSet<QueryEntry> oldestSet =
-                    new HashSet<QueryEntry>(list.subList(0, list.size() / 3));
-            // Loop over the map using the set and remove
-            // the oldest 1/3 of the entries.
-            for (Iterator<Entry<String, QueryEntry>> it =
-                    map.entrySet().iterator(); it.hasNext();) {
-                Entry<String, QueryEntry> mapEntry = it.next();
-                if (oldestSet.contains(mapEntry.getValue())) {
-                    it.remove();
+        // Test against 1.5 x max-size so we don't do this too often,
+        // only one thread evicts while the others go on.
+        if (map.size() > maxQueryEntries * 1.5f && evicting.compareAndSet(false, true)) {
+            try {
+                ArrayList<QueryEntry> list = new ArrayList<QueryEntry>(map.values());
+                Collections.sort(list, QUERY_ENTRY_COMPARATOR);
+                // remove the oldest 1/3 of the entries
+                int keep = list.size() - list.size() / 3;
+                for (QueryEntry e : list.subList(keep, list.size())) {
+                    map.remove(e.sqlDigest, e);
                 }
+            } finally {
+                evicting.set(false);
             }
         }
     }
 
     /**
-     * The collected statistics for one query.
+     * Get the digest of a statement: the literals are replaced by '?', the
+     * lists of parameters are collapsed to one, the comments are removed, the
+     * white space is collapsed and the unquoted text is converted to upper
+     * case.
+     *
+     * @param sql the SQL statement
+     * @return the digest
+     */
+    public static String getDigest(String sql) {
+        int len = sql.length();
+        StringBuilder buff = new StringBuilder(len);
+        boolean space = false;
+        for (int i = 0; i < len;) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                while (i < len && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 2;
+                space = true;
+                continue;
+            }
+            if (space && buff.length() > 0) {
+                buff.append(' ');
+            }
+            space = false;
+            if (c == '\'') {
+                // N'..' and X'..' literals
+                int last = buff.length() - 1;
+                if (last >= 0 && "NX".indexOf(buff.charAt(last)) >= 0
+                        && (last == 0 || !isIdentifierPart(buff.charAt(last - 1)))) {
+                    buff.setLength(last);
+                }
+                for (i++; i < len; i++) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                i++;
+                appendParameter(buff);
+            } else if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? len : end + 1;
+                buff.append(sql, i, end);
+                i = end;
+            } else if (c == '?') {
+                i++;
+                appendParameter(buff);
+            } else if (Character.isDigit(c) && (buff.length() == 0
+                    || !isIdentifierPart(buff.charAt(buff.length() - 1)))) {
+                for (i++; i < len; i++) {
+                    char d = sql.charAt(i);
+                    if ((d == '+' || d == '-') && "Ee".indexOf(sql.charAt(i - 1)) >= 0) {
+                        continue;
+                    }
+                    if (d != '.' && !isIdentifierPart(d)) {
+                        break;
+                    }
+                }
+                appendParameter(buff);
+            } else {
+                buff.append(Character.toUpperCase(c));
+                i++;
+            }
+        }
+        return buff.toString();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static void appendParameter(StringBuilder buff) {
+        // collapse "?, ?" to "?"
+        int len = buff.length();
+        if (len >= 2 && buff.charAt(len - 1) == ',' && buff.charAt(len - 2) == '?') {
+            buff.setLength(len - 1);
+        } else if (len >= 3 && buff.charAt(len - 1) == ' ' && buff.charAt(len - 2) == ','
+                && buff.charAt(len - 3) == '?') {
+            buff.setLength(len - 2);
+        } else {
+            buff.append('?');
+        }
+    }
+
+    private static void updateMin(AtomicLong min, long value) {
+        long m = min.get();
+        while (value < m && !min.compareAndSet(m, value)) {
+            m = min.get();
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    private static void addDouble(AtomicLong sum, double value) {
+        while (true) {
+            long bits = sum.get();
+            double d = Double.longBitsToDouble(bits) + value;
+            if (sum.compareAndSet(bits, Double.doubleToLongBits(d))) {
+                return;
+            }
+        }
+    }
+
+    private static double getStandardDeviation(double sumOfSquares, double mean, long count) {
+        if (count == 0) {
+            return 0;
+        }
+        // population standard deviation
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+
+    /**
+     * The collected statistics for one statement digest. The execution
+     * times are kept in microseconds, but reported in milliseconds.
      */
     public static final class QueryEntry {
 
+        private final String sqlDigest;
+        private final LatencyHistogram executionTime = new LatencyHistogram();
+        private final AtomicLong executionTimeMin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong executionTimeSquares = new AtomicLong();
+        private final AtomicLong rowCountMin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong rowCountMax = new AtomicLong();
+        private final AtomicLong rowCountCumulative = new AtomicLong();
+        private final AtomicLong rowCountSquares = new AtomicLong();
+        private final AtomicLong shardCountMax = new AtomicLong();
+        private final AtomicLong shardCountCumulative = new AtomicLong();
+        private volatile String sqlStatement;
+        private volatile long lastUpdateTime;
+
+        QueryEntry(String sqlDigest) {
+            this.sqlDigest = sqlDigest;
+        }
+
         /**
-         * The SQL statement.
+         * Update the statistics entry.
+         *
+         * @param sql the statement
+         * @param time the execution time in microseconds
+         * @param rows the number of rows
+         * @param shards the number of shard executions
          */
-        public String sqlStatement;
+        void update(String sql, long time, int rows, int shards) {
+            sqlStatement = sql;
+            updateMin(executionTimeMin, time);
+            addDouble(executionTimeSquares, (double) time * time);
+            updateMin(rowCountMin, rows);
+            updateMax(rowCountMax, rows);
+            rowCountCumulative.addAndGet(rows);
+            addDouble(rowCountSquares, (double) rows * rows);
+            updateMax(shardCountMax, shards);
+            shardCountCumulative.addAndGet(shards);
+            lastUpdateTime = System.currentTimeMillis();
+            // the count is read as the last value by the getters
+            executionTime.record(time);
+        }
 
         /**
-         * The number of times the statement was executed.
+         * @return the digest of the statement
          */
-        public int count;
+        public String getSqlDigest() {
+            return sqlDigest;
+        }
 
         /**
-         * The last time the statistics for this entry were updated,
-         * in milliseconds since 1970.
+         * @return the last executed statement of this digest
          */
-        public long lastUpdateTime;
+        public String getSqlStatement() {
+            return sqlStatement;
+        }
 
         /**
-         * The minimum execution time, in milliseconds.
+         * @return the number of times the statement was executed
          */
-        public long executionTimeMin;
+        public long getCount() {
+            return executionTime.getCount();
+        }
 
         /**
-         * The maximum execution time, in milliseconds.
+         * @return the last time the statistics for this entry were updated,
+         *         in milliseconds since 1970
          */
-        public long executionTimeMax;
+        public long getLastUpdateTime() {
+            return lastUpdateTime;
+        }
 
         /**
-         * The total execution time.
+         * @return the minimum execution time, in milliseconds
          */
-        public long executionTimeCumulative;
+        public double getExecutionTimeMin() {
+            long min = executionTimeMin.get();
+            return min == Long.MAX_VALUE ? 0 : min / 1000d;
+        }
 
         /**
-         * The minimum number of rows.
+         * @return the maximum execution time, in milliseconds
          */
-        public int rowCountMin;
+        public double getExecutionTimeMax() {
+            return executionTime.getMax() / 1000d;
+        }
 
         /**
-         * The maximum number of rows.
+         * @return the total execution time, in milliseconds
          */
-        public int rowCountMax;
+        public double getExecutionTimeCumulative() {
+            return executionTime.getTotal() / 1000d;
+        }
 
         /**
-         * The total number of rows.
+         * @return the mean execution time, in milliseconds
          */
-        public long rowCountCumulative;
+        public double getExecutionTimeMean() {
+            return executionTime.getMean() / 1000;
+        }
+
+        public double getExecutionTimeStandardDeviation() {
+            return getStandardDeviation(Double.longBitsToDouble(executionTimeSquares.get()),
+                    executionTime.getMean(), executionTime.getCount()) / 1000;
+        }
 
         /**
-         * The mean execution time.
+         * Get the execution time below which the given percentage of the
+         * executions fall.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the execution time, in milliseconds
          */
-        public double executionTimeMean;
+        public double getExecutionTimePercentile(double percentile) {
+            return executionTime.getValueAtPercentile(percentile) / 1000d;
+        }
 
         /**
-         * The mean number of rows.
+         * @return the minimum number of rows
          */
-        public double rowCountMean;
-
-        // Using Welford's method, see also
-        // http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
-        // http://www.johndcook.com/standard_deviation.html
-
-        private double executionTimeM2;
-        private double rowCountM2;
+        public long getRowCountMin() {
+            long min = rowCountMin.get();
+            return min == Long.MAX_VALUE ? 0 : min;
+        }
 
         /**
-         * Update the statistics entry.
-         *
-         * @param time the execution time
-         * @param rows the number of rows
+         * @return the maximum number of rows
          */
-        void update(long time, int rows) {
-            count++;
-            executionTimeMin = Math.min(time, executionTimeMin);
-            executionTimeMax = Math.max(time, executionTimeMax);
-            rowCountMin = Math.min(rows, rowCountMin);
-            rowCountMax = Math.max(rows, rowCountMax);
-
-            double delta = rows - rowCountMean;
-            rowCountMean += delta / count;
-            rowCountM2 += delta * (rows - rowCountMean);
+        public long getRowCountMax() {
+            return rowCountMax.get();
+        }
 
-            delta = time - executionTimeMean;
-            executionTimeMean += delta / count;
-            executionTimeM2 += delta * (time - executionTimeMean);
+        /**
+         * @return the total number of rows
+         */
+        public long getRowCountCumulative() {
+            return rowCountCumulative.get();
+        }
 
-            executionTimeCumulative += time;
-            rowCountCumulative += rows;
-            lastUpdateTime = System.currentTimeMillis();
+        /**
+         * @return the mean number of rows
+         */
+        public double getRowCountMean() {
+            long count = executionTime.getCount();
+            return count == 0 ? 0 : (double) rowCountCumulative.get() / count;
+        }
 
+        public double getRowCountStandardDeviation() {
+            return getStandardDeviation(Double.longBitsToDouble(rowCountSquares.get()),
+                    getRowCountMean(), executionTime.getCount());
         }
 
-        public double getExecutionTimeStandardDeviation() {
-            // population standard deviation
-            return Math.sqrt(executionTimeM2 / count);
+        /**
+         * @return the maximum number of shard executions of the statement
+         */
+        public long getShardCountMax() {
+            return shardCountMax.get();
         }
 
-        public double getRowCountStandardDeviation() {
-            // population standard deviation
-            return Math.sqrt(rowCountM2 / count);
+        /**
+         * @return the mean number of shard executions of the statement
+         */
+        public double getShardCountMean() {
+            long count = executionTime.getCount();
+            return count == 0 ? 0 : (double) shardCountCumulative.get() / count;
         }
 
     }
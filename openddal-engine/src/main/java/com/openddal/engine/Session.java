@@ -17,8 +17,10 @@ package com.openddal.engine;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 
 import com.openddal.command.Command;
@@ -26,17 +28,20 @@ import com.openddal.command.CommandInterface;
 import com.openddal.command.Parser;
 import com.openddal.command.Prepared;
 import com.openddal.dbobject.User;
+import com.openddal.engine.SlowQueryLog.ShardEntry;
 import com.openddal.dbobject.index.Index;
 import com.openddal.dbobject.schema.Schema;
 import com.openddal.dbobject.table.Table;
 import com.openddal.engine.spi.Transaction;
 import com.openddal.excutor.ExecutorFactory;
+import com.openddal.excutor.works.Worker;
 import com.openddal.excutor.works.WorkerFactory;
 import com.openddal.excutor.works.WorkerFactoryProxy;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.Trace;
 import com.openddal.message.TraceSystem;
+import com.openddal.result.LazyResult;
 import com.openddal.result.LocalResult;
 import com.openddal.util.New;
 import com.openddal.util.SmallLRUCache;
@@ -73,7 +78,11 @@ public class Session implements SessionInterface {
     private HashMap<String, Table> localTempTables;
     private HashMap<String, Index> localTempTableIndexes;
 
-    private Command currentCommand;
+    private volatile Command currentCommand;
+    /**
+     * Guards the current command against a cancel from another thread.
+     */
+    private final Object currentCommandSync = new Object();
     private boolean allowLiterals;
     private String currentSchemaName;
     private String[] schemaSearchPath;
@@ -85,6 +94,7 @@ public class Session implements SessionInterface {
     private long currentCommandStart;
     private HashMap<String, Value> variables;
     private HashSet<LocalResult> temporaryResults;
+    private HashSet<LazyResult> lazyResults;
     private int queryTimeout;
     private int objectId;
     private SmallLRUCache<String, Command> queryCache;
@@ -93,6 +103,12 @@ public class Session implements SessionInterface {
     private int transactionIsolation;
     private final Transaction transaction;
     private final WorkerFactoryProxy workerHolder;
+    /**
+     * The shard executions of the current statement, added by the worker
+     * threads without the session lock.
+     */
+    private long shardWaitTime;
+    private final List<ShardEntry> shardExecutions = Collections.synchronizedList(new ArrayList<ShardEntry>());
 
     public Session(Database database, User user, int id) {
         this.id = id;
@@ -263,7 +279,9 @@ public class Session implements SessionInterface {
 
     @Override
     public synchronized CommandInterface prepareCommand(String sql, int fetchSize) {
-        return prepareLocal(sql);
+        Command command = prepareLocal(sql);
+        command.setFetchSize(fetchSize);
+        return command;
     }
 
     /**
@@ -344,6 +362,7 @@ public class Session implements SessionInterface {
      */
     public void commit() {
         try {
+            materializeLazyResults();
             transaction.commit();
         } finally {
             endTransaction();
@@ -355,6 +374,7 @@ public class Session implements SessionInterface {
      */
     public void rollback() {
         try {
+            materializeLazyResults();
             transaction.rollback();
         } finally {
             endTransaction();
@@ -396,6 +416,7 @@ public class Session implements SessionInterface {
                 if (!getAutoCommit()) {
                     rollback();
                 }
+                workerHolder.closeAllWorkers();
                 transaction.close();
                 database.removeSession(this);
             } finally {
@@ -502,6 +523,46 @@ public class Session implements SessionInterface {
         workerHolder.cancelWorkers();
     }
 
+    /**
+     * Cancel the running statement of this session from another thread. The
+     * statements open on the shards are canceled in parallel, the statement
+     * then fails with STATEMENT_WAS_CANCELED. The statement can not end
+     * meanwhile, a cancel never applies to the next statement of the session.
+     *
+     * @return false if no statement is running
+     */
+    public boolean cancelCurrentCommand() {
+        synchronized (currentCommandSync) {
+            Command command = currentCommand;
+            if (command == null) {
+                return false;
+            }
+            cancel();
+            // the command is not flagged, it may be run again from the cache
+            doCancel();
+            return true;
+        }
+    }
+
+    /**
+     * Get the shards of the workers held by the running statement and the
+     * lazy results.
+     *
+     * @return the shard names
+     */
+    public List<String> getShardsInFlight() {
+        return workerHolder.getShardNames();
+    }
+
+    /**
+     * Get the number of shard workers created by this session.
+     *
+     * @return the number of workers
+     */
+    public long getShardWorkerCount() {
+        return workerHolder.getCreatedWorkerCount();
+    }
+
     /**
      * Get the cancel time.
      *
@@ -522,11 +583,15 @@ public class Session implements SessionInterface {
      * @param command the command
      */
     public void setCurrentCommand(Command command) {
-        this.currentCommand = command;
-        if (queryTimeout > 0 && command != null) {
-            long now = System.currentTimeMillis();
-            currentCommandStart = now;
-            cancelAt = now + queryTimeout;
+        synchronized (currentCommandSync) {
+            this.currentCommand = command;
+            if (command != null) {
+                long now = System.currentTimeMillis();
+                currentCommandStart = now;
+                // a cancel that came after the last check of the previous
+                // statement is dropped
+                cancelAt = queryTimeout > 0 ? now + queryTimeout : 0;
+            }
         }
     }
 
@@ -621,6 +686,41 @@ public class Session implements SessionInterface {
         }
     }
 
+    /**
+     * Remember a lazy result that reads from the shards. The rest of its rows
+     * is read before the transaction ends and closes the shard connections.
+     *
+     * @param result the lazy result
+     */
+    public void addLazyResult(LazyResult result) {
+        if (lazyResults == null) {
+            lazyResults = New.hashSet();
+        }
+        lazyResults.add(result);
+    }
+
+    /**
+     * Forget a lazy result that is closed or does not read from the shards any
+     * more.
+     *
+     * @param result the lazy result
+     */
+    public void removeLazyResult(LazyResult result) {
+        if (lazyResults != null) {
+            lazyResults.remove(result);
+        }
+    }
+
+    private void materializeLazyResults() {
+        if (lazyResults != null && !lazyResults.isEmpty()) {
+            ArrayList<LazyResult> list = New.arrayList(lazyResults);
+            lazyResults = null;
+            for (LazyResult result : list) {
+                result.materialize();
+            }
+        }
+    }
+
     private void closeTemporaryResults() {
         if (temporaryResults != null) {
             for (LocalResult result : temporaryResults) {
@@ -668,6 +768,51 @@ public class Session implements SessionInterface {
         return objectId++;
     }
 
+    /**
+     * Add the time the statement waited for the shard workers.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void addShardWaitTime(long nanos) {
+        shardWaitTime += nanos;
+    }
+
+    /**
+     * Get the total time the statements of this session waited for the shard
+     * workers.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getShardWaitTime() {
+        return shardWaitTime;
+    }
+
+    /**
+     * Record the execution of a statement on a shard, for the slow query log.
+     * This method may be called by a worker thread.
+     *
+     * @param entry the shard execution
+     */
+    public void addShardExecution(ShardEntry entry) {
+        shardExecutions.add(entry);
+    }
+
+    /**
+     * Get and clear the shard executions recorded since the last call.
+     *
+     * @return the shard executions
+     */
+    public List<ShardEntry> takeShardExecutions() {
+        synchronized (shardExecutions) {
+            if (shardExecutions.isEmpty()) {
+                return Collections.emptyList();
+            }
+            ArrayList<ShardEntry> list = New.arrayList(shardExecutions);
+            shardExecutions.clear();
+            return list;
+        }
+    }
+
     /**
      * Mark the statement as completed. This also close all temporary result
      * set, and deletes all temporary files held by the result sets.
@@ -731,6 +876,25 @@ public class Session implements SessionInterface {
         return workerHolder;
     }
 
+    /**
+     * Keep the workers of the current statement open after the statement
+     * ends, the caller closes them with {@link #closeWorkers(List)}.
+     *
+     * @return the workers
+     */
+    public List<Worker> detachWorkers() {
+        return workerHolder.detachWorkers();
+    }
+
+    /**
+     * Close the workers detached from their statement.
+     *
+     * @param workers the workers
+     */
+    public void closeWorkers(List<Worker> workers) {
+        workerHolder.closeWorkers(workers);
+    }
+
 
     public static class Savepoint {
         String savepointName;
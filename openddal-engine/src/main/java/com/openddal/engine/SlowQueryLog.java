@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.openddal.message.Trace;
+import com.openddal.util.New;
+import com.openddal.util.StatementBuilder;
+
+/**
+ * The slow query log. The statements that run longer than the
+ * SLOW_QUERY_LIMIT setting are kept in a bounded ring, with the statement
+ * and the time of each shard execution, so the shard that made a statement
+ * slow can be found. The entries are also written to the slowquery trace
+ * module, which can be sent to its own rolling file.
+ */
+public class SlowQueryLog {
+
+    private final long limit;
+    private final QueryEntry[] entries;
+    private final Trace trace;
+    private int next;
+    private int size;
+    private long lastId;
+
+    public SlowQueryLog(Database database) {
+        DbSettings settings = database.getSettings();
+        this.limit = settings.slowQueryLimit;
+        this.entries = new QueryEntry[Math.max(1, settings.slowQueryLogSize)];
+        this.trace = database.getTrace(Trace.SLOW_QUERY);
+    }
+
+    /**
+     * @return true if the slow statements are logged
+     */
+    public boolean isEnabled() {
+        return limit >= 0;
+    }
+
+    /**
+     * @return the minimum execution time in milliseconds of a logged
+     *         statement, negative if disabled
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Log the statement if it is slow.
+     *
+     * @param session the session
+     * @param sql the statement with the parameters
+     * @param startTime the start time in milliseconds
+     * @param executionTime the execution time in milliseconds
+     * @param shards the shard executions of the statement
+     */
+    public void log(Session session, String sql, long startTime, long executionTime, List<ShardEntry> shards) {
+        if (!isEnabled() || executionTime < limit) {
+            return;
+        }
+        QueryEntry entry;
+        synchronized (this) {
+            entry = new QueryEntry(++lastId, session.getId(), session.getUser().getName(), sql, startTime,
+                    executionTime, shards);
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+            size = Math.min(size + 1, entries.length);
+        }
+        if (trace.isInfoEnabled()) {
+            trace.info(entry.toString());
+        }
+    }
+
+    /**
+     * @return the logged statements, the newest first
+     */
+    public synchronized List<QueryEntry> getEntries() {
+        ArrayList<QueryEntry> list = New.arrayList(size);
+        for (int i = 1; i <= size; i++) {
+            list.add(entries[(next - i + entries.length) % entries.length]);
+        }
+        return list;
+    }
+
+    /**
+     * A slow statement.
+     */
+    public static final class QueryEntry {
+
+        public final long id;
+        public final int sessionId;
+        public final String userName;
+        public final String sqlStatement;
+        public final long startTime;
+        public final long executionTime;
+        public final List<ShardEntry> shards;
+
+        QueryEntry(long id, int sessionId, String userName, String sqlStatement, long startTime,
+                long executionTime, List<ShardEntry> shards) {
+            this.id = id;
+            this.sessionId = sessionId;
+            this.userName = userName;
+            this.sqlStatement = sqlStatement;
+            this.startTime = startTime;
+            this.executionTime = executionTime;
+            this.shards = Collections.unmodifiableList(shards);
+        }
+
+        @Override
+        public String toString() {
+            StatementBuilder buff = new StatementBuilder();
+            buff.append("slow query: ").append(executionTime).append(" ms sessionId:").append(sessionId)
+                    .append(' ').append(sqlStatement);
+            for (ShardEntry shard : shards) {
+                buff.append("\n    ").append(shard.toString());
+            }
+            return buff.toString();
+        }
+    }
+
+    /**
+     * The execution of a statement on a shard.
+     */
+    public static final class ShardEntry {
+
+        public final String shardName;
+        public final String sqlStatement;
+        public final long rowCount;
+        public final long executionTime;
+
+        public ShardEntry(String shardName, String sqlStatement, long rowCount, long executionTime) {
+            this.shardName = shardName;
+            this.sqlStatement = sqlStatement;
+            this.rowCount = rowCount;
+            this.executionTime = executionTime;
+        }
+
+        @Override
+        public String toString() {
+            return shardName + " " + executionTime + " ms " + rowCount + " rows: " + sqlStatement;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.engine;
+
+import com.openddal.util.LatencyHistogram;
+
+/**
+ * The latency histograms of the stages of the statement execution, in
+ * microseconds. The stages are timed with System.nanoTime() and recorded
+ * without locks, they are listed in INFORMATION_SCHEMA.STAGE_STATISTICS and
+ * INFORMATION_SCHEMA.STAGE_HISTOGRAM.
+ */
+public class StageStatistics {
+
+    /**
+     * The parsing of a statement.
+     */
+    public static final int PARSE = 0;
+
+    /**
+     * The preparation of a statement, the optimizer chooses the plan.
+     */
+    public static final int OPTIMIZE = 1;
+
+    /**
+     * The calculation of the shards of a table access.
+     */
+    public static final int ROUTE = 2;
+
+    /**
+     * The translation of a statement to the SQL of a shard.
+     */
+    public static final int TRANSLATE = 3;
+
+    /**
+     * The execution of a statement on a shard, until the worker is closed.
+     */
+    public static final int SHARD_EXECUTE = 4;
+
+    /**
+     * The local evaluation and the merge of the shard results, the execution
+     * time of a statement without the time it waits for the shard workers.
+     * Routing and translation are included.
+     */
+    public static final int LOCAL_EXECUTE = 5;
+
+    /**
+     * The encoding of a result to the client protocol. For the results that
+     * are read lazily it includes reading the rows from the shards.
+     */
+    public static final int ENCODE = 6;
+
+    private static final String[] NAMES = { "PARSE", "OPTIMIZE", "ROUTE", "TRANSLATE", "SHARD_EXECUTE",
+            "LOCAL_EXECUTE", "ENCODE" };
+
+    private final boolean enabled;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+
+    public StageStatistics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return the number of stages
+     */
+    public static int getStageCount() {
+        return NAMES.length;
+    }
+
+    /**
+     * @param stage the stage
+     * @return the name of the stage
+     */
+    public static String getStageName(int stage) {
+        return NAMES[stage];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start the stopwatch of a stage.
+     *
+     * @return the current time in nanoseconds, or 0 if disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time of a stage started with {@link #start()}.
+     *
+     * @param stage the stage
+     * @param start the start time in nanoseconds, 0 if disabled
+     * @return the current time in nanoseconds to start the next stage, or 0
+     *         if disabled
+     */
+    public long end(int stage, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        record(stage, now - start);
+        return now;
+    }
+
+    /**
+     * Record the time of a stage.
+     *
+     * @param stage the stage
+     * @param nanos the time in nanoseconds
+     */
+    public void record(int stage, long nanos) {
+        if (enabled) {
+            histograms[stage].record(nanos / 1000);
+        }
+    }
+
+    /**
+     * @param stage the stage
+     * @return the histogram of the stage in microseconds
+     */
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+}
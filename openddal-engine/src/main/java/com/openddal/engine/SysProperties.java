@@ -40,6 +40,8 @@ public class SysProperties {
 
     public static final int COLLATOR_CACHE_SIZE = Utils.getProperty("ddal.collatorCacheSize", 32000);
 
+    public static final boolean FLIGHT_RECORDER = Utils.getProperty("ddal.flightRecorder", false);
+
     public static final boolean JAVA_SYSTEM_COMPILER = Utils.getProperty("ddal.javaSystemCompiler", true);
 
     public static final int LOB_FILES_PER_DIRECTORY = Utils.getProperty("ddal.lobFilesPerDirectory", 256);
@@ -90,6 +92,12 @@ public class SysProperties {
     
     public static final int THREAD_POOL_SIZE_MAX = Utils.getProperty("ddal.threadpool.size.max", Runtime.getRuntime().availableProcessors() * 20);
     
+    public static final int CONNECTION_QUEUE_SIZE = Utils.getProperty("ddal.connection.queue.size", 1024);
+    
+    public static final int NET_WRITE_TIMEOUT_MILLS = Utils.getProperty("ddal.net.write.timeout.mills", 60000);
+    
+    public static final int ACCESS_LOG_BUFFER_SIZE = Utils.getProperty("ddal.accesslog.buffer.size", 8192);
+    
     public static boolean serializeJavaObject = Utils.getProperty("ddal.serializeJavaObject", true);
 
     public static final String ENGINE_CONFIG_LOCATION = Utils.getProperty("ddal.engineConfigLocation", "ddal-engine.xml");
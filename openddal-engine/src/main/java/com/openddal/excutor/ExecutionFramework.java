@@ -49,6 +49,7 @@ import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RoutingResult;
 import com.openddal.util.New;
 import com.openddal.util.StringUtils;
+import com.openddal.value.Value;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -90,6 +91,11 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
         return doUpdate();
     }
 
+    @Override
+    public final int[] batchUpdate(List<Value[]> batchParameters) {
+        return doBatchUpdate(batchParameters);
+    }
+
     @Override
     public final Cursor query() {
         prepare();
@@ -114,8 +120,20 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute the batch as a whole, the default is not supported and the
+     * caller falls back to execute the statement once for each parameter set.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @return the update count of each execution, or null if not supported
+     */
+    protected int[] doBatchUpdate(List<Value[]> batchParameters) {
+        return null;
+    }
+
     protected int invokeUpdateWorker(List<UpdateWorker> worker) {
         session.checkCanceled();
+        long start = System.nanoTime();
         try {
             int queryTimeout = session.getQueryTimeout();// MILLISECONDS
             List<Future<Integer>> invokeAll;
@@ -134,12 +152,30 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
         } catch (ExecutionException e) {
             throw DbException.convert(e.getCause());
         } finally {
+            session.addShardWaitTime(System.nanoTime() - start);
             session.checkCanceled();
         }
     }
 
     protected int invokeBatchUpdateWorker(List<BatchUpdateWorker> worker) {
+        int affectRows = 0;
+        for (Integer[] integers : invokeBatchUpdateWorkerForRows(worker)) {
+            for (Integer integer : integers) {
+                affectRows += integer;
+            }
+        }
+        return affectRows;
+    }
+
+    /**
+     * Execute the batch workers in parallel.
+     *
+     * @param worker the batch workers
+     * @return the update counts of each worker, in the order of the workers
+     */
+    protected List<Integer[]> invokeBatchUpdateWorkerForRows(List<BatchUpdateWorker> worker) {
         session.checkCanceled();
+        long start = System.nanoTime();
         try {
             int queryTimeout = session.getQueryTimeout();// MILLISECONDS
             List<Future<Integer[]>> invokeAll;
@@ -148,25 +184,24 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
             } else {
                 invokeAll = queryExecutor.invokeAll(worker);
             }
-            int affectRows = 0;
+            List<Integer[]> result = New.arrayList(invokeAll.size());
             for (Future<Integer[]> future : invokeAll) {
-                Integer[] integers = future.get();
-                for (Integer integer : integers) {
-                    affectRows += integer;
-                }
+                result.add(future.get());
             }
-            return affectRows;
+            return result;
         } catch (InterruptedException e) {
             throw DbException.convert(e);
         } catch (ExecutionException e) {
             throw DbException.convert(e.getCause());
         } finally {
+            session.addShardWaitTime(System.nanoTime() - start);
             session.checkCanceled();
         }
     }
 
     protected Cursor invokeQueryWorker(List<QueryWorker> worker) {
         session.checkCanceled();
+        long start = System.nanoTime();
         try {
             int queryTimeout = session.getQueryTimeout();// MILLISECONDS
             List<Future<Cursor>> invokeAll;
@@ -189,6 +224,7 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
         } catch (ExecutionException e) {
             throw DbException.convert(e.getCause());
         } finally {
+            session.addShardWaitTime(System.nanoTime() - start);
             session.checkCanceled();
         }
     }
@@ -210,17 +246,21 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
         return explain.toString();
     }
 
+    protected ObjectNode[] routeRow(TableMate table, Row row) {
+        RoutingResult result;
+        if (table.getTableRule().getType() == TableRule.GLOBAL_NODE_TABLE) {
+            GlobalTableRule rule = (GlobalTableRule) table.getTableRule();
+            result = rule.getBroadcastsRoutingResult();
+        } else {
+            result = routingHandler.doRoute(table, row);
+        }
+        return result.getSelectNodes();
+    }
+
     protected Map<ObjectNode, List<Row>> batchForRoutingNode(TableMate table, List<Row> rows) {
         Map<ObjectNode, List<Row>> batches = New.hashMap();
         for (Row row : rows) {
-            RoutingResult result;
-            if (table.getTableRule().getType() == TableRule.GLOBAL_NODE_TABLE) {
-                GlobalTableRule rule = (GlobalTableRule) table.getTableRule();
-                result = rule.getBroadcastsRoutingResult();
-            } else {
-                result = routingHandler.doRoute(table, row);
-            }
-            ObjectNode[] selectNodes = result.getSelectNodes();
+            ObjectNode[] selectNodes = routeRow(table, row);
             for (ObjectNode objectNode : selectNodes) {
                 List<Row> batch = batches.get(objectNode);
                 if (batch == null) {
@@ -283,7 +323,7 @@ public abstract class ExecutionFramework<T extends Prepared> implements Executor
 
     protected static ArrayList<TableFilter> filterNotTableMate(List<TableFilter> filters) {
         ArrayList<TableFilter> result = New.arrayList(filters.size());
-        for (TableFilter tf : result) {
+        for (TableFilter tf : filters) {
             if (tf.isFromTableMate()) {
                 result.add(tf);
             }
@@ -18,8 +18,11 @@
 
 package com.openddal.excutor;
 
+import java.util.List;
+
 import com.openddal.excutor.cursor.Cursor;
 import com.openddal.message.DbException;
+import com.openddal.value.Value;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -47,6 +50,15 @@ public interface Executor {
      */
     int update();
 
+    /**
+     * Execute the statement once for each parameter set of the batch.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @return the update count of each execution, or null if the statement
+     *         can not be executed as a whole batch
+     */
+    int[] batchUpdate(List<Value[]> batchParameters);
+
     /**
      * Get the PreparedExecutor with the execution explain.
      *
@@ -27,6 +27,7 @@ import com.openddal.command.ddl.TruncateTable;
 import com.openddal.command.dml.Call;
 import com.openddal.command.dml.Delete;
 import com.openddal.command.dml.Insert;
+import com.openddal.command.dml.LoadCsv;
 import com.openddal.command.dml.Merge;
 import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Update;
@@ -39,6 +40,7 @@ import com.openddal.excutor.effects.DeleteExecutor;
 import com.openddal.excutor.effects.DropIndexExecutor;
 import com.openddal.excutor.effects.DropTableExecutor;
 import com.openddal.excutor.effects.InsertExecutor;
+import com.openddal.excutor.effects.LoadCsvExecutor;
 import com.openddal.excutor.effects.MergeExecutor;
 import com.openddal.excutor.effects.ReplaceExecutor;
 import com.openddal.excutor.effects.TruncateTableExecutor;
@@ -95,6 +97,8 @@ public class ExecutorFactoryImpl implements ExecutorFactory {
             return new MergeExecutor((Merge) prepared);
         case CommandInterface.CALL:
             return new CallExecutor((Call) prepared);
+        case CommandInterface.LOAD_CSV:
+            return new LoadCsvExecutor((LoadCsv) prepared);
         default:
             return null;
         }
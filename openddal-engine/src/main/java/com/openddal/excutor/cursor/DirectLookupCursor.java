@@ -1,14 +1,19 @@
 package com.openddal.excutor.cursor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.openddal.command.dml.Select;
+import com.openddal.command.expression.Comparison;
+import com.openddal.command.expression.ExpressionVisitor;
 import com.openddal.config.GlobalTableRule;
 import com.openddal.config.TableRule;
+import com.openddal.dbobject.DbObject;
 import com.openddal.dbobject.index.ConditionExtractor;
 import com.openddal.dbobject.index.IndexCondition;
 import com.openddal.dbobject.table.Column;
@@ -26,12 +31,21 @@ import com.openddal.route.rule.RoutingResult;
 import com.openddal.util.New;
 import com.openddal.util.StringUtils;
 
+/**
+ * Execute a query as one statement per table node. Used for the queries of a
+ * single table, and of the tables of one table group joined by their rule
+ * columns. The query is routed with the current parameter values on each
+ * execution; it is executed directly if it routes to a single table node, or
+ * if the rows of the table nodes are returned as they are, otherwise the
+ * select reads the tables one by one.
+ */
 public class DirectLookupCursor extends ExecutionFramework<Select> implements Cursor {
 
     private Cursor cursor;
     private Map<ObjectNode, Map<TableFilter, ObjectNode>> consistencyTableNodes;
     private List<QueryWorker> queryHandlers;
     private boolean alwaysFalse;
+    private boolean flat;
 
     public DirectLookupCursor(Select select) {
         super(select);
@@ -39,18 +53,42 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
 
     @Override
     protected void doPrepare() {
-        ArrayList<TableFilter> topFilters = prepared.getTopFilters();
-        for (TableFilter tf : topFilters) {
-            ConditionExtractor extractor = new ConditionExtractor(tf);
-            boolean alwaysFalse = extractor.isAlwaysFalse();
-            if(alwaysFalse) {
-                this.alwaysFalse = alwaysFalse;
-                return;
+        // the rows of several table nodes can only be appended to each
+        // other if nothing is computed over all the rows
+        flat = !prepared.isGroupQuery() && !prepared.isDistinct() && prepared.getSortOrder() == null
+                && prepared.getLimit() == null && prepared.getOffset() == null;
+    }
+
+    /**
+     * Route the query with the current parameter values and create the
+     * workers of the table nodes.
+     *
+     * @return false if the query can not be executed directly because the
+     *         rows of several table nodes need to be merged
+     */
+    public boolean route() {
+        prepare();
+        cursor = null;
+        queryHandlers = null;
+        alwaysFalse = false;
+        List<TableFilter> filters = filterNotTableMate(prepared.getFilters());
+        for (TableFilter tf : filters) {
+            ConditionExtractor extractor = new ConditionExtractor(tf, true);
+            if (extractor.isAlwaysFalse()) {
+                alwaysFalse = true;
+                return true;
             }
         }
-        
-        RoutingResult rr = doRoute(prepared);
+        RoutingResult rr = doRoute(filters);
         ObjectNode[] selectNodes = rr.getSelectNodes();
+        if (selectNodes.length == 0) {
+            // the conditions of the rule columns exclude each other
+            alwaysFalse = true;
+            return true;
+        }
+        if (selectNodes.length > 1 && !flat) {
+            return false;
+        }
         if (session.getDatabase().getSettings().optimizeMerging) {
             selectNodes = rr.group();
         }
@@ -59,25 +97,28 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
             QueryWorker queryHandler = queryHandlerFactory.createQueryWorker(prepared, node, consistencyTableNodes);
             queryHandlers.add(queryHandler);
         }
+        return true;
     }
 
-
-
     @Override
     protected Cursor doQuery() {
-        if(alwaysFalse) {
-            return ResultCursor.EMPTY_CURSOR;
+        if (alwaysFalse) {
+            cursor = ResultCursor.EMPTY_CURSOR;
+        } else {
+            cursor = invokeQueryWorker(queryHandlers);
         }
         return this;
     }
 
     @Override
     public String doExplain() {
-        return null;
+        if (alwaysFalse) {
+            return "EMPTY_EXECUTION";
+        }
+        return queryHandlers == null ? null : explainForWorker(queryHandlers);
     }
 
-    private RoutingResult doRoute(Select prepare) {
-        List<TableFilter> filters = filterNotTableMate(prepare.getTopFilters());
+    private RoutingResult doRoute(List<TableFilter> filters) {
         List<TableFilter> shards = New.arrayList(filters.size());
         List<TableFilter> globals = New.arrayList(filters.size());
         List<TableFilter> fixeds = New.arrayList(filters.size());
@@ -101,13 +142,13 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
         if (!shards.isEmpty()) {
             for (TableFilter tf : shards) {
                 TableMate table = getTableMate(tf);
-                ConditionExtractor extractor = new ConditionExtractor(tf);
+                ConditionExtractor extractor = new ConditionExtractor(tf, true);
                 RoutingResult r = routingHandler.doRoute(table, 
                         extractor.getStart(), extractor.getEnd(), extractor.getInColumns());
                 result = (result == null || r.compareTo(result) < 0) ? r : result;
             }
         } else if (!fixeds.isEmpty()) {
-            for (TableFilter tf : shards) {
+            for (TableFilter tf : fixeds) {
                 TableMate table = getTableMate(tf);
                 RoutingResult r = routingHandler.doRoute(table);
                 result = r;
@@ -120,11 +161,7 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
         } else {
             throw DbException.throwInternalError("SQL_ROUTING_ERROR");
         }
-        ObjectNode[] selectNodes = result.getSelectNodes();
-        if (selectNodes.length == 0) {
-            throw DbException.throwInternalError("SQL_ROUTING_ERROR,empty result");
-        }
-        setConsistencyTableNodes(selectNodes, filters);
+        setConsistencyTableNodes(result.getSelectNodes(), filters);
         return result;
     }
 
@@ -156,22 +193,12 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
 
     @Override
     public boolean next() {
-        while (true) {
-            if (cursor == null) {
-                nextCursor();
-                if (cursor == null) {
-                    return false;
-                }
-            }
-            if (cursor.next()) {
-                return true;
-            }
-            cursor = null;
+        if (cursor != null && cursor.next()) {
+            return true;
         }
-    }
-
-    private void nextCursor() {
-
+        // the cursors of the shards are closed at their end
+        cursor = null;
+        return false;
     }
 
     @Override
@@ -179,12 +206,27 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
         throw DbException.throwInternalError();
     }
 
-    public double getCost() {
-        return queryHandlers.size() * Constants.COST_ROW_OFFSET;
-    }
-
+    /**
+     * Check if the query can be executed as one statement per table node,
+     * whatever the parameter values.
+     *
+     * @param select the query
+     * @return true if it can
+     */
     public static boolean isDirectLookupQuery(Select select) {
-        DirectLookupEstimator estimator = new DirectLookupEstimator(select.getTopFilters());
+        // the subqueries read the logical tables, they can not be sent to
+        // the shards
+        HashSet<DbObject> dependencies = New.hashSet();
+        select.isEverything(ExpressionVisitor.getDependenciesVisitor(dependencies));
+        for (TableFilter tf : select.getFilters()) {
+            dependencies.remove(tf.getTable());
+        }
+        for (DbObject dependency : dependencies) {
+            if (dependency instanceof Table) {
+                return false;
+            }
+        }
+        DirectLookupEstimator estimator = new DirectLookupEstimator(select.getFilters());
         return estimator.isDirectLookup();
     }
 
@@ -193,18 +235,13 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
         private final ArrayList<TableFilter> filters;
         private Set<TableFilter> joinTableChain;
 
-        private DirectLookupEstimator(ArrayList<TableFilter> topFilters) {
-            this.filters = New.arrayList(topFilters.size());
-            for (TableFilter tf : topFilters) {
+        private DirectLookupEstimator(ArrayList<TableFilter> allFilters) {
+            this.filters = New.arrayList(allFilters.size());
+            for (TableFilter tf : allFilters) {
                 if (!StringUtils.startsWith(tf.getTableAlias(), Constants.PREFIX_JOIN)) {
                     filters.add(tf);
                 }
             }
-            for (TableFilter tf : filters) {
-                if (tf.getTable() instanceof TableMate) {
-                    continue;
-                }
-            }
         }
 
         private boolean isDirectLookup() {
@@ -252,68 +289,44 @@ public class DirectLookupCursor extends ExecutionFramework<Select> implements Cu
             return true;
         }
 
+        /**
+         * Add the table and the tables joined to it by their rule columns to
+         * the join chain.
+         */
         private void evaluationJoinChain(TableFilter filter) {
-            TableMate table1 = (TableMate) filter.getTable();
-            Column[] columns1 = table1.getRuleColumns();
-            if (columns1 == null) {
-                throw new IllegalArgumentException("not sharding TableFilter");
-            }
-            ArrayList<IndexCondition> conditions = filter.getIndexConditions();
-            int length = table1.getColumns().length;
-            IndexCondition[] masks = new IndexCondition[length];
-            for (IndexCondition condition : conditions) {
-                int id = condition.getColumn().getColumnId();
-                if (id >= 0) {
-                    masks[id] = condition;
+            joinTableChain.add(filter);
+            for (TableFilter tf : filters) {
+                if (joinTableChain.contains(tf) || ((TableMate) tf.getTable()).getRuleColumns() == null) {
+                    continue;
+                }
+                if (isJoinedByRuleColumns(filter, tf) || isJoinedByRuleColumns(tf, filter)) {
+                    evaluationJoinChain(tf);
                 }
             }
+        }
 
-            if (masks != null) {
-                List<Column> joinCols = New.arrayList();
-                for (int i = 0, len = columns1.length; i < len; i++) {
-                    Column column = columns1[i];
-                    int index = column.getColumnId();
-                    IndexCondition mask = masks[index];
-                    if ((mask.getMask(conditions) & IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
-                        Column compareColumn = mask.getCompareColumn();
-                        if (compareColumn != null) {
-                            joinCols.add(compareColumn);
-                        }
-                        if (i == columns1.length - 1) {
-                            Set<Table> tables = New.hashSet();
-                            for (Column column2 : joinCols) {
-                                tables.add(column2.getTable());
-                            }
-                            for (Table table : tables) {
-                                if (!(table instanceof TableMate)) {
-                                    continue;
-                                }
-                                TableMate table2 = (TableMate) table;
-                                Column[] columns2 = table2.getRuleColumns();
-                                if (columns2 == null) {
-                                    continue;
-                                }
-                                boolean contains = true;
-                                for (Column column2 : columns2) {
-                                    if (!joinCols.contains(column2)) {
-                                        contains = false;
-                                        break;
-                                    }
-                                }
-                                if (contains) {
-                                    joinTableChain.add(filter);
-                                }
-                                for (TableFilter tf : filters) {
-                                    if (tf.getTable() == table && !joinTableChain.contains(filter)) {
-                                        evaluationJoinChain(tf);
-                                    }
-                                }
-
-                            }
-                        }
-                    }
+        /**
+         * Check if all the rule columns of the second table are compared for
+         * equality with the rule columns of the first table, in the conditions
+         * of the first table.
+         */
+        private static boolean isJoinedByRuleColumns(TableFilter filter, TableFilter joined) {
+            Column[] columns1 = ((TableMate) filter.getTable()).getRuleColumns();
+            Column[] columns2 = ((TableMate) joined.getTable()).getRuleColumns();
+            if (columns1.length != columns2.length) {
+                return false;
+            }
+            Set<Column> joinCols = New.hashSet();
+            for (IndexCondition condition : filter.getIndexConditions()) {
+                if (condition.getCompareType() != Comparison.EQUAL) {
+                    continue;
+                }
+                Column compareColumn = condition.getCompareColumn();
+                if (compareColumn != null && Arrays.asList(columns1).contains(condition.getColumn())) {
+                    joinCols.add(compareColumn);
                 }
             }
+            return joinCols.containsAll(Arrays.asList(columns2));
         }
 
     }
@@ -6,35 +6,48 @@ import com.openddal.result.Row;
 import com.openddal.result.SearchRow;
 import com.openddal.util.New;
 
+/**
+ * A cursor that returns the rows of the cursors of several shards, one
+ * cursor after the other.
+ */
 public class MergedCursor implements Cursor {
 
     private List<Cursor> cursors = New.arrayList(10);
-    
+    private int index;
+    private Cursor current;
+
     public void addCursor(Cursor cursor) {
         cursors.add(cursor);
     }
-    
+
     @Override
     public Row get() {
-        // TODO Auto-generated method stub
-        return null;
+        return current == null ? null : current.get();
     }
 
     @Override
     public SearchRow getSearchRow() {
-        // TODO Auto-generated method stub
-        return null;
+        return current == null ? null : current.getSearchRow();
     }
 
     @Override
     public boolean next() {
-        // TODO Auto-generated method stub
-        return false;
+        while (true) {
+            if (current == null) {
+                if (index >= cursors.size()) {
+                    return false;
+                }
+                current = cursors.get(index++);
+            }
+            if (current.next()) {
+                return true;
+            }
+            current = null;
+        }
     }
 
     @Override
     public boolean previous() {
-        // TODO Auto-generated method stub
         return false;
     }
 
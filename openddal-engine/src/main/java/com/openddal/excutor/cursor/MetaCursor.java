@@ -0,0 +1,43 @@
+package com.openddal.excutor.cursor;
+
+import java.util.ArrayList;
+
+import com.openddal.message.DbException;
+import com.openddal.result.Row;
+import com.openddal.result.SearchRow;
+
+/**
+ * A cursor over the rows generated for a table of the information schema.
+ */
+public class MetaCursor implements Cursor {
+
+    private final ArrayList<Row> rows;
+    private Row current;
+    private int index;
+
+    MetaCursor(ArrayList<Row> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public Row get() {
+        return current;
+    }
+
+    @Override
+    public SearchRow getSearchRow() {
+        return current;
+    }
+
+    @Override
+    public boolean next() {
+        current = index >= rows.size() ? null : rows.get(index++);
+        return current != null;
+    }
+
+    @Override
+    public boolean previous() {
+        throw DbException.throwInternalError();
+    }
+
+}
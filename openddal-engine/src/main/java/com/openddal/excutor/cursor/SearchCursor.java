@@ -23,6 +23,7 @@ import com.openddal.command.expression.Expression;
 import com.openddal.command.expression.ExpressionVisitor;
 import com.openddal.dbobject.index.ConditionExtractor;
 import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.MetaTable;
 import com.openddal.dbobject.table.RangeTable;
 import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableFilter;
@@ -122,7 +123,7 @@ public class SearchCursor extends ExecutionFramework<Select> implements Cursor {
             return ResultCursor.EMPTY_CURSOR;
         }
         RoutingResult result = routingHandler.doRoute(tableMate, 
-                extractor.getStart(), extractor.getStart(), extractor.getInColumns());
+                extractor.getStart(), extractor.getEnd(), extractor.getInColumns());
         ObjectNode[] selectNodes = result.getSelectNodes();
         if (session.getDatabase().getSettings().optimizeMerging) {
             selectNodes = result.group();
@@ -139,6 +140,10 @@ public class SearchCursor extends ExecutionFramework<Select> implements Cursor {
         return null;
     }
 
+    private Cursor find(MetaTable metaTable) {
+        return new MetaCursor(metaTable.generateRows(session, null, null));
+    }
+
     protected Cursor doQuery() {
         if (table instanceof RangeTable) {
             RangeTable rangeTable = (RangeTable) table;
@@ -149,8 +154,11 @@ public class SearchCursor extends ExecutionFramework<Select> implements Cursor {
         } else if (table instanceof TableView) {
             TableView tableView = (TableView) table;
             this.cursor = find(tableView);
+        } else if (table instanceof MetaTable) {
+            MetaTable metaTable = (MetaTable) table;
+            this.cursor = find(metaTable);
         } else {
-            DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, table.getClass().getName());
+            throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, table.getClass().getName());
         }
         return this;
     }
@@ -15,17 +15,26 @@
  */
 package com.openddal.excutor.effects;
 
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.openddal.command.Prepared;
 import com.openddal.command.dml.Insert;
 import com.openddal.command.dml.Query;
 import com.openddal.command.expression.Expression;
+import com.openddal.command.expression.Parameter;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.excutor.ExecutionFramework;
+import com.openddal.excutor.works.BatchUpdateWorker;
 import com.openddal.excutor.works.UpdateWorker;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
@@ -44,8 +53,9 @@ public class InsertExecutor extends ExecutionFramework<Insert> implements Result
 
     private static final int QUERY_FLUSH_THRESHOLD = 200;
     private int rowNumber;
-    private int affectRows;
-    private List<Row> newRows = New.arrayList(10);
+    private long affectRows;
+    private final Map<ObjectNode, List<Row>> newRows = New.hashMap();
+    private final Map<String, Future<Integer>> flushing = New.hashMap();
     private List<UpdateWorker> workers;
 
     /**
@@ -61,40 +71,13 @@ public class InsertExecutor extends ExecutionFramework<Insert> implements Result
         table.check();
         prepared.setCurrentRowNumber(0);
         ArrayList<Expression[]> list = prepared.getList();
-        Column[] columns = prepared.getColumns();
-        Map<Column, Expression> valueMap = prepared.getDuplicateKeyAssignmentMap();
-        if (valueMap != null) {
-            Column[] ruleColumns = table.getRuleColumns();
-            for (Column column : ruleColumns) {
-                if (valueMap.get(column) != null) {
-                    throw DbException.get(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, column.getName());
-                }
-            }
-        }
+        checkDuplicateKeyAssignment(table);
         int listSize = list.size();
         if (listSize > 0) {
-            int columnLen = columns.length;
             List<Row> values = New.arrayList(10);
             for (int x = 0; x < listSize; x++) {
-                Row newRow = table.getTemplateRow();
-                Expression[] expr = list.get(x);
                 prepared.setCurrentRowNumber(x + 1);
-                for (int i = 0; i < columnLen; i++) {
-                    Column c = columns[i];
-                    int index = c.getColumnId();
-                    Expression e = expr[i];
-                    if (e != null) {
-                        // e can be null (DEFAULT)
-                        e = e.optimize(session);
-                        try {
-                            Value v = c.convert(e.getValue(session));
-                            newRow.setValue(index, v);
-                        } catch (DbException ex) {
-                            throw prepared.setRow(ex, x, Prepared.getSQL(expr));
-                        }
-                    }
-                }
-                values.add(newRow);
+                values.add(createNewRow(table, list.get(x), x));
             }
             prepareInsert(table, values);
         } else {
@@ -109,22 +92,130 @@ public class InsertExecutor extends ExecutionFramework<Insert> implements Result
             return invokeUpdateWorker(workers);
         } else {
             Query query = prepared.getQuery();
-            if (prepared.isInsertFromSelect()) {
-                query.query(0, this);
-            } else {
-                ResultInterface rows = query.query(0);
-                while (rows.next()) {
-                    Value[] r = rows.currentRow();
-                    addRow(r);
+            try {
+                if (prepared.isInsertFromSelect()) {
+                    query.query(0, this);
+                } else {
+                    ResultInterface rows = query.query(0);
+                    while (rows.next()) {
+                        Value[] r = rows.currentRow();
+                        addRow(r);
+                    }
+                    rows.close();
                 }
-                rows.close();
+                flushNewRows();
+            } finally {
+                awaitFlushing();
             }
-            flushNewRows();
-            return this.affectRows;
+            return getUpdateCount(affectRows);
         }
 
     }
 
+    /**
+     * Get the update count of a statement, the rows beyond the range of an
+     * int are not reported.
+     *
+     * @param rowCount the number of rows
+     * @return the update count
+     */
+    static int getUpdateCount(long rowCount) {
+        return (int) Math.min(rowCount, Integer.MAX_VALUE);
+    }
+
+    private void checkDuplicateKeyAssignment(TableMate table) {
+        Map<Column, Expression> valueMap = prepared.getDuplicateKeyAssignmentMap();
+        if (valueMap != null) {
+            Column[] ruleColumns = table.getRuleColumns();
+            for (Column column : ruleColumns) {
+                if (valueMap.get(column) != null) {
+                    throw DbException.get(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, column.getName());
+                }
+            }
+        }
+    }
+
+    private Row createNewRow(TableMate table, Expression[] expr, int rowIndex) {
+        Column[] columns = prepared.getColumns();
+        Row newRow = table.getTemplateRow();
+        for (int i = 0, columnLen = columns.length; i < columnLen; i++) {
+            Column c = columns[i];
+            int index = c.getColumnId();
+            Expression e = expr[i];
+            if (e != null) {
+                // e can be null (DEFAULT)
+                e = e.optimize(session);
+                try {
+                    Value v = c.convert(e.getValue(session));
+                    newRow.setValue(index, v);
+                } catch (DbException ex) {
+                    throw prepared.setRow(ex, rowIndex, Prepared.getSQL(expr));
+                }
+            }
+        }
+        return newRow;
+    }
+
+    /**
+     * Evaluate the rows of all parameter sets, route them together and send
+     * the rows of each table node as one JDBC batch, instead of one routed
+     * statement per parameter set.
+     */
+    @Override
+    protected int[] doBatchUpdate(List<Value[]> batchParameters) {
+        ArrayList<Expression[]> list = prepared.getList();
+        if (list.isEmpty()) {
+            return null;
+        }
+        TableMate table = toTableMate(prepared.getTable());
+        table.check();
+        checkDuplicateKeyAssignment(table);
+        ArrayList<Parameter> parameters = prepared.getParameters();
+        int listSize = list.size();
+        List<Row> rows = New.arrayList(batchParameters.size() * listSize);
+        Map<Row, Integer> owners = new IdentityHashMap<Row, Integer>(batchParameters.size() * listSize);
+        for (int i = 0, size = batchParameters.size(); i < size; i++) {
+            Value[] set = batchParameters.get(i);
+            for (int j = 0; j < set.length; j++) {
+                parameters.get(j).setValue(set[j], false);
+            }
+            for (int x = 0; x < listSize; x++) {
+                prepared.setCurrentRowNumber(x + 1);
+                Row newRow = createNewRow(table, list.get(x), x);
+                rows.add(newRow);
+                owners.put(newRow, i);
+            }
+        }
+        session.checkCanceled();
+        Map<ObjectNode, List<Row>> batches = batchForRoutingNode(table, rows);
+        List<BatchUpdateWorker> batchWorkers = New.arrayList(batches.size());
+        List<Row> batchRows = New.arrayList(rows.size());
+        for (Map.Entry<ObjectNode, List<Row>> item : batches.entrySet()) {
+            List<Row> nodeRows = item.getValue();
+            List<UpdateWorker> nodeWorkers = New.arrayList(nodeRows.size());
+            for (Row row : nodeRows) {
+                nodeWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), row));
+            }
+            // the merged workers keep the order of the rows, so their update
+            // counts line up with batchRows
+            batchWorkers.addAll(queryHandlerFactory.mergeToBatchUpdateWorker(session, nodeWorkers));
+            batchRows.addAll(nodeRows);
+        }
+        int[] result = new int[batchParameters.size()];
+        int index = 0;
+        for (Integer[] counts : invokeBatchUpdateWorkerForRows(batchWorkers)) {
+            for (Integer count : counts) {
+                int owner = owners.get(batchRows.get(index++));
+                if (count < 0 || result[owner] < 0) {
+                    result[owner] = Statement.SUCCESS_NO_INFO;
+                } else {
+                    result[owner] += count;
+                }
+            }
+        }
+        return result;
+    }
+
     private void prepareInsert(TableMate table, List<Row> rows) {
         session.checkCanceled();
         Map<ObjectNode, List<Row>> batches = batchForRoutingNode(table, rows);
@@ -152,7 +243,7 @@ public class InsertExecutor extends ExecutionFramework<Insert> implements Result
                 throw prepared.setRow(ex, rowNumber, Prepared.getSQL(values));
             }
         }
-        addNewRowFlushIfNeed(newRow);
+        addNewRowFlushIfNeed(table, newRow);
     }
 
     @Override
@@ -161,25 +252,129 @@ public class InsertExecutor extends ExecutionFramework<Insert> implements Result
     }
 
 
-    private synchronized void addNewRowFlushIfNeed(Row newRow) {
-        newRows.add(newRow);
-        if (newRows.size() >= QUERY_FLUSH_THRESHOLD) {
-            flushNewRows();
+    /**
+     * Buffer the row for each table node it routes to, a full buffer is
+     * written asynchronously so the source query keeps reading while the
+     * shards are writing.
+     */
+    private synchronized void addNewRowFlushIfNeed(TableMate table, Row newRow) {
+        for (ObjectNode node : routeRow(table, newRow)) {
+            List<Row> buffer = newRows.get(node);
+            if (buffer == null) {
+                buffer = New.arrayList(QUERY_FLUSH_THRESHOLD);
+                newRows.put(node, buffer);
+            }
+            buffer.add(newRow);
+            if (buffer.size() >= QUERY_FLUSH_THRESHOLD) {
+                newRows.remove(node);
+                flushAsync(node, buffer);
+            }
+        }
+    }
+
+    /**
+     * Submit the rows of the table node. Only one write is in flight per shard,
+     * the shard connection can not be shared by concurrent statements, and
+     * waiting for the previous write of a slow shard applies backpressure to
+     * the source query. At most one buffer per table node and one write per
+     * shard are held in memory.
+     */
+    private void flushAsync(ObjectNode node, List<Row> rows) {
+        String shardName = node.getShardName();
+        Future<Integer> previous = flushing.remove(shardName);
+        if (previous != null) {
+            affectRows += getFlushed(previous);
         }
+        session.checkCanceled();
+        Row[] values = rows.toArray(new Row[rows.size()]);
+        UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, node, values);
+        flushing.put(shardName, queryExecutor.submit(worker));
     }
 
     private synchronized void flushNewRows() {
         try {
-            TableMate table = toTableMate(prepared.getTable());
-            if (newRows.isEmpty()) {
-                return;
+            for (Map.Entry<ObjectNode, List<Row>> item : newRows.entrySet()) {
+                flushAsync(item.getKey(), item.getValue());
             }
-            prepareInsert(table, newRows);
-            affectRows += invokeUpdateWorker(workers);
         } finally {
             newRows.clear();
         }
+        for (Iterator<Future<Integer>> it = flushing.values().iterator(); it.hasNext();) {
+            Future<Integer> future = it.next();
+            it.remove();
+            affectRows += getFlushed(future);
+        }
+    }
+
+    /**
+     * Write the rows still buffered and wait for all the writes, used by the
+     * executors feeding their rows through {@link #addRow(Value[])}.
+     *
+     * @return the number of rows written
+     */
+    long flushRows() {
+        flushNewRows();
+        return affectRows;
+    }
 
+    /**
+     * Wait for a write, at most until the statement times out. The deadline
+     * is set by the session from the query timeout when the statement
+     * starts, so the writes of a statement share it. The writes still in
+     * flight are canceled if it runs out.
+     */
+    private int getFlushed(Future<Integer> future) {
+        long cancelAt = session.getCancel();
+        try {
+            if (cancelAt > 0) {
+                long wait = Math.max(0, cancelAt - System.currentTimeMillis());
+                return future.get(wait, TimeUnit.MILLISECONDS);
+            }
+            return future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            cancelFlushing();
+            throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
+        } catch (InterruptedException e) {
+            throw DbException.convert(e);
+        } catch (ExecutionException e) {
+            throw DbException.convert(e.getCause());
+        }
+    }
+
+    private void cancelFlushing() {
+        for (Future<Integer> future : flushing.values()) {
+            future.cancel(true);
+        }
+        flushing.clear();
+        // the statements already running on the shards
+        session.doCancel();
+    }
+
+    /**
+     * Wait for the writes still in flight after a failure, the shard
+     * connections must not be used once the statement returns. All the
+     * writes together are waited for at most the query timeout.
+     */
+    synchronized void awaitFlushing() {
+        int queryTimeout = session.getQueryTimeout();// MILLISECONDS
+        long deadline = System.currentTimeMillis() + queryTimeout;
+        for (Future<Integer> future : flushing.values()) {
+            try {
+                if (queryTimeout > 0) {
+                    long wait = Math.max(0, deadline - System.currentTimeMillis());
+                    future.get(wait, TimeUnit.MILLISECONDS);
+                } else {
+                    future.get();
+                }
+            } catch (TimeoutException e) {
+                cancelFlushing();
+                return;
+            } catch (Exception e) {
+                // ignored, the first error is already thrown
+            }
+        }
+        flushing.clear();
     }
 
     @Override
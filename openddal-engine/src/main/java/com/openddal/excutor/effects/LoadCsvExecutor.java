@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.excutor.effects;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.openddal.command.dml.Insert;
+import com.openddal.command.dml.LoadCsv;
+import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.excutor.ExecutionFramework;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.message.Trace;
+import com.openddal.result.Csv;
+import com.openddal.util.JdbcUtils;
+import com.openddal.util.StringUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+
+/**
+ * Load a CSV file into a table. The file is parsed on the executing thread,
+ * the rows are routed to their table nodes and written as multi-row inserts
+ * by the per-shard asynchronous writers of {@link InsertExecutor}, so all the
+ * shards are written in parallel while the file is still being read.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class LoadCsvExecutor extends ExecutionFramework<LoadCsv> {
+
+    private static final int PROGRESS_INTERVAL = 100000;
+
+    private final Trace trace;
+    private TableMate table;
+
+    public LoadCsvExecutor(LoadCsv prepared) {
+        super(prepared);
+        this.trace = database.getTrace(Trace.COMMAND);
+    }
+
+    @Override
+    protected void doPrepare() {
+        table = toTableMate(prepared.getTable());
+        table.check();
+    }
+
+    @Override
+    protected int doUpdate() {
+        // the file is read by the server process
+        session.getUser().checkAdmin();
+        String fileName = getString(prepared.getFileNameExpr());
+        if (fileName == null) {
+            throw DbException.get(ErrorCode.PARAMETER_NOT_SET_1, "fileName");
+        }
+        Csv csv = new Csv();
+        String options = getString(prepared.getOptionsExpr());
+        String charset = options == null ? null : csv.setOptions(options);
+        Column[] columns = prepared.getColumns();
+        String[] columnNames = null;
+        if (columns != null) {
+            columnNames = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                columnNames[i] = columns[i].getName();
+            }
+        }
+        ResultSet rs = null;
+        InsertExecutor inserter = null;
+        try {
+            rs = csv.read(fileName, columnNames, charset);
+            if (columns == null) {
+                columns = readHeader(rs.getMetaData());
+            }
+            Insert insert = new Insert(session);
+            insert.setTable(table);
+            insert.setColumns(columns);
+            inserter = new InsertExecutor(insert);
+            long start = System.currentTimeMillis();
+            long rowCount = 0;
+            Object[] row;
+            while ((row = csv.readRow()) != null) {
+                Value[] values = new Value[columns.length];
+                for (int i = 0; i < values.length; i++) {
+                    String s = (String) row[i];
+                    values[i] = s == null ? ValueNull.INSTANCE : ValueString.get(s);
+                }
+                inserter.addRow(values);
+                if (++rowCount % PROGRESS_INTERVAL == 0) {
+                    session.checkCanceled();
+                    if (trace.isInfoEnabled()) {
+                        trace.info("load csv {0}: {1} rows read, {2}",
+                                table.getName(), rowCount, throughput(rowCount, start));
+                    }
+                }
+            }
+            long affectRows = inserter.flushRows();
+            if (trace.isInfoEnabled()) {
+                trace.info("load csv {0} from {1}: {2} rows written, {3}",
+                        table.getName(), fileName, affectRows, throughput(rowCount, start));
+            }
+            return InsertExecutor.getUpdateCount(affectRows);
+        } catch (SQLException e) {
+            throw DbException.convert(e);
+        } finally {
+            if (inserter != null) {
+                inserter.awaitFlushing();
+            }
+            csv.close();
+            JdbcUtils.closeSilently(rs);
+        }
+    }
+
+    /**
+     * Map the header of the file to the columns of the table.
+     */
+    private Column[] readHeader(ResultSetMetaData meta) throws SQLException {
+        Column[] columns = new Column[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            String name = meta.getColumnLabel(i + 1);
+            if (!table.doesColumnExist(name) && database.getSettings().databaseToUpper) {
+                name = StringUtils.toUpperEnglish(name);
+            }
+            columns[i] = table.getColumn(name);
+        }
+        return columns;
+    }
+
+    private String getString(Expression expr) {
+        if (expr == null) {
+            return null;
+        }
+        return expr.optimize(session).getValue(session).getString();
+    }
+
+    private static String throughput(long rowCount, long start) {
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        return time + " ms, " + (rowCount * 1000L / time) + " rows/s";
+    }
+
+    @Override
+    protected String doExplain() {
+        StringBuilder explain = new StringBuilder();
+        explain.append("load csv into ").append(table.getName()).append(" from ");
+        explain.append(prepared.getFileNameExpr().getSQL());
+        return explain.toString();
+    }
+
+}
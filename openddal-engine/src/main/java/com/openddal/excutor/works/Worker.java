@@ -13,6 +13,13 @@ public interface Worker {
      */
     void cancel();
 
+    /**
+     * Get the name of the shard the worker executes on.
+     *
+     * @return the shard name
+     */
+    String getShardName();
+
     /**
      * Get the handler with the execution explain.
      *
@@ -3,6 +3,9 @@ package com.openddal.excutor.works;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.openddal.command.ddl.AlterTableAddConstraint;
 import com.openddal.command.ddl.AlterTableAlterColumn;
@@ -22,6 +25,7 @@ import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.dbobject.table.TableFilter;
 import com.openddal.engine.Session;
+import com.openddal.engine.StageStatistics;
 import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.New;
@@ -31,136 +35,178 @@ import com.openddal.util.New;
  */
 public class WorkerFactoryProxy implements WorkerFactory {
 
+    private final Session session;
     private final WorkerFactory target;
+    private final StageStatistics stageStatistics;
     private final Set<Worker> workerHolder = New.hashSet();
+    private final Set<Worker> detachedWorkers = New.hashSet();
+    private long createdWorkers;
 
     public WorkerFactoryProxy(Session session) {
+        this.session = session;
         this.target = session.getDatabase().getRepository().getWorkerFactory();
+        this.stageStatistics = session.getDatabase().getStageStatistics();
     }
 
     @Override
     public QueryWorker createQueryWorker(Select select, ObjectNode node,
             Map<ObjectNode, Map<TableFilter, ObjectNode>> consistencyTableNodes) {
+        long start = stageStatistics.start();
         QueryWorker handler = target.createQueryWorker(select, node, consistencyTableNodes);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public QueryWorker createQueryWorker(TableFilter filter, ObjectNode node) {
+        long start = stageStatistics.start();
         QueryWorker handler = target.createQueryWorker(filter, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public QueryWorker createQueryWorker(Call call, ObjectNode node) {
+        long start = stageStatistics.start();
         QueryWorker handler = target.createQueryWorker(call, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Insert insert, ObjectNode node, Row ... rows) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(insert, node, rows);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Update update, ObjectNode node, Row row) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(update, node, row);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Delete delete, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(delete, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Replace replace, ObjectNode node, Row ... rows) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(replace, node, rows);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Merge merge, ObjectNode node, Row ... rows) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(merge, node, rows);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(Call call, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(call, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(CreateTable createTable, ObjectNode node, ObjectNode refNode) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(createTable, node, refNode);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(DropTable dropTable, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(dropTable, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(TruncateTable truncateTable, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(truncateTable, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(AlterTableAddConstraint alterTableAddConstraint, ObjectNode node, ObjectNode refNode) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(alterTableAddConstraint, node, refNode);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(AlterTableAlterColumn alterTableAlterColumn, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(alterTableAlterColumn, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(AlterTableRename alterTableRename, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(alterTableRename, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(AlterTableDropConstraint alterTableRename, ObjectNode node) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(alterTableRename, node);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(CreateIndex createIndex, ObjectNode indexNode, ObjectNode tableNode) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(createIndex, indexNode, tableNode);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
 
     @Override
     public UpdateWorker createUpdateWorker(DropIndex dropIndex, ObjectNode indexNode, ObjectNode tableNode) {
+        long start = stageStatistics.start();
         UpdateWorker handler = target.createUpdateWorker(dropIndex, indexNode, tableNode);
+        stageStatistics.end(StageStatistics.TRANSLATE, start);
         handler = holdeWorker(handler);
         return handler;
     }
@@ -172,6 +218,10 @@ public class WorkerFactoryProxy implements WorkerFactory {
         for (BatchUpdateWorker batchWorker : batchWorkers) {
             batchWorkerProxys.add(holdeWorker(batchWorker));
         }
+        synchronized (this) {
+            // the merged workers are executed instead
+            createdWorkers -= workers.size();
+        }
         return batchWorkerProxys;
     }
 
@@ -186,22 +236,123 @@ public class WorkerFactoryProxy implements WorkerFactory {
         workerHolder.clear();
     }
 
-    public synchronized void cancelWorkers() {
+    /**
+     * Cancel the held and the detached workers. The statements are canceled
+     * in parallel, canceling a statement of a remote database may need a
+     * round trip of its own. This method may be called by another thread, the
+     * workers are not canceled with the lock held.
+     */
+    public void cancelWorkers() {
+        List<Worker> workers;
+        synchronized (this) {
+            workers = New.arrayList(workerHolder);
+            workers.addAll(detachedWorkers);
+        }
+        if (workers.size() == 1) {
+            cancelWorker(workers.get(0));
+            return;
+        }
+        ExecutorService executor = session.getDatabase().getCancelExecutor();
+        List<Future<?>> futures = New.arrayList(workers.size());
+        for (final Worker worker : workers) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    cancelWorker(worker);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // ignored
+            }
+        }
+    }
+
+    private static void cancelWorker(Worker worker) {
+        try {
+            worker.cancel();
+        } catch (Throwable e) {
+            // ignored
+        }
+    }
+
+    /**
+     * Get the shards of the held and the detached workers.
+     *
+     * @return the shard names
+     */
+    public synchronized List<String> getShardNames() {
+        List<String> shards = New.arrayList(workerHolder.size() + detachedWorkers.size());
         for (Worker worker : workerHolder) {
+            shards.add(worker.getShardName());
+        }
+        for (Worker worker : detachedWorkers) {
+            shards.add(worker.getShardName());
+        }
+        return shards;
+    }
+
+    /**
+     * Detach the workers of the current statement, they are not closed when
+     * the statement ends but still canceled with the session. Used by the
+     * lazy results that read the workers after the statement returned.
+     *
+     * @return the detached workers
+     */
+    public synchronized List<Worker> detachWorkers() {
+        List<Worker> workers = New.arrayList(workerHolder);
+        detachedWorkers.addAll(workerHolder);
+        workerHolder.clear();
+        return workers;
+    }
+
+    /**
+     * Close the detached workers.
+     *
+     * @param workers the workers to close
+     */
+    public synchronized void closeWorkers(List<Worker> workers) {
+        for (Worker worker : workers) {
+            detachedWorkers.remove(worker);
             try {
-                worker.cancel();
+                worker.close();
             } catch (Throwable e) {
                 // ignored
             }
         }
     }
 
+    /**
+     * Close all the workers, including the detached ones.
+     */
+    public synchronized void closeAllWorkers() {
+        closeWorkers(New.arrayList(detachedWorkers));
+        closeWorkers();
+    }
+
     public synchronized boolean hasHoldeWorker() {
         return !workerHolder.isEmpty();
     }
     
+    /**
+     * Get the number of workers created by this session, used to count the
+     * shard executions of a statement.
+     *
+     * @return the number of workers
+     */
+    public synchronized long getCreatedWorkerCount() {
+        return createdWorkers;
+    }
+
     private synchronized <T extends Worker> T holdeWorker(T target) {
         workerHolder.add(target);
+        createdWorkers++;
         return target;
     }
 
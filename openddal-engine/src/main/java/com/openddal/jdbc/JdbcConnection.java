@@ -1308,7 +1308,7 @@ public class JdbcConnection extends TraceObject implements Connection {
         getGeneratedKeys = prepareCommand("SELECT SCOPE_IDENTITY() "
                 + "WHERE SCOPE_IDENTITY() IS NOT NULL", getGeneratedKeys);
         ResultInterface result = getGeneratedKeys.executeQuery(0, false);
-        ResultSet rs = new JdbcResultSet(this, stat, result, id, false, true, false);
+        ResultSet rs = new JdbcResultSet(this, stat, null, result, id, false, true, false);
         return rs;
     }
 
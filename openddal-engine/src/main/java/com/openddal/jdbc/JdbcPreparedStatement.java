@@ -33,6 +33,7 @@ import java.sql.SQLException;
 import java.sql.SQLXML;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 
@@ -115,6 +116,7 @@ public class JdbcPreparedStatement extends JdbcStatement implements
                 boolean updatable = resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
                 try {
                     setExecutingStatement(command);
+                    command.setFetchSize(fetchSize);
                     result = command.executeQuery(maxRows, scrollable);
                 } finally {
                     setExecutingStatement(null);
@@ -172,6 +174,18 @@ public class JdbcPreparedStatement extends JdbcStatement implements
         return updateCount;
     }
 
+    private int[] executeBatchUpdateInternal() throws SQLException {
+        closeOldResultSet();
+        synchronized (session) {
+            try {
+                setExecutingStatement(command);
+                return command.executeBatchUpdate(batchParameters);
+            } finally {
+                setExecutingStatement(null);
+            }
+        }
+    }
+
     /**
      * Executes an arbitrary statement. If another result set exists for this
      * statement, this will be closed (even if this statement fails). If auto
@@ -200,7 +214,7 @@ public class JdbcPreparedStatement extends JdbcStatement implements
                             boolean scrollable = resultSetType != ResultSet.TYPE_FORWARD_ONLY;
                             boolean updatable = resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
                             ResultInterface result = command.executeQuery(maxRows, scrollable);
-                            resultSet = new JdbcResultSet(conn, this, result,
+                            resultSet = new JdbcResultSet(conn, this, null, result,
                                     id, closedByResultSet, scrollable,
                                     updatable);
                         } else {
@@ -1161,7 +1175,11 @@ public class JdbcPreparedStatement extends JdbcStatement implements
 
     /**
      * Executes the batch.
-     * If one of the batched statements fails, this database will continue.
+     * If the statement can be routed as a whole batch (INSERT ... VALUES),
+     * all parameter sets are sent to each shard as one JDBC batch, and if
+     * this fails all statements of the batch are reported as failed.
+     * Otherwise the statements are executed one by one, and if one of the
+     * batched statements fails, this database will continue.
      *
      * @return the array of update counts
      */
@@ -1180,6 +1198,20 @@ public class JdbcPreparedStatement extends JdbcStatement implements
             SQLException next = null;
             checkClosed();
             try {
+                if (size > 1) {
+                    int[] batchResult;
+                    try {
+                        batchResult = executeBatchUpdateInternal();
+                    } catch (Exception re) {
+                        batchParameters = null;
+                        Arrays.fill(result, Statement.EXECUTE_FAILED);
+                        throw new JdbcBatchUpdateException(logAndConvert(re), result);
+                    }
+                    if (batchResult != null) {
+                        batchParameters = null;
+                        return batchResult;
+                    }
+                }
                 for (int i = 0; i < size; i++) {
                     Value[] set = batchParameters.get(i);
                     ArrayList<? extends ParameterInterface> parameters =
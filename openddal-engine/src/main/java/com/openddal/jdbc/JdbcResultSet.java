@@ -15,6 +15,7 @@
  */
 package com.openddal.jdbc;
 
+import com.openddal.command.CommandInterface;
 import com.openddal.engine.SysProperties;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
@@ -66,13 +67,15 @@ public class JdbcResultSet extends TraceObject implements ResultSet {
     private HashMap<String, Integer> columnLabelMap;
     private HashMap<Integer, Value[]> patchedRows;
     private JdbcPreparedStatement preparedStatement;
+    private CommandInterface command;
 
-    JdbcResultSet(JdbcConnection conn, JdbcStatement stat,
+    JdbcResultSet(JdbcConnection conn, JdbcStatement stat, CommandInterface command,
                   ResultInterface result, int id, boolean closeStatement,
                   boolean scrollable, boolean updatable) {
         setTrace(conn.getSession().getTrace(), TraceObject.RESULT_SET, id);
         this.conn = conn;
         this.stat = stat;
+        this.command = command;
         this.result = result;
         columnCount = result.getVisibleColumnCount();
         this.closeStatement = closeStatement;
@@ -84,7 +87,7 @@ public class JdbcResultSet extends TraceObject implements ResultSet {
                   ResultInterface result, int id, boolean closeStatement,
                   boolean scrollable, boolean updatable,
                   HashMap<String, Integer> columnLabelMap) {
-        this(conn, preparedStatement, result, id, closeStatement, scrollable,
+        this(conn, preparedStatement, null, result, id, closeStatement, scrollable,
                 updatable);
         this.columnLabelMap = columnLabelMap;
         this.preparedStatement = preparedStatement;
@@ -195,10 +198,15 @@ public class JdbcResultSet extends TraceObject implements ResultSet {
         if (result != null) {
             try {
                 result.close();
+                if (command != null) {
+                    // the command of a lazy result can be reused from now on
+                    command.close();
+                }
                 if (closeStatement && stat != null) {
                     stat.close();
                 }
             } finally {
+                command = null;
                 columnCount = 0;
                 result = null;
                 stat = null;
@@ -3165,6 +3173,25 @@ public class JdbcResultSet extends TraceObject implements ResultSet {
         }
     }
 
+    /**
+     * INTERNAL.
+     * Get the values of the current row. This is used by the server to encode
+     * the values without the conversions of the getters.
+     *
+     * @return the values of the row
+     */
+    public Value[] getCurrentRow() {
+        checkClosed();
+        checkOnValidRow();
+        if (patchedRows != null) {
+            Value[] list = patchedRows.get(result.getRowId());
+            if (list != null) {
+                return list;
+            }
+        }
+        return result.currentRow();
+    }
+
     private Value get(int columnIndex) {
         checkColumnIndex(columnIndex);
         checkOnValidRow();
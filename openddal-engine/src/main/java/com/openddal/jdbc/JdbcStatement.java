@@ -28,6 +28,7 @@ import com.openddal.engine.SysProperties;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.TraceObject;
+import com.openddal.result.LazyResult;
 import com.openddal.result.ResultInterface;
 import com.openddal.util.New;
 
@@ -91,8 +92,13 @@ public class JdbcStatement extends TraceObject implements Statement {
                 } finally {
                     setExecutingStatement(null);
                 }
-                command.close();
-                resultSet = new JdbcResultSet(conn, this, result, id,
+                // a lazy result reads the state of the command until it is
+                // closed, the command must not be reused by the session before
+                boolean lazy = result instanceof LazyResult;
+                if (!lazy) {
+                    command.close();
+                }
+                resultSet = new JdbcResultSet(conn, this, lazy ? command : null, result, id,
                         closedByResultSet, scrollable, updatable);
             }
             return resultSet;
@@ -188,7 +194,11 @@ public class JdbcStatement extends TraceObject implements Statement {
                         boolean scrollable = resultSetType != ResultSet.TYPE_FORWARD_ONLY;
                         boolean updatable = resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
                         ResultInterface result = command.executeQuery(maxRows, scrollable);
-                        resultSet = new JdbcResultSet(conn, this, result, id,
+                        boolean lazy = result instanceof LazyResult;
+                        if (!lazy) {
+                            command.close();
+                        }
+                        resultSet = new JdbcResultSet(conn, this, lazy ? command : null, result, id,
                                 closedByResultSet, scrollable, updatable);
                     } else {
                         returnsResultSet = false;
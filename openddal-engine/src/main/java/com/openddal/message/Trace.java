@@ -73,6 +73,11 @@ public class Trace {
      */
     public static final String REPOSITORY = "repository";
 
+    /**
+     * The trace module name for the slow query log.
+     */
+    public static final String SLOW_QUERY = "slowquery";
+
     private final TraceWriter traceWriter;
     private int traceLevel = TraceSystem.PARENT;
 
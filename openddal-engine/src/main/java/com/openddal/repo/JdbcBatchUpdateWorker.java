@@ -37,6 +37,17 @@ public class JdbcBatchUpdateWorker extends JdbcWorker implements BatchUpdateWork
         this.array = array;
     }
 
+    @Override
+    protected long getParameterMemory() {
+        long memory = 0;
+        if (array != null) {
+            for (List<Value> params : array) {
+                memory += getMemory(params);
+            }
+        }
+        return memory;
+    }
+
     @Override
     public Integer[] call() throws Exception {
         return executeBatchUpdate();
@@ -44,17 +55,18 @@ public class JdbcBatchUpdateWorker extends JdbcWorker implements BatchUpdateWork
 
     @Override
     public Integer[] executeBatchUpdate() {
+        beginExecution();
         try {
             if (array == null || array.size() < 1) {
                 throw new IllegalArgumentException();
             }
-            Options optional = Options.build().shardName(shardName).readOnly(true);
+            Options optional = Options.build().shardName(shardName).readOnly(false);
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} Fetching connection from DataSource.", shardName);
             }
             opendConnection = doGetConnection(optional);
             if (trace.isDebugEnabled()) {
-                trace.debug("{0} Preparing: {};", shardName, sql);
+                trace.debug("{0} Preparing: {1};", shardName, sql);
             }
             opendStatement = opendConnection.prepareStatement(sql);
             applyQueryTimeout(opendStatement);
@@ -77,12 +89,16 @@ public class JdbcBatchUpdateWorker extends JdbcWorker implements BatchUpdateWork
             Integer[] rows = new Integer[affected.length];
             for (int i = 0; i < rows.length; i++) {
                 rows[i] = affected[i];
+                if (affected[i] > 0) {
+                    rowCount += affected[i];
+                }
             }
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} executeUpdate: {1} affected.", shardName, Arrays.toString(affected));
             }
             return rows;
         } catch (SQLException e) {
+            failed = true;
             StatementBuilder buff = new StatementBuilder();
             buff.append(sql);
             for (List<Value> params : array) {
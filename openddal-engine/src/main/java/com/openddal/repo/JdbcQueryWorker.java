@@ -33,10 +33,26 @@ import com.openddal.value.Value;
  */
 public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
 
+    private int fetchSize;
+
     public JdbcQueryWorker(Session session, String shardName, String sql, List<Value> params) {
         super(session, shardName, sql, params);
     }
 
+    /**
+     * Set the number of rows suggested to read from the shard in one step.
+     *
+     * @param fetchSize the fetch size, 0 for the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    protected boolean isQuery() {
+        return true;
+    }
+
     @Override
     public Cursor call() throws Exception {
         return executeQuery();
@@ -44,6 +60,7 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
 
     @Override
     public Cursor executeQuery() {
+        beginExecution();
         try {
             Options optional = Options.build().shardName(shardName).readOnly(true);
             if (trace.isDebugEnabled()) {
@@ -52,10 +69,13 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
             opendConnection = doGetConnection(optional);
 
             if (trace.isDebugEnabled()) {
-                trace.debug("{0} Preparing: {};", shardName, sql);
+                trace.debug("{0} Preparing: {1};", shardName, sql);
             }
             opendStatement = opendConnection.prepareStatement(sql);
             applyQueryTimeout(opendStatement);
+            if (fetchSize > 0) {
+                opendStatement.setFetchSize(fetchSize);
+            }
             if (params != null) {
                 for (int i = 0, size = params.size(); i < size; i++) {
                     Value v = params.get(i);
@@ -68,6 +88,7 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
             opendResultSet = opendStatement.executeQuery();
             return new AutoCloseCursor(new ResultCursor(session, opendResultSet), this);
         } catch (SQLException e) {
+            failed = true;
             close();
             StatementBuilder buff = new StatementBuilder();
             buff.append(sql);
@@ -105,7 +126,12 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
 
         public boolean next() {
             boolean next = target.next();
-            if (!next) {
+            if (next) {
+                worker.rowCount++;
+                if (worker.countBytes) {
+                    worker.bytesRead += target.get().getMemory();
+                }
+            } else {
                 worker.close();
             }
             return next;
@@ -40,6 +40,7 @@ public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
 
     @Override
     public int executeUpdate() {
+        beginExecution();
         try {
             Options optional = Options.build().shardName(shardName).readOnly(false);
             if (trace.isDebugEnabled()) {
@@ -61,11 +62,13 @@ public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
                 }
             }
             int rows = opendStatement.executeUpdate();
+            rowCount = rows;
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} executeUpdate: {1} affected.", shardName, rows);
             }
             return rows;
         } catch (SQLException e) {
+            failed = true;
             StatementBuilder buff = new StatementBuilder();
             buff.append(sql);
             if (params != null && 0 < params.size()) {
@@ -21,12 +21,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorder;
+import com.openddal.engine.NodeStatistics;
 import com.openddal.engine.Session;
+import com.openddal.engine.SlowQueryLog.ShardEntry;
+import com.openddal.engine.StageStatistics;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.Trace;
 import com.openddal.repo.tx.JdbcTransaction;
+import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.StatementBuilder;
 import com.openddal.value.Value;
 
@@ -45,6 +52,25 @@ public abstract class JdbcWorker {
     protected PreparedStatement opendStatement;
     protected ResultSet opendResultSet;
     protected boolean closed;
+    /**
+     * The rows read or updated by the last execution.
+     */
+    protected long rowCount;
+    /**
+     * The estimated size of the rows read by the last execution, only
+     * counted if {@link #countBytes} is set.
+     */
+    protected long bytesRead;
+    protected boolean countBytes;
+    /**
+     * If the last execution failed.
+     */
+    protected boolean failed;
+    protected ObjectNode tableNode;
+    private boolean executing;
+    private long executeStart;
+    private long bytesWritten;
+    private Object flightEvent;
 
     public JdbcWorker(Session session, String shardName, String sql, List<Value> params) {
         super();
@@ -102,6 +128,102 @@ public abstract class JdbcWorker {
         return params;
     }
 
+    /**
+     * @return the table node the statement is executed on, or null
+     */
+    public ObjectNode getTableNode() {
+        return tableNode;
+    }
+
+    /**
+     * Set the table node the statement is executed on, its traffic is
+     * recorded in the node statistics.
+     *
+     * @param tableNode the table node
+     */
+    public void setTableNode(ObjectNode tableNode) {
+        this.tableNode = tableNode;
+    }
+
+    /**
+     * Start the stopwatch of an execution on the shard, the execution is
+     * recorded for the stage statistics, the node statistics and the slow
+     * query log when the worker is closed.
+     */
+    protected void beginExecution() {
+        Database database = session.getDatabase();
+        rowCount = 0;
+        bytesRead = 0;
+        failed = false;
+        countBytes = tableNode != null && database.getNodeStatistics().isEnabled();
+        bytesWritten = countBytes ? getParameterMemory() : 0;
+        executing = countBytes || database.getStageStatistics().isEnabled()
+                || database.getSlowQueryLog().isEnabled() || FlightRecorder.ENABLED;
+        if (executing) {
+            executeStart = System.nanoTime();
+            if (FlightRecorder.ENABLED) {
+                flightEvent = FlightRecorder.get().beginShardExecution();
+            }
+        }
+    }
+
+    /**
+     * Get the estimated size of the parameters sent to the shard.
+     *
+     * @return the size
+     */
+    protected long getParameterMemory() {
+        return getMemory(params);
+    }
+
+    /**
+     * Get the estimated size of values.
+     *
+     * @param values the values, may be null
+     * @return the size
+     */
+    protected static long getMemory(List<Value> values) {
+        long memory = 0;
+        if (values != null) {
+            for (Value v : values) {
+                memory += v.getMemory();
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * @return true if the worker reads rows, false if it writes them
+     */
+    protected boolean isQuery() {
+        return false;
+    }
+
+    private void endExecution() {
+        if (executing) {
+            executing = false;
+            Database database = session.getDatabase();
+            long nanos = System.nanoTime() - executeStart;
+            database.getStageStatistics().record(StageStatistics.SHARD_EXECUTE, nanos);
+            if (flightEvent != null) {
+                FlightRecorder.get().endShardExecution(flightEvent, shardName, sql, rowCount, failed);
+                flightEvent = null;
+            }
+            if (countBytes) {
+                NodeStatistics nodeStatistics = database.getNodeStatistics();
+                if (isQuery()) {
+                    nodeStatistics.record(tableNode, nanos, rowCount, 0, bytesRead, bytesWritten, failed);
+                } else {
+                    nodeStatistics.record(tableNode, nanos, 0, rowCount, 0, bytesWritten, failed);
+                }
+            }
+            if (database.getSlowQueryLog().isEnabled()) {
+                long time = TimeUnit.NANOSECONDS.toMillis(nanos);
+                session.addShardExecution(new ShardEntry(shardName, sql, rowCount, time));
+            }
+        }
+    }
+
     public void cancel() {
         try {
             if (opendStatement == null) {
@@ -114,6 +236,7 @@ public abstract class JdbcWorker {
     }
     
     public void close() {
+        endExecution();
         try {
             if (opendResultSet != null) {
                 try {
@@ -1,6 +1,5 @@
 package com.openddal.repo;
 
-import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +28,7 @@ import com.openddal.excutor.works.WorkerFactory;
 import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.New;
+import com.openddal.util.StringUtils;
 import com.openddal.value.Value;
 
 public class JdbcWorkerFactory implements WorkerFactory {
@@ -45,6 +45,8 @@ public class JdbcWorkerFactory implements WorkerFactory {
         SQLTranslated translated = repo.getSQLTranslator().translate(select, node, consistencyTableNodes);
         JdbcQueryWorker handler = new JdbcQueryWorker(select.getSession(), node.getShardName(), translated.sql,
                 translated.params);
+        handler.setTableNode(node);
+        handler.setFetchSize(select.getFetchSize());
         return handler;
     }
 
@@ -53,6 +55,10 @@ public class JdbcWorkerFactory implements WorkerFactory {
         SQLTranslated translated = repo.getSQLTranslator().translate(filter, node);
         JdbcQueryWorker handler = new JdbcQueryWorker(filter.getSession(), node.getShardName(), translated.sql,
                 translated.params);
+        handler.setTableNode(node);
+        if (filter.getSelect() != null) {
+            handler.setFetchSize(filter.getSelect().getFetchSize());
+        }
         return handler;
     }
 
@@ -65,6 +71,7 @@ public class JdbcWorkerFactory implements WorkerFactory {
     public UpdateWorker createUpdateWorker(Insert insert, ObjectNode node, Row ... rows) {
         SQLTranslated translated = repo.getSQLTranslator().translate(insert, node, rows);
         JdbcUpdateWorker handler = new JdbcUpdateWorker(insert.getSession(), node.getShardName(), translated.sql, translated.params);
+        handler.setTableNode(node);
         return handler;
     }
 
@@ -72,6 +79,7 @@ public class JdbcWorkerFactory implements WorkerFactory {
     public UpdateWorker createUpdateWorker(Update update, ObjectNode node, Row row) {
         SQLTranslated translated = repo.getSQLTranslator().translate(update, node, row);
         JdbcUpdateWorker handler = new JdbcUpdateWorker(update.getSession(), node.getShardName(), translated.sql, translated.params);
+        handler.setTableNode(node);
         return handler;        
     
     }
@@ -81,6 +89,7 @@ public class JdbcWorkerFactory implements WorkerFactory {
         SQLTranslated translated = repo.getSQLTranslator().translate(delete, node);
         JdbcUpdateWorker handler = new JdbcUpdateWorker(delete.getSession(), node.getShardName(), translated.sql,
                 translated.params);
+        handler.setTableNode(node);
         return handler;
     }
 
@@ -167,82 +176,43 @@ public class JdbcWorkerFactory implements WorkerFactory {
         return handler;
     }
 
+    /**
+     * Merge the update workers with the same shard and SQL into batch workers.
+     * Only consecutive workers are merged, so the update counts of the
+     * returned workers, in order, line up with the given workers.
+     */
     @Override
     public List<BatchUpdateWorker> mergeToBatchUpdateWorker(Session session, List<UpdateWorker> workers) {
-        Map<BatchKey, List<List<Value>>> batches = New.hashMap();
+        List<BatchUpdateWorker> batchWorkers = New.arrayList();
+        String shardName = null;
+        String sql = null;
+        ObjectNode tableNode = null;
+        List<List<Value>> array = null;
         for (UpdateWorker updateWorker : workers) {
-            JdbcUpdateWorker jdbcWorker = (JdbcUpdateWorker)updateWorker;
-            BatchKey batchKey = new BatchKey(jdbcWorker.getShardName(), jdbcWorker.getSql());
-            List<List<Value>> batchArgs = batches.get(batchKey);
-            if (batchArgs == null) {
-                batchArgs = New.arrayList(10);
-                batches.put(batchKey, batchArgs);
+            JdbcUpdateWorker jdbcWorker = (JdbcUpdateWorker) updateWorker;
+            if (array == null || !StringUtils.equals(shardName, jdbcWorker.getShardName())
+                    || !StringUtils.equals(sql, jdbcWorker.getSql())) {
+                if (array != null) {
+                    batchWorkers.add(createBatchUpdateWorker(session, shardName, sql, array, tableNode));
+                }
+                shardName = jdbcWorker.getShardName();
+                sql = jdbcWorker.getSql();
+                tableNode = jdbcWorker.getTableNode();
+                array = New.arrayList(10);
             }
-            batchArgs.add(jdbcWorker.getParams());
+            array.add(jdbcWorker.getParams());
         }
-        List<BatchUpdateWorker> batchWorkers = New.arrayList(batches.size());
-        for (Map.Entry<BatchKey, List<List<Value>>> entry : batches.entrySet()) {
-            String shardName = entry.getKey().shardName;
-            String sql = entry.getKey().sql;
-            List<List<Value>> array = entry.getValue();
-            JdbcBatchUpdateWorker batchWorker = new JdbcBatchUpdateWorker(session, shardName, sql, array); 
-            batchWorkers.add(batchWorker);
+        if (array != null) {
+            batchWorkers.add(createBatchUpdateWorker(session, shardName, sql, array, tableNode));
         }
         return batchWorkers;
     }
-    
-    private static class BatchKey implements Serializable {
-        private static final long serialVersionUID = 1L;
-
-        private final String shardName;
-        private final String sql;
-
-        /**
-         * @param shardName
-         * @param sql
-         */
-        private BatchKey(String shardName, String sql) {
-            super();
-            this.shardName = shardName;
-            this.sql = sql;
-        }
-
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((shardName == null) ? 0 : shardName.hashCode());
-            result = prime * result + ((sql == null) ? 0 : sql.hashCode());
-            return result;
-        }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            BatchKey other = (BatchKey) obj;
-            if (shardName == null) {
-                if (other.shardName != null)
-                    return false;
-            } else if (!shardName.equals(other.shardName))
-                return false;
-            if (sql == null) {
-                if (other.sql != null)
-                    return false;
-            } else if (!sql.equals(other.sql))
-                return false;
-            return true;
-        }
-
-        @Override
-        public String toString() {
-            return "BatchKey [shardName=" + shardName + ", sql=" + sql + "]";
-        }
+    private static JdbcBatchUpdateWorker createBatchUpdateWorker(Session session, String shardName, String sql,
+            List<List<Value>> array, ObjectNode tableNode) {
+        JdbcBatchUpdateWorker worker = new JdbcBatchUpdateWorker(session, shardName, sql, array);
+        worker.setTableNode(tableNode);
+        return worker;
     }
 
-
 }
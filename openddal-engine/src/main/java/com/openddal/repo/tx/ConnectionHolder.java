@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Set;
 
 import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorder;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
@@ -68,11 +69,18 @@ public class ConnectionHolder implements ConnectionProvider {
 
     @Override
     public synchronized Connection getConnection(Options options) {
+        Object event = FlightRecorder.ENABLED ? FlightRecorder.get().beginConnection() : null;
         Connection conn;
-        if (session.getAutoCommit()) {
-            conn = getRawConnection(options);
-        } else {
-            conn = getConnectionWithStrategy(options);
+        try {
+            if (session.getAutoCommit()) {
+                conn = getRawConnection(options);
+            } else {
+                conn = getConnectionWithStrategy(options);
+            }
+        } finally {
+            if (event != null) {
+                FlightRecorder.get().endConnection(event, options.shardName, options.readOnly);
+            }
         }
         return conn;
     }
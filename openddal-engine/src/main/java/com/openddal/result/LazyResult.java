@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.result;
+
+import java.util.ArrayList;
+
+import com.openddal.command.expression.Expression;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.util.New;
+import com.openddal.value.Value;
+
+/**
+ * A forward only result, the rows are computed while the result is read
+ * instead of being collected in memory first. The row count is the number of
+ * rows read so far, it is only the total row count after the last row.
+ */
+public abstract class LazyResult implements ResultInterface {
+
+    private final Expression[] expressions;
+    private final int visibleColumnCount;
+    private final int limit;
+    private Value[] currentRow;
+    private Value[] nextRow;
+    private int rowId = -1;
+    private int rowCount;
+    private boolean afterLast;
+    private boolean closed;
+    private int fetchSize;
+    private ArrayList<Value[]> rows;
+    private int rowsIndex;
+    private DbException failure;
+    private Runnable finishAction;
+
+    /**
+     * Construct a lazy result object.
+     *
+     * @param expressions the expression array
+     * @param visibleColumnCount the number of visible columns
+     * @param limit the maximum number of rows, or -1 for no limit
+     */
+    public LazyResult(Expression[] expressions, int visibleColumnCount, int limit) {
+        this.expressions = expressions;
+        this.visibleColumnCount = visibleColumnCount;
+        this.limit = limit;
+    }
+
+    /**
+     * Compute the next row.
+     *
+     * @return the next row or null if there are no more rows
+     */
+    protected abstract Value[] fetchNextRow();
+
+    /**
+     * Release the resources used to compute the rows.
+     */
+    protected abstract void doClose();
+
+    /**
+     * Set the action to run once the last row was read or the result is
+     * closed, whichever comes first. The statement is only complete then, so
+     * this is where its row count and time are recorded.
+     *
+     * @param finishAction the action
+     */
+    public void setFinishAction(Runnable finishAction) {
+        this.finishAction = finishAction;
+    }
+
+    private void finish() {
+        Runnable action = finishAction;
+        if (action != null) {
+            finishAction = null;
+            action.run();
+        }
+    }
+
+    /**
+     * Check if there is a next row, the row is computed if required.
+     *
+     * @return true if there is
+     */
+    public boolean hasNext() {
+        if (closed || afterLast) {
+            return false;
+        }
+        if (nextRow == null && (limit < 0 || rowCount < limit)) {
+            if (rows == null) {
+                nextRow = fetchNextRow();
+            } else if (rowsIndex < rows.size()) {
+                nextRow = rows.set(rowsIndex++, null);
+            } else if (failure != null) {
+                // the rows read before the error are returned first
+                throw failure;
+            }
+        }
+        return nextRow != null;
+    }
+
+    /**
+     * Read the remaining rows into memory and release the resources used to
+     * compute them. This is done before the shard connections are closed at
+     * the end of a transaction, so the result can still be read. If reading
+     * fails, the error is thrown to the reader of the result.
+     */
+    public void materialize() {
+        if (closed || rows != null) {
+            return;
+        }
+        ArrayList<Value[]> list = New.arrayList();
+        try {
+            while (!afterLast && (limit < 0 || rowCount + list.size() < limit)) {
+                Value[] row = nextRow != null ? nextRow : fetchNextRow();
+                nextRow = null;
+                if (row == null) {
+                    break;
+                }
+                list.add(row);
+            }
+        } catch (DbException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = DbException.convert(e);
+        } finally {
+            doClose();
+        }
+        rows = list;
+        rowsIndex = 0;
+    }
+
+    @Override
+    public boolean next() {
+        if (hasNext()) {
+            currentRow = nextRow;
+            nextRow = null;
+            rowId++;
+            rowCount++;
+            return true;
+        }
+        if (!afterLast) {
+            afterLast = true;
+            currentRow = null;
+            rowId = rowCount;
+            try {
+                if (rows == null) {
+                    // the shard results are released before the statement
+                    // is recorded, as materialize does
+                    doClose();
+                    rows = New.arrayList();
+                }
+            } finally {
+                finish();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        throw DbException.get(ErrorCode.RESULT_SET_NOT_SCROLLABLE);
+    }
+
+    @Override
+    public Value[] currentRow() {
+        return currentRow;
+    }
+
+    @Override
+    public int getRowId() {
+        return rowId;
+    }
+
+    @Override
+    public int getVisibleColumnCount() {
+        return visibleColumnCount;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean needToClose() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            currentRow = null;
+            nextRow = null;
+            try {
+                if (rows == null) {
+                    doClose();
+                }
+            } finally {
+                rows = null;
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Check if this result set is closed.
+     *
+     * @return true if it is
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getAlias(int i) {
+        return expressions[i].getAlias();
+    }
+
+    @Override
+    public String getSchemaName(int i) {
+        return expressions[i].getSchemaName();
+    }
+
+    @Override
+    public String getTableName(int i) {
+        return expressions[i].getTableName();
+    }
+
+    @Override
+    public String getColumnName(int i) {
+        return expressions[i].getColumnName();
+    }
+
+    @Override
+    public int getColumnType(int i) {
+        return expressions[i].getType();
+    }
+
+    @Override
+    public long getColumnPrecision(int i) {
+        return expressions[i].getPrecision();
+    }
+
+    @Override
+    public int getColumnScale(int i) {
+        return expressions[i].getScale();
+    }
+
+    @Override
+    public int getDisplaySize(int i) {
+        return expressions[i].getDisplaySize();
+    }
+
+    @Override
+    public boolean isAutoIncrement(int i) {
+        return expressions[i].isAutoIncrement();
+    }
+
+    @Override
+    public int getNullable(int i) {
+        return expressions[i].getNullable();
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " columns: " + visibleColumnCount + " rows: " + rowCount + " pos: " + rowId;
+    }
+
+}
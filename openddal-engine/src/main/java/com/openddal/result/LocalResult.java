@@ -20,6 +20,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 
 import com.openddal.command.expression.Expression;
+import com.openddal.engine.FlightRecorder;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.util.New;
@@ -281,11 +282,15 @@ public class LocalResult implements ResultInterface, ResultTarget {
             rows = distinctRows.values();
         }
         if (sort != null) {
+            Object event = FlightRecorder.ENABLED ? FlightRecorder.get().beginSort() : null;
             if (offset > 0 || limit > 0) {
                 sort.sort(rows, offset, limit < 0 ? rows.size() : limit);
             } else {
                 sort.sort(rows);
             }
+            if (event != null) {
+                FlightRecorder.get().endSort(event, rows.size());
+            }
         }
         
         applyOffset();
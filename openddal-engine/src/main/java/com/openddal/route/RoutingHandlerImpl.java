@@ -28,6 +28,8 @@ import com.openddal.config.TableRule;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorder;
+import com.openddal.engine.StageStatistics;
 import com.openddal.result.SearchRow;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RoutingArgument;
@@ -70,12 +72,22 @@ public class RoutingHandlerImpl implements RoutingHandler {
         TableRule tr = table.getTableRule();
         switch (tr.getType()) {
         case TableRule.SHARDED_NODE_TABLE:
+            StageStatistics stageStatistics = database.getStageStatistics();
+            long start = stageStatistics.start();
+            Object event = FlightRecorder.ENABLED ? FlightRecorder.get().beginRouting() : null;
+            RoutingResult rr = null;
             try {
-                return getRoutingResult(table, row);
+                rr = getRoutingResult(table, row);
+                return rr;
             } catch (TableRoutingException e) {
                 throw e;
             } catch (Exception e) {
                 throw new TableRoutingException(table.getName() + " routing error.", e);
+            } finally {
+                stageStatistics.end(StageStatistics.ROUTE, start);
+                if (event != null) {
+                    FlightRecorder.get().endRouting(event, table.getName(), rr == null ? 0 : rr.tableNodeCount());
+                }
             }
         default:
             throw new TableRoutingException(table.getName() + " does not support routing");
@@ -107,15 +119,21 @@ public class RoutingHandlerImpl implements RoutingHandler {
     @Override
     public RoutingResult doRoute(TableMate table, SearchRow first, SearchRow last, Map<Column, Set<Value>> inColumns) {
         TableRule tr = table.getTableRule();
-        if (tr instanceof ShardedTableRule)
+        if (tr instanceof ShardedTableRule) {
+            StageStatistics stageStatistics = database.getStageStatistics();
+            long start = stageStatistics.start();
+            Object event = FlightRecorder.ENABLED ? FlightRecorder.get().beginRouting() : null;
+            RoutingResult rr = null;
             try {
                 Column[] ruleCols = table.getRuleColumns();
                 List<RoutingArgument> args = New.arrayList(ruleCols.length);
                 for (Column ruleCol : ruleCols) {
                     RoutingArgument arg;
                     int idx = ruleCol.getColumnId();
-                    Value startV = first == null ? null : first.getValue(idx);
-                    Value endV = last == null ? null : last.getValue(idx);
+                    // the values are hashed by the partitioners, so they
+                    // are converted to the type of the stored rows first
+                    Value startV = convert(ruleCol, first == null ? null : first.getValue(idx));
+                    Value endV = convert(ruleCol, last == null ? null : last.getValue(idx));
                     if(startV != null && endV != null) {
                         //handle EQUAL,EQUAL_NULL_SAFE,IS_NULL
                         if(database.compare(startV, endV) == 0) {
@@ -123,15 +141,13 @@ public class RoutingHandlerImpl implements RoutingHandler {
                             // an X IN(..) condition
                             arg = new RoutingArgument(startV);
                         } else if(inColumns.get(ruleCol) != null) {
-                            Set<Value> values = inColumns.get(ruleCol);
-                            arg = new RoutingArgument(New.arrayList(values));
+                            arg = new RoutingArgument(convert(ruleCol, inColumns.get(ruleCol)));
                         } else {
                             arg = new RoutingArgument(startV, endV);
                         }
                         
                     } else if(inColumns.get(ruleCol) != null) {
-                        Set<Value> values = inColumns.get(ruleCol);
-                        arg = new RoutingArgument(New.arrayList(values));
+                        arg = new RoutingArgument(convert(ruleCol, inColumns.get(ruleCol)));
                     } else if(startV != null || endV != null){
                         arg = new RoutingArgument(startV, endV);
                     } else {
@@ -139,7 +155,6 @@ public class RoutingHandlerImpl implements RoutingHandler {
                     }                    
                     args.add(arg);
                 }
-                RoutingResult rr;
                 if (args.size() == 1) {
                     RoutingArgument argument = args.get(0);
                     rr = trc.calculate((ShardedTableRule) tr, argument);
@@ -151,12 +166,30 @@ public class RoutingHandlerImpl implements RoutingHandler {
                 throw e;
             } catch (Exception e) {
                 throw new TableRoutingException(table.getName() + " routing error.");
+            } finally {
+                stageStatistics.end(StageStatistics.ROUTE, start);
+                if (event != null) {
+                    FlightRecorder.get().endRouting(event, table.getName(), rr == null ? 0 : rr.tableNodeCount());
+                }
             }
-        else
+        } else {
             throw new TableRoutingException(table.getName() + " does not support routing");
+        }
 
     }
 
+    private static Value convert(Column column, Value v) {
+        return v == null ? null : column.convert(v);
+    }
+
+    private static List<Value> convert(Column column, Set<Value> values) {
+        List<Value> result = New.arrayList(values.size());
+        for (Value v : values) {
+            result.add(column.convert(v));
+        }
+        return result;
+    }
+
     private RoutingResult fixedRoutingResult(ObjectNode... tableNode) {
         RoutingResult result = RoutingResult.fixedResult(tableNode);
         return result;
@@ -15,6 +15,8 @@
  */
 package com.openddal.route.algorithm;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RuleEvaluateException;
 import com.openddal.util.MurmurHash;
@@ -31,6 +33,13 @@ public class HashBucketPartitioner extends CommonPartitioner {
     private int[] count;
     private int[] length;
     private PartitionUtil partitionUtil;
+    /**
+     * The number of values routed to each bucket, to see if the values are
+     * spread evenly. The tables of a rule group share the partitioner and
+     * so the counts. It is null if the buckets are not counted.
+     */
+    private volatile AtomicLongArray bucketHits;
+    private boolean bucketStatistics = true;
 
 
     public void setPartitionCount(String partitionCount) {
@@ -45,6 +54,22 @@ public class HashBucketPartitioner extends CommonPartitioner {
     public void initialize(ObjectNode[] tableNodes) {
         super.initialize(tableNodes);
         partitionUtil = new PartitionUtil(HASH_BUCKET_SIZE, count, length);
+        bucketHits = bucketStatistics ? new AtomicLongArray(HASH_BUCKET_SIZE) : null;
+    }
+
+    /**
+     * Count the values routed to each bucket or not. The counters are shared
+     * by all sessions, so they are only updated with the node statistics.
+     *
+     * @param bucketStatistics true to count the values
+     */
+    public void setBucketStatistics(boolean bucketStatistics) {
+        this.bucketStatistics = bucketStatistics;
+        if (!bucketStatistics) {
+            bucketHits = null;
+        } else if (bucketHits == null && partitionUtil != null) {
+            bucketHits = new AtomicLongArray(HASH_BUCKET_SIZE);
+        }
     }
 
     @Override
@@ -63,7 +88,40 @@ public class HashBucketPartitioner extends CommonPartitioner {
         }
         byte[] bytes = value.getBytes();
         long hash64 = MurmurHash.hash64(bytes, bytes.length);
-        return partitionUtil.partition(hash64);
+        int bucket = partitionUtil.bucket(hash64);
+        AtomicLongArray hits = bucketHits;
+        if (hits != null) {
+            hits.incrementAndGet(bucket);
+        }
+        return partitionUtil.partitionOfBucket(bucket);
+    }
+
+    /**
+     * @return the number of hash buckets
+     */
+    public int getBucketCount() {
+        return HASH_BUCKET_SIZE;
+    }
+
+    /**
+     * Get the number of values routed to a bucket.
+     *
+     * @param bucket the bucket
+     * @return the number of values
+     */
+    public long getBucketHits(int bucket) {
+        AtomicLongArray hits = bucketHits;
+        return hits == null ? 0 : hits.get(bucket);
+    }
+
+    /**
+     * Get the index of the table node of a bucket.
+     *
+     * @param bucket the bucket
+     * @return the node index
+     */
+    public int getBucketNodeIndex(int bucket) {
+        return partitionUtil.partitionOfBucket(bucket);
     }
 
 
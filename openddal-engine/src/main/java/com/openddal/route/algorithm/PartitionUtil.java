@@ -79,4 +79,24 @@ public final class PartitionUtil {
         return segment[index];
     }
 
+    /**
+     * Get the bucket of a hash.
+     *
+     * @param hash the hash
+     * @return the bucket, between 0 and partitionLength - 1
+     */
+    public int bucket(long hash) {
+        return (int) (hash & andValue);
+    }
+
+    /**
+     * Get the partition of a bucket.
+     *
+     * @param bucket the bucket
+     * @return the partition
+     */
+    public int partitionOfBucket(int bucket) {
+        return segment[bucket];
+    }
+
 }
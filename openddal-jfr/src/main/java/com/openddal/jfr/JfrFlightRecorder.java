@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.jfr;
+
+import com.openddal.engine.FlightRecorder;
+import com.openddal.engine.QueryStatisticsData;
+
+import jdk.jfr.Event;
+
+/**
+ * The flight recorder of the JDK. The events are created only if they are
+ * enabled in the running recordings, the fields are set only if the event
+ * passes the threshold of the recording.
+ */
+public class JfrFlightRecorder extends FlightRecorder {
+
+    private static <T extends Event> T begin(T event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Object beginStatement() {
+        return begin(new StatementEvent());
+    }
+
+    @Override
+    public void endStatement(Object event, int sessionId, String sql) {
+        StatementEvent e = (StatementEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.sessionId = sessionId;
+            e.sql = sql;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginShardExecution() {
+        return begin(new ShardExecutionEvent());
+    }
+
+    @Override
+    public void endShardExecution(Object event, String shardName, String sql, long rowCount, boolean failed) {
+        ShardExecutionEvent e = (ShardExecutionEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.shardName = shardName;
+            e.sqlDigest = QueryStatisticsData.getDigest(sql);
+            e.rowCount = rowCount;
+            e.failed = failed;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginConnection() {
+        return begin(new ConnectionEvent());
+    }
+
+    @Override
+    public void endConnection(Object event, String shardName, boolean readOnly) {
+        ConnectionEvent e = (ConnectionEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.shardName = shardName;
+            e.readOnly = readOnly;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginRouting() {
+        return begin(new RoutingEvent());
+    }
+
+    @Override
+    public void endRouting(Object event, String tableName, int nodeCount) {
+        RoutingEvent e = (RoutingEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.tableName = tableName;
+            e.nodeCount = nodeCount;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginSort() {
+        return begin(new SortEvent());
+    }
+
+    @Override
+    public void endSort(Object event, int rowCount) {
+        SortEvent e = (SortEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.rowCount = rowCount;
+            e.commit();
+        }
+    }
+
+    @Override
+    public Object beginRequest() {
+        return begin(new RequestEvent());
+    }
+
+    @Override
+    public void endRequest(Object event, String protocol, long connectionId, String sql, int errorCode) {
+        RequestEvent e = (RequestEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.protocol = protocol;
+            e.connectionId = connectionId;
+            e.sql = sql;
+            e.errorCode = errorCode;
+            e.commit();
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.openddal.engine.Engine;
+import com.openddal.engine.FlightRecorder;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.jdbc.JdbcConnection;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test the events of the engine in a recording of the JDK Flight Recorder.
+ * The tests run with -Dddal.flightRecorder=true, the recorder is loaded with
+ * the ServiceLoader.
+ */
+public class JfrFlightRecorderTest {
+
+    private static final String SQL = "SELECT order_id FROM orders WHERE order_id < 100";
+
+    @Test
+    public void testLoaded() {
+        assertTrue(FlightRecorder.ENABLED);
+        assertTrue(FlightRecorder.get() instanceof JfrFlightRecorder);
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Connection conn = DriverManager.getConnection("jdbc:h2:mem:ddal_jfr" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                    "sa", "");
+            Statement stat = conn.createStatement();
+            stat.execute("CREATE TABLE IF NOT EXISTS orders_01(order_id BIGINT PRIMARY KEY, amount INT)");
+            stat.execute("CREATE TABLE IF NOT EXISTS orders_02(order_id BIGINT PRIMARY KEY, amount INT)");
+            conn.close();
+        }
+        Engine engine = (Engine) SessionFactoryBuilder.newBuilder().fromXml("config/jfr-config.xml").build();
+        Connection conn = new JdbcConnection(engine.createSession(new Properties()));
+        Statement stat = conn.createStatement();
+
+        Recording recording = new Recording();
+        recording.enable("com.openddal.Statement").withThreshold(Duration.ZERO);
+        recording.enable("com.openddal.ShardExecution").withThreshold(Duration.ZERO);
+        recording.start();
+        for (int i = 0; i < 2000; i += 100) {
+            stat.executeUpdate("INSERT INTO orders(order_id, amount) VALUES(" + i + ", 1)");
+        }
+        ResultSet rs = stat.executeQuery(SQL);
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        rs.close();
+        recording.stop();
+        conn.close();
+        assertEquals(1, count);
+
+        Path file = Files.createTempFile("openddal", ".jfr");
+        try {
+            recording.dump(file);
+            recording.close();
+            RecordedEvent statement = null;
+            Map<String, Long> shardRows = new HashMap<String, Long>();
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            for (RecordedEvent e : events) {
+                String name = e.getEventType().getName();
+                if (name.equals("com.openddal.Statement") && SQL.equals(e.getString("sql"))) {
+                    statement = e;
+                } else if (name.equals("com.openddal.ShardExecution")) {
+                    String shard = e.getString("shardName");
+                    Long rows = shardRows.get(shard);
+                    shardRows.put(shard, (rows == null ? 0 : rows) + e.getLong("rowCount"));
+                    assertTrue(e.getString("sqlDigest"), e.getString("sqlDigest").contains("ORDERS_0"));
+                    assertTrue(!e.getBoolean("failed"));
+                }
+            }
+            assertNotNull(statement);
+            assertTrue(statement.getInt("sessionId") > 0);
+            assertTrue(!statement.getDuration().isNegative());
+            // the inserts and the query, on both shards
+            assertEquals(2, shardRows.size());
+            assertEquals(20 + count, shardRows.get("shard0") + shardRows.get("shard1"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.openddal.repo.mysql;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import com.openddal.command.CommandInterface;
 import com.openddal.command.Parser;
@@ -21,17 +24,27 @@ import com.openddal.command.dml.Merge;
 import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
+import com.openddal.command.expression.ConditionAndOr;
+import com.openddal.command.expression.ConditionIn;
+import com.openddal.command.expression.ConditionInConstantSet;
 import com.openddal.command.expression.Expression;
+import com.openddal.command.expression.ExpressionColumn;
+import com.openddal.command.expression.Parameter;
+import com.openddal.config.TableRule;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.IndexColumn;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.dbobject.table.TableMate;
 import com.openddal.engine.Database;
+import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.repo.SQLTranslated;
 import com.openddal.repo.SQLTranslator;
 import com.openddal.result.Row;
 import com.openddal.result.SortOrder;
+import com.openddal.route.RoutingHandler;
+import com.openddal.route.TableRoutingException;
 import com.openddal.route.rule.GroupObjectNode;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.New;
@@ -47,6 +60,18 @@ import com.openddal.value.ValueNull;
  */
 public class MySQLTranslator implements SQLTranslator {
 
+    /**
+     * The IN(...) lists routed by the thread, by condition. The entries go
+     * away with the statements of the conditions.
+     */
+    private static final ThreadLocal<WeakHashMap<Expression, InListRouting>> IN_LIST_ROUTING =
+            new ThreadLocal<WeakHashMap<Expression, InListRouting>>() {
+                @Override
+                protected WeakHashMap<Expression, InListRouting> initialValue() {
+                    return new WeakHashMap<Expression, InListRouting>();
+                }
+            };
+
     private final Database database;
 
     public MySQLTranslator(Database database) {
@@ -83,7 +108,7 @@ public class MySQLTranslator implements SQLTranslator {
         for (int i = 0; i < visibleColumnCount; i++) {
             buff.appendExceptFirst(",");
             buff.append(' ');
-            buff.append(exprList[i].getSQL());
+            buff.append(exprList[i].exportParameters(null, params));
         }
         buff.append(" FROM ");
         TableFilter filter = select.getTopTableFilter();
@@ -92,7 +117,7 @@ public class MySQLTranslator implements SQLTranslator {
             int i = 0;
             do {
                 buff.appendExceptFirst(" ");
-                buff.append(getPlanSQL(filter, i++ > 0, nodeMapping));
+                buff.append(getPlanSQL(filter, i++ > 0, nodeMapping, params));
                 filter = filter.getJoin();
             } while (filter != null);
         } else {
@@ -101,14 +126,15 @@ public class MySQLTranslator implements SQLTranslator {
             for (TableFilter f : select.getTopFilters()) {
                 do {
                     buff.appendExceptFirst(" ");
-                    buff.append(getPlanSQL(f, i++ > 0, nodeMapping));
+                    buff.append(getPlanSQL(f, i++ > 0, nodeMapping, params));
                     f = f.getJoin();
                 } while (f != null);
             }
         }
         Expression condition = select.getCondition();
         if (condition != null) {
-            buff.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            buff.append(" WHERE ").append(
+                    StringUtils.unEnclose(getConditionSQL(condition, nodeMapping, null, params)));
         }
         int[] groupIndex = select.getGroupIndex();
         if (groupIndex != null) {
@@ -118,7 +144,7 @@ public class MySQLTranslator implements SQLTranslator {
                 Expression g = exprList[gi];
                 g = g.getNonAliasExpression();
                 buff.appendExceptFirst(", ");
-                buff.append(StringUtils.unEnclose(g.getSQL()));
+                buff.append(StringUtils.unEnclose(g.exportParameters(null, params)));
             }
         }
         ArrayList<Expression> group = select.getGroupBy();
@@ -127,7 +153,7 @@ public class MySQLTranslator implements SQLTranslator {
             buff.resetCount();
             for (Expression g : group) {
                 buff.appendExceptFirst(", ");
-                buff.append(StringUtils.unEnclose(g.getSQL()));
+                buff.append(StringUtils.unEnclose(g.exportParameters(null, params)));
             }
         }
         Expression having = select.getHaving();
@@ -137,10 +163,10 @@ public class MySQLTranslator implements SQLTranslator {
             // in this case the query is not run directly, just getPlanSQL is
             // called
             Expression h = having;
-            buff.append(" HAVING ").append(StringUtils.unEnclose(h.getSQL()));
+            buff.append(" HAVING ").append(StringUtils.unEnclose(h.exportParameters(null, params)));
         } else if (havingIndex >= 0) {
             Expression h = exprList[havingIndex];
-            buff.append(" HAVING ").append(StringUtils.unEnclose(h.getSQL()));
+            buff.append(" HAVING ").append(StringUtils.unEnclose(h.exportParameters(null, params)));
         }
         SortOrder sort = select.getSortOrder();
         if (sort != null) {
@@ -149,9 +175,9 @@ public class MySQLTranslator implements SQLTranslator {
         Expression limitExpr = select.getLimit();
         Expression offsetExpr = select.getOffset();
         if (limitExpr != null) {
-            buff.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getSQL()));
+            buff.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.exportParameters(null, params)));
             if (offsetExpr != null) {
-                buff.append(" OFFSET ").append(StringUtils.unEnclose(offsetExpr.getSQL()));
+                buff.append(" OFFSET ").append(StringUtils.unEnclose(offsetExpr.exportParameters(null, params)));
             }
         }
 
@@ -161,13 +187,148 @@ public class MySQLTranslator implements SQLTranslator {
         return SQLTranslated.build().sql(buff.toString()).sqlParams(params);
     }
 
+    /**
+     * Get the SQL of the condition executing on the given table nodes. The
+     * IN(...) lists on the rule column of a sharded table only keep the values
+     * routing to the table node, so every shard receives its own part of the
+     * list instead of the full list. If a parameter list is given, the
+     * parameters and the columns of the tables other than the filter are
+     * exported to it as their current values; without a filter only the
+     * parameters are exported.
+     *
+     * @param condition the condition
+     * @param nodeMapping the table node of each table filter
+     * @param filter the table filter of the query, or null
+     * @param params the exported parameters, or null
+     * @return the SQL snippet
+     */
+    private String getConditionSQL(Expression condition, Map<TableFilter, ObjectNode> nodeMapping,
+            TableFilter filter, List<Value> params) {
+        if (nodeMapping == null || !database.getSettings().optimizeInListPruning) {
+            return getSQL(condition, filter, params);
+        }
+        if (condition instanceof ConditionAndOr) {
+            ConditionAndOr andOr = (ConditionAndOr) condition;
+            String left = getConditionSQL(andOr.getExpression(true), nodeMapping, filter, params);
+            String right = getConditionSQL(andOr.getExpression(false), nodeMapping, filter, params);
+            String operator = andOr.getAndOrType() == ConditionAndOr.AND ? "\n    AND " : "\n    OR ";
+            return "(" + left + operator + right + ")";
+        }
+        String sql = null;
+        if (condition instanceof ConditionIn) {
+            ConditionIn in = (ConditionIn) condition;
+            sql = getInListSQL(condition, in.getLeft(), in.getValueList(), nodeMapping, filter, params);
+        } else if (condition instanceof ConditionInConstantSet) {
+            ConditionInConstantSet in = (ConditionInConstantSet) condition;
+            sql = getInListSQL(condition, in.getLeft(), in.getValueList(), nodeMapping, filter, params);
+        }
+        return sql == null ? getSQL(condition, filter, params) : sql;
+    }
+
+    private static String getSQL(Expression e, TableFilter filter, List<Value> params) {
+        return params == null ? e.getSQL() : e.exportParameters(filter, params);
+    }
+
+    /**
+     * Rewrite the IN(...) list for the table node, a row of a sharded table is
+     * only stored on the node its rule column value routes to, so the values
+     * routing to other nodes can never match and are removed.
+     *
+     * @return the SQL snippet, or null if the IN list can not be rewritten
+     */
+    private String getInListSQL(Expression condition, Expression left, List<Expression> valueList,
+            Map<TableFilter, ObjectNode> nodeMapping, TableFilter exportFilter, List<Value> params) {
+        if (!(left instanceof ExpressionColumn)) {
+            return null;
+        }
+        ExpressionColumn expr = (ExpressionColumn) left;
+        TableFilter filter = expr.getTableFilter();
+        ObjectNode node = filter == null ? null : nodeMapping.get(filter);
+        if (node == null || !filter.isFromTableMate()) {
+            return null;
+        }
+        TableMate table = (TableMate) filter.getTable();
+        Column[] ruleCols = table.getRuleColumns();
+        if (table.getTableRule().getType() != TableRule.SHARDED_NODE_TABLE || ruleCols == null
+                || ruleCols.length != 1 || ruleCols[0] != expr.getColumn()) {
+            return null;
+        }
+        InListRouting routing = getInListRouting(condition, table, expr.getColumn(), valueList,
+                filter.getSession());
+        List<Expression> pruned = routing.getValues(node);
+        if (pruned.size() == valueList.size()) {
+            return null;
+        }
+        if (pruned.isEmpty()) {
+            // no row of this node can match, any value keeps the result
+            pruned = Collections.singletonList(valueList.get(0));
+        }
+        StatementBuilder buff = new StatementBuilder("(");
+        buff.append(getSQL(left, exportFilter, params)).append(" IN(");
+        for (Expression e : pruned) {
+            buff.appendExceptFirst(", ");
+            buff.append(getSQL(e, exportFilter, params));
+        }
+        return buff.append("))").toString();
+    }
+
+    /**
+     * Get the values of the IN(...) list for each table node. The statement is
+     * translated once for each of its table nodes, so the routing of the
+     * values is kept by the thread and only done again if the values of the
+     * list change.
+     */
+    private InListRouting getInListRouting(Expression condition, TableMate table, Column column,
+            List<Expression> valueList, Session session) {
+        Value[] values = new Value[valueList.size()];
+        for (int i = 0; i < values.length; i++) {
+            Expression e = valueList.get(i);
+            values[i] = isRoutable(e) ? e.getValue(session) : null;
+        }
+        WeakHashMap<Expression, InListRouting> cache = IN_LIST_ROUTING.get();
+        InListRouting routing = cache.get(condition);
+        if (routing != null && Arrays.equals(routing.values, values)) {
+            return routing;
+        }
+        RoutingHandler routingHandler = database.getRoutingHandler();
+        routing = new InListRouting(values);
+        for (int i = 0; i < values.length; i++) {
+            Expression e = valueList.get(i);
+            Value v = values[i] == null ? ValueNull.INSTANCE : column.convert(values[i]);
+            if (v == ValueNull.INSTANCE) {
+                // keep unknown values and NULL for the three-valued logic of IN
+                routing.common.add(e);
+                continue;
+            }
+            Row row = table.getTemplateRow();
+            row.setValue(column.getColumnId(), v);
+            try {
+                for (ObjectNode target : routingHandler.doRoute(table, row).getSelectNodes()) {
+                    routing.add(target, e);
+                }
+            } catch (TableRoutingException ex) {
+                routing.common.add(e);
+            }
+        }
+        cache.put(condition, routing);
+        return routing;
+    }
+
+    private static boolean isRoutable(Expression e) {
+        if (e instanceof Parameter) {
+            return ((Parameter) e).isValueSet();
+        }
+        return e.isConstant();
+    }
+
     /**
      * Get the query execution plan text to use for this table filter.
      *
      * @param isJoin if this is a joined table
      * @return the SQL statement snippet
      */
-    private String getPlanSQL(TableFilter filter, boolean isJoin, Map<TableFilter, ObjectNode> nodeMapping) {
+    private String getPlanSQL(TableFilter filter, boolean isJoin, Map<TableFilter, ObjectNode> nodeMapping,
+            List<Value> params) {
         StringBuilder buff = new StringBuilder();
         if (isJoin) {
             if (filter.isJoinOuter()) {
@@ -180,7 +341,7 @@ public class MySQLTranslator implements SQLTranslator {
             StringBuffer buffNested = new StringBuffer();
             TableFilter n = filter.getNestedJoin();
             do {
-                buffNested.append(getPlanSQL(n, n != filter.getNestedJoin(), nodeMapping));
+                buffNested.append(getPlanSQL(n, n != filter.getNestedJoin(), nodeMapping, params));
                 buffNested.append('\n');
                 n = n.getJoin();
             } while (n != null);
@@ -200,7 +361,7 @@ public class MySQLTranslator implements SQLTranslator {
                     // otherwise the nesting is unclear
                     buff.append("1=1");
                 } else {
-                    buff.append(StringUtils.unEnclose(filter.getJoinCondition().getSQL()));
+                    buff.append(StringUtils.unEnclose(filter.getJoinCondition().exportParameters(null, params)));
                 }
             }
             return buff.toString();
@@ -217,7 +378,7 @@ public class MySQLTranslator implements SQLTranslator {
                 // unclear
                 buff.append("1=1");
             } else {
-                buff.append(StringUtils.unEnclose(filter.getJoinCondition().getSQL()));
+                buff.append(StringUtils.unEnclose(filter.getJoinCondition().exportParameters(null, params)));
             }
         }
         return buff.toString();
@@ -228,14 +389,14 @@ public class MySQLTranslator implements SQLTranslator {
             Map<ObjectNode, Map<TableFilter, ObjectNode>> consistencyTableNodes) {
         ObjectNode[] items = node.getItems();
         List<Value> params = New.arrayList(10 * items.length);
-        StatementBuilder sql = new StatementBuilder("SELECT * FROM (");
+        StatementBuilder sql = new StatementBuilder();
         for (ObjectNode objectNode : items) {
             SQLTranslated translated = translate(select, objectNode, consistencyTableNodes);
+            // not a derived table, the select list may repeat a column name
             sql.appendExceptFirst(" UNION ALL ");
-            sql.append(translated.sql);
+            sql.append('(').append(translated.sql).append(')');
             params.addAll(translated.params);
         }
-        sql.append(" ) ");
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
     }
 
@@ -643,12 +804,12 @@ public class MySQLTranslator implements SQLTranslator {
         sql.append("DELETE FROM ");
         sql.append(identifier(forTable));
         if (condition != null) {
-            condition.exportParameters(tableFilter, params);
-            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            String conditionSQL = condition.exportParameters(tableFilter, params);
+            sql.append(" WHERE ").append(StringUtils.unEnclose(conditionSQL));
         }
         if (limitExpr != null) {
-            limitExpr.exportParameters(tableFilter, params);
-            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getSQL()));
+            String limitSQL = limitExpr.exportParameters(tableFilter, params);
+            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitSQL));
         }
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
 
@@ -758,8 +919,8 @@ public class MySQLTranslator implements SQLTranslator {
             sql.appendExceptFirst(", ");
             sql.append(c.getSQL()).append(" = ");
 
-            Value v = row.getValue(i);
-            sql.appendExceptFirst(", ");
+            // the update row is a template row of the table
+            Value v = row.getValue(c.getColumnId());
             if (v == null) {
                 sql.append("DEFAULT");
             } else if (isNull(v)) {
@@ -770,12 +931,12 @@ public class MySQLTranslator implements SQLTranslator {
             }
         }
         if (condition != null) {
-            condition.exportParameters(tableFilter, params);
-            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            String conditionSQL = condition.exportParameters(tableFilter, params);
+            sql.append(" WHERE ").append(StringUtils.unEnclose(conditionSQL));
         }
         if (limitExpr != null) {
-            limitExpr.exportParameters(tableFilter, params);
-            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getSQL()));
+            String limitSQL = limitExpr.exportParameters(tableFilter, params);
+            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitSQL));
         }
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
     }
@@ -799,11 +960,19 @@ public class MySQLTranslator implements SQLTranslator {
             buff.append(' ');
             buff.append(identifier(columns[i].getName()));
         }
+        if (visibleColumnCount == 0) {
+            // only the number of rows is used, as in COUNT(*)
+            buff.append(" 1");
+        }
         buff.append(" FROM ");
         buff.append(identifier(node.getCompositeObjectName()));
+        // the columns of the condition are qualified with the table alias
+        buff.append(' ').append(identifier(filter.getTableAlias()));
         Expression condition = filter.getFilterCondition();
         if (condition != null) {
-            buff.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            Map<TableFilter, ObjectNode> nodeMapping = Collections.singletonMap(filter, node);
+            buff.append(" WHERE ").append(
+                    StringUtils.unEnclose(getConditionSQL(condition, nodeMapping, filter, params)));
         }
         return SQLTranslated.build().sql(buff.toString()).sqlParams(params);
     
@@ -821,9 +990,46 @@ public class MySQLTranslator implements SQLTranslator {
             sql.append(translated.sql);
             params.addAll(translated.params);
         }
-        sql.append(" ) ");
+        // a derived table needs an alias in MySQL
+        sql.append(" ) T");
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
     
     }
 
+    /**
+     * The values of an IN(...) list routed to the table nodes.
+     */
+    private static class InListRouting {
+
+        final Value[] values;
+        final ArrayList<Expression> common = New.arrayList();
+        final HashMap<ObjectNode, ArrayList<Expression>> nodeValues = New.hashMap();
+
+        InListRouting(Value[] values) {
+            this.values = values;
+        }
+
+        void add(ObjectNode node, Expression e) {
+            ArrayList<Expression> list = nodeValues.get(node);
+            if (list == null) {
+                list = New.arrayList();
+                nodeValues.put(node, list);
+            }
+            list.add(e);
+        }
+
+        List<Expression> getValues(ObjectNode node) {
+            ArrayList<Expression> list = nodeValues.get(node);
+            if (common.isEmpty()) {
+                return list == null ? Collections.<Expression> emptyList() : list;
+            }
+            if (list == null) {
+                return common;
+            }
+            ArrayList<Expression> all = New.arrayList(common);
+            all.addAll(list);
+            return all;
+        }
+    }
+
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openddal.engine.SysProperties;
+import com.openddal.util.MathUtils;
+
+/**
+ * The access log of the server. The request threads record a fixed size
+ * entry into a preallocated slot of a ring buffer, and a background thread
+ * formats the entries and writes them to the AccessLogger in batches. If the
+ * writer falls behind and the ring is full, the entries are dropped and
+ * counted, a request thread never waits for the log.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public final class AccessLog implements Runnable {
+
+    private static final Logger ACCESS_LOGGER = LoggerFactory.getLogger("AccessLogger");
+
+    /**
+     * The maximum number of entries written before the slots are released.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The longest time the idle writer sleeps without being woken up, so the
+     * dropped entries are reported even without new entries.
+     */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static volatile AccessLog instance;
+
+    private final Entry[] entries;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final StringBuilder buff = new StringBuilder(256);
+    private volatile long consumed;
+    private volatile Thread writer;
+
+    /**
+     * Set by the writer before it parks, the request thread that publishes
+     * the next entry wakes it up.
+     */
+    private volatile boolean sleeping;
+
+    private AccessLog(int size) {
+        int capacity = MathUtils.nextPowerOf2(Math.max(size, BATCH_SIZE));
+        entries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true if the AccessLogger is enabled
+     */
+    public static boolean isEnabled() {
+        return ACCESS_LOGGER.isInfoEnabled();
+    }
+
+    private static AccessLog getInstance() {
+        AccessLog log = instance;
+        if (log == null) {
+            synchronized (AccessLog.class) {
+                log = instance;
+                if (log == null) {
+                    log = new AccessLog(SysProperties.ACCESS_LOG_BUFFER_SIZE);
+                    Thread t = new Thread(log, "AccessLogWriter");
+                    t.setDaemon(true);
+                    log.writer = t;
+                    t.start();
+                    instance = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Record the entry of a request. The strings are kept by reference until
+     * the entry is written.
+     *
+     * @return false if the ring buffer is full and the entry is dropped
+     */
+    public static boolean log(String protocol, String sql, long connectionId, String remoteAddress,
+            String localAddress, long start, long end, int errorCode, String errorMsg) {
+        AccessLog log = getInstance();
+        long seq;
+        do {
+            seq = log.cursor.get();
+            if (seq - log.consumed >= log.entries.length) {
+                log.dropped.incrementAndGet();
+                return false;
+            }
+        } while (!log.cursor.compareAndSet(seq, seq + 1));
+        Entry e = log.entries[(int) (seq & log.mask)];
+        e.protocol = protocol;
+        e.sql = sql;
+        e.connectionId = connectionId;
+        e.remoteAddress = remoteAddress;
+        e.localAddress = localAddress;
+        e.start = start;
+        e.end = end;
+        e.errorCode = errorCode;
+        e.errorMsg = errorMsg;
+        // publish the entry to the writer
+        e.sequence = seq;
+        if (log.sleeping) {
+            log.sleeping = false;
+            LockSupport.unpark(log.writer);
+        }
+        return true;
+    }
+
+    /**
+     * Write the pending entries and stop the writer thread. The next entry
+     * starts a new writer, for a server started again in the same process.
+     */
+    public static void shutdown() {
+        AccessLog log;
+        synchronized (AccessLog.class) {
+            log = instance;
+            instance = null;
+        }
+        if (log != null) {
+            Thread t = log.writer;
+            log.writer = null;
+            LockSupport.unpark(t);
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries dropped because the ring buffer was full
+     */
+    public static long getDroppedCount() {
+        AccessLog log = instance;
+        return log == null ? 0 : log.dropped.get();
+    }
+
+    @Override
+    public void run() {
+        long next = consumed;
+        long reportedDropped = 0;
+        while (true) {
+            int count = 0;
+            while (count < BATCH_SIZE) {
+                Entry e = entries[(int) (next & mask)];
+                if (e.sequence != next) {
+                    break;
+                }
+                write(e);
+                e.clear();
+                next++;
+                count++;
+            }
+            if (count > 0) {
+                // release the slots
+                consumed = next;
+                continue;
+            }
+            long d = dropped.get();
+            if (d != reportedDropped) {
+                ACCESS_LOGGER.info("{} access log entries dropped", d - reportedDropped);
+                reportedDropped = d;
+            }
+            if (writer == null) {
+                return;
+            }
+            sleeping = true;
+            // an entry published before the flag was seen is not missed
+            if (entries[(int) (next & mask)].sequence != next && writer != null) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void write(Entry e) {
+        StringBuilder logMsg = buff;
+        logMsg.setLength(0);
+        logMsg.append('[').append(e.protocol).append("] ").append(e.sql).append(" conId:").append(e.connectionId)
+                .append(' ').append(e.remoteAddress).append(' ').append(e.localAddress).append(' ')
+                .append(e.end - e.start).append(" ms");
+        if (e.errorMsg != null) {
+            logMsg.append(" ErrorCode: ").append(e.errorCode).append(". ").append(e.errorMsg);
+        }
+        ACCESS_LOGGER.info(logMsg.toString());
+    }
+
+    /**
+     * A slot of the ring buffer.
+     */
+    private static final class Entry {
+
+        /**
+         * The sequence number of the published entry, or -1.
+         */
+        volatile long sequence = -1;
+        String protocol;
+        String sql;
+        long connectionId;
+        String remoteAddress;
+        String localAddress;
+        long start;
+        long end;
+        int errorCode;
+        String errorMsg;
+
+        void clear() {
+            protocol = null;
+            sql = null;
+            remoteAddress = null;
+            localAddress = null;
+            errorMsg = null;
+        }
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package com.openddal.server;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -31,11 +33,16 @@ import com.openddal.util.Threads;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -50,11 +57,17 @@ public abstract class NettyServer {
      */
     public static final int DEFAULT_LISTEN_PORT = 6100;
 
+    /**
+     * The default low water mark of the channel write buffer in netty.
+     */
+    private static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+
     private ServerArgs args;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
     private ThreadPoolExecutor userExecutor;
-    private ChannelFuture f;
+    private boolean epoll;
+    private final List<Channel> serverChannels = new ArrayList<Channel>();
     private Engine ddalEngine;
 
     public NettyServer(ServerArgs args) {
@@ -88,6 +101,17 @@ public abstract class NettyServer {
         }
     }
 
+    /**
+     * Serve an engine that was built by the application, instead of the one
+     * of the configuration file.
+     *
+     * @param engine the engine
+     */
+    public void init(Engine engine) {
+        ddalEngine = engine;
+        LOGGER.info("{} server uses the given ddal-engine.", getServerName());
+    }
+
     /**
      * Listen for incoming connections.
      */
@@ -96,9 +120,14 @@ public abstract class NettyServer {
         args.validate();
         ServerBootstrap b = configServer();
         try {
-            // start server
-            f = b.bind(args.port).sync();
-            LOGGER.info("{} server started and listening on {}", getServerName(), args.port);
+            // start server, with SO_REUSEPORT each acceptor thread has its
+            // own listening socket and the kernel balances the connections
+            int acceptors = epoll ? Math.max(1, args.bossThreads) : 1;
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(b.bind(args.port).sync().channel());
+            }
+            LOGGER.info("{} server started and listening on {} with {} transport, {} acceptors", getServerName(),
+                    args.port, epoll ? "epoll" : "nio", acceptors);
             // register shutown hook
             Runtime.getRuntime().addShutdownHook(new ShutdownThread());
         } catch (Exception e) {
@@ -114,7 +143,9 @@ public abstract class NettyServer {
      * blocking to wait for close.
      */
     public void waitForClose() throws InterruptedException {
-        f.channel().closeFuture().sync();
+        for (Channel channel : serverChannels) {
+            channel.closeFuture().sync();
+        }
     }
 
     public void stop() {
@@ -123,22 +154,51 @@ public abstract class NettyServer {
         workerGroup.shutdownGracefully();
         int timeoutMills = args.shutdownTimeoutMills;
         Threads.shutdownGracefully(userExecutor, timeoutMills, timeoutMills, TimeUnit.SECONDS);
+        AccessLog.shutdown();
         LOGGER.info("{} server stoped", getServerName());
     }
 
     private ServerBootstrap configServer() {
-        bossGroup = new NioEventLoopGroup(args.bossThreads, new DefaultThreadFactory("NettyBossGroup", true));
-        workerGroup = new NioEventLoopGroup(args.workerThreads, new DefaultThreadFactory("NettyWorkerGroup", true));
+        epoll = args.nativeTransport && Epoll.isAvailable();
+        if (args.nativeTransport && !epoll) {
+            LOGGER.info("native epoll transport is not available, use nio transport: {}",
+                    String.valueOf(Epoll.unavailabilityCause()));
+        }
+        DefaultThreadFactory bossFactory = new DefaultThreadFactory("NettyBossGroup", true);
+        DefaultThreadFactory workerFactory = new DefaultThreadFactory("NettyWorkerGroup", true);
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(args.bossThreads, bossFactory);
+            workerGroup = new EpollEventLoopGroup(args.workerThreads, workerFactory);
+        } else {
+            bossGroup = new NioEventLoopGroup(args.bossThreads, bossFactory);
+            workerGroup = new NioEventLoopGroup(args.workerThreads, workerFactory);
+        }
         userExecutor = createUserThreadExecutor();
         
         final ProtocolHandler handshakeHandler = newHandshakeHandler(userExecutor);
         final ProtocolHandler protocolHandler = newProtocolHandler(userExecutor);
 
         ServerBootstrap b = new ServerBootstrap();
-        b.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+        b.group(bossGroup, workerGroup)
                 .childOption(ChannelOption.SO_REUSEADDR, true).childOption(ChannelOption.SO_KEEPALIVE, true)
                 .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .childOption(ChannelOption.TCP_NODELAY, true);
+        if (epoll) {
+            b.channel(EpollServerSocketChannel.class).option(EpollChannelOption.SO_REUSEPORT, true)
+                    .childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        } else {
+            b.channel(NioServerSocketChannel.class);
+        }
+        
+        // the marks are checked against the current ones when they are set,
+        // set them in the order that never makes the low mark above the high
+        if (args.writeBufferHighWaterMark >= DEFAULT_LOW_WATER_MARK) {
+            b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, args.writeBufferHighWaterMark);
+            b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, args.writeBufferLowWaterMark);
+        } else {
+            b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, args.writeBufferLowWaterMark);
+            b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, args.writeBufferHighWaterMark);
+        }
 
         if (args.socketTimeoutMills > 0) {
             b.childOption(ChannelOption.SO_TIMEOUT, args.socketTimeoutMills);
@@ -177,12 +237,14 @@ public abstract class NettyServer {
     private ProtocolHandler newHandshakeHandler(ThreadPoolExecutor userExecutor) {
         ProtocolHandler handshakeHandler = createHandshakeHandler();
         handshakeHandler.setUserExecutor(userExecutor);
+        handshakeHandler.setEngine(ddalEngine);
         return handshakeHandler;
     }
     
     private ProtocolHandler newProtocolHandler(ThreadPoolExecutor userExecutor) {
         ProtocolHandler protocolHandler = createProtocolHandler();
         protocolHandler.setUserExecutor(userExecutor);
+        protocolHandler.setEngine(ddalEngine);
         return protocolHandler;
     }
 
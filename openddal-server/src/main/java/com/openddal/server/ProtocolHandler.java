@@ -17,7 +17,13 @@ package com.openddal.server;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
+import com.openddal.engine.Engine;
+import com.openddal.engine.SysProperties;
+
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 
 /**
  * 
@@ -26,7 +32,10 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
  */
 public abstract class ProtocolHandler extends ChannelInboundHandlerAdapter {
     
+    private static final AttributeKey<SerialExecutor> SERIAL_EXECUTOR_KEY = AttributeKey.valueOf("_SERIAL_EXECUTOR_KEY");
+
     protected ThreadPoolExecutor userExecutor;
+    protected Engine engine;
 
     public ThreadPoolExecutor getUserExecutor() {
         return userExecutor;
@@ -36,4 +45,42 @@ public abstract class ProtocolHandler extends ChannelInboundHandlerAdapter {
         this.userExecutor = userExecutor;
     }
 
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Get the number of queued requests of a channel, including the running
+     * one.
+     *
+     * @param channel the channel
+     * @return the number of requests, 0 if none was received yet
+     */
+    public static int getQueueDepth(Channel channel) {
+        SerialExecutor executor = channel.attr(SERIAL_EXECUTOR_KEY).get();
+        return executor == null ? 0 : executor.getQueueDepth();
+    }
+
+    /**
+     * Get the executor that runs the requests of the channel in order on the
+     * user executor. The channel is only read by its event loop thread, so
+     * the executor is created without locking.
+     *
+     * @param channel the channel
+     * @return the executor
+     */
+    protected SerialExecutor getSerialExecutor(Channel channel) {
+        Attribute<SerialExecutor> attr = channel.attr(SERIAL_EXECUTOR_KEY);
+        SerialExecutor executor = attr.get();
+        if (executor == null) {
+            executor = new SerialExecutor(userExecutor, SysProperties.CONNECTION_QUEUE_SIZE);
+            attr.set(executor);
+        }
+        return executor;
+    }
+
 }
@@ -19,10 +19,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketAddress;
 
+import com.openddal.engine.SysProperties;
+import com.openddal.server.util.ErrorCode;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -31,10 +35,11 @@ public class ProtocolTransport {
     
     public static final int DEFAULT_BUFFER_SIZE = 16384;
     public final ByteBuf in;
-    public final ByteBuf out;
+    public ByteBuf out;
     private final InputStream input;
-    private final OutputStream output;
+    private OutputStream output;
     private final Channel channel;
+    private boolean flushed;
 
     public ProtocolTransport(Channel channel, ByteBuf in) {
         this.channel = channel;
@@ -59,6 +64,53 @@ public class ProtocolTransport {
         return session;
     }
     
+    /**
+     * Write the output buffered so far to the channel and continue with a new
+     * output buffer. If the channel is not writable afterwards, because the
+     * client reads slower than the response is produced, this waits until
+     * the data is written to the socket, so a large response is never held
+     * in memory as a whole. A client that does not read for
+     * {@link SysProperties#NET_WRITE_TIMEOUT_MILLS} is disconnected, so it
+     * does not hold the user thread and the shard cursors forever.
+     *
+     * @throws ProtocolProcessException if the write failed, timed out or was
+     *             interrupted
+     */
+    public void flush() throws ProtocolProcessException {
+        ByteBuf buf = out;
+        flushed = true;
+        out = channel.alloc().buffer(DEFAULT_BUFFER_SIZE);
+        output = new ByteBufOutputStream(out);
+        ChannelFuture future = channel.writeAndFlush(buf);
+        if (!channel.isWritable()) {
+            boolean written;
+            try {
+                written = future.await(SysProperties.NET_WRITE_TIMEOUT_MILLS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProtocolProcessException(ErrorCode.ER_QUERY_INTERRUPTED, e);
+            }
+            if (!written) {
+                close();
+                throw new ProtocolProcessException(ErrorCode.ER_NET_WRITE_INTERRUPTED,
+                        "Got timeout writing communication packets");
+            }
+        }
+        if (future.isDone() && !future.isSuccess()) {
+            throw new ProtocolProcessException(ErrorCode.ER_NET_ERROR_ON_WRITE, future.cause());
+        }
+    }
+
+    /**
+     * Check if a part of the response was flushed to the client, it can no
+     * longer be discarded then.
+     *
+     * @return true if flush was called
+     */
+    public boolean isFlushed() {
+        return flushed;
+    }
+
     public boolean isOpen() {
         return channel.isOpen();
     }
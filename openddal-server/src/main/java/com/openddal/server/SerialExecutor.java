@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The mailbox of a connection. The requests of the connection are run one
+ * after the other in the order they were received, on the threads of the
+ * shared user executor; a connection never occupies more than one thread, and
+ * a thread is released after each request, so the connections share the
+ * threads fairly.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class SerialExecutor implements Executor, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+
+    /**
+     * The number of requests queued in all the mailboxes, including the
+     * running ones.
+     */
+    private static final AtomicInteger TOTAL_PENDING = new AtomicInteger();
+
+    private final Executor executor;
+    private final int maxPending;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param executor the shared executor that runs the requests
+     * @param maxPending the maximum number of queued requests of the
+     *            connection
+     */
+    public SerialExecutor(Executor executor, int maxPending) {
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Queue a request, it is run after the requests queued before.
+     *
+     * @param task the request
+     * @throws RejectedExecutionException if the mailbox is full, or if the
+     *             shared executor is overloaded and there is no running
+     *             request of this connection
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (pending.get() >= maxPending) {
+            throw new RejectedExecutionException(
+                    "Too many pending requests: " + pending.get() + ", total " + TOTAL_PENDING.get());
+        }
+        tasks.offer(task);
+        TOTAL_PENDING.incrementAndGet();
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                tasks.remove(task);
+                pending.decrementAndGet();
+                TOTAL_PENDING.decrementAndGet();
+                throw new RejectedExecutionException(
+                        "Server is busy, pending requests: " + TOTAL_PENDING.get(), e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Runnable task = tasks.poll();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOGGER.error("an exception happen when run request", e);
+            } finally {
+                TOTAL_PENDING.decrementAndGet();
+            }
+            if (pending.decrementAndGet() == 0) {
+                return;
+            }
+            try {
+                // give the thread to the other connections
+                executor.execute(this);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the shared executor is full, continue on this thread
+            }
+        }
+    }
+
+    /**
+     * @return the number of queued requests of the connection, including
+     *         the running one
+     */
+    public int getQueueDepth() {
+        return pending.get();
+    }
+
+    /**
+     * @return the number of queued requests of all connections
+     */
+    public static int getTotalQueueDepth() {
+        return TOTAL_PENDING.get();
+    }
+
+}
@@ -34,6 +34,10 @@ public class ServerArgs {
 	public int sendBuff = -1;
 	public int recvBuff = -1;
 
+	public boolean nativeTransport = true;
+	public int writeBufferHighWaterMark = 64 * 1024;
+	public int writeBufferLowWaterMark = 32 * 1024;
+
 	public String configFile;
 
 
@@ -92,6 +96,21 @@ public class ServerArgs {
 		return this;
 	}
 
+	public ServerArgs nativeTransport(boolean nativeTransport) {
+		this.nativeTransport = nativeTransport;
+		return this;
+	}
+
+	public ServerArgs writeBufferHighWaterMark(int writeBufferHighWaterMark) {
+		this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+		return this;
+	}
+
+	public ServerArgs writeBufferLowWaterMark(int writeBufferLowWaterMark) {
+		this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+		return this;
+	}
+
 	public ServerArgs configFile(String configFile) {
 		this.configFile = configFile;
 		return this;
@@ -102,6 +121,10 @@ public class ServerArgs {
         if (port < 0) {
             throw new IllegalArgumentException("port " + port + " is wrong.");
         }
+        if (writeBufferLowWaterMark < 0 || writeBufferHighWaterMark < writeBufferLowWaterMark) {
+            throw new IllegalArgumentException("write buffer water mark low " + writeBufferLowWaterMark + ", high "
+                    + writeBufferHighWaterMark + " is wrong.");
+        }
     }
 
 }
@@ -79,6 +79,20 @@ public class ServerLauncher {
                     } else {
                         usage("-workerThreads should be positive integer");
                     }
+                } else if ("-nativeTransport".equals(key)) {
+                    serverArgs.nativeTransport(Boolean.valueOf(value));
+                } else if ("-writeBufferHighWaterMark".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.writeBufferHighWaterMark(Integer.parseInt(value));
+                    } else {
+                        usage("-writeBufferHighWaterMark should be positive integer");
+                    }
+                } else if ("-writeBufferLowWaterMark".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.writeBufferLowWaterMark(Integer.parseInt(value));
+                    } else {
+                        usage("-writeBufferLowWaterMark should be positive integer");
+                    }
                 } else if ("-protocol".equals(key)) {
                     serverArgs.protocol(value);
                 } else if ("-configFile".equals(key)) {
@@ -113,6 +127,9 @@ public class ServerLauncher {
         System.out.println("\t" + "-shutdownTimeoutMills: Integer, set thread pool shutdown socket timeout in milliseconds.");
         System.out.println("\t" + "-sendBuff: Integer, the tcp option sendBuff");
         System.out.println("\t" + "-recvBuff: Integer, the tcp option recvBuff");
+        System.out.println("\t" + "-nativeTransport: True or false, use the native epoll transport on linux if it is available, default true.");
+        System.out.println("\t" + "-writeBufferHighWaterMark: Integer, the channel write buffer high water mark in bytes, default 65536.");
+        System.out.println("\t" + "-writeBufferLowWaterMark: Integer, the channel write buffer low water mark in bytes, default 32768.");
         System.out.println();
         System.exit(0);
     }
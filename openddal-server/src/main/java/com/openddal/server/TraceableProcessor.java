@@ -18,8 +18,7 @@ package com.openddal.server;
 import java.io.Serializable;
 import java.sql.Connection;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.openddal.engine.FlightRecorder;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -27,32 +26,40 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class TraceableProcessor implements ProtocolProcessor {
 
-    private static final Logger accessLogger = LoggerFactory.getLogger("AccessLogger");
-
-    private static ThreadLocal<ProtocolTransport> transportHolder = new ThreadLocal<ProtocolTransport>();
-    private static ThreadLocal<Session> sessionHolder = new ThreadLocal<Session>();
-    private static ThreadLocal<Connection> connHolder = new ThreadLocal<Connection>();
-    private static ThreadLocal<TraceableData> tdHolder = new ThreadLocal<TraceableData>();
+    /**
+     * The state of the request processed by the thread, it is reused by the
+     * requests of the thread.
+     */
+    private static ThreadLocal<ProcessContext> contextHolder = new ThreadLocal<ProcessContext>() {
+        @Override
+        protected ProcessContext initialValue() {
+            return new ProcessContext();
+        }
+    };
 
     @Override
     public final boolean process(ProtocolTransport transport) throws ProtocolProcessException {
         ProtocolProcessException e = null;
+        ProcessContext context = contextHolder.get();
+        Object event = FlightRecorder.ENABLED ? FlightRecorder.get().beginRequest() : null;
         try {
-            tdHolder.set(new TraceableData());
-            transportHolder.set(transport);
-            sessionHolder.set(transport.getSession());
-            connHolder.set(transport.getSession().getEngineConnection());
+            context.trace.reset();
+            context.transport = transport;
+            context.session = transport.getSession();
+            context.conn = context.session.getEngineConnection();
             doProcess(transport);
         } catch (Exception ex) {
             e = ProtocolProcessException.convert(ex);
-            getTrace().errorCode(e.errorCode).errorMsg(e.getMessage());
+            context.trace.errorCode(e.errorCode).errorMsg(e.getMessage());
             throw e;
         } finally {
-            accessEndLog();
-            sessionHolder.remove();
-            transportHolder.remove();
-            connHolder.remove();
-            tdHolder.remove();
+            if (event != null) {
+                TraceableData data = context.trace;
+                long connectionId = context.session == null ? 0 : context.session.getConnectionId();
+                FlightRecorder.get().endRequest(event, data.protocol, connectionId, data.sql, data.errorCode);
+            }
+            accessEndLog(context);
+            context.clear();
         }
         return e == null;
 
@@ -61,33 +68,43 @@ public abstract class TraceableProcessor implements ProtocolProcessor {
     protected abstract void doProcess(ProtocolTransport transport) throws Exception;
 
     public final TraceableData getTrace() {
-        return tdHolder.get();
+        return contextHolder.get().trace;
     }
 
     public final Session getSession() {
-        return sessionHolder.get();
+        return contextHolder.get().session;
     }
 
     public final Connection getConnection() {
-        return connHolder.get();
+        return contextHolder.get().conn;
     }
 
     public final ProtocolTransport getProtocolTransport() {
-        return transportHolder.get();
+        return contextHolder.get().transport;
     }
 
-    private void accessEndLog() {
-        if (accessLogger.isInfoEnabled()) {
-            TraceableData data = getTrace().end();
-            Session s = getSession();
-            StringBuilder logMsg = new StringBuilder(256).append("[").append(data.protocol).append("] ").append(data.sql)
-                    .append(" conId:").append(getSession().getConnectionId()).append(" ")
-                    .append(s.getAttachment("remoteAddress")).append(" ").append(s.getAttachment("localAddress"))
-                    .append(" ").append(data.costTime()).append(" ms");
-            if (data.errorMsg != null) {
-                logMsg.append(" ErrorCode: ").append(data.errorCode).append(". ").append(data.errorMsg);
-            }
-            accessLogger.info(logMsg.toString());
+    private static void accessEndLog(ProcessContext context) {
+        if (AccessLog.isEnabled()) {
+            TraceableData data = context.trace.end();
+            Session s = context.session;
+            String remoteAddress = s.getAttachment("remoteAddress");
+            String localAddress = s.getAttachment("localAddress");
+            AccessLog.log(data.protocol, data.sql, s.getConnectionId(), remoteAddress, localAddress, data.start,
+                    data.end, data.errorCode, data.errorMsg);
+        }
+    }
+
+    private static class ProcessContext {
+
+        private final TraceableData trace = new TraceableData();
+        private ProtocolTransport transport;
+        private Session session;
+        private Connection conn;
+
+        void clear() {
+            transport = null;
+            session = null;
+            conn = null;
         }
     }
 
@@ -95,7 +112,7 @@ public abstract class TraceableProcessor implements ProtocolProcessor {
 
         private static final long serialVersionUID = 1L;
 
-        private final long start;
+        private long start;
         private long end;
         private String sql;
         private String protocol;
@@ -106,6 +123,16 @@ public abstract class TraceableProcessor implements ProtocolProcessor {
             start = System.currentTimeMillis();
         }
 
+        TraceableData reset() {
+            start = System.currentTimeMillis();
+            end = 0;
+            sql = null;
+            protocol = null;
+            errorCode = 0;
+            errorMsg = null;
+            return this;
+        }
+
         public TraceableData end() {
             end = System.currentTimeMillis();
             return this;
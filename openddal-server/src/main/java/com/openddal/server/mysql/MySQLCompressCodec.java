@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.mysql.proto.Proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.handler.codec.DecoderException;
+
+/**
+ * The compressed protocol, added in front of the MySQLProtocolDecoder when
+ * the client asked for CLIENT_COMPRESS. The packets are carried in frames
+ * with a 7 byte header: the compressed length, the compressed sequence id and
+ * the uncompressed length, which is 0 if the payload is not compressed.
+ * Payloads smaller than MIN_COMPRESS_LENGTH are sent uncompressed. The
+ * compressed sequence of a response continues the one of its request, the
+ * request handler writes RESPONSE_START before each response.
+ *
+ * @see https://dev.mysql.com/doc/internals/en/compressed-packet-header.html
+ */
+public class MySQLCompressCodec extends ByteToMessageCodec<ByteBuf> {
+
+    public static final String NAME = "compress";
+
+    /**
+     * The minimum payload length that is compressed, as in the MySQL server.
+     */
+    public static final int MIN_COMPRESS_LENGTH = 50;
+
+    private static final int HEADER_LENGTH = 7;
+
+    private static final int MAX_FRAME_PAYLOAD = 0xFFFFFF;
+
+    /**
+     * Written to the channel before the response of each request, the frames
+     * of the response continue the compressed sequence of the request.
+     */
+    public static final Object RESPONSE_START = new Object();
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[1024];
+
+    /**
+     * The first compressed sequence id of the responses of the requests
+     * received so far, in the order of the requests. The client starts each
+     * request with the sequence id 0. Both the decoder and the encoder run on
+     * the event loop, a request is received while the response of an earlier
+     * one may still be written.
+     */
+    private final ArrayDeque<Integer> responseSequenceIds = new ArrayDeque<Integer>();
+
+    /**
+     * The next compressed sequence id of the response being written.
+     */
+    private int sequenceId;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (in.readableBytes() < HEADER_LENGTH) {
+            return;
+        }
+        int start = in.readerIndex();
+        int compressedLength = Packet.getSize(in);
+        if (in.readableBytes() < compressedLength + HEADER_LENGTH) {
+            return;
+        }
+        int requestSequenceId = in.getUnsignedByte(start + 3);
+        if (requestSequenceId != 0 && !responseSequenceIds.isEmpty()) {
+            // a following frame of a large request
+            responseSequenceIds.pollLast();
+        }
+        responseSequenceIds.addLast((requestSequenceId + 1) & 0xFF);
+        in.skipBytes(4);
+        int uncompressedLength = (int) Proto.read_fixed_int(in, 3);
+        if (uncompressedLength == 0) {
+            out.add(in.readSlice(compressedLength).retain());
+            return;
+        }
+        byte[] input = ensureBuffer(compressedLength);
+        in.readBytes(input, 0, compressedLength);
+        byte[] result = new byte[uncompressedLength];
+        inflater.reset();
+        inflater.setInput(input, 0, compressedLength);
+        try {
+            int len = inflater.inflate(result);
+            if (len != uncompressedLength) {
+                throw new DecoderException("Uncompressed length " + len + " expected " + uncompressedLength);
+            }
+        } catch (DataFormatException e) {
+            throw new DecoderException(e);
+        }
+        out.add(Unpooled.wrappedBuffer(result));
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg == RESPONSE_START) {
+            Integer next = responseSequenceIds.poll();
+            if (next != null) {
+                sequenceId = next;
+            }
+            promise.setSuccess();
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
+        while (msg.isReadable()) {
+            int len = Math.min(msg.readableBytes(), MAX_FRAME_PAYLOAD);
+            if (len < MIN_COMPRESS_LENGTH) {
+                writeHeader(out, len, 0);
+                out.writeBytes(msg, len);
+                continue;
+            }
+            byte[] input = new byte[len];
+            msg.readBytes(input);
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            int start = out.writerIndex();
+            writeHeader(out, 0, len);
+            byte[] output = ensureBuffer(Math.min(len, 8192));
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(output);
+                out.writeBytes(output, 0, n);
+                compressedLength += n;
+            }
+            if (compressedLength >= len) {
+                // not worth it, send the payload as it is
+                out.writerIndex(start);
+                writeHeader(out, len, 0);
+                out.writeBytes(input);
+            } else {
+                out.setByte(start, compressedLength);
+                out.setByte(start + 1, compressedLength >>> 8);
+                out.setByte(start + 2, compressedLength >>> 16);
+            }
+        }
+    }
+
+    private void writeHeader(ByteBuf out, int compressedLength, int uncompressedLength) {
+        Proto.write_fixed_int(out, 3, compressedLength);
+        out.writeByte(sequenceId++);
+        Proto.write_fixed_int(out, 3, uncompressedLength);
+    }
+
+    private byte[] ensureBuffer(int len) {
+        if (buffer.length < len) {
+            buffer = new byte[len];
+        }
+        return buffer;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        deflater.end();
+        inflater.end();
+    }
+
+}
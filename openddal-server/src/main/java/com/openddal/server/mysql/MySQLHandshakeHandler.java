@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import com.openddal.engine.Constants;
 import com.openddal.engine.SysProperties;
+import com.openddal.jdbc.JdbcConnection;
 import com.openddal.jdbc.JdbcDriver;
 import com.openddal.server.ProtocolHandler;
 import com.openddal.server.ProtocolTransport;
@@ -71,8 +72,8 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
         handshake.challenge2 = getRandomString(12);
         handshake.authPluginDataLength = 21;
         handshake.authPluginName = "mysql_native_password";
+        handshake.setCapabilityFlag(Flags.CLIENT_COMPRESS);
         // Remove some flags from the reply
-        handshake.removeCapabilityFlag(Flags.CLIENT_COMPRESS);
         handshake.removeCapabilityFlag(Flags.CLIENT_IGNORE_SPACE);
         handshake.removeCapabilityFlag(Flags.CLIENT_LOCAL_FILES);
         handshake.removeCapabilityFlag(Flags.CLIENT_SSL);
@@ -83,7 +84,7 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
         MySQLSession temp = new MySQLSession();
         temp.setHandshake(handshake);
         ctx.attr(TMP_SESSION_KEY).set(temp);
-        out.writeBytes(handshake.toPacket());
+        handshake.write(out);
         ctx.writeAndFlush(out);
     
     }
@@ -119,6 +120,9 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
         Properties prop = new Properties();
         prop.setProperty("user", authReply.username);
         prop.setProperty("password", authReply.authResponse);
+        if (engine != null) {
+            return new JdbcConnection(engine.createSession(prop));
+        }
         String url = Constants.START_URL + SysProperties.ENGINE_CONFIG_LOCATION;
         Connection connect = JdbcDriver.load().connect(url, prop);
         return connect;
@@ -134,17 +138,33 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
     }
 
     /**
+     * Send the OK packet of the authentication. If the client asked for
+     * CLIENT_COMPRESS, the compressed protocol is used for all packets after
+     * it: the codec is added on the event loop before the OK packet is
+     * written, in the same task, so the packets the client sends after the
+     * OK are always decompressed. The OK packet itself is written from the
+     * context of the codec, which does not pass it through the codec.
+     * 
      * @param channel
-     * @param buf
-     * @return
+     * @param compress true to use the compressed protocol
      */
-    private void success(Channel channel) {
-        ByteBuf out = channel.alloc().buffer();
+    private void success(final Channel channel, boolean compress) {
+        final ByteBuf out = channel.alloc().buffer();
         OK ok = new OK();
         ok.sequenceId = 2;
         ok.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT);
-        out.writeBytes(ok.toPacket());
-        channel.writeAndFlush(out);
+        ok.write(out);
+        if (compress) {
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    channel.pipeline().addFirst(MySQLCompressCodec.NAME, new MySQLCompressCodec());
+                    channel.pipeline().context(MySQLCompressCodec.NAME).writeAndFlush(out);
+                }
+            });
+        } else {
+            channel.writeAndFlush(out);
+        }
     }
     
     /**
@@ -173,7 +193,7 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
                 session.bind(ctx.channel());
                 session.setAttachment("remoteAddress", ctx.channel().remoteAddress().toString());
                 session.setAttachment("localAddress", ctx.channel().localAddress().toString());
-                success(ctx.channel());
+                success(ctx.channel(), (authReply.capabilityFlags & Flags.CLIENT_COMPRESS) != 0);
             } catch (Exception e) {
                 String errMsg = authReply == null ? e.getMessage()
                         : "Access denied for user '" + authReply.username + "' to database '" + authReply.schema + "'";
@@ -190,7 +210,7 @@ public class MySQLHandshakeHandler extends ProtocolHandler {
             ERR err = new ERR();
             err.errorCode = errno;
             err.errorMessage = msg;
-            transport.out.writeBytes(err.toPacket());
+            err.write(transport.out);
         } 
     }
 
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+
+import com.openddal.server.ProtocolProcessException;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.server.util.ErrorCode;
+import com.openddal.util.JdbcUtils;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A statement prepared with COM_STMT_PREPARE. It is cached by the session
+ * until the client sends COM_STMT_CLOSE, and binds the binary encoded
+ * parameters of COM_STMT_EXECUTE to the engine prepared statement.
+ *
+ * @see https://dev.mysql.com/doc/internals/en/com-stmt-execute.html
+ */
+public class MySQLPreparedStatement {
+
+    /**
+     * The flag of a parameter type that marks an unsigned integer.
+     */
+    private static final int UNSIGNED_TYPE_FLAG = 0x8000;
+
+    private final long id;
+    private final String sql;
+    private final PreparedStatement statement;
+    private final int parameterCount;
+    private final ResultSetMetaData metaData;
+    private final int[] parameterTypes;
+    private final ByteArrayOutputStream[] longData;
+    private ResultSet cursor;
+    private int[] cursorTypes;
+
+    public MySQLPreparedStatement(long id, String sql, PreparedStatement statement) throws SQLException {
+        this.id = id;
+        this.sql = sql;
+        this.statement = statement;
+        this.parameterCount = statement.getParameterMetaData().getParameterCount();
+        this.metaData = statement.getMetaData();
+        this.parameterTypes = new int[parameterCount];
+        this.longData = new ByteArrayOutputStream[parameterCount];
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public PreparedStatement getStatement() {
+        return statement;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * @return the result set meta data or null if this is not a query
+     */
+    public ResultSetMetaData getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * Append the data of a COM_STMT_SEND_LONG_DATA packet to a parameter.
+     *
+     * @param index the parameter index, 0 based
+     * @param data the buffer, read to the end
+     */
+    public void appendLongData(int index, ByteBuf data) throws ProtocolProcessException {
+        checkParameterIndex(index);
+        if (longData[index] == null) {
+            longData[index] = new ByteArrayOutputStream();
+        }
+        byte[] bytes = new byte[data.readableBytes()];
+        data.readBytes(bytes);
+        longData[index].write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Discard the data sent with COM_STMT_SEND_LONG_DATA.
+     */
+    public void reset() {
+        for (int i = 0; i < parameterCount; i++) {
+            longData[i] = null;
+        }
+    }
+
+    /**
+     * Bind the parameters of a COM_STMT_EXECUTE packet. The buffer is
+     * positioned after the iteration count.
+     *
+     * @param in the buffer
+     * @param charset the character set of the connection
+     */
+    public void bindParameters(ByteBuf in, Charset charset) throws SQLException {
+        if (parameterCount == 0) {
+            return;
+        }
+        int nullBitmap = in.readerIndex();
+        in.skipBytes((parameterCount + 7) / 8);
+        boolean newParamsBound = in.readByte() == 1;
+        if (newParamsBound) {
+            for (int i = 0; i < parameterCount; i++) {
+                parameterTypes[i] = (int) Proto.read_fixed_int(in, 2);
+            }
+        }
+        for (int i = 0; i < parameterCount; i++) {
+            int index = i + 1;
+            if ((in.getByte(nullBitmap + i / 8) & (1 << (i & 7))) != 0) {
+                statement.setNull(index, Types.NULL);
+            } else if (longData[i] != null) {
+                bindLongData(index, parameterTypes[i] & 0xff, longData[i].toByteArray(), charset);
+            } else {
+                bindValue(index, parameterTypes[i], in, charset);
+            }
+        }
+        reset();
+    }
+
+    private void bindValue(int index, int type, ByteBuf in, Charset charset) throws SQLException {
+        boolean unsigned = (type & UNSIGNED_TYPE_FLAG) != 0;
+        switch (type & 0xff) {
+        case Flags.MYSQL_TYPE_TINY: {
+            int v = in.readByte();
+            statement.setInt(index, unsigned ? v & 0xff : v);
+            break;
+        }
+        case Flags.MYSQL_TYPE_SHORT:
+        case Flags.MYSQL_TYPE_YEAR: {
+            int v = (short) Proto.read_fixed_int(in, 2);
+            statement.setInt(index, unsigned ? v & 0xffff : v);
+            break;
+        }
+        case Flags.MYSQL_TYPE_LONG:
+        case Flags.MYSQL_TYPE_INT24: {
+            long v = Proto.read_fixed_int(in, 4);
+            if (unsigned) {
+                statement.setLong(index, v);
+            } else {
+                statement.setInt(index, (int) v);
+            }
+            break;
+        }
+        case Flags.MYSQL_TYPE_LONGLONG: {
+            long v = Proto.read_fixed_int(in, 8);
+            if (unsigned && v < 0) {
+                BigInteger b = BigInteger.valueOf(v & Long.MAX_VALUE).setBit(63);
+                statement.setBigDecimal(index, new BigDecimal(b));
+            } else {
+                statement.setLong(index, v);
+            }
+            break;
+        }
+        case Flags.MYSQL_TYPE_FLOAT:
+            statement.setFloat(index, Float.intBitsToFloat((int) Proto.read_fixed_int(in, 4)));
+            break;
+        case Flags.MYSQL_TYPE_DOUBLE:
+            statement.setDouble(index, Double.longBitsToDouble(Proto.read_fixed_int(in, 8)));
+            break;
+        case Flags.MYSQL_TYPE_NULL:
+            statement.setNull(index, Types.NULL);
+            break;
+        case Flags.MYSQL_TYPE_DATE:
+            statement.setDate(index, new Date(readDateTime(in).getTime()));
+            break;
+        case Flags.MYSQL_TYPE_DATETIME:
+        case Flags.MYSQL_TYPE_TIMESTAMP:
+            statement.setTimestamp(index, readDateTime(in));
+            break;
+        case Flags.MYSQL_TYPE_TIME:
+            statement.setTime(index, readTime(in));
+            break;
+        case Flags.MYSQL_TYPE_DECIMAL:
+        case Flags.MYSQL_TYPE_NEWDECIMAL:
+            statement.setBigDecimal(index, new BigDecimal(Proto.read_lenenc_str(in, charset)));
+            break;
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY:
+        case Flags.MYSQL_TYPE_BIT:
+            statement.setBytes(index, Proto.read_lenenc_bytes(in));
+            break;
+        default:
+            statement.setString(index, Proto.read_lenenc_str(in, charset));
+        }
+    }
+
+    private void bindLongData(int index, int type, byte[] data, Charset charset) throws SQLException {
+        switch (type) {
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY:
+        case Flags.MYSQL_TYPE_BIT:
+            statement.setBytes(index, data);
+            break;
+        default:
+            statement.setString(index, new String(data, charset));
+        }
+    }
+
+    private static Timestamp readDateTime(ByteBuf in) {
+        int len = in.readUnsignedByte();
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        int nanos = 0;
+        if (len >= 4) {
+            int year = (int) Proto.read_fixed_int(in, 2);
+            int month = in.readUnsignedByte();
+            int day = in.readUnsignedByte();
+            cal.set(year, month - 1, day);
+        }
+        if (len >= 7) {
+            cal.set(Calendar.HOUR_OF_DAY, in.readUnsignedByte());
+            cal.set(Calendar.MINUTE, in.readUnsignedByte());
+            cal.set(Calendar.SECOND, in.readUnsignedByte());
+        }
+        if (len >= 11) {
+            nanos = (int) Proto.read_fixed_int(in, 4) * 1000;
+        }
+        Timestamp ts = new Timestamp(cal.getTimeInMillis());
+        ts.setNanos(nanos);
+        return ts;
+    }
+
+    private static Time readTime(ByteBuf in) {
+        int len = in.readUnsignedByte();
+        long millis = 0;
+        if (len >= 8) {
+            boolean negative = in.readByte() == 1;
+            long days = Proto.read_fixed_int(in, 4);
+            int hours = in.readUnsignedByte();
+            int minutes = in.readUnsignedByte();
+            int seconds = in.readUnsignedByte();
+            millis = ((days * 24 + hours) * 60 + minutes) * 60 + seconds;
+            millis *= 1000;
+            if (len >= 12) {
+                millis += Proto.read_fixed_int(in, 4) / 1000;
+            }
+            if (negative) {
+                millis = -millis;
+            }
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(1970, Calendar.JANUARY, 1);
+        return new Time(cal.getTimeInMillis() + millis);
+    }
+
+    /**
+     * Keep the result of an execution with CURSOR_TYPE_READ_ONLY open, the
+     * rows are read by COM_STMT_FETCH.
+     *
+     * @param rs the result set
+     * @param types the binary protocol types of the columns
+     */
+    public void openCursor(ResultSet rs, int[] types) {
+        closeCursor();
+        this.cursor = rs;
+        this.cursorTypes = types;
+    }
+
+    /**
+     * @return the open cursor or null if there is none
+     */
+    public ResultSet getCursor() {
+        return cursor;
+    }
+
+    public int[] getCursorTypes() {
+        return cursorTypes;
+    }
+
+    public void closeCursor() {
+        if (cursor != null) {
+            JdbcUtils.closeSilently(cursor);
+            cursor = null;
+            cursorTypes = null;
+        }
+    }
+
+    private void checkParameterIndex(int index) throws ProtocolProcessException {
+        if (index < 0 || index >= parameterCount) {
+            throw new ProtocolProcessException(ErrorCode.ER_WRONG_ARGUMENTS,
+                    "Incorrect arguments to mysqld_stmt_send_long_data");
+        }
+    }
+
+    public void close() {
+        closeCursor();
+        JdbcUtils.closeSilently(statement);
+    }
+
+}
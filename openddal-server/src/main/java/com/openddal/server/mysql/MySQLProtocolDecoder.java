@@ -20,10 +20,18 @@ import java.util.List;
 import com.openddal.server.mysql.proto.Packet;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
 /**
+ * Split the input into MySQL packets. The frames are sliced out of the
+ * cumulation buffer without copying; a payload of 16MB or more, which the
+ * client sends as several frames, is reassembled into one packet backed by a
+ * CompositeByteBuf of the frame slices. The header of a reassembled packet
+ * carries the sequence id of the last frame, so that the response continues
+ * the sequence.
+ *
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
  *
  */
@@ -31,6 +39,17 @@ public class MySQLProtocolDecoder extends ByteToMessageDecoder {
 
     private static final int FRAME_LENGTH_FIELD_LENGTH = 4;
 
+    /**
+     * The payload length of a frame that is followed by another frame of the
+     * same packet.
+     */
+    private static final int MAX_FRAME_PAYLOAD = 0xFFFFFF;
+
+    /**
+     * The frames of a packet larger than MAX_FRAME_PAYLOAD received so far.
+     */
+    private CompositeByteBuf largePacket;
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         // Make sure if the length field was received.
@@ -40,38 +59,49 @@ public class MySQLProtocolDecoder extends ByteToMessageDecoder {
             // received and appended to the buffer.
             return;
         }
-        // The length field is in the buffer.
-        // Mark the current buffer position before reading the length field
+        // The length field is read without moving the reader index,
         // because the whole frame might not be in the buffer yet.
-        // We will reset the buffer position to the marked position if
-        // there's not enough bytes in the buffer.
-        in.markReaderIndex();
-        
-        int frameLength = readLength(in);// in.readInt();
+        int frameLength = Packet.getSize(in);
         // Make sure if there's enough bytes in the buffer.
-        if (in.readableBytes() < frameLength) {
+        if (in.readableBytes() < frameLength + FRAME_LENGTH_FIELD_LENGTH) {
             // The whole bytes were not received yet - return.
             // This method will be invoked again when more packets are
             // received and appended to the buffer.
-            // Reset to the marked position to read the length field again
-            // next time.
-            in.resetReaderIndex();
             return;
         }
-        // There's enough bytes in the buffer. Read it.
-        ByteBuf frame = in.resetReaderIndex().readSlice(frameLength + 4).retain();
-        // Successfully decoded a frame. Add the decoded frame.
-        out.add(frame);
+        if (largePacket == null && frameLength < MAX_FRAME_PAYLOAD) {
+            // There's enough bytes in the buffer. Read it.
+            ByteBuf frame = in.readSlice(frameLength + FRAME_LENGTH_FIELD_LENGTH).retain();
+            // Successfully decoded a frame. Add the decoded frame.
+            out.add(frame);
+            return;
+        }
+        if (largePacket == null) {
+            // the first frame is kept with its header
+            largePacket = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            addComponent(largePacket, in.readSlice(frameLength + FRAME_LENGTH_FIELD_LENGTH).retain());
+        } else {
+            byte sequenceId = in.getByte(in.readerIndex() + 3);
+            in.skipBytes(FRAME_LENGTH_FIELD_LENGTH);
+            addComponent(largePacket, in.readSlice(frameLength).retain());
+            largePacket.setByte(3, sequenceId);
+        }
+        if (frameLength < MAX_FRAME_PAYLOAD) {
+            out.add(largePacket);
+            largePacket = null;
+        }
     }
 
-    /**
-     * @param in
-     * @return
-     */
-    private int readLength(ByteBuf in) {
-        byte[] lens = new byte[4];
-        in.readBytes(lens);
-        int size = Packet.getSize(lens);
-        return size;
+    private static void addComponent(CompositeByteBuf composite, ByteBuf frame) {
+        composite.addComponent(frame);
+        composite.writerIndex(composite.writerIndex() + frame.readableBytes());
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (largePacket != null) {
+            largePacket.release();
+            largePacket = null;
+        }
     }
 }
@@ -15,6 +15,8 @@
  */
 package com.openddal.server.mysql;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,8 +25,11 @@ import com.openddal.server.ProtocolHandler;
 import com.openddal.server.ProtocolProcessException;
 import com.openddal.server.ProtocolProcessor;
 import com.openddal.server.ProtocolTransport;
+import com.openddal.server.SerialExecutor;
 import com.openddal.server.Session;
 import com.openddal.server.mysql.proto.ERR;
+import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.util.ErrorCode;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
@@ -54,26 +59,71 @@ public class MySQLProtocolHandler extends ProtocolHandler {
         if(session == null) {
             throw new IllegalStateException("It is a bug.");
         } else {
-            ProtocolTransport transport = new ProtocolTransport(channel, buf);
-            userExecutor.execute(new HandleTask(ctx, transport));
+            final ProtocolTransport transport = new ProtocolTransport(channel, buf);
+            SerialExecutor executor = getSerialExecutor(channel);
+            try {
+                executor.execute(new HandleTask(ctx, transport));
+            } catch (RejectedExecutionException e) {
+                long sequenceId = Packet.getSequenceId(buf) + 1;
+                buf.release();
+                if (executor.getQueueDepth() > 0) {
+                    // the responses of the queued requests are not sent yet,
+                    // an error sent now would be read as one of them
+                    logger.warn("request of connection " + session.getConnectionId() + " rejected, closing. "
+                            + e.getMessage());
+                    transport.out.release();
+                    transport.close();
+                    return;
+                }
+                logger.warn("request of connection " + session.getConnectionId() + " rejected. " + e.getMessage());
+                ERR err = new ERR();
+                err.sequenceId = sequenceId;
+                err.errorCode = ErrorCode.ER_OUT_OF_RESOURCES;
+                err.errorMessage = e.getMessage();
+                err.write(transport.out);
+                // written after the response of the last request, which its
+                // user thread may have handed to the event loop just before
+                channel.eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        startResponse(transport.getChannel());
+                        transport.getChannel().writeAndFlush(transport.out);
+                    }
+                });
+            }
         }
         
     }
     
+    /**
+     * Mark the start of the response of the next request, the compressed
+     * protocol continues the sequence of the request.
+     *
+     * @param channel the channel
+     */
+    private static void startResponse(Channel channel) {
+        if (channel.pipeline().get(MySQLCompressCodec.NAME) != null) {
+            channel.write(MySQLCompressCodec.RESPONSE_START);
+        }
+    }
+
     /**
      * Execute the processor in user threads.
      */
     class HandleTask implements Runnable {
         private ChannelHandlerContext ctx;
         private ProtocolTransport transport;
+        private long sequenceId;
 
         HandleTask(ChannelHandlerContext ctx, ProtocolTransport transport) {
             this.ctx = ctx;
             this.transport = transport;
+            this.sequenceId = Packet.getSequenceId(transport.in);
         }
 
         @Override
         public void run() {
+            startResponse(ctx.channel());
             try {
                 ProtocolProcessor processor = processorFactory.getProcessor(transport);
                 processor.process(transport);
@@ -87,12 +137,20 @@ public class MySQLProtocolHandler extends ProtocolHandler {
         }
         
         public void handleThrowable(Throwable e) {
-            transport.out.clear();
             ProtocolProcessException convert = ProtocolProcessException.convert(e);
             ERR err = new ERR();
+            long written = MySQLProtocolProcessor.getLastSequenceId(transport.getSession());
+            if (transport.isFlushed() && written >= 0) {
+                // the rows flushed before can't be taken back, the error is
+                // sent in place of the next row
+                err.sequenceId = written + 1;
+            } else {
+                transport.out.clear();
+                err.sequenceId = sequenceId + 1;
+            }
             err.errorCode = convert.getErrorCode();
             err.errorMessage = convert.getMessage();
-            transport.out.writeBytes(err.toPacket());
+            err.write(transport.out);
         }
 
     }
@@ -1,43 +1,66 @@
 package com.openddal.server.mysql;
 
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openddal.command.CommandInterface;
+import com.openddal.engine.SessionInterface;
+import com.openddal.engine.StageStatistics;
+import com.openddal.engine.SysProperties;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.jdbc.JdbcResultSet;
+import com.openddal.result.ResultInterface;
 import com.openddal.server.ProtocolProcessException;
 import com.openddal.server.ProtocolTransport;
+import com.openddal.server.Session;
 import com.openddal.server.TraceableProcessor;
 import com.openddal.server.mysql.parser.ServerParse;
+import com.openddal.server.mysql.parser.ServerParseMultiStatement;
 import com.openddal.server.mysql.parser.ServerParseSelect;
 import com.openddal.server.mysql.parser.ServerParseSet;
 import com.openddal.server.mysql.parser.ServerParseShow;
 import com.openddal.server.mysql.parser.ServerParseStart;
 import com.openddal.server.mysql.proto.ColumnPacket;
 import com.openddal.server.mysql.proto.Com_Query;
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare;
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare_Ok;
 import com.openddal.server.mysql.proto.ERR;
 import com.openddal.server.mysql.proto.Flags;
 import com.openddal.server.mysql.proto.OK;
 import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.mysql.proto.Proto;
 import com.openddal.server.mysql.proto.ResultSetPacket;
-import com.openddal.server.mysql.proto.RowPacket;
 import com.openddal.server.mysql.respo.CharacterSet;
 import com.openddal.server.mysql.respo.SelectVariables;
+import com.openddal.server.mysql.respo.ShowProcessList;
 import com.openddal.server.mysql.respo.ShowVariables;
 import com.openddal.server.mysql.respo.ShowVersion;
 import com.openddal.server.mysql.respo.TxResultSet;
+import com.openddal.server.util.CharsetUtil;
 import com.openddal.server.util.ErrorCode;
 import com.openddal.server.util.MysqlDefs;
 import com.openddal.server.util.ResultSetUtil;
 import com.openddal.server.util.StringUtil;
 import com.openddal.util.JdbcUtils;
 import com.openddal.util.StringUtils;
+import com.openddal.value.DataType;
+import com.openddal.value.Value;
 
 import io.netty.buffer.ByteBuf;
 
@@ -45,11 +68,22 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MySQLProtocolProcessor.class);
 
+    /**
+     * The number of result set rows written before the output is flushed.
+     */
+    private static final int FLUSH_ROWS = 1000;
+
+    /**
+     * The size of the buffered output that is flushed while writing rows.
+     */
+    private static final int FLUSH_BYTES = ProtocolTransport.DEFAULT_BUFFER_SIZE * 4;
+
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
     protected void doProcess(ProtocolTransport transport) throws Exception {
 
-        ByteBuf buffer = transport.in;
-        byte[] packet = new byte[buffer.readableBytes()];
-        buffer.readBytes(packet);
+        // the packet is parsed in place, it is not copied out of the buffer
+        ByteBuf packet = transport.in;
         setSequenceId(Packet.getSequenceId(packet));
         byte type = Packet.getType(packet);
 
@@ -58,9 +92,17 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
             sendOk();
             break;
         case Flags.COM_QUERY:
-            String query = Com_Query.loadFromPacket(packet).query;
+            String query = Com_Query.loadFromPacket(packet, getCharset()).query;
             getTrace().protocol("COM_QUERY").sql(query);
-            query(query);
+            if (getMySQLSession().isMultiStatements()) {
+                multiQuery(query);
+            } else {
+                query(query);
+            }
+            break;
+        case Flags.COM_SET_OPTION:
+            getTrace().protocol("COM_SET_OPTION");
+            setOption(packet);
             break;
         case Flags.COM_PING:
             getTrace().protocol("COM_PING");
@@ -71,10 +113,40 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
             getSession().close();
             getProtocolTransport().close();
             break;
-        case Flags.COM_PROCESS_KILL:
         case Flags.COM_STMT_PREPARE:
+            String sql = Com_Stmt_Prepare.loadFromPacket(packet, getCharset()).query;
+            getTrace().protocol("COM_STMT_PREPARE").sql(sql);
+            prepare(sql);
+            break;
         case Flags.COM_STMT_EXECUTE:
+            getTrace().protocol("COM_STMT_EXECUTE");
+            stmtExecute(packet);
+            break;
+        case Flags.COM_STMT_SEND_LONG_DATA:
+            getTrace().protocol("COM_STMT_SEND_LONG_DATA");
+            stmtSendLongData(packet);
+            break;
+        case Flags.COM_STMT_RESET:
+            getTrace().protocol("COM_STMT_RESET");
+            MySQLPreparedStatement prepared = getPreparedStatement(packet, "mysqld_stmt_reset");
+            prepared.reset();
+            prepared.closeCursor();
+            sendOk();
+            break;
+        case Flags.COM_STMT_FETCH:
+            getTrace().protocol("COM_STMT_FETCH");
+            stmtFetch(packet);
+            break;
         case Flags.COM_STMT_CLOSE:
+            getTrace().protocol("COM_STMT_CLOSE");
+            packet.skipBytes(5);
+            // no response is sent for COM_STMT_CLOSE
+            getMySQLSession().closePreparedStatement(Proto.read_fixed_int(packet, 4));
+            break;
+        case Flags.COM_PROCESS_KILL:
+            getTrace().protocol("COM_PROCESS_KILL");
+            packet.skipBytes(5);
+            kill(Proto.read_fixed_int(packet, 4), false);
             break;
         case Flags.COM_SLEEP:// deprecated
         case Flags.COM_FIELD_LIST:
@@ -93,10 +165,6 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         case Flags.COM_TABLE_DUMP:
         case Flags.COM_CONNECT_OUT:
         case Flags.COM_REGISTER_SLAVE:
-        case Flags.COM_STMT_SEND_LONG_DATA:
-        case Flags.COM_STMT_RESET:
-        case Flags.COM_SET_OPTION:
-        case Flags.COM_STMT_FETCH:
         case Flags.COM_DAEMON: // deprecated
         case Flags.COM_BINLOG_DUMP_GTID:
         case Flags.COM_END:
@@ -106,6 +174,64 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         }
     }
 
+    /**
+     * Execute the statements of a COM_QUERY packet sent with
+     * CLIENT_MULTI_STATEMENTS in order. All results are written to the same
+     * output and flushed together, every result but the last one is marked
+     * with SERVER_MORE_RESULTS_EXISTS. The first statement that fails ends
+     * the response with its error.
+     * 
+     * @param sql the statements
+     * @throws Exception
+     */
+    private void multiQuery(String sql) throws Exception {
+        List<String> statements = ServerParseMultiStatement.split(sql);
+        int size = statements.size();
+        if (size <= 1) {
+            query(sql);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            getSession().setAttachment("moreResults", i < size - 1);
+            try {
+                query(statements.get(i));
+            } catch (Exception e) {
+                ProtocolProcessException pe = ProtocolProcessException.convert(e);
+                LOGGER.warn("statement " + (i + 1) + " of a multi statement query failed", e);
+                getTrace().errorCode(pe.getErrorCode()).errorMsg(pe.getMessage());
+                getSession().setAttachment("moreResults", false);
+                sendError(pe.getErrorCode(), pe.getMessage());
+                return;
+            } finally {
+                getSession().setAttachment("moreResults", false);
+            }
+        }
+    }
+
+    /**
+     * @see https://dev.mysql.com/doc/internals/en/com-set-option.html
+     * 
+     * @param packet the COM_SET_OPTION packet
+     * @throws Exception
+     */
+    private void setOption(ByteBuf packet) throws Exception {
+        packet.skipBytes(5);
+        int option = (int) Proto.read_fixed_int(packet, 2);
+        switch (option) {
+        case Flags.MYSQL_OPTION_MULTI_STATEMENTS_ON:
+            getMySQLSession().setMultiStatements(true);
+            break;
+        case Flags.MYSQL_OPTION_MULTI_STATEMENTS_OFF:
+            getMySQLSession().setMultiStatements(false);
+            break;
+        default:
+            throw error(ErrorCode.ER_UNKNOWN_COM_ERROR, "Unknown option " + option);
+        }
+        ResultSetPacket resultset = new ResultSetPacket();
+        resultset.sequenceId = getNextSequenceId();
+        resultset.writeEof(getProtocolTransport().out, getStatusFlags());
+    }
+
     public void query(String sql) throws Exception {
         if (StringUtils.isNullOrEmpty(sql)) {
             throw error(ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
@@ -143,6 +269,12 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         case ServerParse.ROLLBACK:
             processRollback(sql, rs >>> 8);
             break;
+        case ServerParse.KILL:
+            processKill(sql, rs >>> 8, false);
+            break;
+        case ServerParse.KILL_QUERY:
+            processKill(sql, rs >>> 8, true);
+            break;
         default:
             execute(sql, rs);
         }
@@ -260,10 +392,27 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
                 unsupported("CONNECTION");
                 break;
             case ServerParseShow.SLOW:
-                unsupported("SLOW");
+                execute("SELECT ID, SESSION_ID, USER_NAME, START_TIME, EXECUTION_TIME, SQL_STATEMENT, "
+                        + "COUNT(SHARD_NAME) SHARD_COUNT, MAX(SHARD_EXECUTION_TIME) MAX_SHARD_EXECUTION_TIME "
+                        + "FROM INFORMATION_SCHEMA.SLOW_QUERIES "
+                        + "GROUP BY ID, SESSION_ID, USER_NAME, START_TIME, EXECUTION_TIME, SQL_STATEMENT "
+                        + "ORDER BY ID DESC", ServerParse.SELECT);
                 break;
             case ServerParseShow.PHYSICAL_SLOW:
-                unsupported("PHYSICAL_SLOW");
+                execute("SELECT ID, START_TIME, EXECUTION_TIME, SHARD_NAME, SHARD_SQL_STATEMENT, "
+                        + "SHARD_ROW_COUNT, SHARD_EXECUTION_TIME FROM INFORMATION_SCHEMA.SLOW_QUERIES "
+                        + "WHERE SHARD_NAME IS NOT NULL ORDER BY ID DESC, SHARD_EXECUTION_TIME DESC",
+                        ServerParse.SELECT);
+                break;
+            case ServerParseShow.SKEW:
+                execute("SELECT TABLE_SCHEMA, TABLE_NAME, SHARD_NAME, TABLE_NODE, STATEMENT_COUNT, STATEMENT_SKEW, "
+                        + "READ_ROW_COUNT + WRITTEN_ROW_COUNT ROW_COUNT, ROW_SKEW, ERROR_COUNT, "
+                        + "AVERAGE_EXECUTION_TIME FROM INFORMATION_SCHEMA.TABLE_NODE_STATISTICS "
+                        + "WHERE STATEMENT_COUNT > 0 ORDER BY STATEMENT_SKEW DESC, ROW_SKEW DESC",
+                        ServerParse.SELECT);
+                break;
+            case ServerParseShow.PROCESSLIST:
+                sendResultSet(ShowProcessList.getResultSet(getMySQLSession()));
                 break;
             case ServerParseShow.VARIABLES:
                 sendResultSet(ShowVariables.getResultSet());
@@ -317,19 +466,56 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         }
     }
 
-    public void processKill(String stmt, int offset) throws Exception {
+    public void processKill(String stmt, int offset, boolean query) throws Exception {
         String id = stmt.substring(offset).trim();
+        if (id.endsWith(";")) {
+            id = id.substring(0, id.length() - 1).trim();
+        }
         if (StringUtils.isNullOrEmpty(id)) {
-            sendError(ErrorCode.ER_NO_SUCH_THREAD, "NULL connection id");
-        } else {
-            try {
-                //long value = Long.parseLong(id);
-                execute("SELECT CANCEL_SESSION()", ServerParse.SELECT);
-            } catch (NumberFormatException e) {
-                throw error(ErrorCode.ER_NO_SUCH_THREAD, "Invalid connection id:" + id);
-            }
+            throw error(ErrorCode.ER_NO_SUCH_THREAD, "NULL connection id");
+        }
+        long value;
+        try {
+            value = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw error(ErrorCode.ER_NO_SUCH_THREAD, "Invalid connection id:" + id);
+        }
+        kill(value, query);
+    }
+
+    /**
+     * Cancel the running statement of a connection, the statements of the
+     * shards are canceled in parallel. The connection is closed too unless
+     * only the query is killed.
+     * 
+     * @param id the connection id
+     * @param query true to keep the connection
+     * @throws Exception
+     */
+    private void kill(long id, boolean query) throws Exception {
+        MySQLSession current = getMySQLSession();
+        MySQLSession target = MySQLSession.getSession(id);
+        if (target == null) {
             throw error(ErrorCode.ER_NO_SUCH_THREAD, "Unknown connection id:" + id);
         }
+        if (target != current && !current.getUser().equals(target.getUser())
+                && !current.getEngineSession().getUser().isAdmin()) {
+            throw error(ErrorCode.ER_KILL_DENIED_ERROR, "You are not owner of connection " + id);
+        }
+        if (target == current) {
+            if (query) {
+                sendOk();
+            } else {
+                current.close();
+                getProtocolTransport().close();
+            }
+            return;
+        }
+        target.getEngineSession().cancelCurrentCommand();
+        if (!query) {
+            target.kill();
+        }
+        sendOk();
     }
 
     private void execute(String sql, int type) throws Exception {
@@ -338,14 +524,7 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         ResultSet rs = null;
         switch (type) {
         case ServerParse.SELECT:
-            try {
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery(sql);
-                sendResultSet(rs);
-            } finally {
-                JdbcUtils.closeSilently(stmt);
-                JdbcUtils.closeSilently(rs);
-            }
+            executeQuery(sql);
             break;
         case ServerParse.SET:
             try {
@@ -357,24 +536,287 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
                 JdbcUtils.closeSilently(rs);
             }
             break;
-
+        case ServerParse.INSERT:
+        case ServerParse.UPDATE:
+        case ServerParse.DELETE:
+        case ServerParse.REPLACE:
+            executeUpdate(sql);
+            break;
         default:
             unsupported(sql);
         }
     }
 
+    /**
+     * Run a data change statement with the engine connection and send the
+     * update count in the OK packet.
+     * 
+     * @param sql the statement
+     * @throws Exception
+     */
+    private void executeUpdate(String sql) throws Exception {
+        Statement stmt = getSession().getEngineConnection().createStatement();
+        try {
+            int updateCount = stmt.executeUpdate(sql);
+            OK ok = new OK();
+            ok.sequenceId = getNextSequenceId();
+            ok.affectedRows = Math.max(updateCount, 0);
+            ok.statusFlags = getStatusFlags();
+            ok.write(getProtocolTransport().out);
+        } finally {
+            JdbcUtils.closeSilently(stmt);
+        }
+    }
+
+    /**
+     * Run a query with the engine session and send the result. The values of
+     * the rows are encoded as they are read from the engine result, and the
+     * column definitions are cached with the command, which the engine keeps
+     * in its query cache. The command is closed only after the result, a lazy
+     * result reads the state of its command until then.
+     * 
+     * @param sql the query
+     * @throws Exception
+     */
+    private void executeQuery(String sql) throws Exception {
+        SessionInterface session = getEngineSession();
+        CommandInterface command;
+        ResultInterface result;
+        List<ColumnPacket> columns;
+        synchronized (session) {
+            command = session.prepareCommand(sql, SysProperties.SERVER_RESULT_SET_FETCH_SIZE);
+            try {
+                result = command.executeQuery(0, false);
+                columns = getMySQLSession().getColumnDefinitions(command);
+                if (columns == null) {
+                    columns = newColumnDefinitions(result);
+                    getMySQLSession().setColumnDefinitions(command, columns);
+                }
+            } catch (Exception e) {
+                command.close();
+                throw e;
+            }
+        }
+        StageStatistics stageStatistics = getStageStatistics();
+        long start = stageStatistics.start();
+        try {
+            sendResult(result, columns);
+        } finally {
+            result.close();
+            command.close();
+            stageStatistics.end(StageStatistics.ENCODE, start);
+        }
+    }
+
+    /**
+     * @see https://dev.mysql.com/doc/internals/en/com-stmt-prepare-response.html
+     * 
+     * @param sql the statement
+     * @throws Exception
+     */
+    private void prepare(String sql) throws Exception {
+        if (StringUtils.isNullOrEmpty(sql)) {
+            throw error(ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
+        }
+        PreparedStatement ps = getConnection().prepareStatement(sql);
+        MySQLPreparedStatement prepared;
+        try {
+            prepared = getMySQLSession().addPreparedStatement(sql, ps);
+        } catch (SQLException e) {
+            JdbcUtils.closeSilently(ps);
+            throw e;
+        }
+        ResultSetMetaData metaData = prepared.getMetaData();
+        int parameterCount = prepared.getParameterCount();
+        ResultSetPacket resultset = newResultSetPacket(metaData);
+        ByteBuf out = getProtocolTransport().out;
+
+        Com_Stmt_Prepare_Ok ok = new Com_Stmt_Prepare_Ok();
+        ok.sequenceId = resultset.sequenceId++;
+        ok.statementId = prepared.getId();
+        ok.numColumns = resultset.columns.size();
+        ok.numParams = parameterCount;
+        ok.write(out);
+        if (parameterCount > 0) {
+            for (int i = 0; i < parameterCount; i++) {
+                ColumnPacket param = new ColumnPacket("?");
+                param.sequenceId = resultset.sequenceId++;
+                param.write(out);
+            }
+            resultset.writeEof(out, getStatusFlags());
+        }
+        if (!resultset.columns.isEmpty()) {
+            resultset.writeColumns(out, getStatusFlags());
+        }
+    }
+
+    /**
+     * @see https://dev.mysql.com/doc/internals/en/com-stmt-execute.html
+     * 
+     * @param packet the COM_STMT_EXECUTE packet
+     * @throws Exception
+     */
+    private void stmtExecute(ByteBuf packet) throws Exception {
+        MySQLPreparedStatement prepared = getPreparedStatement(packet, "mysqld_stmt_execute");
+        getTrace().sql(prepared.getSql());
+        int flags = packet.readUnsignedByte();
+        // iteration count, always 1
+        packet.skipBytes(4);
+        prepared.closeCursor();
+        prepared.bindParameters(packet, getCharset());
+        PreparedStatement ps = prepared.getStatement();
+        if (ps.execute()) {
+            ResultSet rs = ps.getResultSet();
+            if ((flags & Flags.CURSOR_TYPE_READ_ONLY) != 0) {
+                openCursor(prepared, rs);
+                return;
+            }
+            try {
+                sendBinaryResultSet(rs);
+            } finally {
+                JdbcUtils.closeSilently(rs);
+            }
+        } else {
+            OK ok = new OK();
+            ok.sequenceId = getNextSequenceId();
+            ok.affectedRows = Math.max(ps.getUpdateCount(), 0);
+            ok.statusFlags = getStatusFlags();
+            ok.write(getProtocolTransport().out);
+        }
+    }
+
+    /**
+     * Send the column definitions of the result and keep the result open as
+     * the cursor of the statement, the rows are sent by COM_STMT_FETCH. The
+     * engine reads the rows of a forward only result from the shards while
+     * it is iterated, so only the open shard cursors are held.
+     * 
+     * @param prepared the statement
+     * @param rs the result set
+     * @throws Exception
+     */
+    private void openCursor(MySQLPreparedStatement prepared, ResultSet rs) throws Exception {
+        try {
+            ResultSetPacket resultset = newResultSetPacket(rs.getMetaData());
+            resultset.writeHead(getProtocolTransport().out,
+                    getStatusFlags() | Flags.SERVER_STATUS_CURSOR_EXISTS);
+            prepared.openCursor(rs, getBinaryTypes(resultset));
+        } catch (Exception e) {
+            JdbcUtils.closeSilently(rs);
+            throw e;
+        }
+    }
+
+    /**
+     * @see https://dev.mysql.com/doc/internals/en/com-stmt-fetch.html
+     * 
+     * @param packet the COM_STMT_FETCH packet
+     * @throws Exception
+     */
+    private void stmtFetch(ByteBuf packet) throws Exception {
+        MySQLPreparedStatement prepared = getPreparedStatement(packet, "mysqld_stmt_fetch");
+        getTrace().sql(prepared.getSql());
+        long numRows = Proto.read_fixed_int(packet, 4);
+        ResultSet rs = prepared.getCursor();
+        if (rs == null) {
+            throw error(ErrorCode.ER_STMT_HAS_NO_OPEN_CURSOR,
+                    "The statement (" + prepared.getId() + ") has no open cursor.");
+        }
+        ResultSetPacket resultset = new ResultSetPacket();
+        resultset.sequenceId = getNextSequenceId();
+        ProtocolTransport transport = getProtocolTransport();
+        try {
+            if (writeBinaryRows(resultset, rs, prepared.getCursorTypes(), numRows)) {
+                resultset.writeEof(transport.out,
+                        getStatusFlags() | Flags.SERVER_STATUS_CURSOR_EXISTS);
+            } else {
+                prepared.closeCursor();
+                resultset.writeEof(transport.out,
+                        getStatusFlags() | Flags.SERVER_STATUS_LAST_ROW_SENT);
+            }
+        } catch (Exception e) {
+            prepared.closeCursor();
+            throw e;
+        }
+    }
+
+    private void stmtSendLongData(ByteBuf packet) throws Exception {
+        MySQLPreparedStatement prepared = getPreparedStatement(packet, "mysqld_stmt_send_long_data");
+        int index = (int) Proto.read_fixed_int(packet, 2);
+        // no response is sent for COM_STMT_SEND_LONG_DATA
+        prepared.appendLongData(index, packet);
+    }
+
+    /**
+     * Read the statement id of a COM_STMT_* packet, the reader index of the
+     * buffer is moved after the id.
+     * 
+     * @param packet the packet
+     * @param command the command name used in the error message
+     * @return the cached statement
+     */
+    private MySQLPreparedStatement getPreparedStatement(ByteBuf packet, String command) throws Exception {
+        packet.skipBytes(5);
+        long id = Proto.read_fixed_int(packet, 4);
+        MySQLPreparedStatement prepared = getMySQLSession().getPreparedStatement(id);
+        if (prepared == null) {
+            throw error(ErrorCode.ER_UNKNOWN_STMT_HANDLER,
+                    "Unknown prepared statement handler (" + id + ") given to " + command);
+        }
+        return prepared;
+    }
+
+    private SessionInterface getEngineSession() {
+        return ((JdbcConnection) getConnection()).getSession();
+    }
+
+    private StageStatistics getStageStatistics() {
+        return getMySQLSession().getEngineSession().getDatabase().getStageStatistics();
+    }
+
+    private MySQLSession getMySQLSession() {
+        return (MySQLSession) getSession();
+    }
+
     private long getNextSequenceId() {
         Long seq = getSession().getAttachment("sequenceId");
         if (seq == null) {
             seq = 0L;
         }
-        return ++seq;
+        setSequenceId(++seq);
+        return seq;
+    }
+
+    /**
+     * @return the status flags of the OK packet or the last EOF packet of a
+     *         result, a session with autocommit off is reported in a
+     *         transaction
+     */
+    private int getStatusFlags() {
+        int flags = getMySQLSession().getEngineSession().getAutoCommit() ? Flags.SERVER_STATUS_AUTOCOMMIT
+                : Flags.SERVER_STATUS_IN_TRANS;
+        if (Boolean.TRUE.equals(getSession().getAttachment("moreResults"))) {
+            flags |= Flags.SERVER_MORE_RESULTS_EXISTS;
+        }
+        return flags;
     }
 
     private void setSequenceId(long sequenceId) {
         getSession().setAttachment("sequenceId", sequenceId);
     }
 
+    /**
+     * Get the sequence id of the last packet written for the request of the
+     * session.
+     * 
+     * @param session the session
+     * @return the sequence id, or -1 if unknown
+     */
+    static long getLastSequenceId(Session session) {
+        Long seq = session == null ? null : session.<Long> getAttachment("sequenceId");
+        return seq == null ? -1 : seq;
+    }
+
     private void unsupported(String msg) throws Exception {
         throw error(ErrorCode.ER_UNKNOWN_COM_ERROR, 
                 msg + " unsupported");
@@ -388,11 +830,28 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         return new ProtocolProcessException(errno, msg);
     }
 
+    /**
+     * Get the character set used to decode the statements of the connection.
+     *
+     * @return the character set
+     */
+    private Charset getCharset() {
+        String charset = CharsetUtil.getJavaCharset(getSession().getCharset());
+        try {
+            if (charset != null && Charset.isSupported(charset)) {
+                return Charset.forName(charset);
+            }
+        } catch (IllegalCharsetNameException e) {
+            // use the default
+        }
+        return DEFAULT_CHARSET;
+    }
+
     public void sendOk() {
         OK ok = new OK();
         ok.sequenceId = getNextSequenceId();
-        ok.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT);
-        getProtocolTransport().out.writeBytes(ok.toPacket());
+        ok.statusFlags = getStatusFlags();
+        ok.write(getProtocolTransport().out);
     }
 
     public void sendError(int errno, String msg) {
@@ -400,22 +859,21 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
         err.sequenceId = getNextSequenceId();
         err.errorCode = errno;
         err.errorMessage = msg;
-        getProtocolTransport().out.writeBytes(err.toPacket());
+        err.write(getProtocolTransport().out);
     }
 
     /**
-     * @see https://dev.mysql.com/doc/internals/en/com-query-response.html
+     * Create the result set packet with the column definitions of the given
+     * meta data.
      * 
-     * @param rs
-     * @throws Exception
+     * @param metaData the meta data, or null if there are no columns
+     * @return the packet
+     * @throws SQLException
      */
-    public void sendResultSet(ResultSet rs) throws Exception {
-        ResultSetMetaData metaData = rs.getMetaData();
-        int colunmCount = metaData.getColumnCount();
-
+    private ResultSetPacket newResultSetPacket(ResultSetMetaData metaData) throws SQLException {
         ResultSetPacket resultset = new ResultSetPacket();
-        resultset.sequenceId = getNextSequenceId();
         ResultSetPacket.characterSet = getSession().getCharsetIndex();
+        int colunmCount = metaData == null ? 0 : metaData.getColumnCount();
 
         for (int i = 0; i < colunmCount; i++) {
             int j = i + 1;
@@ -432,19 +890,372 @@ public class MySQLProtocolProcessor extends TraceableProcessor {
             columnPacket.type = (byte) (MysqlDefs.javaTypeMysql(javaType) & 0xff);
             resultset.addColumn(columnPacket);
         }
+        // the id is only taken when nothing can fail before the head is
+        // written, the error of a failure continues the sequence
+        resultset.sequenceId = getNextSequenceId();
+        return resultset;
+    }
 
-        while (rs.next()) {
-            RowPacket rowPacket = new RowPacket();
-            for (int i = 0; i < colunmCount; i++) {
-                int j = i + 1;
-                rowPacket.data.add(StringUtil.emptyIfNull(rs.getString(j)));
+    /**
+     * Create the column definitions of an engine result.
+     * 
+     * @param result the result
+     * @return the column definitions
+     */
+    private static List<ColumnPacket> newColumnDefinitions(ResultInterface result) {
+        int colunmCount = result.getVisibleColumnCount();
+        List<ColumnPacket> columns = new ArrayList<ColumnPacket>(colunmCount);
+        for (int i = 0; i < colunmCount; i++) {
+            ColumnPacket columnPacket = new ColumnPacket();
+            columnPacket.org_name = StringUtil.emptyIfNull(result.getColumnName(i));
+            columnPacket.name = StringUtil.emptyIfNull(result.getAlias(i));
+            columnPacket.org_table = StringUtil.emptyIfNull(result.getTableName(i));
+            columnPacket.table = StringUtil.emptyIfNull(result.getTableName(i));
+            columnPacket.schema = StringUtil.emptyIfNull(result.getSchemaName(i));
+            // the same flags as ResultSetUtil.toFlag, the engine columns are
+            // always signed
+            columnPacket.flags = 0020;
+            if (result.getNullable(i) == ResultSetMetaData.columnNullable) {
+                columnPacket.flags |= 0001;
             }
-            resultset.addRow(rowPacket);
+            if (result.isAutoIncrement(i)) {
+                columnPacket.flags |= 0200;
+            }
+            columnPacket.columnLength = result.getDisplaySize(i);
+            columnPacket.decimals = result.getColumnScale(i);
+            int sqlType = DataType.convertTypeToSQLType(result.getColumnType(i));
+            int javaType = MysqlDefs.javaTypeDetect(sqlType, (int) columnPacket.decimals);
+            columnPacket.type = (byte) (MysqlDefs.javaTypeMysql(javaType) & 0xff);
+            columns.add(columnPacket);
         }
+        return columns;
+    }
+
+    /**
+     * Send an engine result with the text protocol.
+     * 
+     * @param result the result
+     * @param columns the column definitions
+     * @throws Exception
+     */
+    private void sendResult(ResultInterface result, List<ColumnPacket> columns) throws Exception {
+        ResultSetPacket resultset = new ResultSetPacket();
+        resultset.sequenceId = getNextSequenceId();
+        ResultSetPacket.characterSet = getSession().getCharsetIndex();
+        resultset.columns.addAll(columns);
+
+        ProtocolTransport transport = getProtocolTransport();
+        Charset charset = getCharset();
+        resultset.writeHead(transport.out, getStatusFlags());
+        int rows = 0;
+        while (true) {
+            int rowStart = transport.out.writerIndex();
+            try {
+                if (!result.next()) {
+                    break;
+                }
+                writeTextRow(resultset, result.currentRow(), columns.size(), charset);
+            } catch (Exception e) {
+                throw discardRow(resultset, rowStart, e);
+            }
+            if (++rows % FLUSH_ROWS == 0 || transport.out.readableBytes() >= FLUSH_BYTES) {
+                transport.flush();
+            }
+        }
+        resultset.writeEof(transport.out, getStatusFlags());
+        setSequenceId(resultset.sequenceId - 1);
+    }
+
+    /**
+     * @see https://dev.mysql.com/doc/internals/en/com-query-response.html
+     * 
+     * @param rs
+     * @throws Exception
+     */
+    public void sendResultSet(ResultSet rs) throws Exception {
+        ResultSetPacket resultset = newResultSetPacket(rs.getMetaData());
+        int colunmCount = resultset.columns.size();
+
+        ProtocolTransport transport = getProtocolTransport();
+        Charset charset = getCharset();
+        JdbcResultSet values = rs instanceof JdbcResultSet ? (JdbcResultSet) rs : null;
+        resultset.writeHead(transport.out, getStatusFlags());
+        // the rows are encoded in place into the output buffer as they are
+        // read, the output is flushed to the client every FLUSH_ROWS rows or
+        // FLUSH_BYTES bytes
+        int rows = 0;
+        while (true) {
+            int rowStart = transport.out.writerIndex();
+            try {
+                if (!rs.next()) {
+                    break;
+                }
+                if (values != null) {
+                    writeTextRow(resultset, values.getCurrentRow(), colunmCount, charset);
+                } else {
+                    ByteBuf out = transport.out;
+                    int start = Packet.beginPacket(out, resultset.sequenceId++);
+                    for (int i = 0; i < colunmCount; i++) {
+                        String value = rs.getString(i + 1);
+                        if (value == null) {
+                            out.writeByte(ValueEncoder.NULL_VALUE);
+                        } else {
+                            Proto.write_lenenc_str(out, value, charset);
+                        }
+                    }
+                    resultset.sequenceId += Packet.endPacket(out, start);
+                }
+            } catch (Exception e) {
+                throw discardRow(resultset, rowStart, e);
+            }
+            if (++rows % FLUSH_ROWS == 0 || transport.out.readableBytes() >= FLUSH_BYTES) {
+                transport.flush();
+            }
+        }
+        resultset.writeEof(transport.out, getStatusFlags());
+        setSequenceId(resultset.sequenceId - 1);
+    }
+
+    private void writeTextRow(ResultSetPacket resultset, Value[] row, int colunmCount, Charset charset) {
         ByteBuf out = getProtocolTransport().out;
-        ArrayList<byte[]> packets = resultset.toPackets();
-        for (byte[] bs : packets) {
-            out.writeBytes(bs);
+        int start = Packet.beginPacket(out, resultset.sequenceId++);
+        for (int i = 0; i < colunmCount; i++) {
+            ValueEncoder.writeText(out, row[i], charset);
+        }
+        resultset.sequenceId += Packet.endPacket(out, start);
+    }
+
+    /**
+     * Send the result of a prepared statement, the rows are encoded with the
+     * binary protocol.
+     * 
+     * @see https://dev.mysql.com/doc/internals/en/binary-protocol-resultset.html
+     * 
+     * @param rs the result set
+     * @throws Exception
+     */
+    public void sendBinaryResultSet(ResultSet rs) throws Exception {
+        StageStatistics stageStatistics = getStageStatistics();
+        long start = stageStatistics.start();
+        ResultSetPacket resultset = newResultSetPacket(rs.getMetaData());
+        ProtocolTransport transport = getProtocolTransport();
+        resultset.writeHead(transport.out, getStatusFlags());
+        writeBinaryRows(resultset, rs, getBinaryTypes(resultset), Long.MAX_VALUE);
+        resultset.writeEof(transport.out, getStatusFlags());
+        setSequenceId(resultset.sequenceId - 1);
+        stageStatistics.end(StageStatistics.ENCODE, start);
+    }
+
+    /**
+     * Drop the row that was written when reading or encoding the result
+     * failed. The rows before may already be flushed to the client, the
+     * sequence id is set to the one of the last row written, so the error is
+     * sent in place of the next row.
+     * 
+     * @param resultset the packet that holds the sequence id
+     * @param rowStart the position of the row in the output buffer
+     * @param e the failure
+     * @return the failure
+     */
+    private Exception discardRow(ResultSetPacket resultset, int rowStart, Exception e) {
+        ByteBuf out = getProtocolTransport().out;
+        if (out.writerIndex() > rowStart) {
+            out.writerIndex(rowStart);
+            resultset.sequenceId--;
+        }
+        setSequenceId(resultset.sequenceId - 1);
+        return e;
+    }
+
+    private static int[] getBinaryTypes(ResultSetPacket resultset) {
+        int colunmCount = resultset.columns.size();
+        int[] types = new int[colunmCount];
+        for (int i = 0; i < colunmCount; i++) {
+            types[i] = (int) resultset.columns.get(i).type & 0xff;
+        }
+        return types;
+    }
+
+    /**
+     * Write the rows of the result with the binary protocol.
+     * 
+     * @param resultset the packet that holds the sequence id
+     * @param rs the result set
+     * @param types the column types
+     * @param maxRows the maximum number of rows to write
+     * @return true if maxRows rows were written, false if the end of the
+     *         result was reached
+     * @throws Exception
+     */
+    private boolean writeBinaryRows(ResultSetPacket resultset, ResultSet rs, int[] types, long maxRows)
+            throws Exception {
+        int colunmCount = types.length;
+        // the NULL bitmap of a binary row starts at bit 2
+        int nullBitmapSize = (colunmCount + 7 + 2) / 8;
+
+        ProtocolTransport transport = getProtocolTransport();
+        Charset charset = getCharset();
+        JdbcResultSet values = rs instanceof JdbcResultSet ? (JdbcResultSet) rs : null;
+        long rows = 0;
+        while (rows < maxRows) {
+            ByteBuf out = transport.out;
+            int rowStart = out.writerIndex();
+            try {
+                if (!rs.next()) {
+                    return false;
+                }
+                Value[] row = values == null ? null : values.getCurrentRow();
+                int start = Packet.beginPacket(out, resultset.sequenceId++);
+                out.writeByte(0x00);
+                int nullBitmap = out.writerIndex();
+                out.writeZero(nullBitmapSize);
+                for (int i = 0; i < colunmCount; i++) {
+                    boolean notNull = row != null ? ValueEncoder.writeBinary(out, row[i], types[i], charset)
+                            : writeBinaryValue(out, rs, i + 1, types[i]);
+                    if (!notNull) {
+                        int bit = i + 2;
+                        int index = nullBitmap + bit / 8;
+                        out.setByte(index, out.getByte(index) | (1 << (bit & 7)));
+                    }
+                }
+                resultset.sequenceId += Packet.endPacket(out, start);
+            } catch (Exception e) {
+                throw discardRow(resultset, rowStart, e);
+            }
+            if (++rows % FLUSH_ROWS == 0 || out.readableBytes() >= FLUSH_BYTES) {
+                transport.flush();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a column value with the binary protocol encoding of the type.
+     * 
+     * @return false if the value is NULL, nothing is written then
+     */
+    private static boolean writeBinaryValue(ByteBuf out, ResultSet rs, int column, int type) throws SQLException {
+        switch (type) {
+        case Flags.MYSQL_TYPE_TINY: {
+            int v = rs.getInt(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            out.writeByte(v);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_SHORT:
+        case Flags.MYSQL_TYPE_YEAR: {
+            int v = rs.getInt(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            Proto.write_fixed_int(out, 2, v);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_LONG:
+        case Flags.MYSQL_TYPE_INT24: {
+            int v = rs.getInt(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            Proto.write_fixed_int(out, 4, v);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_LONGLONG: {
+            long v = rs.getLong(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            Proto.write_fixed_int(out, 8, v);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_FLOAT: {
+            float v = rs.getFloat(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            Proto.write_fixed_int(out, 4, Float.floatToIntBits(v));
+            return true;
+        }
+        case Flags.MYSQL_TYPE_DOUBLE: {
+            double v = rs.getDouble(column);
+            if (rs.wasNull()) {
+                return false;
+            }
+            Proto.write_fixed_int(out, 8, Double.doubleToLongBits(v));
+            return true;
+        }
+        case Flags.MYSQL_TYPE_DATE: {
+            Date v = rs.getDate(column);
+            if (v == null) {
+                return false;
+            }
+            writeBinaryDateTime(out, v, 0, false);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_DATETIME:
+        case Flags.MYSQL_TYPE_TIMESTAMP: {
+            Timestamp v = rs.getTimestamp(column);
+            if (v == null) {
+                return false;
+            }
+            writeBinaryDateTime(out, v, v.getNanos() / 1000, true);
+            return true;
+        }
+        case Flags.MYSQL_TYPE_TIME: {
+            Time v = rs.getTime(column);
+            if (v == null) {
+                return false;
+            }
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(v);
+            out.writeByte(8);
+            out.writeByte(0);
+            Proto.write_fixed_int(out, 4, 0);
+            out.writeByte(cal.get(Calendar.HOUR_OF_DAY));
+            out.writeByte(cal.get(Calendar.MINUTE));
+            out.writeByte(cal.get(Calendar.SECOND));
+            return true;
+        }
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY: {
+            byte[] v = rs.getBytes(column);
+            if (v == null) {
+                return false;
+            }
+            Proto.write_lenenc_int(out, v.length);
+            out.writeBytes(v);
+            return true;
+        }
+        default: {
+            String v = rs.getString(column);
+            if (v == null) {
+                return false;
+            }
+            Proto.write_lenenc_str(out, v);
+            return true;
+        }
+        }
+    }
+
+    private static void writeBinaryDateTime(ByteBuf out, java.util.Date value, int micros, boolean withTime) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(value);
+        out.writeByte(!withTime ? 4 : micros == 0 ? 7 : 11);
+        Proto.write_fixed_int(out, 2, cal.get(Calendar.YEAR));
+        out.writeByte(cal.get(Calendar.MONTH) + 1);
+        out.writeByte(cal.get(Calendar.DAY_OF_MONTH));
+        if (withTime) {
+            out.writeByte(cal.get(Calendar.HOUR_OF_DAY));
+            out.writeByte(cal.get(Calendar.MINUTE));
+            out.writeByte(cal.get(Calendar.SECOND));
+            if (micros != 0) {
+                Proto.write_fixed_int(out, 4, micros);
+            }
         }
     }
 
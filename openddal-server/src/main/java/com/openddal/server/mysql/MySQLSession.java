@@ -16,9 +16,20 @@
 package com.openddal.server.mysql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Collection;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.openddal.command.CommandInterface;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.server.ProtocolHandler;
 import com.openddal.server.Session;
+import com.openddal.server.mysql.proto.ColumnPacket;
+import com.openddal.server.mysql.proto.Flags;
 import com.openddal.server.mysql.proto.Handshake;
 import com.openddal.server.mysql.proto.HandshakeResponse;
 import com.openddal.server.util.CharsetUtil;
@@ -26,6 +37,8 @@ import com.openddal.util.JdbcUtils;
 import com.openddal.util.New;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -33,11 +46,26 @@ import io.netty.channel.Channel;
  */
 public class MySQLSession implements Session {
 
+    /**
+     * The authenticated sessions of the server by connection id, listed by
+     * SHOW PROCESSLIST and looked up by KILL.
+     */
+    private static final Map<Long, MySQLSession> SESSIONS = new ConcurrentHashMap<Long, MySQLSession>();
+
     private Channel channel;
     private Handshake handshake;
     private HandshakeResponse handshakeResponse;
     private Connection engineConnection;
     private Map<String, Object> attachments = New.hashMap();
+    private Map<Long, MySQLPreparedStatement> preparedStatements = New.hashMap();
+    private long nextStatementId;
+    /**
+     * The column definitions of the results of the commands, the engine keeps
+     * the commands in its query cache, an entry is dropped with its command.
+     */
+    private Map<CommandInterface, List<ColumnPacket>> columnDefinitions =
+            new WeakHashMap<CommandInterface, List<ColumnPacket>>();
+    private boolean multiStatements;
     private String charset;
     private int charsetIndex;
     public String username;
@@ -94,6 +122,13 @@ public class MySQLSession implements Session {
         return engineConnection;
     }
 
+    /**
+     * @return the engine session of the connection
+     */
+    public com.openddal.engine.Session getEngineSession() {
+        return (com.openddal.engine.Session) ((JdbcConnection) engineConnection).getSession();
+    }
+
     /**
      * @param engineConnection the engineConnection to set
      */
@@ -117,6 +152,7 @@ public class MySQLSession implements Session {
         this.username = handshakeResponse.username;
         this.schema = handshakeResponse.schema;
         this.setCharsetIndex((int)handshakeResponse.characterSet);
+        this.multiStatements = (handshakeResponse.capabilityFlags & Flags.CLIENT_MULTI_STATEMENTS) != 0;
 
     }
 
@@ -127,9 +163,121 @@ public class MySQLSession implements Session {
             throw new IllegalStateException("session is already existing in channel");
         }
         channel.attr(Session.CHANNEL_SESSION_KEY).set(this);
+        final Long id = getConnectionId();
+        SESSIONS.put(id, this);
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                SESSIONS.remove(id);
+            }
+        });
+    }
+
+    /**
+     * @param connectionId the connection id
+     * @return the session of the connection or null if there is none
+     */
+    public static MySQLSession getSession(long connectionId) {
+        return SESSIONS.get(connectionId);
+    }
+
+    /**
+     * @return the authenticated sessions of the server
+     */
+    public static Collection<MySQLSession> getSessions() {
+        return SESSIONS.values();
+    }
+
+    /**
+     * @return the address of the client
+     */
+    public String getRemoteAddress() {
+        return channel == null ? null : String.valueOf(channel.remoteAddress());
+    }
+
+    /**
+     * @return the number of queued requests of the connection, including the
+     *         running one
+     */
+    public int getQueueDepth() {
+        return channel == null ? 0 : ProtocolHandler.getQueueDepth(channel);
+    }
+
+    /**
+     * Close the connection from another thread. The engine connection is
+     * closed when the channel becomes inactive.
+     */
+    public void kill() {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return true if a COM_QUERY packet may contain several statements
+     */
+    public boolean isMultiStatements() {
+        return multiStatements;
+    }
+
+    /**
+     * @param multiStatements the option set with COM_SET_OPTION
+     */
+    public void setMultiStatements(boolean multiStatements) {
+        this.multiStatements = multiStatements;
+    }
+
+    /**
+     * Cache a statement prepared by the client.
+     *
+     * @param sql the statement
+     * @param statement the engine statement
+     * @return the cached statement
+     */
+    public MySQLPreparedStatement addPreparedStatement(String sql, PreparedStatement statement) throws SQLException {
+        MySQLPreparedStatement prepared = new MySQLPreparedStatement(++nextStatementId, sql, statement);
+        preparedStatements.put(prepared.getId(), prepared);
+        return prepared;
+    }
+
+    /**
+     * @param id the statement id
+     * @return the cached statement or null if there is none
+     */
+    public MySQLPreparedStatement getPreparedStatement(long id) {
+        return preparedStatements.get(id);
+    }
+
+    /**
+     * Remove a statement from the cache and close it.
+     *
+     * @param id the statement id
+     */
+    public void closePreparedStatement(long id) {
+        MySQLPreparedStatement prepared = preparedStatements.remove(id);
+        if (prepared != null) {
+            prepared.close();
+        }
+    }
+
+    /**
+     * @param command the command
+     * @return the cached column definitions of the result or null
+     */
+    public List<ColumnPacket> getColumnDefinitions(CommandInterface command) {
+        return columnDefinitions.get(command);
+    }
+
+    public void setColumnDefinitions(CommandInterface command, List<ColumnPacket> columns) {
+        columnDefinitions.put(command, columns);
     }
 
     public void close() {
+        for (MySQLPreparedStatement prepared : preparedStatements.values()) {
+            prepared.close();
+        }
+        preparedStatements.clear();
+        columnDefinitions.clear();
         JdbcUtils.closeSilently(getEngineConnection());
         attachments.clear();
         if (channel != null && channel.isOpen()) {
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql;
+
+import java.nio.charset.Charset;
+
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.util.DateTimeUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDate;
+import com.openddal.value.ValueTime;
+import com.openddal.value.ValueTimestamp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Encode the engine values of a result row in place with the text or the
+ * binary protocol. The integers are written as ASCII digits and the binary
+ * values as they are, without the String conversions of the JDBC getters.
+ *
+ * @see https://dev.mysql.com/doc/internals/en/com-query-response.html#packet-ProtocolText::ResultsetRow
+ * @see https://dev.mysql.com/doc/internals/en/binary-protocol-value.html
+ */
+public final class ValueEncoder {
+
+    /**
+     * The column value of a text protocol row that is SQL NULL.
+     */
+    public static final int NULL_VALUE = 0xFB;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private ValueEncoder() {
+        // utility class
+    }
+
+    /**
+     * Write a column value of a text protocol row.
+     *
+     * @param out the buffer
+     * @param v the value
+     * @param charset the character set of the connection
+     */
+    public static void writeText(ByteBuf out, Value v, Charset charset) {
+        switch (v.getType()) {
+        case Value.NULL:
+            out.writeByte(NULL_VALUE);
+            break;
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            writeDigits(out, v.getLong());
+            break;
+        case Value.BYTES:
+        case Value.BLOB: {
+            byte[] bytes = v.getBytesNoCopy();
+            Proto.write_lenenc_int(out, bytes.length);
+            out.writeBytes(bytes);
+            break;
+        }
+        default:
+            Proto.write_lenenc_str(out, v.getString(), charset);
+        }
+    }
+
+    /**
+     * Write a column value of a binary protocol row with the encoding of the
+     * column type.
+     *
+     * @param out the buffer
+     * @param v the value
+     * @param type the MySQL type of the column
+     * @param charset the character set of the connection
+     * @return false if the value is NULL, nothing is written then
+     */
+    public static boolean writeBinary(ByteBuf out, Value v, int type, Charset charset) {
+        if (v.getType() == Value.NULL) {
+            return false;
+        }
+        switch (type) {
+        case Flags.MYSQL_TYPE_TINY:
+            out.writeByte(v.getInt());
+            break;
+        case Flags.MYSQL_TYPE_SHORT:
+        case Flags.MYSQL_TYPE_YEAR:
+            Proto.write_fixed_int(out, 2, v.getInt());
+            break;
+        case Flags.MYSQL_TYPE_LONG:
+        case Flags.MYSQL_TYPE_INT24:
+            Proto.write_fixed_int(out, 4, v.getInt());
+            break;
+        case Flags.MYSQL_TYPE_LONGLONG:
+            Proto.write_fixed_int(out, 8, v.getLong());
+            break;
+        case Flags.MYSQL_TYPE_FLOAT:
+            Proto.write_fixed_int(out, 4, Float.floatToIntBits(v.getFloat()));
+            break;
+        case Flags.MYSQL_TYPE_DOUBLE:
+            Proto.write_fixed_int(out, 8, Double.doubleToLongBits(v.getDouble()));
+            break;
+        case Flags.MYSQL_TYPE_DATE: {
+            ValueDate date = (ValueDate) v.convertTo(Value.DATE);
+            out.writeByte(4);
+            writeDate(out, date.getDateValue());
+            break;
+        }
+        case Flags.MYSQL_TYPE_DATETIME:
+        case Flags.MYSQL_TYPE_TIMESTAMP: {
+            ValueTimestamp ts = (ValueTimestamp) v.convertTo(Value.TIMESTAMP);
+            long nanos = ts.getTimeNanos();
+            int micros = (int) (nanos % NANOS_PER_SECOND / 1000);
+            out.writeByte(micros == 0 ? 7 : 11);
+            writeDate(out, ts.getDateValue());
+            writeTime(out, nanos / NANOS_PER_SECOND);
+            if (micros != 0) {
+                Proto.write_fixed_int(out, 4, micros);
+            }
+            break;
+        }
+        case Flags.MYSQL_TYPE_TIME: {
+            ValueTime time = (ValueTime) v.convertTo(Value.TIME);
+            long nanos = time.getNanos();
+            boolean negative = nanos < 0;
+            long seconds = Math.abs(nanos) / NANOS_PER_SECOND;
+            out.writeByte(8);
+            out.writeByte(negative ? 1 : 0);
+            Proto.write_fixed_int(out, 4, seconds / 86400);
+            writeTime(out, seconds % 86400);
+            break;
+        }
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY: {
+            byte[] bytes = v.getBytesNoCopy();
+            Proto.write_lenenc_int(out, bytes.length);
+            out.writeBytes(bytes);
+            break;
+        }
+        default:
+            writeText(out, v, charset);
+        }
+        return true;
+    }
+
+    /**
+     * Write an integer as a length encoded string of ASCII digits.
+     *
+     * @param out the buffer
+     * @param x the value
+     */
+    public static void writeDigits(ByteBuf out, long x) {
+        if (x == Long.MIN_VALUE) {
+            Proto.write_lenenc_str(out, Long.toString(x));
+            return;
+        }
+        boolean negative = x < 0;
+        if (negative) {
+            x = -x;
+        }
+        int len = negative ? 2 : 1;
+        for (long t = x; t >= 10; t /= 10) {
+            len++;
+        }
+        // at most 20 bytes, the length is a single byte
+        out.writeByte(len);
+        out.ensureWritable(len);
+        int start = out.writerIndex();
+        int first = start;
+        if (negative) {
+            out.setByte(first++, '-');
+        }
+        for (int i = start + len - 1; i >= first; i--) {
+            out.setByte(i, (int) ('0' + x % 10));
+            x /= 10;
+        }
+        out.writerIndex(start + len);
+    }
+
+    private static void writeDate(ByteBuf out, long dateValue) {
+        Proto.write_fixed_int(out, 2, DateTimeUtils.yearFromDateValue(dateValue));
+        out.writeByte(DateTimeUtils.monthFromDateValue(dateValue));
+        out.writeByte(DateTimeUtils.dayFromDateValue(dateValue));
+    }
+
+    private static void writeTime(ByteBuf out, long seconds) {
+        out.writeByte((int) (seconds / 3600));
+        out.writeByte((int) (seconds / 60 % 60));
+        out.writeByte((int) (seconds % 60));
+    }
+
+}
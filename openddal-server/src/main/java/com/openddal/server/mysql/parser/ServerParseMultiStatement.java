@@ -0,0 +1,84 @@
+package com.openddal.server.mysql.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split the text of a COM_QUERY packet sent with CLIENT_MULTI_STATEMENTS into
+ * the statements. A ';' inside a quoted string, a quoted identifier or a
+ * comment does not end a statement.
+ */
+public final class ServerParseMultiStatement {
+
+    public static List<String> split(String stmt) {
+        List<String> list = new ArrayList<String>();
+        int len = stmt.length();
+        int start = 0;
+        for (int i = 0; i < len; ++i) {
+            char c = stmt.charAt(i);
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    i = quoted(stmt, i, c);
+                    break;
+                case '/':
+                    if (i + 1 < len && stmt.charAt(i + 1) == '*') {
+                        int end = stmt.indexOf("*/", i + 2);
+                        i = end < 0 ? len : end + 1;
+                    }
+                    break;
+                case '#':
+                    i = lineEnd(stmt, i);
+                    break;
+                case '-':
+                    if (i + 1 < len && stmt.charAt(i + 1) == '-'
+                            && (i + 2 == len || Character.isWhitespace(stmt.charAt(i + 2)))) {
+                        i = lineEnd(stmt, i);
+                    }
+                    break;
+                case ';':
+                    add(list, stmt.substring(start, i));
+                    start = i + 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (start < len) {
+            add(list, stmt.substring(start));
+        }
+        return list;
+    }
+
+    /**
+     * @param offset stmt.charAt(offset) == quote
+     * @return the offset of the closing quote
+     */
+    private static int quoted(String stmt, int offset, char quote) {
+        int len = stmt.length();
+        for (int i = offset + 1; i < len; ++i) {
+            char c = stmt.charAt(i);
+            if (c == '\\' && quote != '`') {
+                ++i;
+            } else if (c == quote) {
+                // a doubled quote is read as two strings
+                return i;
+            }
+        }
+        return len;
+    }
+
+    private static int lineEnd(String stmt, int offset) {
+        int end = stmt.indexOf('\n', offset);
+        return end < 0 ? stmt.length() : end;
+    }
+
+    private static void add(List<String> list, String stmt) {
+        stmt = stmt.trim();
+        if (stmt.length() > 0) {
+            list.add(stmt);
+        }
+    }
+
+}
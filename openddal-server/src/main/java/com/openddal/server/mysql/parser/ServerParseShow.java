@@ -18,6 +18,8 @@ public final class ServerParseShow {
     public static final int VARIABLES     = 8;
     public static final int SESSION_VARIABLES = 9;
     public static final int SESSION_STATUS = 10;
+    public static final int PROCESSLIST   = 11;
+    public static final int SKEW          = 12;
 
 
     public static int parse(String stmt, int offset) {
@@ -45,10 +47,17 @@ public final class ServerParseShow {
             case 'S':
             case 's':
                 int slowCheck = slowCheck(stmt, i);
+                if (slowCheck == OTHER) {
+                    slowCheck = skewCheck(stmt, i);
+                }
                 return slowCheck == OTHER ? showSVCheck(stmt, i) : slowCheck;
             case 'p':
             case 'P':
-                return physicalCheck(stmt, i);
+                int physicalCheck = physicalCheck(stmt, i);
+                return physicalCheck == OTHER ? processListCheck(stmt, i) : physicalCheck;
+            case 'f':
+            case 'F':
+                return fullProcessListCheck(stmt, i);
             default:
                 return OTHER;
             }
@@ -119,6 +128,40 @@ public final class ServerParseShow {
         return OTHER;
     }
 
+    // SHOW SKEW
+    static int skewCheck(String stmt, int offset) {
+        int end = offset + "SKEW".length();
+        if (stmt.regionMatches(true, offset, "SKEW", 0, "SKEW".length())
+                && (stmt.length() == end || ParseUtil.isEOF(stmt.charAt(end)))) {
+            return SKEW;
+        }
+        return OTHER;
+    }
+
+    // SHOW PROCESSLIST
+    static int processListCheck(String stmt, int offset) {
+        int end = offset + "PROCESSLIST".length();
+        if (stmt.regionMatches(true, offset, "PROCESSLIST", 0, "PROCESSLIST".length())
+                && (stmt.length() == end || ParseUtil.isEOF(stmt.charAt(end)))) {
+            return PROCESSLIST;
+        }
+        return OTHER;
+    }
+
+    // SHOW FULL PROCESSLIST
+    static int fullProcessListCheck(String stmt, int offset) {
+        if (stmt.regionMatches(true, offset, "FULL", 0, "FULL".length())) {
+            int i = offset + "FULL".length();
+            if (stmt.length() > i && ParseUtil.isEOF(stmt.charAt(i))) {
+                while (stmt.length() > i && stmt.charAt(i) <= ' ') {
+                    i++;
+                }
+                return processListCheck(stmt, i);
+            }
+        }
+        return OTHER;
+    }
+
     // SHOW COBAR_
     static int cobarCheck(String stmt, int offset) {
         if (stmt.length() > offset + "obar_?".length()) {
@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ColCountPacket extends Packet {
     public long colCount = 0;
     
@@ -13,6 +15,11 @@ public class ColCountPacket extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        Proto.write_lenenc_int(out, this.colCount);
+    }
+    
     public static ColCountPacket loadFromPacket(byte[] packet) {
         ColCountPacket obj = new ColCountPacket();
         Proto proto = new Proto(packet, 3);
@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ColumnPacket extends Packet {
     public String catalog = "def";
     public String schema = "";
@@ -43,6 +45,23 @@ public class ColumnPacket extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        Proto.write_lenenc_str(out, this.catalog);
+        Proto.write_lenenc_str(out, this.schema);
+        Proto.write_lenenc_str(out, this.table);
+        Proto.write_lenenc_str(out, this.org_table);
+        Proto.write_lenenc_str(out, this.name);
+        Proto.write_lenenc_str(out, this.org_name);
+        out.writeByte(0x0c);
+        Proto.write_fixed_int(out, 2, this.characterSet);
+        Proto.write_fixed_int(out, 4, this.columnLength);
+        Proto.write_fixed_int(out, 1, this.type);
+        Proto.write_fixed_int(out, 2, this.flags);
+        Proto.write_fixed_int(out, 1, this.decimals);
+        out.writeZero(2);
+    }
+    
     public static ColumnPacket loadFromPacket(byte[] packet) {
         ColumnPacket obj = new ColumnPacket();
         Proto proto = new Proto(packet, 3);
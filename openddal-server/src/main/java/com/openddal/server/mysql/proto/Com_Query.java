@@ -1,7 +1,10 @@
 package com.openddal.server.mysql.proto;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class Com_Query extends Packet {
     public String query = "";
     
@@ -24,5 +27,23 @@ public class Com_Query extends Packet {
         
         return obj;
     }
+
+    /**
+     * Read the query from the packet at the reader index of the buffer, the
+     * text is decoded directly from the buffer.
+     *
+     * @param packet the buffer
+     * @param charset the character set of the connection
+     * @return the packet
+     */
+    public static Com_Query loadFromPacket(ByteBuf packet, Charset charset) {
+        Com_Query obj = new Com_Query();
+        int start = packet.readerIndex();
+        
+        obj.sequenceId = Packet.getSequenceId(packet);
+        obj.query = packet.toString(start + 5, packet.writerIndex() - start - 5, charset);
+        
+        return obj;
+    }
     
 }
@@ -0,0 +1,29 @@
+package com.openddal.server.mysql.proto;
+
+import java.util.ArrayList;
+
+public class Com_Stmt_Fetch extends Packet {
+    public byte[] data;
+    
+    public ArrayList<byte[]> getPayload() {
+        ArrayList<byte[]> payload = new ArrayList<byte[]>();
+        
+        payload.add(this.data);
+        
+        return payload;
+    }
+    
+    public static Com_Stmt_Fetch loadFromPacket(byte[] packet) {
+        Com_Stmt_Fetch obj = new Com_Stmt_Fetch();
+        Proto proto = new Proto(packet, 3);
+        
+        obj.sequenceId = proto.get_fixed_int(1);
+        
+        int size = packet.length - proto.offset;
+        obj.data = new byte[size];
+        
+        System.arraycopy(packet, proto.offset, obj.data, 0, size);
+
+        return obj;
+    }
+}
@@ -1,7 +1,10 @@
 package com.openddal.server.mysql.proto;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class Com_Stmt_Prepare extends Packet {
     public String query="";
     
@@ -24,4 +27,14 @@ public class Com_Stmt_Prepare extends Packet {
 
         return obj;
     }
+
+    public static Com_Stmt_Prepare loadFromPacket(ByteBuf packet, Charset charset) {
+        Com_Stmt_Prepare obj = new Com_Stmt_Prepare();
+        int start = packet.readerIndex();
+
+        obj.sequenceId = Packet.getSequenceId(packet);
+        obj.query = packet.toString(start + 5, packet.writerIndex() - start - 5, charset);
+
+        return obj;
+    }
 }
@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class EOF extends Packet {
     public long statusFlags = 0;
     public long warnings = 0;
@@ -32,6 +34,13 @@ public class EOF extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        out.writeByte(Flags.EOF);
+        Proto.write_fixed_int(out, 2, this.warnings);
+        Proto.write_fixed_int(out, 2, this.statusFlags);
+    }
+    
     public static EOF loadFromPacket(byte[] packet) {
         EOF obj = new EOF();
         Proto proto = new Proto(packet, 3);
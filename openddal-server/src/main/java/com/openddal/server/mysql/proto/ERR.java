@@ -10,6 +10,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ERR extends Packet {
     public long errorCode = 0;
     public String sqlState = "HY000";
@@ -27,6 +29,15 @@ public class ERR extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        out.writeByte(Flags.ERR);
+        Proto.write_fixed_int(out, 2, this.errorCode);
+        out.writeByte('#');
+        Proto.write_fixed_str(out, 5, this.sqlState);
+        Proto.write_eop_str(out, this.errorMessage);
+    }
+    
     public static ERR loadFromPacket(byte[] packet) {
         ERR obj = new ERR();
         Proto proto = new Proto(packet, 3);
@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class OK extends Packet {
     public long affectedRows = 0;
     public long lastInsertId = 0;
@@ -36,6 +38,15 @@ public class OK extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        out.writeByte(Flags.OK);
+        Proto.write_lenenc_int(out, this.affectedRows);
+        Proto.write_lenenc_int(out, this.lastInsertId);
+        Proto.write_fixed_int(out, 2, this.statusFlags);
+        Proto.write_fixed_int(out, 2, this.warnings);
+    }
+    
     public static OK loadFromPacket(byte[] packet) {
         OK obj = new OK();
         Proto proto = new Proto(packet, 3);
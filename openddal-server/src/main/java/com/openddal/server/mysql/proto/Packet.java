@@ -10,10 +10,18 @@ import org.apache.commons.io.HexDump;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+
 public abstract class Packet {
     
     private static final Logger logger = LoggerFactory.getLogger("MySQL.Packet");
     
+    /**
+     * The largest payload of one packet, a longer payload is sent in several
+     * packets.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 0xFFFFFF;
+
     public long sequenceId = 0;
 
     public abstract ArrayList<byte[]> getPayload();
@@ -39,6 +47,91 @@ public abstract class Packet {
         return packet;
     }
     
+    /**
+     * Write the packet to the buffer, the payload is encoded in place and the
+     * header is filled in afterwards. If the payload is split, the sequence id
+     * is set to the one of the last frame.
+     *
+     * @param out the buffer
+     */
+    public void write(ByteBuf out) {
+        int start = beginPacket(out, this.sequenceId);
+        writePayload(out);
+        this.sequenceId += endPacket(out, start);
+    }
+
+    /**
+     * Encode the payload into the buffer. Packets that are not sent on the
+     * hot path keep the default, which copies the fields of getPayload().
+     *
+     * @param out the buffer
+     */
+    protected void writePayload(ByteBuf out) {
+        for (byte[] field: this.getPayload())
+            out.writeBytes(field);
+    }
+
+    /**
+     * Start a packet, the size is written by endPacket.
+     *
+     * @param out the buffer
+     * @param sequenceId the sequence id of the packet
+     * @return the position of the packet in the buffer
+     */
+    public static int beginPacket(ByteBuf out, long sequenceId) {
+        int start = out.writerIndex();
+        out.writeZero(3);
+        out.writeByte((int) sequenceId);
+        return start;
+    }
+
+    /**
+     * Write the payload size of a packet started by beginPacket. A payload of
+     * MAX_PAYLOAD_SIZE bytes or more is split into frames of MAX_PAYLOAD_SIZE
+     * bytes, each with the next sequence id, the last frame is shorter and
+     * may be empty.
+     *
+     * @param out the buffer
+     * @param start the position of the packet
+     * @return the number of frames added after the first one, the sequence
+     *         id of the next packet is increased by it
+     */
+    public static int endPacket(ByteBuf out, int start) {
+        int size = out.writerIndex() - start - 4;
+        if (size < MAX_PAYLOAD_SIZE) {
+            writeHeader(out, start, size, out.getByte(start + 3));
+            return 0;
+        }
+        int sequenceId = out.getByte(start + 3);
+        ByteBuf payload = out.copy(start + 4, size);
+        try {
+            out.writerIndex(start);
+            int frames = 0;
+            int offset = 0;
+            while (true) {
+                int length = Math.min(size - offset, MAX_PAYLOAD_SIZE);
+                int frame = out.writerIndex();
+                out.writeZero(4);
+                writeHeader(out, frame, length, sequenceId + frames);
+                out.writeBytes(payload, offset, length);
+                offset += length;
+                if (length < MAX_PAYLOAD_SIZE) {
+                    return frames;
+                }
+                frames++;
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    private static void writeHeader(ByteBuf out, int start, int size, int sequenceId) {
+        out.setByte(start, size);
+        out.setByte(start + 1, size >>> 8);
+        out.setByte(start + 2, size >>> 16);
+        out.setByte(start + 3, sequenceId);
+    }
+
     public static int getSize(byte[] packet) {
         int size = (int) new Proto(packet).get_fixed_int(3);
         return size;
@@ -52,6 +145,27 @@ public abstract class Packet {
         return new Proto(packet, 3).get_fixed_int(1);
     }
     
+    /**
+     * Get the payload size of the packet at the reader index of the buffer.
+     *
+     * @param packet the buffer
+     * @return the payload size
+     */
+    public static int getSize(ByteBuf packet) {
+        int index = packet.readerIndex();
+        return packet.getUnsignedByte(index)
+                | packet.getUnsignedByte(index + 1) << 8
+                | packet.getUnsignedByte(index + 2) << 16;
+    }
+
+    public static byte getType(ByteBuf packet) {
+        return packet.getByte(packet.readerIndex() + 4);
+    }
+
+    public static long getSequenceId(ByteBuf packet) {
+        return packet.getUnsignedByte(packet.readerIndex() + 3);
+    }
+
     public static final void dump(byte[] packet) {        
         if (!logger.isTraceEnabled())
             return;
@@ -1,5 +1,6 @@
 package com.openddal.server.mysql.proto;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
 import org.apache.commons.codec.DecoderException;
@@ -8,6 +9,8 @@ import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+
 public class Proto {
     
     private static final Logger logger = LoggerFactory.getLogger("MySQL.Proto");
@@ -243,21 +246,21 @@ public class Proto {
         int size = 0;
 
         // 1 byte int
-        if (this.packet[offset] < 251) {
+        if ((this.packet[offset] & 0xff) < 251) {
             size = 1;
         }
         // 2 byte int
-        else if (this.packet[offset] == 252) {
+        else if ((this.packet[offset] & 0xff) == 252) {
             this.offset += 1;
             size = 2;
         }
         // 3 byte int
-        else if (this.packet[offset] == 253) {
+        else if ((this.packet[offset] & 0xff) == 253) {
             this.offset += 1;
             size = 3;
         }
         // 8 byte int
-        else if (this.packet[offset] == 254) {
+        else if ((this.packet[offset] & 0xff) == 254) {
             this.offset += 1;
             size = 8;
         }
@@ -367,6 +370,145 @@ public class Proto {
         return result;
     }
 
+    /*
+     * The write_* methods encode the fields in place into the packet buffer,
+     * they produce the same bytes as the matching build_* methods without
+     * creating a byte[] for each field.
+     */
+
+    public static void write_fixed_int(ByteBuf out, int size, long value) {
+        for (int i = 0; i < size; i++) {
+            out.writeByte((int) (value >>> (i * 8)));
+        }
+    }
+
+    public static void write_lenenc_int(ByteBuf out, long value) {
+        if (value < 251) {
+            out.writeByte((int) value);
+        }
+        else if (value < 65535) {
+            out.writeByte(0xFC);
+            write_fixed_int(out, 2, value);
+        }
+        else if (value < 16777215) {
+            out.writeByte(0xFD);
+            write_fixed_int(out, 3, value);
+        }
+        else {
+            out.writeByte(0xFE);
+            write_fixed_int(out, 8, value);
+        }
+    }
+
+    public static void write_lenenc_str(ByteBuf out, String str) {
+        if (is_ascii(str)) {
+            int len = str.length();
+            write_lenenc_int(out, len);
+            write_ascii(out, str, len);
+        }
+        else {
+            byte[] strByte = str.getBytes();
+            write_lenenc_int(out, strByte.length);
+            out.writeBytes(strByte);
+        }
+    }
+
+    public static void write_lenenc_str(ByteBuf out, String str, Charset charset) {
+        if (is_ascii(str)) {
+            int len = str.length();
+            write_lenenc_int(out, len);
+            write_ascii(out, str, len);
+        }
+        else {
+            byte[] strByte = str.getBytes(charset);
+            write_lenenc_int(out, strByte.length);
+            out.writeBytes(strByte);
+        }
+    }
+
+    public static void write_fixed_str(ByteBuf out, int size, String str) {
+        if (is_ascii(str)) {
+            int len = Math.min(size, str.length());
+            write_ascii(out, str, len);
+            out.writeZero(size - len);
+        }
+        else {
+            byte[] strByte = str.getBytes();
+            int len = Math.min(size, strByte.length);
+            out.writeBytes(strByte, 0, len);
+            out.writeZero(size - len);
+        }
+    }
+
+    public static void write_null_str(ByteBuf out, String str) {
+        write_eop_str(out, str);
+        out.writeByte(0x00);
+    }
+
+    public static void write_eop_str(ByteBuf out, String str) {
+        if (is_ascii(str)) {
+            write_ascii(out, str, str.length());
+        }
+        else {
+            out.writeBytes(str.getBytes());
+        }
+    }
+
+    /*
+     * The read_* methods decode the fields of a packet in place from the
+     * reader index of the buffer.
+     */
+
+    public static long read_fixed_int(ByteBuf in, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value |= ((long) in.readUnsignedByte()) << (i * 8);
+        }
+        return value;
+    }
+
+    public static long read_lenenc_int(ByteBuf in) {
+        int first = in.readUnsignedByte();
+        switch (first) {
+        case 0xFC:
+            return read_fixed_int(in, 2);
+        case 0xFD:
+            return read_fixed_int(in, 3);
+        case 0xFE:
+            return read_fixed_int(in, 8);
+        default:
+            return first;
+        }
+    }
+
+    public static byte[] read_lenenc_bytes(ByteBuf in) {
+        byte[] bytes = new byte[(int) read_lenenc_int(in)];
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+    public static String read_lenenc_str(ByteBuf in, Charset charset) {
+        int len = (int) read_lenenc_int(in);
+        String str = in.toString(in.readerIndex(), len, charset);
+        in.skipBytes(len);
+        return str;
+    }
+
+    private static boolean is_ascii(String str) {
+        for (int i = 0, len = str.length(); i < len; i++) {
+            if (str.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static void write_ascii(ByteBuf out, String str, int len) {
+        out.ensureWritable(len);
+        for (int i = 0; i < len; i++) {
+            out.writeByte(str.charAt(i));
+        }
+    }
+
     public static byte[] packet_string_to_bytes(String str) {
         byte[] res = null;
         str = str.replaceAll("\\s","").toUpperCase();
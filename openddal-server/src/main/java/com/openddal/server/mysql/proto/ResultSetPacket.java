@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ResultSetPacket {
     public long sequenceId = 1;
     public static long characterSet = 0;
@@ -65,6 +67,49 @@ public class ResultSetPacket {
         return packets;
     }
 
+    public void writeHead(ByteBuf out) {
+        ColCountPacket colCount = new ColCountPacket();
+        colCount.sequenceId = this.sequenceId;
+        this.sequenceId++;
+        colCount.colCount = this.columns.size();
+        colCount.write(out);
+        writeColumns(out);
+    }
+
+    public void writeHead(ByteBuf out, long statusFlags) {
+        ColCountPacket colCount = new ColCountPacket();
+        colCount.sequenceId = this.sequenceId;
+        this.sequenceId++;
+        colCount.colCount = this.columns.size();
+        colCount.write(out);
+        writeColumns(out, statusFlags);
+    }
+
+    public void writeColumns(ByteBuf out) {
+        writeColumns(out, 0);
+    }
+
+    public void writeColumns(ByteBuf out, long statusFlags) {
+        for (ColumnPacket col : this.columns) {
+            col.sequenceId = this.sequenceId;
+            this.sequenceId++;
+            col.write(out);
+        }
+        writeEof(out, statusFlags);
+    }
+
+    public void writeEof(ByteBuf out) {
+        writeEof(out, 0);
+    }
+
+    public void writeEof(ByteBuf out, long statusFlags) {
+        EOF eof = new EOF();
+        eof.sequenceId = this.sequenceId;
+        this.sequenceId++;
+        eof.statusFlags = statusFlags;
+        eof.write(out);
+    }
+
     public byte[] eofPacket() {
         EOF eof = new EOF();
         eof.sequenceId = this.sequenceId;
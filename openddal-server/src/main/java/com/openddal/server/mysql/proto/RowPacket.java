@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class RowPacket extends Packet {
     public int type = Flags.ROW_TYPE_TEXT;
     public int colType = Flags.MYSQL_TYPE_VAR_STRING;
@@ -84,6 +86,20 @@ public class RowPacket extends Packet {
         return payload;
     }
     
+    @Override
+    protected void writePayload(ByteBuf out) {
+        if (this.type != Flags.ROW_TYPE_TEXT)
+            return;
+        for (Object obj: this.data) {
+            if (obj == null)
+                out.writeByte(0xFB);
+            else if (obj instanceof String)
+                Proto.write_lenenc_str(out, (String)obj);
+            else if (obj instanceof Integer)
+                Proto.write_lenenc_int(out, (Integer)obj);
+        }
+    }
+    
     public static RowPacket loadFromPacket(byte[] packet) {
         RowPacket obj = new RowPacket();
         Proto proto = new Proto(packet, 3);
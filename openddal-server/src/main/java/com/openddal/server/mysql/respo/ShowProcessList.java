@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql.respo;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+
+import com.openddal.command.Command;
+import com.openddal.engine.Session;
+import com.openddal.result.SimpleResultSet;
+import com.openddal.server.mysql.MySQLSession;
+import com.openddal.util.StatementBuilder;
+
+/**
+ * The result of SHOW PROCESSLIST: the connections of the server with their
+ * running statement, the shards the statement has workers on, and the number
+ * of requests queued on the connection, which grows when the server is
+ * overloaded. A user that is not an admin only sees the own connections.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public final class ShowProcessList {
+
+    public static ResultSet getResultSet(MySQLSession current) {
+        SimpleResultSet result = new SimpleResultSet();
+        result.addColumn("Id", Types.BIGINT, 20, 0);
+        result.addColumn("User", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Host", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("db", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Command", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Time", Types.BIGINT, 20, 0);
+        result.addColumn("State", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Info", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Shards", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        result.addColumn("Queue", Types.INTEGER, 10, 0);
+        boolean admin = current.getEngineSession().getUser().isAdmin();
+        long now = System.currentTimeMillis();
+        for (MySQLSession s : MySQLSession.getSessions()) {
+            if (!admin && !current.getUser().equals(s.getUser())) {
+                continue;
+            }
+            Session session = s.getEngineSession();
+            Command command = session.getCurrentCommand();
+            long start = session.getCurrentCommandStart();
+            if (start == 0) {
+                start = session.getSessionStart();
+            }
+            String shards = null;
+            if (command != null) {
+                StatementBuilder buff = new StatementBuilder();
+                for (String shard : session.getShardsInFlight()) {
+                    buff.appendExceptFirst(",");
+                    buff.append(shard);
+                }
+                shards = buff.toString();
+            }
+            result.addRow(s.getConnectionId(), s.getUser(), s.getRemoteAddress(), s.getSchema(),
+                    command == null ? "Sleep" : "Query", (now - start) / 1000, command == null ? null : "executing",
+                    command == null ? null : command.toString(), shards, s.getQueueDepth());
+        }
+        return result;
+    }
+}
@@ -9,8 +9,9 @@ public class TxResultSet {
     
     public static ResultSet getReadonlyResultSet(boolean readOnly) {
         SimpleResultSet result = new SimpleResultSet();
-        result.addColumn("@@SESSION.TX_READ_ONLY", Types.BOOLEAN, Integer.MAX_VALUE, 0);
-        result.addRow(readOnly);
+        // MySQL returns 0 or 1, the drivers read the value with getInt()
+        result.addColumn("@@SESSION.TX_READ_ONLY", Types.INTEGER, Integer.MAX_VALUE, 0);
+        result.addRow(readOnly ? 1 : 0);
         return result;
     }
     
@@ -0,0 +1,35 @@
+package com.openddal.server.mysql.parser.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.parser.ServerParseMultiStatement;
+
+public class ServerParseMultiStatementTest {
+    @Test
+    public void testSplit() {
+        assertEquals(Arrays.asList("select 1", "select 2"),
+                ServerParseMultiStatement.split("select 1; select 2;"));
+        assertEquals(Arrays.asList("select 1"),
+                ServerParseMultiStatement.split(" select 1 ;; "));
+    }
+
+    @Test
+    public void testQuoted() {
+        assertEquals(Arrays.asList("insert into t values('a;b', \"c;\\\"d\")", "select `x;y` from t"),
+                ServerParseMultiStatement.split("insert into t values('a;b', \"c;\\\"d\"); select `x;y` from t"));
+        assertEquals(Arrays.asList("select 'it''s;'", "select 2"),
+                ServerParseMultiStatement.split("select 'it''s;'; select 2"));
+    }
+
+    @Test
+    public void testComment() {
+        assertEquals(Arrays.asList("select 1 /* a; b */", "select 2 # c;", "select 3 -- d;", "select 4"),
+                ServerParseMultiStatement.split("select 1 /* a; b */; select 2 # c;\n; select 3 -- d;\n; select 4"));
+        assertEquals(Arrays.asList("select 5--1", "select 6"),
+                ServerParseMultiStatement.split("select 5--1; select 6"));
+    }
+}
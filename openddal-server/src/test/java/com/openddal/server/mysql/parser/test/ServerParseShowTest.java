@@ -0,0 +1,47 @@
+package com.openddal.server.mysql.parser.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.parser.ServerParse;
+import com.openddal.server.mysql.parser.ServerParseShow;
+
+public class ServerParseShowTest {
+
+    private static int show(String sql) {
+        int rs = ServerParse.parse(sql);
+        assertEquals(ServerParse.SHOW, rs & 0xff);
+        return ServerParseShow.parse(sql, rs >>> 8);
+    }
+
+    @Test
+    public void testProcessList() {
+        assertEquals(ServerParseShow.PROCESSLIST, show("show processlist"));
+        assertEquals(ServerParseShow.PROCESSLIST, show("SHOW FULL PROCESSLIST"));
+        assertEquals(ServerParseShow.PROCESSLIST, show("show full  processlist;"));
+        assertEquals(ServerParseShow.OTHER, show("show processlists"));
+        assertEquals(ServerParseShow.PHYSICAL_SLOW, show("show physical_slow"));
+        assertEquals(ServerParseShow.SLOW, show("show slow"));
+    }
+
+    @Test
+    public void testSkew() {
+        assertEquals(ServerParseShow.SKEW, show("show skew"));
+        assertEquals(ServerParseShow.SKEW, show("SHOW SKEW;"));
+        assertEquals(ServerParseShow.OTHER, show("show skews"));
+        assertEquals(ServerParseShow.SESSION_STATUS, show("show session status"));
+    }
+
+    @Test
+    public void testKill() {
+        String sql = "KILL QUERY 12";
+        int rs = ServerParse.parse(sql);
+        assertEquals(ServerParse.KILL_QUERY, rs & 0xff);
+        assertEquals("12", sql.substring(rs >>> 8));
+        sql = "kill 7";
+        rs = ServerParse.parse(sql);
+        assertEquals(ServerParse.KILL, rs & 0xff);
+        assertEquals("7", sql.substring(rs >>> 8));
+    }
+}
@@ -3,11 +3,16 @@ package com.openddal.server.mysql.proto.test;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.charset.Charset;
+
 import org.junit.Test;
 
 import com.openddal.server.mysql.proto.Com_Query;
 import com.openddal.server.mysql.proto.Proto;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 public class Com_QueryTest {
     @Test
     public void test1() {
@@ -46,4 +51,18 @@ public class Com_QueryTest {
         assertArrayEquals(packet, pkt.toPacket());
         assertEquals(pkt.query, "select @@version_comment limit 1");
     }
+
+    @Test
+    public void testByteBuf() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "ff ff 09 00 00 02 03 53 45 4c 45 43 54 20 31"
+        );
+        ByteBuf buffer = Unpooled.wrappedBuffer(packet);
+        buffer.skipBytes(2);
+
+        Com_Query pkt = Com_Query.loadFromPacket(buffer, Charset.forName("UTF-8"));
+        assertEquals(pkt.sequenceId, 2);
+        assertEquals(pkt.query, "SELECT 1");
+        assertEquals(buffer.readerIndex(), 2);
+    }
 }
@@ -0,0 +1,34 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare_Ok;
+import com.openddal.server.mysql.proto.Proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class Com_Stmt_Prepare_OkTest {
+    @Test
+    public void test1() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "0c 00 00 01 00 01 00 00    00 01 00 02 00 00 00 00"
+        );
+
+        Com_Stmt_Prepare_Ok pkt = Com_Stmt_Prepare_Ok.loadFromPacket(packet);
+        assertArrayEquals(packet, pkt.toPacket());
+        assertEquals(pkt.statementId, 1);
+        assertEquals(pkt.numColumns, 1);
+        assertEquals(pkt.numParams, 2);
+        assertEquals(pkt.warnings, 0);
+
+        ByteBuf out = Unpooled.buffer();
+        pkt.write(out);
+        byte[] written = new byte[out.readableBytes()];
+        out.readBytes(written);
+        assertArrayEquals(packet, written);
+    }
+}
@@ -0,0 +1,137 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.proto.ColCountPacket;
+import com.openddal.server.mysql.proto.ColumnPacket;
+import com.openddal.server.mysql.proto.EOF;
+import com.openddal.server.mysql.proto.ERR;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.OK;
+import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.server.mysql.proto.RowPacket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class PacketWriteTest {
+
+    private static byte[] write(Packet packet) {
+        ByteBuf out = Unpooled.buffer();
+        packet.write(out);
+        byte[] bytes = new byte[out.readableBytes()];
+        out.readBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testOK() {
+        OK ok = OK.loadFromPacket(Proto.packet_string_to_bytes(
+            "07 00 00 02 00 00 00 02    00 00 00"
+        ));
+        assertArrayEquals(ok.toPacket(), write(ok));
+
+        ok.affectedRows = 70000;
+        ok.lastInsertId = 300;
+        assertArrayEquals(ok.toPacket(), write(ok));
+    }
+
+    @Test
+    public void testERR() {
+        ERR err = new ERR();
+        err.sequenceId = 1;
+        err.errorCode = 1096;
+        err.errorMessage = "No tables used";
+        assertArrayEquals(err.toPacket(), write(err));
+    }
+
+    @Test
+    public void testEOF() {
+        EOF eof = new EOF();
+        eof.sequenceId = 5;
+        eof.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT);
+        assertArrayEquals(eof.toPacket(), write(eof));
+    }
+
+    @Test
+    public void testColumn() {
+        ColCountPacket colCount = new ColCountPacket();
+        colCount.sequenceId = 1;
+        colCount.colCount = 2;
+        assertArrayEquals(colCount.toPacket(), write(colCount));
+
+        ColumnPacket column = new ColumnPacket("@@version_comment");
+        column.sequenceId = 2;
+        column.schema = "test";
+        column.table = "t";
+        column.org_table = "t";
+        column.columnLength = 28;
+        assertArrayEquals(column.toPacket(), write(column));
+    }
+
+    @Test
+    public void testRow() {
+        RowPacket row = new RowPacket("MySQL Community Server (GPL)", "5.6.0");
+        row.sequenceId = 4;
+        assertArrayEquals(row.toPacket(), write(row));
+
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            buff.append('x');
+        }
+        row = new RowPacket(buff.toString());
+        row.sequenceId = 5;
+        assertArrayEquals(row.toPacket(), write(row));
+    }
+
+    @Test
+    public void testSplitPayload() {
+        assertSplit(Packet.MAX_PAYLOAD_SIZE - 1, 0);
+        assertSplit(Packet.MAX_PAYLOAD_SIZE, 1);
+        assertSplit(Packet.MAX_PAYLOAD_SIZE + 10, 1);
+        assertSplit(2 * Packet.MAX_PAYLOAD_SIZE, 2);
+    }
+
+    /**
+     * Write a payload of the size after a packet, and check that it is split
+     * into frames of MAX_PAYLOAD_SIZE bytes with the next sequence ids, up to
+     * a shorter, possibly empty, last frame.
+     */
+    private static void assertSplit(int size, int frames) {
+        ByteBuf out = Unpooled.buffer();
+        EOF eof = new EOF();
+        eof.sequenceId = 3;
+        eof.write(out);
+        int start = Packet.beginPacket(out, 255);
+        for (int i = 0; i < size; i++) {
+            out.writeByte(i);
+        }
+        assertEquals(frames, Packet.endPacket(out, start));
+        assertArrayEquals(eof.toPacket(), readPacket(out));
+        int offset = 0;
+        for (int frame = 0; frame <= frames; frame++) {
+            int length = Math.min(size - offset, Packet.MAX_PAYLOAD_SIZE);
+            assertEquals(length, Packet.getSize(out));
+            assertEquals((255 + frame) & 0xff, Packet.getSequenceId(out));
+            out.skipBytes(4);
+            for (int i = 0; i < length; i++) {
+                if (out.readByte() != (byte) (offset + i)) {
+                    throw new AssertionError("Wrong byte at " + (offset + i));
+                }
+            }
+            offset += length;
+        }
+        assertEquals(0, out.readableBytes());
+    }
+
+    private static byte[] readPacket(ByteBuf in) {
+        byte[] bytes = new byte[Packet.getSize(in) + 4];
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.openddal.server.mysql.proto.test;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 
@@ -419,4 +420,14 @@ public class ProtoTest {
         payload.add( Proto.build_eop_str(proto.get_eop_str(true), true));
         assertArrayEquals(packet, Proto.arraylist_to_array(payload));
     }
+
+    @Test
+    public void test37() {
+        long[] values = { 0, 200, 250, 251, 300, 65535, 65536, 16777216 };
+        for (long value : values) {
+            Proto proto = new Proto(Proto.build_lenenc_int(value));
+            assertEquals(value, proto.get_lenenc_int());
+            assertEquals(proto.packet.length, proto.offset);
+        }
+    }
 }
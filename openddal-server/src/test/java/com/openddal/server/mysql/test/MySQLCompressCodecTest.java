@@ -0,0 +1,128 @@
+package com.openddal.server.mysql.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.MySQLCompressCodec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class MySQLCompressCodecTest {
+
+    private static final int MAX_FRAME_PAYLOAD = 0xFFFFFF;
+
+    private static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // compressible, but not only one value
+            payload[i] = (byte) ('a' + i % 7);
+        }
+        return payload;
+    }
+
+    private static int readInt3(ByteBuf buf, int index) {
+        return buf.getUnsignedByte(index) | buf.getUnsignedByte(index + 1) << 8
+                | buf.getUnsignedByte(index + 2) << 16;
+    }
+
+    /**
+     * An uncompressed frame of the client.
+     */
+    private static ByteBuf requestFrame(int sequenceId, int length) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(length).writeByte(length >>> 8).writeByte(length >>> 16);
+        buf.writeByte(sequenceId);
+        buf.writeMedium(0);
+        buf.writeBytes(payload(length));
+        return buf;
+    }
+
+    private static byte[] encode(EmbeddedChannel channel, byte[] payload) {
+        assertTrue(channel.writeOutbound(Unpooled.wrappedBuffer(payload)));
+        ByteBuf frames = (ByteBuf) channel.readOutbound();
+        byte[] bytes = new byte[frames.readableBytes()];
+        frames.readBytes(bytes);
+        frames.release();
+        return bytes;
+    }
+
+    private static byte[] decode(byte[] frames) {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLCompressCodec());
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(frames)));
+        ByteBuf all = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = (ByteBuf) channel.readInbound()) != null) {
+            all.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(channel.finish());
+        byte[] bytes = new byte[all.readableBytes()];
+        all.readBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+        byte[] payload = payload(1000);
+        byte[] frames = encode(new EmbeddedChannel(new MySQLCompressCodec()), payload);
+        ByteBuf header = Unpooled.wrappedBuffer(frames);
+        int compressedLength = readInt3(header, 0);
+        assertEquals(frames.length - 7, compressedLength);
+        assertTrue(compressedLength < payload.length);
+        assertEquals(payload.length, readInt3(header, 4));
+        assertArrayEquals(payload, decode(frames));
+    }
+
+    @Test
+    public void testSmallPayloadNotCompressed() {
+        byte[] payload = payload(MySQLCompressCodec.MIN_COMPRESS_LENGTH - 1);
+        byte[] frames = encode(new EmbeddedChannel(new MySQLCompressCodec()), payload);
+        ByteBuf header = Unpooled.wrappedBuffer(frames);
+        assertEquals(payload.length, readInt3(header, 0));
+        assertEquals(0, readInt3(header, 4));
+        assertEquals(payload.length + 7, frames.length);
+        assertArrayEquals(payload, decode(frames));
+    }
+
+    @Test
+    public void testLargePayload() {
+        byte[] payload = payload(MAX_FRAME_PAYLOAD + 1000);
+        byte[] frames = encode(new EmbeddedChannel(new MySQLCompressCodec()), payload);
+        ByteBuf buf = Unpooled.wrappedBuffer(frames);
+        // two frames with consecutive sequence ids
+        int first = readInt3(buf, 0);
+        assertEquals(MAX_FRAME_PAYLOAD, readInt3(buf, 4));
+        assertEquals(0, buf.getUnsignedByte(3));
+        assertEquals(1, buf.getUnsignedByte(7 + first + 3));
+        assertEquals(frames.length, 7 + first + 7 + readInt3(buf, 7 + first));
+        assertArrayEquals(payload, decode(frames));
+    }
+
+    @Test
+    public void testResponseSequencePerRequest() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLCompressCodec());
+        // a large request of two frames, then a pipelined small request
+        channel.writeInbound(requestFrame(0, 100));
+        channel.writeInbound(requestFrame(1, 10));
+        channel.writeInbound(requestFrame(0, 10));
+        while (channel.readInbound() != null) {
+            // the decoded payloads are not checked here
+        }
+        channel.writeOutbound(MySQLCompressCodec.RESPONSE_START);
+        assertEquals(2, encode(channel, payload(10))[3]);
+        assertEquals(3, encode(channel, payload(10))[3]);
+        channel.writeOutbound(MySQLCompressCodec.RESPONSE_START);
+        assertEquals(1, encode(channel, payload(10))[3]);
+        assertEquals(2, encode(channel, payload(100))[3]);
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.openddal.server.mysql.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.MySQLProtocolDecoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class MySQLProtocolDecoderTest {
+
+    private static final int MAX_FRAME_PAYLOAD = 0xFFFFFF;
+
+    private static byte payloadByte(int i) {
+        return (byte) (i * 31 + 7);
+    }
+
+    /**
+     * Split a payload into frames the way the client does: full frames of
+     * 0xFFFFFF bytes, then a shorter frame, which is empty if the payload
+     * length is a multiple of 0xFFFFFF.
+     */
+    private static ByteBuf frames(int payloadLength, int firstSequenceId) {
+        ByteBuf buf = Unpooled.buffer(payloadLength + 16);
+        int sequenceId = firstSequenceId;
+        int offset = 0;
+        while (true) {
+            int length = Math.min(payloadLength - offset, MAX_FRAME_PAYLOAD);
+            buf.writeByte(length);
+            buf.writeByte(length >>> 8);
+            buf.writeByte(length >>> 16);
+            buf.writeByte(sequenceId++);
+            for (int i = 0; i < length; i++) {
+                buf.writeByte(payloadByte(offset + i));
+            }
+            offset += length;
+            if (length < MAX_FRAME_PAYLOAD) {
+                return buf;
+            }
+        }
+    }
+
+    private static void assertPacket(ByteBuf packet, int payloadLength, int lastSequenceId) {
+        try {
+            assertEquals(payloadLength + 4, packet.readableBytes());
+            assertEquals((byte) lastSequenceId, packet.getByte(packet.readerIndex() + 3));
+            int start = packet.readerIndex() + 4;
+            for (int i = 0; i < payloadLength; i++) {
+                if (packet.getByte(start + i) != payloadByte(i)) {
+                    assertEquals("payload byte " + i, payloadByte(i), packet.getByte(start + i));
+                }
+            }
+        } finally {
+            packet.release();
+        }
+    }
+
+    @Test
+    public void testSmallPacketsSplitAcrossReads() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLProtocolDecoder());
+        ByteBuf in = frames(100, 0).writeBytes(frames(3, 0));
+        assertFalse(channel.writeInbound(in.readSlice(2).retain()));
+        assertFalse(channel.writeInbound(in.readSlice(50).retain()));
+        channel.writeInbound(in.readSlice(in.readableBytes()).retain());
+        in.release();
+        assertPacket((ByteBuf) channel.readInbound(), 100, 0);
+        assertPacket((ByteBuf) channel.readInbound(), 3, 0);
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testMaxFramePayloadWithEmptyTrailingFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLProtocolDecoder());
+        ByteBuf in = frames(MAX_FRAME_PAYLOAD, 0);
+        // one full frame and the zero length frame that ends the packet
+        assertEquals(MAX_FRAME_PAYLOAD + 4 + 4, in.readableBytes());
+        assertFalse(channel.writeInbound(in.readSlice(MAX_FRAME_PAYLOAD + 4).retain()));
+        channel.writeInbound(in);
+        assertPacket((ByteBuf) channel.readInbound(), MAX_FRAME_PAYLOAD, 1);
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPayloadOfThreeFrames() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLProtocolDecoder());
+        int length = 2 * MAX_FRAME_PAYLOAD + 1000;
+        ByteBuf in = frames(length, 5);
+        // the frames arrive in reads that do not match the frame bounds
+        int[] reads = { 3, MAX_FRAME_PAYLOAD, 100000, MAX_FRAME_PAYLOAD - 100000 };
+        for (int read : reads) {
+            channel.writeInbound(in.readSlice(read).retain());
+            assertNull(channel.readInbound());
+        }
+        channel.writeInbound(in);
+        assertPacket((ByteBuf) channel.readInbound(), length, 7);
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+}
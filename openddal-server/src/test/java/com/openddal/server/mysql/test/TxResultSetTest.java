@@ -0,0 +1,30 @@
+package com.openddal.server.mysql.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.respo.TxResultSet;
+
+public class TxResultSetTest {
+
+    @Test
+    public void testReadOnly() throws SQLException {
+        ResultSet rs = TxResultSet.getReadonlyResultSet(true);
+        assertEquals(Types.INTEGER, rs.getMetaData().getColumnType(1));
+        assertTrue(rs.next());
+        assertEquals("1", rs.getString(1));
+        assertFalse(rs.next());
+        rs = TxResultSet.getReadonlyResultSet(false);
+        assertTrue(rs.next());
+        assertEquals("0", rs.getString(1));
+        assertEquals(0, rs.getInt(1));
+    }
+
+}
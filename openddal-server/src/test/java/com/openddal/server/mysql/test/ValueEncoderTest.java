@@ -0,0 +1,86 @@
+package com.openddal.server.mysql.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.ValueEncoder;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.value.ValueBytes;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+import com.openddal.value.ValueTimestamp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class ValueEncoderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static byte[] bytes(ByteBuf out) {
+        byte[] bytes = new byte[out.readableBytes()];
+        out.readBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] lenenc(String s) {
+        return Proto.build_lenenc_str(s);
+    }
+
+    @Test
+    public void testTextDigits() {
+        long[] values = { 0, 7, -7, 10, 1234567890, -1234567890, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long v : values) {
+            ByteBuf out = Unpooled.buffer();
+            ValueEncoder.writeText(out, ValueLong.get(v), UTF8);
+            assertArrayEquals(lenenc(Long.toString(v)), bytes(out));
+        }
+        ByteBuf out = Unpooled.buffer();
+        ValueEncoder.writeText(out, ValueInt.get(-42), UTF8);
+        assertArrayEquals(lenenc("-42"), bytes(out));
+    }
+
+    @Test
+    public void testTextNullAndBytes() {
+        ByteBuf out = Unpooled.buffer();
+        ValueEncoder.writeText(out, ValueNull.INSTANCE, UTF8);
+        assertArrayEquals(new byte[] { (byte) 0xFB }, bytes(out));
+
+        out = Unpooled.buffer();
+        ValueEncoder.writeText(out, ValueBytes.get(new byte[] { 1, 2, (byte) 0xFF }), UTF8);
+        assertArrayEquals(new byte[] { 3, 1, 2, (byte) 0xFF }, bytes(out));
+
+        out = Unpooled.buffer();
+        ValueEncoder.writeText(out, ValueString.get("é"), UTF8);
+        assertArrayEquals(new byte[] { 2, (byte) 0xC3, (byte) 0xA9 }, bytes(out));
+    }
+
+    @Test
+    public void testBinary() {
+        ByteBuf out = Unpooled.buffer();
+        assertFalse(ValueEncoder.writeBinary(out, ValueNull.INSTANCE, Flags.MYSQL_TYPE_LONG, UTF8));
+        assertFalse(out.isReadable());
+
+        assertTrue(ValueEncoder.writeBinary(out, ValueInt.get(0x01020304), Flags.MYSQL_TYPE_LONG, UTF8));
+        assertArrayEquals(new byte[] { 4, 3, 2, 1 }, bytes(out));
+
+        out = Unpooled.buffer();
+        ValueTimestamp ts = ValueTimestamp.parse("2016-03-04 05:06:07.000008");
+        assertTrue(ValueEncoder.writeBinary(out, ts, Flags.MYSQL_TYPE_DATETIME, UTF8));
+        assertArrayEquals(new byte[] { 11, (byte) 0xE0, 0x07, 3, 4, 5, 6, 7, 8, 0, 0, 0 }, bytes(out));
+
+        out = Unpooled.buffer();
+        ts = ValueTimestamp.parse("2016-03-04 00:00:00");
+        assertTrue(ValueEncoder.writeBinary(out, ts, Flags.MYSQL_TYPE_DATE, UTF8));
+        assertArrayEquals(new byte[] { 4, (byte) 0xE0, 0x07, 3, 4 }, bytes(out));
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.openddal.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.openddal.engine.SysProperties;
+import com.openddal.server.AccessLog;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AppenderBase;
+
+public class AccessLogTest {
+
+    private static final int THREADS = 4;
+    private static final int ENTRIES = 1000;
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("AccessLogger");
+    private final List<Appender<ILoggingEvent>> appenders = new ArrayList<Appender<ILoggingEvent>>();
+    private Level level;
+    private boolean additive;
+    private CapturingAppender capture;
+
+    @Before
+    public void setUp() {
+        // a new writer for each test
+        AccessLog.shutdown();
+        level = logger.getLevel();
+        additive = logger.isAdditive();
+        for (Iterator<Appender<ILoggingEvent>> it = logger.iteratorForAppenders(); it.hasNext();) {
+            appenders.add(it.next());
+        }
+        for (Appender<ILoggingEvent> a : appenders) {
+            logger.detachAppender(a);
+        }
+        capture = new CapturingAppender();
+        capture.setContext(logger.getLoggerContext());
+        capture.start();
+        logger.addAppender(capture);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+    }
+
+    @After
+    public void tearDown() {
+        capture.release.countDown();
+        AccessLog.shutdown();
+        logger.detachAppender(capture);
+        capture.stop();
+        for (Appender<ILoggingEvent> a : appenders) {
+            logger.addAppender(a);
+        }
+        logger.setLevel(level);
+        logger.setAdditive(additive);
+    }
+
+    /**
+     * The entries of each request thread are written in the order they were
+     * recorded.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < ENTRIES; j++) {
+                        log(thread + ":" + j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, AccessLog.getDroppedCount());
+        AccessLog.shutdown();
+        assertEquals(THREADS * ENTRIES, capture.messages.size());
+        int[] next = new int[THREADS];
+        for (String msg : capture.messages) {
+            String sql = getSql(msg);
+            int thread = Integer.parseInt(sql.substring(0, sql.indexOf(':')));
+            assertEquals(next[thread]++, Integer.parseInt(sql.substring(sql.indexOf(':') + 1)));
+        }
+    }
+
+    /**
+     * The idle writer is woken up by the next entry, it does not wait for
+     * the end of its idle time.
+     */
+    @Test
+    public void testWakeUp() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            // the writer parks
+            Thread.sleep(20);
+            long start = System.nanoTime();
+            assertTrue(log("" + i));
+            while (capture.messages.size() <= i && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(1);
+            }
+            assertEquals(i + 1, capture.messages.size());
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(millis + " ms", millis < 500);
+        }
+    }
+
+    /**
+     * If the writer falls behind, the entries that do not fit in the ring
+     * buffer are dropped and counted, the dropped count is logged.
+     */
+    @Test
+    public void testDropWhenFull() throws Exception {
+        capture.block();
+        assertTrue(log("0"));
+        assertTrue(capture.blocked.await(10, TimeUnit.SECONDS));
+        // the slot of the entry being written is not released yet
+        int accepted = 1;
+        while (accepted <= SysProperties.ACCESS_LOG_BUFFER_SIZE && log("" + accepted)) {
+            accepted++;
+        }
+        assertEquals(SysProperties.ACCESS_LOG_BUFFER_SIZE, accepted);
+        assertEquals(1, AccessLog.getDroppedCount());
+        for (int i = 0; i < 9; i++) {
+            assertFalse(log("dropped"));
+        }
+        assertEquals(10, AccessLog.getDroppedCount());
+
+        capture.release.countDown();
+        AccessLog.shutdown();
+        assertEquals(accepted + 1, capture.messages.size());
+        for (int i = 0; i < accepted; i++) {
+            assertEquals("" + i, getSql(capture.messages.get(i)));
+        }
+        assertEquals("10 access log entries dropped", capture.messages.get(accepted));
+    }
+
+    /**
+     * The entries recorded before the shutdown are written, the writer
+     * thread ends. A new writer is started by the next entry.
+     */
+    @Test
+    public void testShutdownDrains() throws Exception {
+        capture.block();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(log("" + i));
+        }
+        assertTrue(capture.blocked.await(10, TimeUnit.SECONDS));
+        capture.release.countDown();
+        AccessLog.shutdown();
+        assertEquals(100, capture.messages.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("" + i, getSql(capture.messages.get(i)));
+        }
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            assertFalse(t.getName().equals("AccessLogWriter") && t.isAlive());
+        }
+
+        assertTrue(log("100"));
+        AccessLog.shutdown();
+        assertEquals(101, capture.messages.size());
+        assertEquals("100", getSql(capture.messages.get(100)));
+    }
+
+    private static boolean log(String sql) {
+        return AccessLog.log("test", sql, 1, "remote", "local", 0, 5, 0, null);
+    }
+
+    private static String getSql(String msg) {
+        // [test] <sql> conId:1 remote local 5 ms
+        assertTrue(msg, msg.startsWith("[test] ") && msg.endsWith(" conId:1 remote local 5 ms"));
+        return msg.substring("[test] ".length(), msg.indexOf(" conId:"));
+    }
+
+    /**
+     * Keeps the messages, the writer thread can be held in the first append.
+     */
+    private static class CapturingAppender extends AppenderBase<ILoggingEvent> {
+
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean block;
+
+        void block() {
+            block = true;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            if (block) {
+                block = false;
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(event.getFormattedMessage());
+        }
+    }
+
+}
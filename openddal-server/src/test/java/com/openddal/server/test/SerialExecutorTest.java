@@ -0,0 +1,213 @@
+package com.openddal.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.openddal.server.SerialExecutor;
+
+public class SerialExecutorTest {
+
+    private static final int TASKS = 1000;
+
+    /**
+     * The tasks of a mailbox run one at a time, in the order they were
+     * queued, on a shared executor with several threads.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            SerialExecutor serial = new SerialExecutor(threads, TASKS);
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicBoolean overlap = new AtomicBoolean();
+            final CountDownLatch done = new CountDownLatch(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                final int index = i;
+                serial.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (running.incrementAndGet() != 1) {
+                            overlap.set(true);
+                        }
+                        order.add(index);
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertFalse(overlap.get());
+            for (int i = 0; i < TASKS; i++) {
+                assertEquals(i, order.get(i).intValue());
+            }
+            waitForEmptyQueue(serial);
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * A request is rejected when the mailbox holds maxPending requests, the
+     * queued requests still run.
+     */
+    @Test
+    public void testMaxPending() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            SerialExecutor serial = new SerialExecutor(threads, 3);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger count = new AtomicInteger();
+            int total = SerialExecutor.getTotalQueueDepth();
+            serial.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    count.incrementAndGet();
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            };
+            serial.execute(task);
+            serial.execute(task);
+            assertEquals(3, serial.getQueueDepth());
+            assertEquals(total + 3, SerialExecutor.getTotalQueueDepth());
+            try {
+                serial.execute(task);
+                fail();
+            } catch (RejectedExecutionException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Too many pending requests: 3"));
+            }
+            assertEquals(3, serial.getQueueDepth());
+            release.countDown();
+            waitForEmptyQueue(serial);
+            assertEquals(3, count.get());
+            assertEquals(total, SerialExecutor.getTotalQueueDepth());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * If the shared executor rejects the first request of an idle mailbox,
+     * the request is dropped and the mailbox stays usable.
+     */
+    @Test
+    public void testRejectedWhenIdle() {
+        final AtomicBoolean reject = new AtomicBoolean(true);
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (reject.get()) {
+                    throw new RejectedExecutionException();
+                }
+                command.run();
+            }
+        };
+        SerialExecutor serial = new SerialExecutor(executor, 10);
+        final List<String> runs = new ArrayList<String>();
+        int total = SerialExecutor.getTotalQueueDepth();
+        try {
+            serial.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runs.add("rejected");
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Server is busy"));
+        }
+        assertEquals(0, serial.getQueueDepth());
+        assertEquals(total, SerialExecutor.getTotalQueueDepth());
+        reject.set(false);
+        serial.execute(new Runnable() {
+            @Override
+            public void run() {
+                runs.add("accepted");
+            }
+        });
+        assertEquals(Collections.singletonList("accepted"), runs);
+        assertEquals(0, serial.getQueueDepth());
+    }
+
+    /**
+     * If the shared executor is full while a mailbox runs, its queued
+     * requests continue on the thread of the running one.
+     */
+    @Test
+    public void testRejectedWhileRunning() throws Exception {
+        final AtomicInteger submitted = new AtomicInteger();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (submitted.getAndIncrement() > 0) {
+                    throw new RejectedExecutionException();
+                }
+                new Thread(command).start();
+            }
+        };
+        SerialExecutor serial = new SerialExecutor(executor, 10);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                threads.add(Thread.currentThread());
+                done.countDown();
+            }
+        };
+        serial.execute(task);
+        serial.execute(task);
+        serial.execute(task);
+        assertEquals(3, serial.getQueueDepth());
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, threads.size());
+        assertEquals(threads.get(0), threads.get(1));
+        assertEquals(threads.get(0), threads.get(2));
+        waitForEmptyQueue(serial);
+    }
+
+    private static void waitForEmptyQueue(SerialExecutor serial) throws InterruptedException {
+        // the depth is decremented after the last task returned
+        for (int i = 0; i < 1000 && serial.getQueueDepth() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, serial.getQueueDepth());
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import com.openddal.engine.Engine;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.message.DbException;
+import com.openddal.util.JdbcUtils;
+
+/**
+ * The base of the test cases that run the engine on four in-memory H2
+ * databases in MySQL mode instead of the MySQL servers of ddal-config.xml.
+ * The physical tables are created before the engine is started, so the
+ * engine reads their metadata as it does from MySQL. All the rows are deleted
+ * before each test.
+ */
+public abstract class H2ShardTestCase extends BaseTestCase {
+
+    /**
+     * The configuration of the engine on the class path.
+     */
+    public static final String CONFIG = "config/h2-config.xml";
+
+    /**
+     * The number of shards.
+     */
+    public static final int SHARD_COUNT = 4;
+
+    private static final String[] CUSTOMER_TABLES = { "customers_01", "customers_02", "address_01",
+            "address_02" };
+    private static final String[] ORDER_TABLES = { "orders_01", "orders_02", "orders_03", "orders_04",
+            "order_items_01", "order_items_02", "order_items_03", "order_items_04" };
+
+    private static Engine engine;
+
+    /**
+     * Get the engine of the test cases, it is started on the first call.
+     *
+     * @return the engine
+     */
+    protected static synchronized Engine getEngine() {
+        if (engine == null) {
+            createTables();
+            engine = (Engine) SessionFactoryBuilder.newBuilder().fromXml(CONFIG).build();
+        }
+        return engine;
+    }
+
+    /**
+     * Get the JDBC URL of a shard, as in the configuration.
+     *
+     * @param shard the shard index
+     * @return the URL
+     */
+    public static String getShardURL(int shard) {
+        return "jdbc:h2:mem:ddal_test" + shard + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    private static void createTables() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Connection conn = null;
+            Statement stat = null;
+            try {
+                conn = getShardConnection(i);
+                stat = conn.createStatement();
+                for (String table : CUSTOMER_TABLES) {
+                    if (table.startsWith("customers")) {
+                        stat.execute("CREATE TABLE IF NOT EXISTS " + table
+                                + "(id INT PRIMARY KEY, name VARCHAR(64), email VARCHAR(128),"
+                                + " status INT, created TIMESTAMP)");
+                    } else {
+                        stat.execute("CREATE TABLE IF NOT EXISTS " + table
+                                + "(address_id INT PRIMARY KEY, customer_id INT, city VARCHAR(64),"
+                                + " street VARCHAR(128))");
+                    }
+                }
+                for (String table : ORDER_TABLES) {
+                    if (table.startsWith("orders")) {
+                        stat.execute("CREATE TABLE IF NOT EXISTS " + table
+                                + "(order_id BIGINT PRIMARY KEY, customer_id INT, amount DECIMAL(12, 2),"
+                                + " status INT, created TIMESTAMP)");
+                    } else {
+                        stat.execute("CREATE TABLE IF NOT EXISTS " + table
+                                + "(item_id BIGINT PRIMARY KEY, order_id BIGINT, product_id INT,"
+                                + " quantity INT, price DECIMAL(12, 2))");
+                    }
+                }
+                stat.execute("CREATE TABLE IF NOT EXISTS product"
+                        + "(product_id INT PRIMARY KEY, name VARCHAR(64), price DECIMAL(12, 2))");
+            } catch (SQLException e) {
+                throw DbException.convert(e);
+            } finally {
+                JdbcUtils.closeSilently(stat);
+                JdbcUtils.closeSilently(conn);
+            }
+        }
+    }
+
+    /**
+     * Open a connection to a shard, bypassing the engine.
+     *
+     * @param shard the shard index
+     * @return the connection
+     */
+    protected static Connection getShardConnection(int shard) throws SQLException {
+        return DriverManager.getConnection(getShardURL(shard), "sa", "");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getEngine();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                Statement stat = conn.createStatement();
+                for (String table : CUSTOMER_TABLES) {
+                    stat.execute("DELETE FROM " + table);
+                }
+                for (String table : ORDER_TABLES) {
+                    stat.execute("DELETE FROM " + table);
+                }
+                stat.execute("DELETE FROM product");
+            } finally {
+                conn.close();
+            }
+        }
+    }
+
+    /**
+     * Open a connection to the engine.
+     *
+     * @return the connection
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new JdbcConnection(getEngine().createSession(new Properties()));
+    }
+
+    /**
+     * Count the rows of a logical table on all the shards, bypassing the
+     * engine.
+     *
+     * @param table the logical table name
+     * @param condition the condition of the rows, or null for all rows
+     * @return the number of rows
+     */
+    protected int countShardRows(String table, String condition) throws SQLException {
+        String[] tables = table.startsWith("customers") || table.startsWith("address") ? CUSTOMER_TABLES
+                : ORDER_TABLES;
+        int count = 0;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                Statement stat = conn.createStatement();
+                for (String t : tables) {
+                    if (!t.startsWith(table + "_")) {
+                        continue;
+                    }
+                    ResultSet rs = stat.executeQuery(
+                            "SELECT COUNT(*) FROM " + t + (condition == null ? "" : " WHERE " + condition));
+                    rs.next();
+                    count += rs.getInt(1);
+                    rs.close();
+                }
+            } finally {
+                conn.close();
+            }
+        }
+        return count;
+    }
+
+}
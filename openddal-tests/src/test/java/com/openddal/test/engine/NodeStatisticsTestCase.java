@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.engine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the traffic of the table nodes listed in
+ * INFORMATION_SCHEMA.TABLE_NODE_STATISTICS and the skew of the hot node.
+ */
+public class NodeStatisticsTestCase extends H2ShardTestCase {
+
+    private static final int UPDATES = 50;
+
+    private Connection conn;
+    private Statement stat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        stat.executeUpdate("INSERT INTO customers(id, name, status) VALUES(1, 'a', 1), (2, 'b', 1),"
+                + " (3, 'c', 2), (4, 'd', 2), (5, 'e', 2), (6, 'f', 3), (7, 'g', 3), (8, 'h', 3)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testHotNode() throws SQLException {
+        Map<String, long[]> before = readNodes();
+        PreparedStatement prep = conn.prepareStatement("UPDATE customers SET name = ? WHERE id = 1");
+        for (int i = 0; i < UPDATES; i++) {
+            prep.setString(1, "x" + i);
+            assertEquals(1, prep.executeUpdate());
+        }
+        prep.close();
+        Map<String, long[]> after = readNodes();
+        assertEquals(8, after.size());
+        String hot = null;
+        for (Map.Entry<String, long[]> e : after.entrySet()) {
+            long[] b = before.get(e.getKey());
+            long statements = e.getValue()[0] - (b == null ? 0 : b[0]);
+            long written = e.getValue()[1] - (b == null ? 0 : b[1]);
+            if (statements == 0) {
+                assertEquals(0, written);
+                continue;
+            }
+            // all the updates run on the node of id 1
+            assertNull(hot);
+            hot = e.getKey();
+            assertEquals(UPDATES, statements);
+            assertEquals(UPDATES, written);
+        }
+        assertNotNull(hot);
+
+        ResultSet rs = stat.executeQuery("SELECT SHARD_NAME || '.' || TABLE_NODE, STATEMENT_COUNT, STATEMENT_SKEW"
+                + " FROM INFORMATION_SCHEMA.TABLE_NODE_STATISTICS WHERE TABLE_NAME = 'CUSTOMERS'");
+        long total = 0;
+        double skewSum = 0;
+        double maxSkew = 0;
+        String maxNode = null;
+        Map<String, Long> counts = new HashMap<String, Long>();
+        Map<String, Double> skews = new HashMap<String, Double>();
+        while (rs.next()) {
+            counts.put(rs.getString(1), rs.getLong(2));
+            skews.put(rs.getString(1), rs.getDouble(3));
+            total += rs.getLong(2);
+            skewSum += rs.getDouble(3);
+            if (rs.getDouble(3) > maxSkew) {
+                maxSkew = rs.getDouble(3);
+                maxNode = rs.getString(1);
+            }
+        }
+        rs.close();
+        // the skew is the count of a node against the mean of the nodes
+        double mean = (double) total / counts.size();
+        for (String node : counts.keySet()) {
+            assertEquals(node, counts.get(node) / mean, skews.get(node), 0.0001);
+        }
+        assertEquals(counts.size(), skewSum, 0.0001);
+        assertEquals(hot, maxNode);
+        assertTrue("" + maxSkew, maxSkew > 1);
+    }
+
+    /**
+     * @return the statement and written row counts by table node
+     */
+    private Map<String, long[]> readNodes() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT SHARD_NAME || '.' || TABLE_NODE, STATEMENT_COUNT, WRITTEN_ROW_COUNT"
+                + " FROM INFORMATION_SCHEMA.TABLE_NODE_STATISTICS WHERE TABLE_NAME = 'CUSTOMERS'");
+        Map<String, long[]> nodes = new HashMap<String, long[]>();
+        while (rs.next()) {
+            nodes.put(rs.getString(1), new long[] { rs.getLong(2), rs.getLong(3) });
+        }
+        rs.close();
+        return nodes;
+    }
+
+}
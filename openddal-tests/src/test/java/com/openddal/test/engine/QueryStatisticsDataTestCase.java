@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.engine;
+
+import junit.framework.TestCase;
+
+import com.openddal.engine.QueryStatisticsData;
+
+/**
+ * Test the statement digests and the statistics grouped by them.
+ */
+public class QueryStatisticsDataTestCase extends TestCase {
+
+    private static void assertDigest(String expected, String sql) {
+        assertEquals(sql, expected, QueryStatisticsData.getDigest(sql));
+    }
+
+    public void testLiterals() {
+        assertDigest("SELECT * FROM T WHERE A = ? AND B = ?", "select * from t where a = 10 and b = 'x'");
+        assertDigest("SELECT * FROM T WHERE A = ?", "select * from t where a = 'it''s'");
+        assertDigest("SELECT * FROM T WHERE A = ?", "select * from t where a = ''");
+        assertDigest("SELECT ? + ?", "select 1.5e-3 + 2E+10");
+        assertDigest("SELECT -?", "select -42");
+        assertDigest("SELECT * FROM T WHERE A = ?", "select * from t where a = ?");
+    }
+
+    public void testPrefixedLiterals() {
+        assertDigest("SELECT * FROM T WHERE A = ? AND B = ?", "select * from t where a = N'abc' and b = X'0F'");
+        assertDigest("SELECT * FROM T WHERE A = ?", "select * from t where a = n'abc'");
+        // a name that ends with N or X is not a prefix
+        assertDigest("SELECT COLN FROM T", "select colN from t");
+        assertDigest("SELECT * FROM T WHERE COLN=?", "select * from t where colN='a'");
+    }
+
+    public void testIdentifiers() {
+        assertDigest("SELECT C1, T2.C3 FROM T2", "select c1, t2.c3 from t2");
+        assertDigest("SELECT \"a b\", `Col 1` FROM `T1`", "select \"a b\", `Col 1` from `T1`");
+        assertDigest("SELECT \"it's\" FROM T", "select \"it's\" from t");
+    }
+
+    public void testComments() {
+        assertDigest("SELECT ? FROM T WHERE A = ?", "select 1 -- one\n from t /* x = 'y' */ where a = 2");
+        assertDigest("SELECT ?", "/* hint */ select 1");
+        assertDigest("SELECT ?", "select 1 -- end");
+        assertDigest("SELECT ?", "select 1 /* not closed");
+    }
+
+    public void testWhiteSpace() {
+        assertDigest("SELECT A FROM T", "  select\n\t a\r\n  from   t  ");
+        assertDigest("SELECT A FROM T", "SELECT A FROM T");
+    }
+
+    public void testInList() {
+        assertDigest("SELECT * FROM T WHERE ID IN (?)", "select * from t where id in (1, 2, 3)");
+        assertDigest("SELECT * FROM T WHERE ID IN(?)", "select * from t where id in(1,2,3)");
+        assertDigest("SELECT * FROM T WHERE ID IN(?)", "select * from t where id in(?, ?, ?, ?)");
+        assertDigest("SELECT * FROM T WHERE ID IN(?)", "select * from t where id in('a', N'b', 3)");
+        // a list of any length has the same digest
+        StringBuilder buff = new StringBuilder("select * from t where id in(");
+        for (int i = 0; i < 1000; i++) {
+            buff.append(i == 0 ? "" : ", ").append(i);
+        }
+        buff.append(") and b = 5");
+        assertDigest("SELECT * FROM T WHERE ID IN(?) AND B = ?", buff.toString());
+        assertDigest("INSERT INTO T VALUES(?), (?)", "insert into t values(1, 'a'), (2, 'b')");
+        // the columns are not parameters
+        assertDigest("SELECT * FROM T WHERE A IN(B, C)", "select * from t where a in(b, c)");
+    }
+
+    public void testUpdateGroupedByDigest() {
+        QueryStatisticsData data = new QueryStatisticsData(100);
+        String[] sqls = { "select * from t where id = 1", "select * from t where id = 2",
+                "SELECT * FROM t WHERE id = 3 -- x" };
+        for (int i = 0; i < sqls.length; i++) {
+            data.update(QueryStatisticsData.getDigest(sqls[i]), sqls[i], 1000000L * (i + 1), i + 1, 1);
+        }
+        assertEquals(1, data.getQueries().size());
+        QueryStatisticsData.QueryEntry entry = data.getQueries().get(0);
+        assertEquals("SELECT * FROM T WHERE ID = ?", entry.getSqlDigest());
+        assertEquals(3, entry.getCount());
+        assertEquals(6, entry.getRowCountCumulative());
+    }
+
+}
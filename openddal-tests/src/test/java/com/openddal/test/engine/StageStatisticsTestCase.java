@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.engine;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the stage latencies of the statements listed in
+ * INFORMATION_SCHEMA.STAGE_STATISTICS and INFORMATION_SCHEMA.STAGE_HISTOGRAM.
+ */
+public class StageStatisticsTestCase extends H2ShardTestCase {
+
+    private static final int QUERIES = 20;
+
+    private Connection conn;
+    private Statement stat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        stat.executeUpdate("INSERT INTO customers(id, name, status) VALUES(1, 'a', 1), (2, 'b', 1),"
+                + " (3, 'c', 2), (4, 'd', 2)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testStageCounts() throws SQLException {
+        Map<String, long[]> before = readStages();
+        for (int i = 0; i < QUERIES; i++) {
+            // a new statement text each time, every query is parsed
+            ResultSet rs = stat.executeQuery("SELECT name FROM customers WHERE id = " + (i % 4 + 1)
+                    + " AND status < " + (i + 10));
+            assertTrue(rs.next());
+            rs.close();
+        }
+        Map<String, long[]> after = readStages();
+        String[] stages = { "PARSE", "ROUTE", "SHARD_EXECUTE", "LOCAL_EXECUTE" };
+        for (String stage : stages) {
+            long[] b = before.get(stage);
+            long[] a = after.get(stage);
+            assertTrue(stage + " " + (a[0] - b[0]), a[0] - b[0] >= QUERIES);
+            assertTrue(stage, a[1] > b[1]);
+        }
+
+        // the buckets of a stage add up to its execution count, both are read
+        // by one statement, the result is not read lazily after it ended
+        Statement scrollable = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE,
+                ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs = scrollable.executeQuery("SELECT STAGE, EXECUTION_COUNT, (SELECT SUM(H.EXECUTION_COUNT)"
+                + " FROM INFORMATION_SCHEMA.STAGE_HISTOGRAM H WHERE H.STAGE = S.STAGE)"
+                + " FROM INFORMATION_SCHEMA.STAGE_STATISTICS S");
+        int count = 0;
+        while (rs.next()) {
+            assertEquals(rs.getString(1), rs.getLong(2), rs.getLong(3));
+            count++;
+        }
+        rs.close();
+        scrollable.close();
+        assertEquals(7, count);
+        rs = stat.executeQuery("SELECT MIN_EXECUTION_TIME, MAX_EXECUTION_TIME, EXECUTION_COUNT"
+                + " FROM INFORMATION_SCHEMA.STAGE_HISTOGRAM");
+        while (rs.next()) {
+            assertTrue(rs.getLong(1) <= rs.getLong(2));
+            assertTrue(rs.getLong(3) > 0);
+        }
+        rs.close();
+    }
+
+    /**
+     * @return the execution count and the cumulative time by stage
+     */
+    private Map<String, long[]> readStages() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT STAGE, EXECUTION_COUNT, CUMULATIVE_EXECUTION_TIME,"
+                + " P50_EXECUTION_TIME, P99_EXECUTION_TIME FROM INFORMATION_SCHEMA.STAGE_STATISTICS");
+        Map<String, long[]> stages = new HashMap<String, long[]>();
+        while (rs.next()) {
+            assertTrue(rs.getString(1), rs.getLong(4) <= rs.getLong(5));
+            stages.put(rs.getString(1), new long[] { rs.getLong(2), rs.getLong(3) });
+        }
+        rs.close();
+        return stages;
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.repo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.openddal.command.Prepared;
+import com.openddal.command.dml.Select;
+import com.openddal.command.expression.Parameter;
+import com.openddal.config.ShardedTableRule;
+import com.openddal.dbobject.table.TableFilter;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Session;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.repo.JdbcRepository;
+import com.openddal.repo.SQLTranslated;
+import com.openddal.repo.SQLTranslator;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.test.H2ShardTestCase;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+
+/**
+ * Test the SQL the MySQL translator sends to the table nodes. The translated
+ * statements are run on the shards directly.
+ */
+public class MySQLTranslatorTestCase extends H2ShardTestCase {
+
+    private static final int CUSTOMERS = 40;
+
+    private Connection conn;
+    private Session session;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        session = (Session) ((JdbcConnection) conn).getSession();
+        PreparedStatement prep = conn.prepareStatement("INSERT INTO customers(id, name, status) VALUES(?, ?, 1)");
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            prep.setInt(1, i);
+            prep.setString(2, "c" + i);
+            prep.executeUpdate();
+        }
+        prep.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testInListPerNode() throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id FROM customers WHERE id IN(");
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int i = 1; i <= CUSTOMERS; i += 2) {
+            sql.append(i == 1 ? "" : ", ").append(i);
+            expected.add(i);
+        }
+        sql.append(')');
+        Select select = (Select) session.prepare(sql.toString());
+        assertEquals(expected, readAllNodes(select));
+    }
+
+    public void testInListParameters() throws SQLException {
+        Select select = (Select) session.prepare("SELECT id FROM customers WHERE id IN(?, ?, ?, ?) AND status = 1");
+        int[][] values = { { 1, 2, 3, 4 }, { 5, 6, 7, 8 }, { 3, 3, 3, 3 }, { 1, 2, 3, 100 } };
+        for (int[] v : values) {
+            ArrayList<Parameter> params = select.getParameters();
+            Set<Integer> expected = new HashSet<Integer>();
+            for (int i = 0; i < v.length; i++) {
+                params.get(i).setValue(ValueInt.get(v[i]));
+                if (v[i] <= CUSTOMERS) {
+                    expected.add(v[i]);
+                }
+            }
+            // the routing of the previous values must not be reused
+            assertEquals(expected, readAllNodes(select));
+        }
+    }
+
+    public void testLongInList() throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id FROM customers WHERE id IN(");
+        for (int i = 1; i <= 3000; i++) {
+            sql.append(i == 1 ? "" : ", ").append(i);
+        }
+        sql.append(')');
+        Select select = (Select) session.prepare(sql.toString());
+        TableFilter filter = select.getTopTableFilter();
+        int values = 0;
+        for (ObjectNode node : getNodes(filter)) {
+            String nodeSQL = getTranslator().translate(filter, node).sql;
+            // one IN list per node, with the values of the node only
+            assertEquals(nodeSQL, nodeSQL.indexOf(" IN("), nodeSQL.lastIndexOf(" IN("));
+            assertFalse(nodeSQL, nodeSQL.contains(" OR "));
+            values += nodeSQL.split(",").length;
+        }
+        assertEquals(3000, values);
+    }
+
+    private Set<Integer> readAllNodes(Prepared prepared) throws SQLException {
+        TableFilter filter = ((Select) prepared).getTopTableFilter();
+        Set<Integer> ids = new HashSet<Integer>();
+        for (ObjectNode node : getNodes(filter)) {
+            SQLTranslated translated = getTranslator().translate(filter, node);
+            Set<Integer> nodeIds = readShard(node, translated);
+            for (Integer id : nodeIds) {
+                assertTrue(ids.add(id));
+            }
+        }
+        return ids;
+    }
+
+    private Set<Integer> readShard(ObjectNode node, SQLTranslated translated) throws SQLException {
+        String shardName = node.getShardName();
+        Connection shard = getShardConnection(shardName.charAt(shardName.length() - 1) - '0');
+        try {
+            PreparedStatement prep = shard.prepareStatement(translated.sql);
+            List<Value> params = translated.params;
+            for (int i = 0; i < params.size(); i++) {
+                params.get(i).set(prep, i + 1);
+            }
+            Set<Integer> ids = new HashSet<Integer>();
+            ResultSet rs = prep.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt("id"));
+            }
+            rs.close();
+            return ids;
+        } finally {
+            shard.close();
+        }
+    }
+
+    private static ObjectNode[] getNodes(TableFilter filter) {
+        TableMate table = (TableMate) filter.getTable();
+        return ((ShardedTableRule) table.getTableRule()).getObjectNodes();
+    }
+
+    private SQLTranslator getTranslator() {
+        return ((JdbcRepository) session.getDatabase().getRepository()).getSQLTranslator();
+    }
+
+}
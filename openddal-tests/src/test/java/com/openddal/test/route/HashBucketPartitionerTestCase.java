@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import junit.framework.TestCase;
+
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.ValueInt;
+
+/**
+ * Test the hash bucket partitioner and the counts of its buckets.
+ */
+public class HashBucketPartitionerTestCase extends TestCase {
+
+    private static final int NODES = 4;
+
+    private static HashBucketPartitioner newPartitioner(boolean bucketStatistics) {
+        HashBucketPartitioner partitioner = new HashBucketPartitioner();
+        partitioner.setPartitionCount("4");
+        partitioner.setPartitionLength("256");
+        partitioner.setBucketStatistics(bucketStatistics);
+        ObjectNode[] nodes = new ObjectNode[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new ObjectNode("shard" + i, "t");
+        }
+        partitioner.initialize(nodes);
+        return partitioner;
+    }
+
+    private static long totalHits(HashBucketPartitioner partitioner) {
+        long total = 0;
+        for (int b = 0; b < partitioner.getBucketCount(); b++) {
+            total += partitioner.getBucketHits(b);
+        }
+        return total;
+    }
+
+    public void testBucketHits() {
+        HashBucketPartitioner partitioner = newPartitioner(true);
+        int[] nodeHits = new int[NODES];
+        for (int i = 0; i < 1000; i++) {
+            nodeHits[partitioner.partition(ValueInt.get(i))]++;
+        }
+        assertEquals(1000, totalHits(partitioner));
+        for (int b = 0; b < partitioner.getBucketCount(); b++) {
+            int node = partitioner.getBucketNodeIndex(b);
+            assertTrue(node >= 0 && node < NODES);
+            nodeHits[node] -= partitioner.getBucketHits(b);
+        }
+        // each value is counted in a bucket of the node it is routed to
+        for (int i = 0; i < NODES; i++) {
+            assertEquals(0, nodeHits[i]);
+        }
+    }
+
+    public void testNoBucketStatistics() {
+        HashBucketPartitioner partitioner = newPartitioner(false);
+        Integer node = partitioner.partition(ValueInt.get(42));
+        assertEquals(0, totalHits(partitioner));
+        partitioner.setBucketStatistics(true);
+        assertEquals(node, partitioner.partition(ValueInt.get(42)));
+        assertEquals(1, totalHits(partitioner));
+        partitioner.setBucketStatistics(false);
+        partitioner.partition(ValueInt.get(42));
+        assertEquals(0, totalHits(partitioner));
+    }
+
+}
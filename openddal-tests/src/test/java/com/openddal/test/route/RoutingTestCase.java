@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the routing of the statements to the table nodes.
+ */
+public class RoutingTestCase extends H2ShardTestCase {
+
+    /**
+     * The table filters of a query are routed when it is prepared, the
+     * filters of the sharded tables were lost and every query failed with
+     * SQL_ROUTING_ERROR.
+     */
+    public void testPrepareSelect() throws SQLException {
+        Connection conn = getConnection();
+        try {
+            conn.prepareStatement("SELECT * FROM customers WHERE id = 1").close();
+            conn.prepareStatement("SELECT * FROM customers WHERE id IN(1, 2, 3)").close();
+            conn.prepareStatement("SELECT * FROM orders").close();
+            conn.prepareStatement("SELECT o.order_id, i.item_id FROM orders o"
+                    + " JOIN order_items i ON o.order_id = i.order_id WHERE o.order_id = 1").close();
+        } finally {
+            conn.close();
+        }
+    }
+
+}
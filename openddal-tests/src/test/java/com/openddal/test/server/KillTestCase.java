@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import com.openddal.message.ErrorCode;
+import com.openddal.util.JdbcUtils;
+
+/**
+ * Test KILL QUERY and KILL of a connection from another connection of the
+ * server. The statement to kill waits for the row locks that a transaction
+ * holds on the shards.
+ */
+public class KillTestCase extends MySQLServerTestCase {
+
+    private static final String SQL = "UPDATE orders SET status = 5";
+
+    private static final String[] ORDER_TABLES = { "orders_01", "orders_02", "orders_03", "orders_04" };
+
+    /**
+     * The H2 default, the lock timeout of the shard connections opened later.
+     */
+    private static final int LOCK_TIMEOUT = 1000;
+
+    // Id, User, Host, db, Command, Time, State, Info, Shards, Queue
+    private static final int ID = 0;
+    private static final int COMMAND = 4;
+    private static final int INFO = 7;
+    private static final int SHARDS = 8;
+
+    private final Connection[] locks = new Connection[SHARD_COUNT];
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        insertOrders(100);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            if (locks[i] != null) {
+                locks[i].rollback();
+                locks[i].createStatement().execute("SET DEFAULT_LOCK_TIMEOUT " + LOCK_TIMEOUT);
+                JdbcUtils.closeSilently(locks[i]);
+                locks[i] = null;
+            }
+        }
+        super.tearDown();
+    }
+
+    public void testKillQuery() throws Exception {
+        lockShards();
+        MySQLClient client = connect();
+        MySQLClient admin = connect();
+        try {
+            client.sendQuery(SQL);
+            for (int i = 0; i < 100; i++) {
+                if (countShardStatements() == SHARD_COUNT * ORDER_TABLES.length) {
+                    break;
+                }
+                Thread.sleep(50);
+            }
+            String[] row = getProcess(admin, client.getConnectionId());
+            assertEquals("Query", row[COMMAND]);
+            assertEquals(SQL, row[INFO]);
+            assertTrue(row[SHARDS], row[SHARDS].startsWith("shard"));
+            // the shard statements wait for the locks in parallel
+            assertEquals(SHARD_COUNT * ORDER_TABLES.length, countShardStatements());
+
+            long start = System.currentTimeMillis();
+            admin.sendQuery("KILL QUERY " + client.getConnectionId());
+            admin.readOk();
+            try {
+                client.readOk();
+                fail();
+            } catch (SQLException e) {
+                assertEquals(ErrorCode.STATEMENT_WAS_CANCELED, e.getErrorCode());
+            }
+            // the statements waiting on the shards were canceled, long
+            // before the lock timeout
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            assertEquals(0, countShardStatements());
+
+            row = getProcess(admin, client.getConnectionId());
+            assertEquals("Sleep", row[COMMAND]);
+            assertNull(row[INFO]);
+            assertNull(row[SHARDS]);
+
+            // the connection is still open, its next statement runs
+            unlockShards();
+            client.sendQuery("SELECT COUNT(*) FROM orders WHERE status = 5");
+            List<String[]> rows = client.readTextResult();
+            assertEquals("0", rows.get(0)[0]);
+        } finally {
+            client.close();
+            admin.close();
+        }
+    }
+
+    public void testKillConnection() throws Exception {
+        MySQLClient client = connect();
+        MySQLClient admin = connect();
+        try {
+            getProcess(admin, client.getConnectionId());
+            admin.sendQuery("KILL " + client.getConnectionId());
+            admin.readOk();
+            try {
+                client.sendQuery("SELECT 1");
+                client.read();
+                fail();
+            } catch (IOException e) {
+                // the server closed the connection
+            }
+            boolean listed = true;
+            for (int i = 0; i < 100 && listed; i++) {
+                listed = false;
+                admin.sendQuery("SHOW PROCESSLIST");
+                for (String[] row : admin.readTextResult()) {
+                    listed |= row[ID].equals("" + client.getConnectionId());
+                }
+                Thread.sleep(50);
+            }
+            assertFalse(listed);
+        } finally {
+            client.close();
+            admin.close();
+        }
+    }
+
+    /**
+     * Lock the rows of the orders on all the shards, the shard connections
+     * opened later wait for the locks up to one minute.
+     */
+    private void lockShards() throws SQLException {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            locks[i] = getShardConnection(i);
+            Statement stat = locks[i].createStatement();
+            stat.execute("SET DEFAULT_LOCK_TIMEOUT 60000");
+            locks[i].setAutoCommit(false);
+            for (String table : ORDER_TABLES) {
+                stat.execute("UPDATE " + table + " SET status = status");
+            }
+        }
+    }
+
+    private void unlockShards() throws SQLException {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            locks[i].rollback();
+        }
+    }
+
+    /**
+     * @return the number of updates of the engine running on the shards
+     */
+    private int countShardStatements() throws SQLException {
+        int count = 0;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Statement stat = locks[i].createStatement();
+            ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS"
+                    + " WHERE STATEMENT LIKE 'UPDATE ORDERS_0_ SET STATUS = ?%'");
+            rs.next();
+            count += rs.getInt(1);
+            rs.close();
+            stat.close();
+        }
+        return count;
+    }
+
+    private static String[] getProcess(MySQLClient admin, long connectionId) throws Exception {
+        admin.sendQuery("SHOW PROCESSLIST");
+        for (String[] row : admin.readTextResult()) {
+            if (row[ID].equals("" + connectionId)) {
+                return row;
+            }
+        }
+        fail("connection " + connectionId + " not listed");
+        return null;
+    }
+
+}
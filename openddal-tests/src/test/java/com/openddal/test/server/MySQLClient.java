@@ -0,0 +1,430 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.openddal.server.mysql.proto.Com_Query;
+import com.openddal.server.mysql.proto.Com_Stmt_Close;
+import com.openddal.server.mysql.proto.Com_Stmt_Execute;
+import com.openddal.server.mysql.proto.Com_Stmt_Fetch;
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare;
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare_Ok;
+import com.openddal.server.mysql.proto.Com_Stmt_Reset;
+import com.openddal.server.mysql.proto.EOF;
+import com.openddal.server.mysql.proto.ERR;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Handshake;
+import com.openddal.server.mysql.proto.HandshakeResponse;
+import com.openddal.server.mysql.proto.Packet;
+import com.openddal.server.mysql.proto.Proto;
+
+/**
+ * A client of the MySQL protocol that returns the packets of the responses as
+ * they are sent, so the test cases can check what a driver hides. The packets
+ * are built and parsed with the protocol classes of the server. As the
+ * drivers do, the sequence id of every packet read is checked.
+ */
+public class MySQLClient {
+
+    /**
+     * The character set index of utf8_general_ci.
+     */
+    private static final int UTF8 = 33;
+
+    private static final int RECEIVE_BUFFER_SIZE = 16 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final long connectionId;
+    private int sequenceId;
+    private long statusFlags;
+
+    /**
+     * Connect to the server and authenticate.
+     *
+     * @param port the port of the server on the local host
+     */
+    public MySQLClient(int port) throws IOException, SQLException {
+        socket = new Socket();
+        // a small buffer, the server soon waits for a client that does not
+        // read the rows
+        socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        socket.setSoTimeout(30000);
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress("localhost", port));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = socket.getOutputStream();
+        Handshake handshake = Handshake.loadFromPacket(read());
+        connectionId = handshake.connectionId;
+        HandshakeResponse response = new HandshakeResponse();
+        response.sequenceId = sequenceId;
+        response.capabilityFlags = Flags.CLIENT_PROTOCOL_41 | Flags.CLIENT_SECURE_CONNECTION
+                | Flags.CLIENT_MULTI_RESULTS | Flags.CLIENT_PS_MULTI_RESULTS;
+        response.maxPacketSize = 0xffffff;
+        response.characterSet = UTF8;
+        response.username = "root";
+        write(response);
+        readOk();
+    }
+
+    /**
+     * Get the connection id sent in the handshake.
+     *
+     * @return the id
+     */
+    public long getConnectionId() {
+        return connectionId;
+    }
+
+    /**
+     * Get the status flags of the last OK or EOF packet read.
+     *
+     * @return the flags
+     */
+    public long getStatusFlags() {
+        return statusFlags;
+    }
+
+    /**
+     * Send a command, it starts a new sequence.
+     *
+     * @param command the command packet
+     */
+    public void send(Packet command) throws IOException {
+        sequenceId = 0;
+        command.sequenceId = 0;
+        write(command);
+    }
+
+    /**
+     * Read the response of a command that was sent before the previous
+     * response was read, its sequence starts again.
+     */
+    public void nextResponse() {
+        sequenceId = 1;
+    }
+
+    /**
+     * Send a COM_QUERY command.
+     *
+     * @param sql the statement
+     */
+    public void sendQuery(String sql) throws IOException {
+        Com_Query query = new Com_Query();
+        query.query = sql;
+        send(query);
+    }
+
+    /**
+     * Prepare a statement with COM_STMT_PREPARE, the parameter and column
+     * definitions sent after the OK packet are read.
+     *
+     * @param sql the statement
+     * @return the OK packet of the statement
+     * @throws SQLException if an ERR packet was read
+     */
+    public Com_Stmt_Prepare_Ok prepare(String sql) throws IOException, SQLException {
+        Com_Stmt_Prepare prepare = new Com_Stmt_Prepare();
+        prepare.query = sql;
+        send(prepare);
+        byte[] packet = read();
+        checkError(packet);
+        Com_Stmt_Prepare_Ok ok = Com_Stmt_Prepare_Ok.loadFromPacket(packet);
+        for (int i = 0; i < ok.numParams; i++) {
+            read();
+        }
+        if (ok.numParams > 0) {
+            readEof();
+        }
+        for (int i = 0; i < ok.numColumns; i++) {
+            read();
+        }
+        if (ok.numColumns > 0) {
+            readEof();
+        }
+        return ok;
+    }
+
+    /**
+     * Send a COM_STMT_EXECUTE command. The parameters are bound with the type
+     * of their value: a Long as MYSQL_TYPE_LONGLONG, a String as
+     * MYSQL_TYPE_VAR_STRING and null as MYSQL_TYPE_NULL.
+     *
+     * @param statementId the statement id
+     * @param flags the cursor flags
+     * @param params the parameter values
+     */
+    public void sendExecute(long statementId, int flags, Object... params) throws IOException {
+        ArrayList<byte[]> payload = new ArrayList<byte[]>();
+        payload.add(Proto.build_byte(Flags.COM_STMT_EXECUTE));
+        payload.add(Proto.build_fixed_int(4, statementId));
+        payload.add(Proto.build_fixed_int(1, flags));
+        payload.add(Proto.build_fixed_int(4, 1));
+        if (params.length > 0) {
+            byte[] nullBitmap = new byte[(params.length + 7) / 8];
+            ArrayList<byte[]> types = new ArrayList<byte[]>();
+            ArrayList<byte[]> values = new ArrayList<byte[]>();
+            for (int i = 0; i < params.length; i++) {
+                Object param = params[i];
+                if (param == null) {
+                    nullBitmap[i / 8] |= 1 << (i & 7);
+                    types.add(Proto.build_fixed_int(2, Flags.MYSQL_TYPE_NULL));
+                } else if (param instanceof Long) {
+                    types.add(Proto.build_fixed_int(2, Flags.MYSQL_TYPE_LONGLONG));
+                    values.add(Proto.build_fixed_int(8, (Long) param));
+                } else {
+                    types.add(Proto.build_fixed_int(2, Flags.MYSQL_TYPE_VAR_STRING));
+                    values.add(Proto.build_lenenc_str(param.toString()));
+                }
+            }
+            payload.add(nullBitmap);
+            // new-params-bound-flag
+            payload.add(Proto.build_fixed_int(1, 1));
+            payload.addAll(types);
+            payload.addAll(values);
+        }
+        Com_Stmt_Execute execute = new Com_Stmt_Execute();
+        execute.data = Proto.arraylist_to_array(payload);
+        send(execute);
+    }
+
+    /**
+     * Send a COM_STMT_FETCH command, the rows of the open cursor are sent
+     * up to an EOF packet.
+     *
+     * @param statementId the statement id
+     * @param numRows the maximum number of rows
+     */
+    public void sendFetch(long statementId, long numRows) throws IOException {
+        ArrayList<byte[]> payload = statementCommand(Flags.COM_STMT_FETCH, statementId);
+        payload.add(Proto.build_fixed_int(4, numRows));
+        Com_Stmt_Fetch fetch = new Com_Stmt_Fetch();
+        fetch.data = Proto.arraylist_to_array(payload);
+        send(fetch);
+    }
+
+    /**
+     * Send a COM_STMT_RESET command, an OK packet is sent.
+     *
+     * @param statementId the statement id
+     */
+    public void sendReset(long statementId) throws IOException {
+        Com_Stmt_Reset reset = new Com_Stmt_Reset();
+        reset.data = Proto.arraylist_to_array(statementCommand(Flags.COM_STMT_RESET, statementId));
+        send(reset);
+    }
+
+    /**
+     * Send a COM_STMT_CLOSE command, no response is sent.
+     *
+     * @param statementId the statement id
+     */
+    public void sendClose(long statementId) throws IOException {
+        Com_Stmt_Close close = new Com_Stmt_Close();
+        close.data = Proto.arraylist_to_array(statementCommand(Flags.COM_STMT_CLOSE, statementId));
+        send(close);
+    }
+
+    private static ArrayList<byte[]> statementCommand(byte command, long statementId) {
+        ArrayList<byte[]> payload = new ArrayList<byte[]>();
+        payload.add(Proto.build_byte(command));
+        payload.add(Proto.build_fixed_int(4, statementId));
+        return payload;
+    }
+
+    private void write(Packet packet) throws IOException {
+        out.write(packet.toPacket());
+        out.flush();
+        sequenceId = (int) packet.sequenceId + 1;
+    }
+
+    /**
+     * Read the next packet of the response.
+     *
+     * @return the packet, with the header
+     * @throws IOException if the sequence id of the packet is not the next one
+     */
+    public byte[] read() throws IOException {
+        byte[] header = new byte[4];
+        in.readFully(header);
+        int size = (header[0] & 0xff) | (header[1] & 0xff) << 8 | (header[2] & 0xff) << 16;
+        byte[] packet = new byte[size + 4];
+        System.arraycopy(header, 0, packet, 0, 4);
+        in.readFully(packet, 4, size);
+        int id = header[3] & 0xff;
+        if (id != (sequenceId & 0xff)) {
+            throw new IOException("Packets out of order, expected " + (sequenceId & 0xff) + " got " + id);
+        }
+        sequenceId++;
+        return packet;
+    }
+
+    /**
+     * Read an OK packet.
+     *
+     * @return the packet
+     * @throws SQLException if an ERR packet was read
+     */
+    public byte[] readOk() throws IOException, SQLException {
+        byte[] packet = read();
+        checkError(packet);
+        if (!isOk(packet)) {
+            throw new IOException("OK expected, got " + Packet.getType(packet));
+        }
+        Proto proto = new Proto(packet, 5);
+        proto.get_lenenc_int();
+        proto.get_lenenc_int();
+        statusFlags = proto.get_fixed_int(2);
+        return packet;
+    }
+
+    /**
+     * Read the column definitions of a result set, up to the EOF packet that
+     * ends them.
+     *
+     * @return the column definitions
+     * @throws SQLException if an ERR packet was read
+     */
+    public List<byte[]> readColumns() throws IOException, SQLException {
+        byte[] packet = read();
+        checkError(packet);
+        int count = (int) new Proto(packet, 4).get_lenenc_int();
+        List<byte[]> columns = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(read());
+        }
+        readEof();
+        return columns;
+    }
+
+    /**
+     * Read the rows of a result set up to the EOF packet that ends them.
+     *
+     * @return the row packets
+     * @throws SQLException if an ERR packet was read
+     */
+    public List<byte[]> readRows() throws IOException, SQLException {
+        List<byte[]> rows = new ArrayList<byte[]>();
+        while (true) {
+            byte[] packet = read();
+            checkError(packet);
+            if (isEof(packet)) {
+                statusFlags = EOF.loadFromPacket(packet).statusFlags;
+                return rows;
+            }
+            rows.add(packet);
+        }
+    }
+
+    /**
+     * Read a result set of the text protocol.
+     *
+     * @return the rows, each value as a string or null
+     * @throws SQLException if an ERR packet was read
+     */
+    public List<String[]> readTextResult() throws IOException, SQLException {
+        int count = readColumns().size();
+        List<String[]> rows = new ArrayList<String[]>();
+        for (byte[] packet : readRows()) {
+            rows.add(parseTextRow(packet, count));
+        }
+        return rows;
+    }
+
+    /**
+     * Read an EOF packet.
+     *
+     * @return the packet
+     * @throws SQLException if an ERR packet was read
+     */
+    public EOF readEof() throws IOException, SQLException {
+        byte[] packet = read();
+        checkError(packet);
+        if (!isEof(packet)) {
+            throw new IOException("EOF expected, got " + Packet.getType(packet));
+        }
+        EOF eof = EOF.loadFromPacket(packet);
+        statusFlags = eof.statusFlags;
+        return eof;
+    }
+
+    /**
+     * Parse a row of the text protocol.
+     *
+     * @param packet the row packet
+     * @param count the number of columns
+     * @return the values, as strings or null
+     */
+    public static String[] parseTextRow(byte[] packet, int count) {
+        Proto proto = new Proto(packet, 4);
+        String[] row = new String[count];
+        for (int i = 0; i < count; i++) {
+            if ((packet[proto.offset] & 0xff) == 0xfb) {
+                proto.offset++;
+            } else {
+                row[i] = proto.get_lenenc_str();
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Throw the error of an ERR packet.
+     *
+     * @param packet the packet
+     * @throws SQLException if it is an ERR packet
+     */
+    public static void checkError(byte[] packet) throws SQLException {
+        if (isError(packet)) {
+            ERR err = ERR.loadFromPacket(packet);
+            throw new SQLException(err.errorMessage, err.sqlState, (int) err.errorCode);
+        }
+    }
+
+    public static boolean isOk(byte[] packet) {
+        return packet[4] == 0x00;
+    }
+
+    public static boolean isError(byte[] packet) {
+        return (packet[4] & 0xff) == 0xff;
+    }
+
+    public static boolean isEof(byte[] packet) {
+        return (packet[4] & 0xff) == 0xfe && packet.length < 13;
+    }
+
+    /**
+     * Close the connection without sending COM_QUIT.
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import com.openddal.engine.Engine;
+import com.openddal.server.ServerArgs;
+import com.openddal.server.mysql.MySQLServer;
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * The base of the test cases that talk the MySQL protocol to a server that
+ * serves the engine of the H2 test cases. The server is started on a free
+ * port on the first use, and shared by the test cases.
+ */
+public abstract class MySQLServerTestCase extends H2ShardTestCase {
+
+    private static final int SEND_BUFFER_SIZE = 16 * 1024;
+
+    private static MySQLServer server;
+    private static int port;
+
+    /**
+     * Get the port of the server, it is started on the first call.
+     *
+     * @return the port
+     */
+    protected static synchronized int getServerPort() throws IOException {
+        if (server == null) {
+            port = getFreePort();
+            server = startServer(getEngine(), port);
+        }
+        return port;
+    }
+
+    /**
+     * Start a server of an engine.
+     *
+     * @param engine the engine
+     * @param port the port
+     * @return the server
+     */
+    protected static MySQLServer startServer(Engine engine, int port) {
+        // a small send buffer, a large result is not sent at once
+        MySQLServer s = new MySQLServer(
+                new ServerArgs().port(port).nativeTransport(false).sendBuff(SEND_BUFFER_SIZE));
+        s.init(engine);
+        s.listen();
+        return s;
+    }
+
+    /**
+     * @return a port that is free on the local host
+     */
+    protected static int getFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Connect a client of the MySQL protocol to the server.
+     *
+     * @return the client
+     */
+    protected MySQLClient connect() throws IOException, SQLException {
+        return new MySQLClient(getServerPort());
+    }
+
+    /**
+     * Insert orders through the engine, the order ids are 1 to count.
+     *
+     * @param count the number of orders
+     */
+    protected void insertOrders(int count) throws SQLException {
+        Connection conn = getConnection();
+        try {
+            PreparedStatement prep = conn
+                    .prepareStatement("INSERT INTO orders(order_id, customer_id, amount, status) VALUES(?, ?, ?, ?)");
+            for (int i = 1; i <= count; i++) {
+                prep.setLong(1, i);
+                prep.setInt(2, i % 100);
+                prep.setBigDecimal(3, new BigDecimal(i + ".50"));
+                prep.setInt(4, i % 3);
+                prep.addBatch();
+                if (i % 1000 == 0) {
+                    prep.executeBatch();
+                }
+            }
+            prep.executeBatch();
+            prep.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+}
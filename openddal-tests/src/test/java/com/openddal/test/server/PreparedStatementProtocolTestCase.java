@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.openddal.server.mysql.MySQLPreparedStatement;
+import com.openddal.server.mysql.MySQLSession;
+import com.openddal.server.mysql.proto.ColumnPacket;
+import com.openddal.server.mysql.proto.Com_Stmt_Prepare_Ok;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.server.util.ErrorCode;
+
+/**
+ * Test the statements executed with COM_STMT_EXECUTE, the parameters bound by
+ * the client and the rows sent with the binary protocol.
+ */
+public class PreparedStatementProtocolTestCase extends MySQLServerTestCase {
+
+    private static final String SQL = "SELECT order_id, customer_id, amount, created FROM orders "
+            + "WHERE order_id IN (?, ?) OR customer_id = ? ORDER BY order_id";
+
+    private static final String CURSOR_SQL = "SELECT order_id, customer_id FROM orders "
+            + "WHERE order_id <= ? ORDER BY order_id";
+
+    private MySQLClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        insertOrders(100);
+        client = connect();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        super.tearDown();
+    }
+
+    public void testExecute() throws Exception {
+        Com_Stmt_Prepare_Ok prepared = client.prepare(SQL);
+        assertEquals(3, prepared.numParams);
+        assertEquals(4, prepared.numColumns);
+
+        client.sendExecute(prepared.statementId, Flags.CURSOR_TYPE_NO_CURSOR, 42L, "43", null);
+        List<byte[]> columns = client.readColumns();
+        assertEquals(4, columns.size());
+        assertEquals(Flags.MYSQL_TYPE_LONGLONG, ColumnPacket.loadFromPacket(columns.get(0)).type);
+        assertEquals(Flags.MYSQL_TYPE_LONG, ColumnPacket.loadFromPacket(columns.get(1)).type);
+        assertEquals(Flags.MYSQL_TYPE_DECIMAL, ColumnPacket.loadFromPacket(columns.get(2)).type);
+        List<byte[]> rows = client.readRows();
+        assertEquals(2, rows.size());
+        assertBinaryRow(rows.get(0), 42, 42, "42.50");
+        assertBinaryRow(rows.get(1), 43, 43, "43.50");
+        assertEquals(Flags.SERVER_STATUS_AUTOCOMMIT, client.getStatusFlags());
+
+        // the last EOF packet reports the transaction of the session
+        client.sendQuery("SET autocommit = 0");
+        client.readOk();
+        client.sendExecute(prepared.statementId, Flags.CURSOR_TYPE_NO_CURSOR, 7L, "8", 9L);
+        assertEquals(4, client.readColumns().size());
+        rows = client.readRows();
+        assertEquals(3, rows.size());
+        assertBinaryRow(rows.get(0), 7, 7, "7.50");
+        assertBinaryRow(rows.get(1), 8, 8, "8.50");
+        assertBinaryRow(rows.get(2), 9, 9, "9.50");
+        assertEquals(Flags.SERVER_STATUS_IN_TRANS, client.getStatusFlags());
+    }
+
+    /**
+     * A statement executed with CURSOR_TYPE_READ_ONLY sends the column
+     * definitions only, the rows are sent by COM_STMT_FETCH, numRows at a
+     * time, until the last one. The cursor is closed when the statement is
+     * executed again, reset or closed.
+     */
+    public void testCursor() throws Exception {
+        Com_Stmt_Prepare_Ok prepared = client.prepare(CURSOR_SQL);
+        long id = prepared.statementId;
+        client.sendExecute(id, Flags.CURSOR_TYPE_READ_ONLY, 10L);
+        assertEquals(2, client.readColumns().size());
+        assertStatus(Flags.SERVER_STATUS_CURSOR_EXISTS, Flags.SERVER_STATUS_LAST_ROW_SENT);
+
+        client.sendFetch(id, 4);
+        assertOrderIds(client.readRows(), 1, 4);
+        assertStatus(Flags.SERVER_STATUS_CURSOR_EXISTS, Flags.SERVER_STATUS_LAST_ROW_SENT);
+        client.sendFetch(id, 4);
+        assertOrderIds(client.readRows(), 5, 8);
+        assertStatus(Flags.SERVER_STATUS_CURSOR_EXISTS, Flags.SERVER_STATUS_LAST_ROW_SENT);
+        client.sendFetch(id, 4);
+        assertOrderIds(client.readRows(), 9, 10);
+        assertStatus(Flags.SERVER_STATUS_LAST_ROW_SENT, Flags.SERVER_STATUS_CURSOR_EXISTS);
+        assertNull(getStatement(id).getCursor());
+        assertNoCursor(id, ErrorCode.ER_STMT_HAS_NO_OPEN_CURSOR);
+
+        // executed again, the cursor starts at the first row
+        ResultSet cursor = openCursor(id);
+        client.sendExecute(id, Flags.CURSOR_TYPE_READ_ONLY, 3L);
+        client.readColumns();
+        assertTrue(cursor.isClosed());
+        client.sendFetch(id, 10);
+        assertOrderIds(client.readRows(), 1, 3);
+        assertStatus(Flags.SERVER_STATUS_LAST_ROW_SENT, Flags.SERVER_STATUS_CURSOR_EXISTS);
+
+        // an execute without a cursor closes the open one
+        cursor = openCursor(id);
+        client.sendExecute(id, Flags.CURSOR_TYPE_NO_CURSOR, 2L);
+        client.readColumns();
+        assertOrderIds(client.readRows(), 1, 2);
+        assertTrue(cursor.isClosed());
+        assertNull(getStatement(id).getCursor());
+
+        cursor = openCursor(id);
+        client.sendReset(id);
+        client.readOk();
+        assertTrue(cursor.isClosed());
+        assertNull(getStatement(id).getCursor());
+        assertNoCursor(id, ErrorCode.ER_STMT_HAS_NO_OPEN_CURSOR);
+
+        cursor = openCursor(id);
+        client.sendClose(id);
+        // no response is sent for COM_STMT_CLOSE, the next command runs after it
+        client.sendQuery("SELECT 1");
+        client.readTextResult();
+        assertTrue(cursor.isClosed());
+        assertNull(getStatement(id));
+        assertNoCursor(id, ErrorCode.ER_UNKNOWN_STMT_HANDLER);
+    }
+
+    /**
+     * Execute the statement with a cursor and fetch the first row, the
+     * cursor is then set.
+     *
+     * @return the cursor
+     */
+    private ResultSet openCursor(long id) throws Exception {
+        client.sendExecute(id, Flags.CURSOR_TYPE_READ_ONLY, 10L);
+        client.readColumns();
+        client.sendFetch(id, 1);
+        assertOrderIds(client.readRows(), 1, 1);
+        ResultSet cursor = getStatement(id).getCursor();
+        assertFalse(cursor.isClosed());
+        return cursor;
+    }
+
+    private MySQLPreparedStatement getStatement(long id) {
+        return MySQLSession.getSession(client.getConnectionId()).getPreparedStatement(id);
+    }
+
+    private void assertStatus(int set, int notSet) {
+        long flags = client.getStatusFlags();
+        assertTrue("" + flags, (flags & set) != 0);
+        assertTrue("" + flags, (flags & notSet) == 0);
+    }
+
+    private void assertNoCursor(long id, int errorCode) throws Exception {
+        client.sendFetch(id, 1);
+        try {
+            client.readRows();
+            fail();
+        } catch (SQLException e) {
+            assertEquals(errorCode, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Check the binary rows of the cursor statement, one by order id.
+     */
+    private static void assertOrderIds(List<byte[]> rows, long first, long last) {
+        assertEquals(last - first + 1, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Proto proto = new Proto(rows.get(i), 4);
+            assertEquals(0x00, proto.get_fixed_int(1));
+            assertEquals(0x00, proto.get_fixed_int(1));
+            assertEquals(first + i, proto.get_fixed_int(8));
+            assertEquals((first + i) % 100, proto.get_fixed_int(4));
+        }
+    }
+
+    /**
+     * Check a binary row of the statement, the created column is NULL.
+     */
+    private static void assertBinaryRow(byte[] packet, long orderId, int customerId, String amount) {
+        Proto proto = new Proto(packet, 4);
+        assertEquals(0x00, proto.get_fixed_int(1));
+        // the NULL bitmap starts at bit 2, the fourth column is bit 5
+        assertEquals(0x20, proto.get_fixed_int(1));
+        assertEquals(orderId, proto.get_fixed_int(8));
+        assertEquals(customerId, proto.get_fixed_int(4));
+        assertEquals(amount, proto.get_lenenc_str());
+        assertEquals(packet.length, proto.offset);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.util.List;
+
+/**
+ * Test SHOW PROCESSLIST with the connections of the server.
+ */
+public class ProcessListTestCase extends MySQLServerTestCase {
+
+    /**
+     * The rows are wide, the server waits for the client to read them long
+     * before the last one.
+     */
+    private static final String SQL = "SELECT order_id, CONCAT(order_id, REPEAT('x', 500)) FROM orders";
+
+    private static final int ROWS = 10000;
+
+    // Id, User, Host, db, Command, Time, State, Info, Shards, Queue
+    private static final int ID = 0;
+    private static final int QUEUE = 9;
+
+    /**
+     * A request sent while the previous one of the connection runs is queued
+     * on the connection, the queue depth is listed.
+     */
+    public void testQueueDepth() throws Exception {
+        insertOrders(ROWS);
+        MySQLClient client = connect();
+        MySQLClient admin = connect();
+        try {
+            client.sendQuery(SQL);
+            client.sendQuery("SELECT 1");
+            String[] row = null;
+            for (int i = 0; i < 100; i++) {
+                row = getProcess(admin, client.getConnectionId());
+                if ("2".equals(row[QUEUE])) {
+                    break;
+                }
+                Thread.sleep(50);
+            }
+            assertEquals("2", row[QUEUE]);
+            assertEquals("1", getProcess(admin, admin.getConnectionId())[QUEUE]);
+
+            client.nextResponse();
+            client.readColumns();
+            assertEquals(ROWS, client.readRows().size());
+            client.nextResponse();
+            assertEquals(1, client.readTextResult().size());
+            // the depth is decremented after the last request returned
+            for (int i = 0; i < 100; i++) {
+                row = getProcess(admin, client.getConnectionId());
+                if ("0".equals(row[QUEUE])) {
+                    break;
+                }
+                Thread.sleep(50);
+            }
+            assertEquals("0", row[QUEUE]);
+        } finally {
+            client.close();
+            admin.close();
+        }
+    }
+
+    private static String[] getProcess(MySQLClient admin, long connectionId) throws Exception {
+        admin.sendQuery("SHOW PROCESSLIST");
+        List<String[]> rows = admin.readTextResult();
+        for (String[] row : rows) {
+            if (row[ID].equals("" + connectionId)) {
+                return row;
+            }
+        }
+        fail("connection " + connectionId + " not listed");
+        return null;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.openddal.message.ErrorCode;
+import com.openddal.server.mysql.MySQLSession;
+import com.openddal.server.mysql.proto.Com_Setoption;
+import com.openddal.server.mysql.proto.Flags;
+
+/**
+ * Test the results that are flushed to the client while the rows are read,
+ * and fail after a part of the rows is sent.
+ */
+public class ResultStreamTestCase extends MySQLServerTestCase {
+
+    private static final int ROWS = 10000;
+
+    /**
+     * The rows are wide, the server waits for the client to read them long
+     * before the last one.
+     */
+    private static final String SQL = "SELECT order_id, CONCAT(order_id, REPEAT('x', 500)) FROM orders";
+
+    private MySQLClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        insertOrders(ROWS);
+        client = connect();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        super.tearDown();
+    }
+
+    public void testErrorAfterFlush() throws Exception {
+        client.sendQuery(SQL);
+        assertEquals(2, client.readColumns().size());
+        assertCanceledAfterFlush();
+        assertConnectionUsable();
+    }
+
+    public void testMultiStatementErrorAfterFlush() throws Exception {
+        Com_Setoption option = new Com_Setoption();
+        option.operation = Flags.MYSQL_OPTION_MULTI_STATEMENTS_ON;
+        client.send(option);
+        client.readEof();
+        client.sendQuery("SELECT 1; " + SQL + "; SELECT 2");
+        assertEquals(1, client.readTextResult().size());
+        assertTrue((client.getStatusFlags() & Flags.SERVER_MORE_RESULTS_EXISTS) != 0);
+        assertEquals(2, client.readColumns().size());
+        assertCanceledAfterFlush();
+        assertConnectionUsable();
+    }
+
+    /**
+     * Read the first rows, cancel the statement of the connection while the
+     * server waits for the client to read, and read the rest of the
+     * response. The client checks that the error continues the sequence of
+     * the rows.
+     */
+    private void assertCanceledAfterFlush() throws Exception {
+        int rows = 0;
+        for (; rows < 1000; rows++) {
+            byte[] packet = client.read();
+            assertFalse(MySQLClient.isError(packet) || MySQLClient.isEof(packet));
+        }
+        MySQLSession.getSession(client.getConnectionId()).getEngineSession().cancel();
+        byte[] packet;
+        while (true) {
+            packet = client.read();
+            if (MySQLClient.isError(packet)) {
+                break;
+            }
+            assertFalse("the statement was not canceled", MySQLClient.isEof(packet));
+            rows++;
+        }
+        assertTrue(rows < ROWS);
+        try {
+            MySQLClient.checkError(packet);
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.STATEMENT_WAS_CANCELED, e.getErrorCode());
+        }
+    }
+
+    private void assertConnectionUsable() throws Exception {
+        client.sendQuery("SELECT 3");
+        List<String[]> rows = client.readTextResult();
+        assertEquals(1, rows.size());
+        assertEquals("3", rows.get(0)[0]);
+    }
+
+}
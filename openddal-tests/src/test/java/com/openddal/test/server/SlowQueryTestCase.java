@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.server;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.openddal.engine.Engine;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.jdbc.JdbcConnection;
+
+/**
+ * Test the slow query log with the shard executions of each statement,
+ * listed in INFORMATION_SCHEMA.SLOW_QUERIES and by SHOW SLOW and SHOW
+ * PHYSICAL_SLOW. The test cases run on an engine of their own, with
+ * SLOW_QUERY_LIMIT=0 every statement is logged.
+ */
+public class SlowQueryTestCase extends MySQLServerTestCase {
+
+    private static final String SQL = "SELECT order_id FROM orders WHERE amount > 40";
+
+    private static Engine engine;
+    private static int port;
+
+    private Connection conn;
+
+    private static synchronized Engine getSlowQueryEngine() throws IOException {
+        if (engine == null) {
+            getEngine();
+            Properties settings = new Properties();
+            settings.setProperty("slowQueryLimit", "0");
+            engine = (Engine) SessionFactoryBuilder.newBuilder().fromXml(CONFIG).applySettings(settings).build();
+            port = getFreePort();
+            startServer(engine, port);
+        }
+        return engine;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try {
+            return new JdbcConnection(getSlowQueryEngine().createSession(new Properties()));
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    protected MySQLClient connect() throws IOException, SQLException {
+        getSlowQueryEngine();
+        return new MySQLClient(port);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        insertOrders(100);
+        conn = getConnection();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testSlowQueries() throws SQLException {
+        Statement stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery(SQL);
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        rs.close();
+        assertEquals(61, count);
+
+        // the newest entry of the statement, one row by shard execution
+        PreparedStatement prep = conn.prepareStatement("SELECT ID, EXECUTION_TIME, SHARD_NAME, "
+                + "SHARD_SQL_STATEMENT, SHARD_ROW_COUNT, SHARD_EXECUTION_TIME "
+                + "FROM INFORMATION_SCHEMA.SLOW_QUERIES WHERE SQL_STATEMENT = ? ORDER BY ID DESC");
+        prep.setString(1, SQL);
+        rs = prep.executeQuery();
+        List<String> shards = new ArrayList<String>();
+        long id = -1;
+        long rows = 0;
+        while (rs.next()) {
+            if (id < 0) {
+                id = rs.getLong(1);
+            } else if (id != rs.getLong(1)) {
+                break;
+            }
+            assertTrue(rs.getLong(2) >= 0);
+            shards.add(rs.getString(3));
+            assertTrue(rs.getString(4), rs.getString(4).contains("ORDERS_01"));
+            rows += rs.getLong(5);
+            assertTrue(rs.getLong(6) >= 0);
+        }
+        rs.close();
+        prep.close();
+        assertEquals(SHARD_COUNT, shards.size());
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            assertTrue(shards.toString(), shards.contains("shard" + i));
+        }
+        // the shards read the rows of the result, they are recorded when the
+        // shard results are closed after the last row
+        assertEquals(count, rows);
+        stat.close();
+    }
+
+    public void testShowSlow() throws Exception {
+        MySQLClient client = connect();
+        try {
+            client.sendQuery(SQL);
+            assertEquals(61, client.readTextResult().size());
+
+            // ID, SESSION_ID, USER_NAME, START_TIME, EXECUTION_TIME,
+            // SQL_STATEMENT, SHARD_COUNT, MAX_SHARD_EXECUTION_TIME
+            client.sendQuery("SHOW SLOW");
+            String[] slow = null;
+            for (String[] row : client.readTextResult()) {
+                if (slow == null && SQL.equals(row[5])) {
+                    slow = row;
+                }
+            }
+            assertNotNull(slow);
+            assertEquals("root", slow[2]);
+            assertEquals("" + SHARD_COUNT, slow[6]);
+            assertNotNull(slow[7]);
+
+            // ID, START_TIME, EXECUTION_TIME, SHARD_NAME, SHARD_SQL_STATEMENT,
+            // SHARD_ROW_COUNT, SHARD_EXECUTION_TIME
+            client.sendQuery("SHOW PHYSICAL_SLOW");
+            List<String> shards = new ArrayList<String>();
+            long rows = 0;
+            for (String[] row : client.readTextResult()) {
+                assertNotNull(row[3]);
+                if (row[0].equals(slow[0])) {
+                    shards.add(row[3]);
+                    assertTrue(row[4], row[4].contains("ORDERS_01"));
+                    rows += Long.parseLong(row[5]);
+                }
+            }
+            assertEquals(SHARD_COUNT, shards.size());
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                assertTrue(shards.toString(), shards.contains("shard" + i));
+            }
+            assertEquals(61, rows);
+        } finally {
+            client.close();
+        }
+    }
+
+}
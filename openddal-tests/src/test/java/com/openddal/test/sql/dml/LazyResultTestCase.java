@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the results read lazily from the shards while other statements run on
+ * the same connection.
+ */
+public class LazyResultTestCase extends H2ShardTestCase {
+
+    private static final String SQL = "SELECT id FROM customers WHERE status = 1";
+    private static final int ROWS = 10;
+
+    private Connection conn;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        PreparedStatement prep = conn.prepareStatement("INSERT INTO customers(id, name, status) VALUES(?, ?, ?)");
+        for (int i = 1; i <= ROWS * 2; i++) {
+            prep.setInt(1, i);
+            prep.setString(2, "c" + i);
+            prep.setInt(3, i % 2);
+            prep.executeUpdate();
+        }
+        prep.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testSameQueryWhileOpen() throws SQLException {
+        Statement stat1 = conn.createStatement();
+        Statement stat2 = conn.createStatement();
+        ResultSet rs = stat1.executeQuery(SQL);
+        assertTrue(rs.next());
+        Set<Integer> ids = new HashSet<Integer>();
+        ids.add(rs.getInt(1));
+        // the session must not hand the command of the open result to stat2
+        assertEquals(ROWS, readIds(stat2.executeQuery(SQL)).size());
+        ids.addAll(readIds(rs));
+        assertEquals(ROWS, ids.size());
+        stat1.close();
+        stat2.close();
+    }
+
+    public void testOpenAcrossCommit() throws SQLException {
+        conn.setAutoCommit(false);
+        Statement stat = conn.createStatement();
+        Statement update = conn.createStatement();
+        ResultSet rs = stat.executeQuery(SQL);
+        assertTrue(rs.next());
+        Set<Integer> ids = new HashSet<Integer>();
+        ids.add(rs.getInt(1));
+        update.executeUpdate("UPDATE customers SET name = 'x' WHERE id = 2");
+        conn.commit();
+        ids.addAll(readIds(rs));
+        assertEquals(ROWS, ids.size());
+        assertEquals(1, countShardRows("customers", "name = 'x'"));
+
+        rs = stat.executeQuery(SQL);
+        assertTrue(rs.next());
+        update.executeUpdate("UPDATE customers SET name = 'y' WHERE id = 4");
+        conn.rollback();
+        assertEquals(ROWS - 1, readIds(rs).size());
+        assertEquals(0, countShardRows("customers", "name = 'y'"));
+        stat.close();
+        update.close();
+    }
+
+    public void testQueryStatisticsRowCount() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("SET QUERY_STATISTICS 1");
+        try {
+            String sql = "SELECT id, name FROM customers WHERE status = 1 AND id > 0";
+            assertEquals(ROWS, readIds(stat.executeQuery(sql)).size());
+            // closed before the last row, only the rows read are counted
+            ResultSet rs = stat.executeQuery(sql);
+            assertTrue(rs.next());
+            assertTrue(rs.next());
+            rs.close();
+            rs = stat.executeQuery("SELECT EXECUTION_COUNT, MIN_ROW_COUNT, MAX_ROW_COUNT, CUMULATIVE_ROW_COUNT"
+                    + " FROM INFORMATION_SCHEMA.QUERY_STATISTICS"
+                    + " WHERE SQL_STATEMENT = 'SELECT ID, NAME FROM CUSTOMERS WHERE STATUS = ? AND ID > ?'");
+            assertTrue(rs.next());
+            assertEquals(2, rs.getLong(1));
+            assertEquals(2, rs.getLong(2));
+            assertEquals(ROWS, rs.getLong(3));
+            assertEquals(ROWS + 2, rs.getLong(4));
+            assertFalse(rs.next());
+            rs.close();
+        } finally {
+            stat.execute("SET QUERY_STATISTICS 0");
+            stat.close();
+        }
+    }
+
+    private static Set<Integer> readIds(ResultSet rs) throws SQLException {
+        Set<Integer> ids = new HashSet<Integer>();
+        while (rs.next()) {
+            assertTrue(ids.add(rs.getInt(1)));
+        }
+        rs.close();
+        return ids;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.openddal.command.dml.LoadCsv;
+import com.openddal.dbobject.User;
+import com.openddal.engine.Database;
+import com.openddal.engine.Session;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.message.ErrorCode;
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the statement LOAD CSV INTO, the rows of the file are checked on the
+ * shards.
+ */
+public class LoadCsvTestCase extends H2ShardTestCase {
+
+    private Connection conn;
+    private Statement stat;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        file = File.createTempFile("customers", ".csv");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testParse() throws SQLException {
+        Session session = (Session) ((JdbcConnection) conn).getSession();
+        LoadCsv load = (LoadCsv) session.prepare(
+                "LOAD CSV INTO customers(id, name) FROM 'a.csv' WITH 'charset=UTF-8'");
+        assertEquals("CUSTOMERS", load.getTable().getName());
+        assertEquals(2, load.getColumns().length);
+        assertEquals("ID", load.getColumns()[0].getName());
+        assertEquals("NAME", load.getColumns()[1].getName());
+        assertEquals("a.csv", load.getFileNameExpr().getValue(session).getString());
+        assertEquals("charset=UTF-8", load.getOptionsExpr().getValue(session).getString());
+        load = (LoadCsv) session.prepare("LOAD CSV INTO customers FROM 'b.csv'");
+        assertNull(load.getColumns());
+        assertNull(load.getOptionsExpr());
+        try {
+            session.prepare("LOAD CSV INTO customers 'b.csv'");
+            fail();
+        } catch (Exception e) {
+            // expected, FROM is missing
+        }
+    }
+
+    public void testLoadWithHeader() throws Exception {
+        StringBuilder buff = new StringBuilder("id,name,status\n");
+        for (int i = 1; i <= 100; i++) {
+            buff.append(i).append(",\"name ").append(i).append(", x\",").append(i % 3).append('\n');
+        }
+        write(buff.toString());
+        assertEquals(100, stat.executeUpdate("LOAD CSV INTO customers FROM '" + file.getPath() + "'"));
+        assertEquals(100, countShardRows("customers", null));
+        assertEquals(33, countShardRows("customers", "status = 0"));
+        ResultSet rs = stat.executeQuery("SELECT name FROM customers WHERE id = 42");
+        assertTrue(rs.next());
+        assertEquals("name 42, x", rs.getString(1));
+        rs.close();
+    }
+
+    public void testLoadColumnList() throws Exception {
+        write("1;a\n2;\n3;c\n");
+        assertEquals(3, stat.executeUpdate("LOAD CSV INTO customers(id, name) FROM '" + file.getPath()
+                + "' WITH 'fieldSeparator=;'"));
+        assertEquals(3, countShardRows("customers", null));
+        assertEquals(1, countShardRows("customers", "name IS NULL"));
+    }
+
+    public void testLoadNotAdmin() throws Exception {
+        write("id,name\n1,a\n");
+        Database database = ((Session) ((JdbcConnection) conn).getSession()).getDatabase();
+        User user = new User(database, "LOAD_CSV_TEST");
+        Connection userConn = new JdbcConnection(database.createSession(user));
+        try {
+            userConn.createStatement().executeUpdate("LOAD CSV INTO customers FROM '" + file.getPath() + "'");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.ADMIN_RIGHTS_REQUIRED, e.getErrorCode());
+        } finally {
+            userConn.close();
+        }
+        assertEquals(0, countShardRows("customers", null));
+    }
+
+    private void write(String data) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(data);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
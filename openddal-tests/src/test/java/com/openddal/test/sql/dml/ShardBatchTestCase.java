@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import com.openddal.engine.Database;
+import com.openddal.engine.QueryStatisticsData;
+import com.openddal.engine.Session;
+import com.openddal.jdbc.JdbcConnection;
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the batches of statements on the sharded tables, the entries of a
+ * batch run on different shards.
+ */
+public class ShardBatchTestCase extends H2ShardTestCase {
+
+    private Connection conn;
+    private Statement stat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        stat.executeUpdate("INSERT INTO customers(id, name, status) VALUES(1, 'a', 1), (2, 'b', 1),"
+                + " (3, 'c', 2), (4, 'd', 2), (5, 'e', 2), (6, 'f', 3), (7, 'g', 3), (8, 'h', 3)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testInsertBatch() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement(
+                "INSERT INTO orders(order_id, customer_id, status) VALUES(?, ?, 1)");
+        for (int i = 1; i <= 8; i++) {
+            prep.setInt(1, i);
+            prep.setInt(2, i);
+            prep.addBatch();
+        }
+        int[] counts = prep.executeBatch();
+        prep.close();
+        int[] expected = new int[8];
+        Arrays.fill(expected, 1);
+        assertEquals(Arrays.toString(expected), Arrays.toString(counts));
+        assertEquals(8, countShardRows("orders", null));
+    }
+
+    public void testUpdateBatch() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("UPDATE customers SET name = ? WHERE id = ?");
+        int[] ids = { 1, 4, 100, 7, 2 };
+        for (int id : ids) {
+            prep.setString(1, "x");
+            prep.setInt(2, id);
+            prep.addBatch();
+        }
+        int[] counts = prep.executeBatch();
+        prep.close();
+        assertEquals("[1, 1, 0, 1, 1]", Arrays.toString(counts));
+        assertEquals(4, countShardRows("customers", "name = 'x'"));
+    }
+
+    public void testUpdateBatchAllNodes() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("UPDATE customers SET name = ? WHERE status = ?");
+        int[] statuses = { 2, 9, 3, 1 };
+        for (int status : statuses) {
+            prep.setString(1, "s" + status);
+            prep.setInt(2, status);
+            prep.addBatch();
+        }
+        int[] counts = prep.executeBatch();
+        prep.close();
+        assertEquals("[3, 0, 3, 2]", Arrays.toString(counts));
+        assertEquals(3, countShardRows("customers", "name = 's3'"));
+    }
+
+    public void testBatchStatistics() throws SQLException {
+        Database database = ((Session) ((JdbcConnection) conn).getSession()).getDatabase();
+        database.setQueryStatistics(true);
+        try {
+            // each entry inserts two rows, routed on their own
+            String sql = "INSERT INTO orders(order_id, customer_id, status) VALUES(?, 1, 1), (?, 1, 1)";
+            PreparedStatement prep = conn.prepareStatement(sql);
+            for (int i = 1; i <= 3; i++) {
+                prep.setInt(1, i);
+                prep.setInt(2, i + 10);
+                prep.addBatch();
+            }
+            assertEquals("[2, 2, 2]", Arrays.toString(prep.executeBatch()));
+            prep.close();
+            assertEquals(6, countShardRows("orders", null));
+            QueryStatisticsData.QueryEntry entry = null;
+            for (QueryStatisticsData.QueryEntry e : database.getQueryStatisticsData().getQueries()) {
+                if (sql.equals(e.getSqlStatement())) {
+                    entry = e;
+                }
+            }
+            assertNotNull(entry);
+            // the rows of all the entries, not the number of entries
+            assertEquals(6, entry.getRowCountCumulative());
+        } finally {
+            database.setQueryStatistics(false);
+        }
+    }
+
+}
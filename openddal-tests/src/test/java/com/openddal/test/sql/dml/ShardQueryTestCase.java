@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test the queries of the sharded tables, the rows are read from the shards.
+ */
+public class ShardQueryTestCase extends H2ShardTestCase {
+
+    private Connection conn;
+    private Statement stat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        stat.executeUpdate("INSERT INTO customers(id, name, status) VALUES(1, 'a', 1), (2, 'b', 1),"
+                + " (3, 'c', 2), (4, 'd', 2), (5, 'e', 2)");
+        stat.executeUpdate("INSERT INTO address(address_id, customer_id, city) VALUES(10, 1, 'x'),"
+                + " (11, 1, 'y'), (20, 2, 'z')");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testSelectByKey() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT id, name FROM customers WHERE id = 3");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertEquals("c", rs.getString(2));
+        assertFalse(rs.next());
+        rs.close();
+        rs = stat.executeQuery("SELECT id FROM customers WHERE id = 3 AND id = 4");
+        assertFalse(rs.next());
+        rs.close();
+    }
+
+    public void testPreparedSelectByKey() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("SELECT name FROM customers WHERE id = ?");
+        String[] names = { "a", "b", "c", "d", "e" };
+        for (int i = 0; i < names.length; i++) {
+            prep.setInt(1, i + 1);
+            ResultSet rs = prep.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(names[i], rs.getString(1));
+            assertFalse(rs.next());
+            rs.close();
+        }
+        prep.close();
+    }
+
+    public void testSelectAllNodes() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT id FROM customers");
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5)), readIds(rs));
+        PreparedStatement prep = conn.prepareStatement("SELECT id FROM customers WHERE status = ?");
+        prep.setInt(1, 2);
+        assertEquals(new HashSet<Integer>(Arrays.asList(3, 4, 5)), readIds(prep.executeQuery()));
+        prep.setInt(1, 3);
+        assertEquals(new HashSet<Integer>(), readIds(prep.executeQuery()));
+        prep.close();
+    }
+
+    public void testSelectColumnTwice() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT id, id, status FROM customers WHERE status = 2");
+        Set<Integer> ids = new HashSet<Integer>();
+        while (rs.next()) {
+            assertEquals(rs.getInt(1), rs.getInt(2));
+            assertEquals(2, rs.getInt(3));
+            ids.add(rs.getInt(1));
+        }
+        rs.close();
+        assertEquals(new HashSet<Integer>(Arrays.asList(3, 4, 5)), ids);
+    }
+
+    public void testSingleNodeGroupQuery() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement(
+                "SELECT status, COUNT(*) FROM customers WHERE id = ? GROUP BY status ORDER BY status");
+        prep.setInt(1, 4);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertEquals(1, rs.getInt(2));
+        assertFalse(rs.next());
+        rs.close();
+        prep.close();
+    }
+
+    public void testGroupQuery() throws SQLException {
+        ResultSet rs = stat.executeQuery(
+                "SELECT status, COUNT(*), MAX(name) FROM customers GROUP BY status ORDER BY status");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertEquals(2, rs.getInt(2));
+        assertEquals("b", rs.getString(3));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertEquals(3, rs.getInt(2));
+        assertEquals("e", rs.getString(3));
+        assertFalse(rs.next());
+        rs.close();
+        rs = stat.executeQuery("SELECT COUNT(*), SUM(id) FROM customers");
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        assertEquals(15, rs.getInt(2));
+        rs.close();
+    }
+
+    public void testRangeGroupQuery() throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM customers WHERE id BETWEEN 2 AND 4");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        rs.close();
+        rs = stat.executeQuery("SELECT COUNT(*) FROM customers WHERE id >= 2");
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        rs.close();
+    }
+
+    public void testRouteConvertedValues() throws SQLException {
+        stat.executeUpdate("INSERT INTO orders(order_id, customer_id, status) VALUES(1, 1, 1), (2, 1, 1),"
+                + " (3, 2, 1), (4, 2, 1), (5, 3, 1), (6, 3, 1), (7, 4, 1), (8, 4, 1)");
+        // order_id is a BIGINT column, the INT values route to the same nodes
+        PreparedStatement prep = conn.prepareStatement("SELECT order_id FROM orders WHERE order_id = ?");
+        for (int i = 1; i <= 8; i++) {
+            prep.setInt(1, i);
+            assertEquals(new HashSet<Integer>(Arrays.asList(i)), readIds(prep.executeQuery()));
+        }
+        prep.close();
+        ResultSet rs = stat.executeQuery("SELECT order_id FROM orders WHERE order_id IN(2, 5, 7)");
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 5, 7)), readIds(rs));
+        rs = stat.executeQuery("SELECT order_id FROM orders WHERE order_id = '6'");
+        assertEquals(new HashSet<Integer>(Arrays.asList(6)), readIds(rs));
+    }
+
+    public void testPreparedGroupQuery() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement(
+                "SELECT c.status, COUNT(*) FROM customers c WHERE c.status = ? GROUP BY c.status");
+        prep.setInt(1, 2);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertEquals(3, rs.getInt(2));
+        assertFalse(rs.next());
+        rs.close();
+        prep.close();
+        rs = stat.executeQuery("SELECT COUNT(*) FROM customers");
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        rs.close();
+    }
+
+    public void testJoinTableGroups() throws SQLException {
+        stat.executeUpdate("INSERT INTO orders(order_id, customer_id, status) VALUES(1, 1, 1), (2, 1, 1),"
+                + " (3, 2, 1), (4, 5, 1)");
+        PreparedStatement prep = conn.prepareStatement("SELECT c.name, o.order_id FROM customers c, orders o"
+                + " WHERE o.customer_id = c.id AND c.status = ? ORDER BY o.order_id");
+        prep.setInt(1, 1);
+        ResultSet rs = prep.executeQuery();
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(rs.next());
+            assertEquals(i < 3 ? "a" : "b", rs.getString(1));
+            assertEquals(i, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        prep.close();
+    }
+
+    public void testSingleNodeGroupJoin() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("SELECT c.name, a.city FROM customers c"
+                + " INNER JOIN address a ON a.customer_id = c.id WHERE c.id = ? ORDER BY a.city");
+        prep.setInt(1, 1);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("a", rs.getString(1));
+        assertEquals("x", rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals("a", rs.getString(1));
+        assertEquals("y", rs.getString(2));
+        assertFalse(rs.next());
+        rs.close();
+        prep.setInt(1, 2);
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("z", rs.getString(2));
+        assertFalse(rs.next());
+        rs.close();
+        prep.close();
+    }
+
+    private static Set<Integer> readIds(ResultSet rs) throws SQLException {
+        Set<Integer> ids = new HashSet<Integer>();
+        while (rs.next()) {
+            assertTrue(ids.add(rs.getInt(1)));
+        }
+        rs.close();
+        return ids;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.api.Trigger;
+
+import com.openddal.message.ErrorCode;
+import com.openddal.test.H2ShardTestCase;
+
+/**
+ * Test UPDATE and DELETE on the sharded tables, the rows are checked on the
+ * shards.
+ */
+public class ShardUpdateTestCase extends H2ShardTestCase {
+
+    /**
+     * The rows of the large INSERT ... SELECT tests, more than the buffer of
+     * 200 rows of each of the 16 order nodes.
+     */
+    private static final int ROWS = 8000;
+
+    private Connection conn;
+    private Statement stat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        conn = getConnection();
+        stat = conn.createStatement();
+        stat.executeUpdate("INSERT INTO customers(id, name, status) VALUES(1, 'a', 1), (2, 'b', 1),"
+                + " (3, 'c', 1), (4, 'd', 1), (5, 'e', 1)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        super.tearDown();
+    }
+
+    public void testUpdate() throws SQLException {
+        assertEquals(1, stat.executeUpdate("UPDATE customers SET status = 2, name = 'x' WHERE id = 1"));
+        assertEquals(1, countShardRows("customers", "id = 1 AND status = 2 AND name = 'x'"));
+        assertEquals(4, countShardRows("customers", "status = 1"));
+        PreparedStatement prep = conn.prepareStatement("UPDATE customers SET status = ? WHERE id = ?");
+        prep.setInt(1, 3);
+        prep.setInt(2, 2);
+        assertEquals(1, prep.executeUpdate());
+        prep.setInt(1, 3);
+        prep.setInt(2, 3);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+        assertEquals(2, countShardRows("customers", "status = 3"));
+        assertEquals(5, stat.executeUpdate("UPDATE customers SET status = 10"));
+        assertEquals(5, countShardRows("customers", "status = 10"));
+    }
+
+    public void testDelete() throws SQLException {
+        assertEquals(1, stat.executeUpdate("DELETE FROM customers WHERE id = 1"));
+        assertEquals(0, countShardRows("customers", "id = 1"));
+        PreparedStatement prep = conn.prepareStatement("DELETE FROM customers WHERE id = ?");
+        prep.setInt(1, 2);
+        assertEquals(1, prep.executeUpdate());
+        prep.setInt(1, 2);
+        assertEquals(0, prep.executeUpdate());
+        prep.close();
+        assertEquals(3, countShardRows("customers", null));
+        assertEquals(3, stat.executeUpdate("DELETE FROM customers"));
+        assertEquals(0, countShardRows("customers", null));
+    }
+
+    public void testInsertFromSelect() throws SQLException {
+        // the shard writes are awaited with the query timeout
+        stat.setQueryTimeout(30);
+        assertEquals(5, stat.executeUpdate("INSERT INTO orders(order_id, customer_id, status)"
+                + " SELECT id, id, status FROM customers"));
+        assertEquals(5, countShardRows("orders", "order_id = customer_id AND status = 1"));
+    }
+
+    public void testInsertFromSelectPipelined() throws SQLException {
+        insertCustomers(ROWS);
+        stat.setQueryTimeout(60);
+        // the full buffers are written while the customers are still read,
+        // the 4 nodes of a shard wait for each other's writes
+        assertEquals(ROWS + 5, stat.executeUpdate("INSERT INTO orders(order_id, customer_id, status)"
+                + " SELECT id, id, status FROM customers"));
+        assertEquals(ROWS + 5, countShardRows("orders", "order_id = customer_id"));
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Connection shard = getShardConnection(i);
+            try {
+                for (int j = 1; j <= 4; j++) {
+                    ResultSet rs = shard.createStatement().executeQuery("SELECT COUNT(*) FROM orders_0" + j);
+                    rs.next();
+                    assertTrue("shard" + i + ".orders_0" + j, rs.getInt(1) > 200);
+                    rs.close();
+                }
+            } finally {
+                shard.close();
+            }
+        }
+    }
+
+    public void testInsertFromSelectSameShardInTransaction() throws SQLException {
+        insertCustomers(ROWS);
+        conn.setAutoCommit(false);
+        // address has the nodes of customers, each row is read and written on
+        // the same shard connection of the transaction
+        assertEquals(ROWS + 5, stat.executeUpdate("INSERT INTO address(address_id, customer_id, city)"
+                + " SELECT id, id, name FROM customers"));
+        assertEquals(0, countShardRows("address", null));
+        conn.rollback();
+        assertEquals(0, countShardRows("address", null));
+        assertEquals(ROWS + 5, stat.executeUpdate("INSERT INTO address(address_id, customer_id, city)"
+                + " SELECT id, id, name FROM customers"));
+        conn.commit();
+        assertEquals(ROWS + 5, countShardRows("address", "address_id = customer_id"));
+    }
+
+    public void testInsertFromSelectTimeout() throws Exception {
+        insertCustomers(ROWS);
+        BlockingTrigger.release = new CountDownLatch(1);
+        BlockingTrigger.canceled = new CountDownLatch(1);
+        Connection shard = getShardConnection(0);
+        try {
+            shard.createStatement().execute("CREATE TRIGGER block_orders BEFORE INSERT ON orders_01"
+                    + " FOR EACH ROW CALL \"" + BlockingTrigger.class.getName() + "\"");
+            stat.setQueryTimeout(1);
+            long start = System.currentTimeMillis();
+            try {
+                stat.executeUpdate("INSERT INTO orders(order_id, customer_id, status)"
+                        + " SELECT id, id, status FROM customers");
+                fail();
+            } catch (SQLException e) {
+                assertEquals(ErrorCode.STATEMENT_WAS_CANCELED, e.getErrorCode());
+            }
+            // canceled at the deadline of the statement, not after the trigger
+            long time = System.currentTimeMillis() - start;
+            assertTrue("time: " + time, time < 10000);
+            // the write still running on the shard is canceled as well
+            assertTrue(BlockingTrigger.canceled.await(10, TimeUnit.SECONDS));
+        } finally {
+            BlockingTrigger.release.countDown();
+            shard.createStatement().execute("DROP TRIGGER block_orders");
+            shard.close();
+        }
+        Connection conn0 = getShardConnection(0);
+        try {
+            ResultSet rs = conn0.createStatement().executeQuery("SELECT COUNT(*) FROM orders_01");
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+            rs.close();
+        } finally {
+            conn0.close();
+        }
+    }
+
+    private void insertCustomers(int count) throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("INSERT INTO customers(id, name, status) VALUES(?, ?, ?)");
+        for (int i = 1; i <= count; i++) {
+            prep.setInt(1, i + 100);
+            prep.setString(2, "c" + i);
+            prep.setInt(3, i % 4);
+            prep.addBatch();
+            if (i % 1000 == 0) {
+                prep.executeBatch();
+            }
+        }
+        prep.executeBatch();
+        prep.close();
+    }
+
+    /**
+     * A trigger that holds the inserts of a shard table until it is released
+     * or the inserting thread is interrupted.
+     */
+    public static class BlockingTrigger implements Trigger {
+
+        static volatile CountDownLatch release;
+        static volatile CountDownLatch canceled;
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                boolean before, int type) {
+            // nothing to do
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                canceled.countDown();
+                throw new SQLException("Interrupted");
+            }
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public void remove() {
+            // nothing to do
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.util;
+
+import junit.framework.TestCase;
+
+import com.openddal.util.LatencyHistogram;
+
+/**
+ * Test the buckets and the percentiles of the latency histogram.
+ */
+public class LatencyHistogramTestCase extends TestCase {
+
+    public void testBucketBounds() {
+        LatencyHistogram h = new LatencyHistogram();
+        int buckets = h.getBucketCount();
+        assertEquals(0, LatencyHistogram.getLowerBound(0));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(buckets - 1));
+        for (int b = 0; b < buckets; b++) {
+            long lower = LatencyHistogram.getLowerBound(b);
+            long upper = LatencyHistogram.getUpperBound(b);
+            assertTrue("bucket " + b, lower <= upper);
+            if (b < buckets - 1) {
+                // the buckets are contiguous
+                assertEquals("bucket " + b, upper + 1, LatencyHistogram.getLowerBound(b + 1));
+            }
+            if (b < 8) {
+                assertEquals(lower, upper);
+            } else {
+                // a bucket is at most 12.5% of its lower bound wide
+                assertTrue("bucket " + b, (upper - lower + 1) * 8 <= lower);
+            }
+        }
+    }
+
+    public void testRecordInBucket() {
+        long[] values = { 0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 1023, 1024, 1025, 123456789L,
+                1L << 40, (1L << 40) - 1, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+        for (long v : values) {
+            LatencyHistogram h = new LatencyHistogram();
+            h.record(v);
+            int found = -1;
+            for (int b = 0; b < h.getBucketCount(); b++) {
+                if (h.getCount(b) > 0) {
+                    assertEquals(-1, found);
+                    found = b;
+                }
+            }
+            assertTrue("value " + v, LatencyHistogram.getLowerBound(found) <= v);
+            assertTrue("value " + v, v <= LatencyHistogram.getUpperBound(found));
+            assertEquals(1, h.getCount());
+            assertEquals(v, h.getMax());
+        }
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        assertEquals(1, h.getCount(0));
+        assertEquals(0, h.getTotal());
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(500500, h.getTotal());
+        assertEquals(500.5, h.getMean(), 0.0001);
+        assertEquals(1, h.getValueAtPercentile(0));
+        assertEquals(1000, h.getValueAtPercentile(100));
+        assertEquals(1000, h.getValueAtPercentile(150));
+        double[] percentiles = { 1, 10, 50, 90, 99, 99.9 };
+        for (double p : percentiles) {
+            long exact = (long) Math.ceil(p * 10);
+            long value = h.getValueAtPercentile(p);
+            // the upper bound of the bucket of the exact value
+            assertTrue("p" + p + " " + value, value >= exact);
+            assertTrue("p" + p + " " + value, value <= exact + exact / 8);
+        }
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getValueAtPercentile(99));
+    }
+
+    public void testPercentileOfSkewedValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            h.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            h.record(1000000);
+        }
+        assertEquals(10, h.getValueAtPercentile(50));
+        assertEquals(10, h.getValueAtPercentile(99));
+        // at most the largest value, not the upper bound of its bucket
+        assertEquals(1000000, h.getValueAtPercentile(99.9));
+    }
+
+}